@@ -0,0 +1,33 @@
+package dev.efaust.collab;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of finding the MessageType of a received datagram, once per message on the receive path.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageTypeBenchmark {
+    // first and last, the lookup is a scan in declaration order
+    @Param({"Heartbeat", "SwimAck"})
+    private MessageType messageType;
+
+    private byte id;
+
+    @Setup
+    public void setup() {
+        id = messageType.getId();
+    }
+
+    @Benchmark
+    public Optional<MessageType> messageTypeFromId() {
+        return MessageType.messageTypeFromId(id);
+    }
+}
@@ -0,0 +1,83 @@
+package dev.efaust.collab.messaging;
+
+import dev.efaust.collab.liveness.HeartbeatMessage;
+import dev.efaust.collab.paxos.ConsensusValue;
+import dev.efaust.collab.paxos.ProposalNumbers;
+import dev.efaust.collab.paxos.messages.AcceptedMessage;
+import dev.efaust.collab.paxos.messages.PleaseAcceptMessage;
+import dev.efaust.collab.paxos.messages.PrepareMessage;
+import dev.efaust.collab.paxos.messages.PromiseMessage;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wire format cost per message type, for small (inline) and large (wrapped) values. Run with -prof gc to see the
+ * bytes allocated per message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageSerializationBenchmark {
+    @Param({"Heartbeat", "Prepare", "Promise", "PleaseAccept", "Accepted"})
+    private String messageType;
+
+    // only carried by the message types with a value
+    @Param({"8", "1024"})
+    private int valueLength;
+
+    private MessageSerialization messageSerialization;
+    private Message message;
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        messageSerialization = new MessageSerialization();
+        ConsensusValue value = ConsensusValue.wrap(new byte[valueLength]);
+        long proposalNumber = ProposalNumbers.of(7, 1);
+        switch (messageType) {
+            case "Heartbeat":
+                HeartbeatMessage heartbeat = new HeartbeatMessage();
+                heartbeat.setUuid(42);
+                message = heartbeat;
+                break;
+            case "Prepare":
+                message = new PrepareMessage(1000, proposalNumber);
+                break;
+            case "Promise":
+                message = new PromiseMessage(1000, proposalNumber, ProposalNumbers.of(6, 2), value);
+                break;
+            case "PleaseAccept":
+                PleaseAcceptMessage accept = new PleaseAcceptMessage();
+                accept.setExecutionId(1000);
+                accept.setProposalNumberToAccept(proposalNumber);
+                accept.setValueToAccept(value);
+                message = accept;
+                break;
+            case "Accepted":
+                AcceptedMessage accepted = new AcceptedMessage();
+                accepted.setExecutionId(1000);
+                accepted.setAcceptedProposalNumber(proposalNumber);
+                accepted.setAcceptedValue(value);
+                message = accepted;
+                break;
+            default:
+                throw new IllegalArgumentException(String.format("no benchmark message for %s", messageType));
+        }
+        bytes = messageSerialization.serialize(message);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return messageSerialization.serialize(message);
+    }
+
+    @Benchmark
+    public Optional<Message> deserialize() {
+        return messageSerialization.deserialize(bytes);
+    }
+}
@@ -0,0 +1,81 @@
+package dev.efaust.collab.paxos;
+
+import dev.efaust.collab.liveness.HeartbeatMessage;
+import dev.efaust.collab.messaging.InMemoryInterconnect;
+import dev.efaust.collab.messaging.InMemoryMessagingLayer;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * End-to-end decisions per second over InMemoryInterconnect: each operation proposes one value and exchanges messages
+ * until it is decided, so the score is the protocol's CPU cost per decision with no network in the way.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConsensusThroughputBenchmark {
+    // bounds a round that cannot decide, e.g. after a change that breaks the protocol
+    private static final int MAX_ROUNDS = 100;
+
+    @Param({"3", "5", "7"})
+    private int nodeCount;
+
+    private InMemoryInterconnect interconnect;
+    private List<PaxosNode> nodes;
+    private ConsensusValue value;
+
+    @Setup(Level.Trial)
+    public void quietLogging() {
+        Configurator.setRootLevel(org.apache.logging.log4j.Level.WARN);
+    }
+
+    @Setup(Level.Iteration)
+    public void setup() throws IOException {
+        interconnect = new InMemoryInterconnect();
+        // history is for tests, not part of the protocol's cost
+        interconnect.setHistorySink((srcNode, dstNode, message) -> { });
+        nodes = new ArrayList<>();
+        for (int i = 0; i < nodeCount; i++) {
+            InMemoryMessagingLayer messagingLayer = new InMemoryMessagingLayer(String.format("node%d", i));
+            interconnect.addNode(messagingLayer);
+            nodes.add(new PaxosNode(messagingLayer.getNodeId(), messagingLayer));
+        }
+        Set<String> members = nodes.stream().map(PaxosNode::getNodeId).collect(Collectors.toSet());
+        for (PaxosNode node : nodes) {
+            node.getMembership().install(members);
+            node.sendMessage(new HeartbeatMessage());
+        }
+        exchangeMessages();
+        value = ConsensusValue.of(42);
+    }
+
+    @Benchmark
+    public Decision decide() throws IOException {
+        CompletableFuture<Decision> future = nodes.get(0).propose(value);
+        for (int round = 0; round < MAX_ROUNDS && !future.isDone(); round++) {
+            exchangeMessages();
+        }
+        if (!future.isDone()) {
+            throw new IllegalStateException(String.format("not decided after %d rounds", MAX_ROUNDS));
+        }
+        return future.join();
+    }
+
+    private void exchangeMessages() throws IOException {
+        for (PaxosNode node : nodes) {
+            node.receiveMessages();
+        }
+        interconnect.drainQueues();
+    }
+}
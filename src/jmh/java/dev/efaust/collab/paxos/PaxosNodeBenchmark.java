@@ -0,0 +1,139 @@
+package dev.efaust.collab.paxos;
+
+import com.google.common.collect.ImmutableSet;
+import dev.efaust.collab.liveness.HeartbeatMessage;
+import dev.efaust.collab.messaging.Message;
+import dev.efaust.collab.messaging.MessagingLayer;
+import dev.efaust.collab.paxos.messages.AcceptedMessage;
+import dev.efaust.collab.paxos.messages.NegativePromiseMessage;
+import dev.efaust.collab.paxos.messages.PleaseAcceptMessage;
+import dev.efaust.collab.paxos.messages.PrepareMessage;
+import dev.efaust.collab.paxos.messages.PromiseMessage;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of PaxosNode.receiveMessage per message type, on one node of three whose replies go nowhere.
+ *
+ * Every Prepare and PleaseAccept is for a new execution, so the acceptor path runs from scratch each time and the
+ * execution window slides as it would under load. Accepted messages come in pairs from the two peers, the second of
+ * which decides the execution, so that benchmark averages the learner's record and decide paths. Promise and
+ * NegativePromise answer B's proposals, the path a node takes for every reply to another proposer it overhears on
+ * multicast; the proposer's own path is covered end to end by ConsensusThroughputBenchmark.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaxosNodeBenchmark {
+    private static final String ADDRESS = "A";
+    private static final String PEER_B = "B";
+    private static final String PEER_C = "C";
+
+    @Param({"Heartbeat", "Prepare", "Promise", "NegativePromise", "PleaseAccept", "Accepted"})
+    private String messageType;
+
+    // drops everything sent, keeps the benchmark to the node's own work
+    private static class DiscardingMessagingLayer implements MessagingLayer {
+        private final Queue<Message> receiveQueue = new ArrayDeque<>();
+        private long sent;
+
+        @Override
+        public void send(Message message) {
+            sent++;
+        }
+
+        @Override
+        public void sendTo(String address, Message message) {
+            sent++;
+        }
+
+        @Override
+        public Queue<Message> getReceiveQueue() {
+            return receiveQueue;
+        }
+    }
+
+    private PaxosNode node;
+    private ConsensusValue value;
+    private long proposalNumber;
+    private long sequence;
+
+    @Setup(Level.Trial)
+    public void quietLogging() {
+        Configurator.setRootLevel(org.apache.logging.log4j.Level.WARN);
+    }
+
+    // a fresh node per iteration keeps the state left by earlier executions bounded
+    @Setup(Level.Iteration)
+    public void setup() throws IOException {
+        node = new PaxosNode(ADDRESS, new DiscardingMessagingLayer(), () -> 0L);
+        for (String peer : new String[] { ADDRESS, PEER_B, PEER_C }) {
+            node.getPeerRegistry().heartbeat(peer);
+        }
+        node.getMembership().install(ImmutableSet.of(ADDRESS, PEER_B, PEER_C));
+        value = ConsensusValue.of(42);
+        proposalNumber = ProposalNumbers.of(1, node.getMembership().configurationFor(1).get().ordinal(PEER_B));
+        sequence = 0;
+    }
+
+    @Benchmark
+    public void receiveMessage() throws IOException {
+        node.receiveMessage(nextMessage());
+    }
+
+    private Message nextMessage() {
+        sequence++;
+        Message message;
+        switch (messageType) {
+            case "Heartbeat":
+                HeartbeatMessage heartbeat = new HeartbeatMessage();
+                heartbeat.setUuid(sequence);
+                message = heartbeat;
+                break;
+            case "Prepare":
+                message = new PrepareMessage(sequence, proposalNumber);
+                break;
+            case "Promise":
+                message = new PromiseMessage(sequence, proposalNumber, PromiseMessage.NO_PRIOR_ACCEPTED_N,
+                        PromiseMessage.NO_PRIOR_ACCEPTED_VALUE);
+                message.setSourceAddress(PEER_C);
+                return message;
+            case "NegativePromise":
+                NegativePromiseMessage negativePromise = new NegativePromiseMessage();
+                negativePromise.setExecutionId(sequence);
+                negativePromise.setProposalNumber(proposalNumber);
+                negativePromise.setPriorPromisedProposalNumber(proposalNumber + 1);
+                negativePromise.setPriorAcceptedProposalNumber(PromiseMessage.NO_PRIOR_ACCEPTED_N);
+                message = negativePromise;
+                message.setSourceAddress(PEER_C);
+                return message;
+            case "PleaseAccept":
+                PleaseAcceptMessage accept = new PleaseAcceptMessage();
+                accept.setExecutionId(sequence);
+                accept.setProposalNumberToAccept(proposalNumber);
+                accept.setValueToAccept(value);
+                message = accept;
+                break;
+            case "Accepted":
+                AcceptedMessage accepted = new AcceptedMessage();
+                accepted.setExecutionId((sequence + 1) / 2);
+                accepted.setAcceptedProposalNumber(proposalNumber);
+                accepted.setAcceptedValue(value);
+                message = accepted;
+                message.setSourceAddress(sequence % 2 == 1 ? PEER_B : PEER_C);
+                return message;
+            default:
+                throw new IllegalArgumentException(String.format("no benchmark message for %s", messageType));
+        }
+        message.setSourceAddress(PEER_B);
+        return message;
+    }
+}
@@ -0,0 +1,59 @@
+package dev.efaust.collab.statemachine;
+
+import dev.efaust.collab.paxos.Decision;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * KeyValueStateMachine apply throughput in decisions per second, for the batch sizes the apply loop produces: one
+ * decision at a time, a few decided together, and a full PaxosNode MAX_APPLY_BATCH after catching up.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyValueStateMachineBenchmark {
+    private static final int KEYS = 100_000;
+    // decisions applied per operation, a multiple of every batch size
+    private static final int DECISIONS_PER_OPERATION = 256;
+    // cycled through, enough to touch every key
+    private static final int DECISIONS = 1 << 20;
+
+    @Param({"1", "16", "256"})
+    private int batchSize;
+
+    private KeyValueStateMachine stateMachine;
+    private List<List<Decision>> batches;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        List<Decision> decisions = new ArrayList<>(DECISIONS);
+        for (int i = 0; i < DECISIONS; i++) {
+            decisions.add(new Decision(i + 1, KeyValueCommand.put(random.nextInt(KEYS), random.nextInt())));
+        }
+        batches = new ArrayList<>(DECISIONS / batchSize);
+        for (int i = 0; i < DECISIONS; i += batchSize) {
+            batches.add(decisions.subList(i, i + batchSize));
+        }
+        stateMachine = new KeyValueStateMachine();
+        next = 0;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DECISIONS_PER_OPERATION)
+    public long apply() {
+        for (int applied = 0; applied < DECISIONS_PER_OPERATION; applied += batchSize) {
+            stateMachine.apply(batches.get(next));
+            next = next + 1 == batches.size() ? 0 : next + 1;
+        }
+        return stateMachine.getAppliedThrough();
+    }
+}
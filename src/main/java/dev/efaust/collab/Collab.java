@@ -1,24 +1,37 @@
 package dev.efaust.collab;
 
 import dev.efaust.collab.liveness.HeartbeatMessage;
+import dev.efaust.collab.liveness.NodeRole;
 import dev.efaust.collab.liveness.IpTracker;
 import dev.efaust.collab.liveness.PeerRegistry;
+import dev.efaust.collab.load.LoadGenerator;
 import dev.efaust.collab.messaging.Message;
 import dev.efaust.collab.messaging.MessageSerialization;
 import dev.efaust.collab.messaging.MulticastUDPMessagingLayer;
 import dev.efaust.collab.messaging.NamedThreadFactory;
-import dev.efaust.collab.paxos.PaxosNode;
+import dev.efaust.collab.messaging.PerPeerDispatcher;
+import dev.efaust.collab.paxos.ConsensusValue;
+import dev.efaust.collab.paxos.group.PaxosGroups;
+import dev.efaust.collab.paxos.quorum.MajorityQuorumSystem;
+import dev.efaust.collab.paxos.quorum.QuorumSystem;
+import dev.efaust.collab.trace.EventTracer;
 import org.apache.commons.cli.*;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.core.config.Configurator;
 import org.apache.logging.log4j.core.config.DefaultConfiguration;
-import org.joda.time.DateTime;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Optional;
 import java.util.Queue;
 import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -27,6 +40,15 @@ public class Collab {
 
     private static final String OPTION_PORT = "port";
     private static final String OPTION_IPV4 = "ipv4";
+    private static final String OPTION_QUORUM = "quorum";
+    private static final String OPTION_GROUPS = "groups";
+    private static final String OPTION_VIRTUAL_THREADS = "virtual-threads";
+    private static final String OPTION_TRACE = "trace";
+    private static final String OPTION_OBSERVER = "observer";
+    private static final String OPTION_MEMBERS = "members";
+    private static final String OPTION_SWIM = "swim";
+    private static final String OPTION_LOAD = "load";
+    private static final String OPTION_LOAD_DURATION = "load-duration";
     private static final String OPTION_HELP = "help";
 
     private static final int PORT_DEFAULT = 4447;
@@ -39,7 +61,11 @@ public class Collab {
     private static final String IPV6_DEFAULT_ADDRESS = "ff02::1";
 
     private static long DISCOVERY_PERIOD_MILLIS = TimeUnit.SECONDS.toMillis(3);
+    // at startup, a burst of heartbeats this far apart finds this node's address, until it is found or the burst ends
+    private static long STARTUP_PROBE_PERIOD_MILLIS = 50;
+    private static int STARTUP_PROBES = 20;
     private static String SERVICE_NAME = "Collab";
+    private static long LOAD_REPORT_PERIOD_SECONDS = 5;
 
     public static void main(String[] args) {
         log.info("Hello!");
@@ -54,7 +80,20 @@ public class Collab {
 
     private final Random random;
     private MulticastUDPMessagingLayer multicast;
-    private PaxosNode paxosNode;
+    // every Paxos node runs on its own actor thread, this thread only routes received messages to them
+    private PaxosGroups paxosGroups;
+    // run receive/send/report threads as virtual threads and handle each peer's messages on a thread of its own
+    private boolean virtualThreads;
+    // voter, or observer that follows decisions without being part of any quorum
+    private NodeRole role = NodeRole.Voter;
+    // explicit initial configuration, later changes go through the log
+    private Set<String> members = Collections.emptySet();
+    // SWIM probes replace periodic heartbeats once this node knows its address
+    private boolean swim;
+    // proposes continuously once peers are known, instead of deciding a single value
+    private LoadGenerator loadGenerator;
+    // 0 to run load until interrupted
+    private long loadDurationSeconds;
     private final AtomicBoolean started = new AtomicBoolean(false);
     private IpTracker ipTracker;
 
@@ -75,6 +114,15 @@ public class Collab {
         Options options = new Options();
         options.addOption("p", OPTION_PORT, true, "udp port to listen on");
         options.addOption("4", OPTION_IPV4, false, "use IPv4");
+        options.addOption("q", OPTION_QUORUM, true, "quorum system: majority (default), flexible:Q2, flexible:Q1,Q2, grid:COLUMNS");
+        options.addOption("g", OPTION_GROUPS, true, "number of independent Paxos groups, spread over one worker thread per core (default 1)");
+        options.addOption(null, OPTION_VIRTUAL_THREADS, false, "use virtual threads and a thread per peer (Java 21+)");
+        options.addOption(null, OPTION_TRACE, true, "on exit, write the binary event trace to this file (read with TraceDecoder)");
+        options.addOption(null, OPTION_OBSERVER, false, "learn decided values without voting, for read replicas");
+        options.addOption(null, OPTION_MEMBERS, true, "initial voters, comma separated addresses (required); the same on every node");
+        options.addOption(null, OPTION_SWIM, false, "detect failures with SWIM probes rather than heartbeats from every node, for large networks");
+        options.addOption(null, OPTION_LOAD, true, "load test: propose rate:PROPOSALS_PER_SECOND or concurrency:OUTSTANDING_PROPOSALS, reporting throughput and latency percentiles");
+        options.addOption(null, OPTION_LOAD_DURATION, true, "with --load, stop after this many seconds, report the totals and exit (default: run until interrupted)");
         options.addOption("h", OPTION_HELP);
 
         CommandLineParser parser = new DefaultParser();
@@ -105,12 +153,65 @@ public class Collab {
         if (cmd.hasOption(OPTION_IPV4)) {
             useIpv6 = false;
         }
+        int groupCount = 1;
+        if (cmd.hasOption(OPTION_GROUPS)) {
+            groupCount = Integer.parseInt(cmd.getOptionValue(OPTION_GROUPS));
+        }
+        if (cmd.hasOption(OPTION_VIRTUAL_THREADS)) {
+            if (!NamedThreadFactory.isVirtualThreadSupported()) {
+                log.error("--{} needs Java 21 or later, running on {}", OPTION_VIRTUAL_THREADS, System.getProperty("java.version"));
+                System.exit(1);
+            }
+            virtualThreads = true;
+        }
+        if (cmd.hasOption(OPTION_OBSERVER)) {
+            role = NodeRole.Observer;
+        }
+        if (cmd.hasOption(OPTION_SWIM)) {
+            swim = true;
+        }
+        if (!cmd.hasOption(OPTION_MEMBERS)) {
+            // quorums are only counted over a fixed set of voters, see MembershipManager
+            log.error("--{} is required, list the voters' addresses", OPTION_MEMBERS);
+            printUsage(options);
+            System.exit(1);
+        }
+        members = new HashSet<>(Arrays.asList(cmd.getOptionValue(OPTION_MEMBERS).split(",")));
+        if (cmd.hasOption(OPTION_LOAD)) {
+            if (role == NodeRole.Observer) {
+                log.error("--{} needs a voter, observers do not propose", OPTION_LOAD);
+                System.exit(1);
+            }
+            loadGenerator = LoadGenerator.fromSpec(cmd.getOptionValue(OPTION_LOAD),
+                    (sequence, value) -> paxosGroups.propose(paxosGroups.groupForKey((int)sequence), value));
+            if (cmd.hasOption(OPTION_LOAD_DURATION)) {
+                loadDurationSeconds = Long.parseLong(cmd.getOptionValue(OPTION_LOAD_DURATION));
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> log.info("load total {}", loadGenerator.summary()), "load-summary"));
+        }
+        if (cmd.hasOption(OPTION_TRACE)) {
+            Path traceFile = Paths.get(cmd.getOptionValue(OPTION_TRACE));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> dumpTrace(traceFile), "trace-dump"));
+        }
+        QuorumSystem quorumSystem = new MajorityQuorumSystem();
+        if (cmd.hasOption(OPTION_QUORUM)) {
+            quorumSystem = QuorumSystem.fromSpec(cmd.getOptionValue(OPTION_QUORUM));
+        }
 
         // could make this configurable... doesn't really matter since network local multicast by convention uses
         // a single address (IPv6), with any port
         String multicastGroupAddress = useIpv6 ? IPV6_DEFAULT_ADDRESS : IPV4_DEFAULT_ADDRESS;
 
-        execute(multicastGroupAddress, port);
+        execute(multicastGroupAddress, port, quorumSystem, groupCount);
+    }
+
+    private static void dumpTrace(Path traceFile) {
+        try {
+            EventTracer.getDefault().dump(traceFile);
+            log.info("event trace written to {}", traceFile);
+        } catch (IOException e) {
+            log.error("failed to write event trace to {}", traceFile, e);
+        }
     }
 
     private void receivedHeartbeat(HeartbeatMessage heartbeat) {
@@ -121,98 +222,182 @@ public class Collab {
         return new Runnable() {
             @Override
             public void run() {
+                int probes = 0;
                 while (true) {
+                    // with SWIM, heartbeats only announce this node when it starts, probes do the rest
+                    if (swim && ipTracker.isIpDetermined()) {
+                        sleep(DISCOVERY_PERIOD_MILLIS);
+                        continue;
+                    }
+                    // every Paxos message doubles as a heartbeat, so skip ours while every group is sending anyway;
+                    // still sent until our own address is known, IpTracker needs to see them come back
+                    long sinceSendMillis = TimeUnit.NANOSECONDS.toMillis(paxosGroups.nanosSinceEveryGroupSent());
+                    if (sinceSendMillis < DISCOVERY_PERIOD_MILLIS && ipTracker.isIpDetermined()) {
+                        log.debug("suppressed heartbeat, sent {}ms ago", sinceSendMillis);
+                        sleep(DISCOVERY_PERIOD_MILLIS - sinceSendMillis);
+                        continue;
+                    }
                     try {
                         HeartbeatMessage heartbeat = new HeartbeatMessage();
                         heartbeat.setUuid(random.nextLong());
+                        heartbeat.setRole(role);
                         ipTracker.aboutToSendHeartbeat(heartbeat);
                         multicast.send(heartbeat);
                         log.debug("sent");
                     } catch (IOException e) {
                         log.error("Exception on send: {}", e.getMessage());
                     }
-                    try {
-                        Thread.sleep(DISCOVERY_PERIOD_MILLIS);
-                    } catch (InterruptedException e) {
-
-                    }
+                    probes++;
+                    sleep(probes < STARTUP_PROBES && !ipTracker.isIpDetermined() ? STARTUP_PROBE_PERIOD_MILLIS : DISCOVERY_PERIOD_MILLIS);
                 }
             }
         };
     }
 
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+
+        }
+    }
+
     private Runnable getReportPeerListRunnable() {
         return new Runnable() {
             @Override
             public void run() {
-                log.info("peer list");
-                PeerRegistry peerRegistry = paxosNode.getPeerRegistry();
-                for (String peer : peerRegistry.getPeers()) {
-                    DateTime lastHeartbeat = peerRegistry.getLastHeartbeatTimeForPeer(peer);
-                    log.info("peer {} last heartbeat {}", peer, lastHeartbeat);
-                }
-                if (peerRegistry.getPeers().size() > 0 && !started.get()) {
-                    started.set(true);
-                    try {
-                        paxosNode.sendPrepare(() -> 4L);
-                    } catch (IOException e) {
-                        log.error("failed to send prepare", e);
-                    }
-                }
+                // every group sees the same heartbeats, report the first one's view on its own thread
+                paxosGroups.tell(0, (node) -> {
+                    logPeers(node.getPeerRegistry());
+                    return null;
+                });
             }
         };
     }
 
-    public void execute(String ip, int port) throws IOException {
-        MessageSerialization messageSerialization = new MessageSerialization();
-        multicast = new MulticastUDPMessagingLayer(ip, port, messageSerialization);
-        paxosNode = new PaxosNode("localhost", multicast);
-        multicast.setup();
-
-        // TODO: this will affect the whole round, probably need to find a better solution
-        ipTracker = new IpTracker((String determinedIp) -> paxosNode.setNodeId(determinedIp));
+    private static void logPeers(PeerRegistry peerRegistry) {
+        log.info("peer list");
+        for (String peer : peerRegistry.getPeers()) {
+            long sinceHeartbeatMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - peerRegistry.getLastHeartbeatNanos(peer));
+            log.info("peer {} ({}) last heartbeat {}ms ago, phi {}", peer, peerRegistry.getRoleForPeer(peer),
+                    sinceHeartbeatMillis, String.format("%.2f", peerRegistry.phi(peer)));
+        }
+    }
 
+    private void startSendAndReceiveThreads() {
         log.info("starting receive packets thread");
-        NamedThreadFactory receiveThreadFactory = new NamedThreadFactory("receive");
+        NamedThreadFactory receiveThreadFactory = new NamedThreadFactory("receive", virtualThreads);
         Thread receivePacketsThread = receiveThreadFactory.newThread(() -> multicast.run());
         receivePacketsThread.start();
         log.info("receive thread started");
 
         log.info("starting send thread");
-        Thread sendThread = new Thread(getSendRunnable());
-        sendThread.setName("send");
+        Thread sendThread = new NamedThreadFactory("send", virtualThreads).newThread(getSendRunnable());
         sendThread.start();
         log.info("send thread started");
 
-        ScheduledExecutorService scheduledExecutorService = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("report"));
+        ScheduledExecutorService scheduledExecutorService = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("report", virtualThreads));
         scheduledExecutorService.scheduleAtFixedRate(getReportPeerListRunnable(), 0, 10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Runs groupCount independent Paxos groups (usually one) on up to one worker thread per core.
+     * The main thread only routes received messages to groups.
+     */
+    public void execute(String ip, int port, QuorumSystem quorumSystem, int groupCount) throws IOException {
+        MessageSerialization messageSerialization = new MessageSerialization();
+        multicast = new MulticastUDPMessagingLayer(ip, port, messageSerialization);
+        int workerCount = Runtime.getRuntime().availableProcessors();
+        paxosGroups = new PaxosGroups("localhost", groupCount, workerCount, multicast);
+        paxosGroups.tellAll((node) -> {
+            node.setQuorumSystem(quorumSystem);
+            node.setRole(role);
+            node.getMembership().install(members);
+            return null;
+        });
+        if (swim) {
+            paxosGroups.enableSwim();
+        }
+        log.info("using quorum system {}, {} group(s) on {} worker(s), {} threads, role {}, {} failure detection",
+                quorumSystem, groupCount, paxosGroups.getWorkerCount(), virtualThreads ? "virtual" : "platform", role,
+                swim ? "SWIM" : "heartbeat");
+        multicast.setup();
+
+        // TODO: this will affect the whole round, probably need to find a better solution
+        // runs on the routing thread, the node id is changed on each group's own thread
+        ipTracker = new IpTracker((String determinedIp) -> {
+            paxosGroups.tellAll((node) -> {
+                node.setNodeId(determinedIp);
+                return null;
+            });
+            if (role == NodeRole.Voter && !members.contains(determinedIp)) {
+                log.warn("{} is not one of --{} {}, this node will not propose", determinedIp, OPTION_MEMBERS, members);
+            }
+        }, IpTracker.localAddresses());
+
+        paxosGroups.start();
+        startSendAndReceiveThreads();
 
         // runs in main thread
-        handlePaxosMessagesLoop();
+        routeGroupMessagesLoop();
     }
 
-    private void handlePaxosMessagesLoop() throws IOException {
+    private void routeGroupMessagesLoop() {
+        // groups run on platform worker threads either way, only the routing differs
+        PerPeerDispatcher perPeerDispatcher = virtualThreads ? new PerPeerDispatcher(this::routeMessage, true) : null;
         Queue<Message> receiveQueue = multicast.getReceiveQueue();
         while (true) {
             Message message = receiveQueue.poll();
-            if (message != null) {
-                log.debug("received message {} from {}", message, message.getSourceAddress());
-                if (message instanceof HeartbeatMessage) {
-                    HeartbeatMessage heartbeat = HeartbeatMessage.class.cast(message);
-                    receivedHeartbeat(heartbeat);
-                }
+            if (message == null) {
                 try {
-                    paxosNode.receiveMessage(message);
-                } catch (IOException e) {
-                    log.error("error receiving message {}", message, e);
+                    // don't spin CPU polling for messages
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    // ignore
                 }
+                continue;
             }
-            try {
-                // don't spin CPU polling for messages
-                Thread.sleep(10);
-            } catch (InterruptedException e) {
-                // ignore
+            if (perPeerDispatcher != null) {
+                perPeerDispatcher.dispatch(message);
+            } else {
+                routeMessage(message);
             }
         }
     }
+
+    // may run on several per-peer threads at once
+    private void routeMessage(Message message) {
+        if (message instanceof HeartbeatMessage) {
+            receivedHeartbeat(HeartbeatMessage.class.cast(message));
+        }
+        paxosGroups.dispatch(message);
+        // once peers are known, every group proposes for its first execution (observers only follow); not before this
+        // node knows its own address, until then it is not a configured voter and proposals could only fail
+        if (message instanceof HeartbeatMessage && isConfiguredVoter() && started.compareAndSet(false, true)) {
+            if (loadGenerator != null) {
+                startLoad();
+            } else {
+                paxosGroups.tellAll((node) -> node.sendPrepare(() -> ConsensusValue.of(4L)));
+            }
+        }
+    }
+
+    private boolean isConfiguredVoter() {
+        Optional<String> ip = ipTracker.getIp();
+        return role == NodeRole.Voter && ip.isPresent() && members.contains(ip.get());
+    }
+
+    private void startLoad() {
+        // give every peer's heartbeats a discovery period to arrive, so proposals do not time out against voters that
+        // are not running yet: quorums are counted over the configured voters whether they are up or not
+        long delayNanos = TimeUnit.MILLISECONDS.toNanos(DISCOVERY_PERIOD_MILLIS);
+        loadGenerator.start(delayNanos, TimeUnit.SECONDS.toNanos(LOAD_REPORT_PERIOD_SECONDS));
+        if (loadDurationSeconds > 0) {
+            // exiting runs the shutdown hook that reports the totals
+            Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("load-duration")).schedule(() -> {
+                loadGenerator.stop();
+                System.exit(0);
+            }, delayNanos + TimeUnit.SECONDS.toNanos(loadDurationSeconds), TimeUnit.NANOSECONDS);
+        }
+    }
 }
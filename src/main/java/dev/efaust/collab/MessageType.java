@@ -10,7 +10,13 @@ public enum MessageType {
     Promise(2),
     PleaseAccept(3),
     Accepted(4),
-    NegativePromise(5);
+    NegativePromise(5),
+    CatchUpRequest(6),
+    CatchUpResponse(7),
+    CatchUpSnapshot(8),
+    SwimPing(9),
+    SwimPingRequest(10),
+    SwimAck(11);
 
     @Getter
     byte id;
@@ -16,6 +16,9 @@ public class HeartbeatMessage extends Message {
     @Getter @Setter
     long uuid;
 
+    @Getter @Setter
+    NodeRole role = NodeRole.Voter;
+
     @Override
     public MessageType getMessageType() {
         return MessageType.Heartbeat;
@@ -23,6 +26,6 @@ public class HeartbeatMessage extends Message {
 
     @Override
     public String toString() {
-        return String.format("<Heartbeat src='%s' uuid='%d' />", getSourceAddress(), getUuid());
+        return String.format("<Heartbeat src='%s' uuid='%d' role='%s' />", getSourceAddress(), getUuid(), getRole());
     }
 }
@@ -1,72 +1,136 @@
 package dev.efaust.collab.liveness;
 
-import com.google.common.collect.EvictingQueue;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
 import java.util.*;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
 
 /**
- * Uses heartbeat messages to track IP of this node.
+ * Uses heartbeat messages to track IP of this node: heartbeats this node sent come back over multicast with the source
+ * address peers see it as.
+ *
+ * A heartbeat that comes back from one of this machine's own interface addresses settles it at once, so a short burst
+ * of heartbeats at startup finds the address within a round trip. Otherwise (e.g. an address not listed on any local
+ * interface) an address is accepted once more than OVERLAP_THRESHOLD of the recent heartbeats came back from it.
+ * Each heartbeat is constant work.
  */
 public class IpTracker {
     private static Logger log = LogManager.getLogger(IpTracker.class);
 
-    // TODO: make sure we allow heartbeats to be dropped
     private static final int PRIOR_HEARTBEATS_TO_REMEMBER = 10;
     private static final int OVERLAP_THRESHOLD = 3;
 
-    private EvictingQueue<Long> uuidsSentOrder;
+    // ring of recently sent uuids
+    private final long[] uuidsSent;
+    private int uuidsSentCount;
+    private int nextUuidSent;
 
-    class ReceivedEntry {
-        long uuid;
-        String ip;
+    // ring of the sources our heartbeats came back from, and how often each source appears in it
+    private final String[] sourcesReceived;
+    private int nextSourceReceived;
+    private final Map<String, Integer> sourceCounts;
 
-        public ReceivedEntry(long uuid, String ip) {
-            this.uuid = uuid;
-            this.ip = ip;
-        }
-    }
-    private EvictingQueue<ReceivedEntry> matchingUuidsReceived;
+    // addresses of this machine's interfaces, without IPv6 scope
+    private final Set<String> localAddresses;
 
     private Optional<String> ip;
 
     private Consumer<String> ipConsumer;
 
     public IpTracker(Consumer<String> ipConsumer) {
-        uuidsSentOrder = EvictingQueue.create(PRIOR_HEARTBEATS_TO_REMEMBER);
-        matchingUuidsReceived = EvictingQueue.create(PRIOR_HEARTBEATS_TO_REMEMBER);
+        this(ipConsumer, Collections.emptySet());
+    }
+
+    public IpTracker(Consumer<String> ipConsumer, Set<String> localAddresses) {
+        this.uuidsSent = new long[PRIOR_HEARTBEATS_TO_REMEMBER];
+        this.sourcesReceived = new String[PRIOR_HEARTBEATS_TO_REMEMBER];
+        this.sourceCounts = new HashMap<>();
+        this.localAddresses = localAddresses;
         this.ipConsumer = ipConsumer;
+        this.ip = Optional.empty();
+    }
+
+    public synchronized boolean isIpDetermined() {
+        return ip.isPresent();
+    }
+
+    public synchronized Optional<String> getIp() {
+        return ip;
     }
 
     public synchronized void aboutToSendHeartbeat(HeartbeatMessage heartbeat) {
-        long uuid = heartbeat.getUuid();
-        uuidsSentOrder.add(uuid);
+        uuidsSent[nextUuidSent] = heartbeat.getUuid();
+        nextUuidSent = (nextUuidSent + 1) % uuidsSent.length;
+        uuidsSentCount = Math.min(uuidsSentCount + 1, uuidsSent.length);
     }
 
     public synchronized void receivedHeartbeat(HeartbeatMessage heartbeat) {
-        long uuid = heartbeat.getUuid();
+        if (!wasSent(heartbeat.getUuid())) {
+            return;
+        }
+        String source = heartbeat.getSourceAddress();
+        if (localAddresses.contains(withoutScope(source))) {
+            determined(source, "local interface");
+            return;
+        }
+        String evicted = sourcesReceived[nextSourceReceived];
+        if (evicted != null) {
+            sourceCounts.computeIfPresent(evicted, (address, count) -> count == 1 ? null : count - 1);
+        }
+        sourcesReceived[nextSourceReceived] = source;
+        nextSourceReceived = (nextSourceReceived + 1) % sourcesReceived.length;
+        int count = sourceCounts.merge(source, 1, Integer::sum);
+        if (count > OVERLAP_THRESHOLD) {
+            determined(source, String.format("confidence %d/%d", count, sourcesReceived.length));
+        }
+    }
 
-        if (uuidsSentOrder.contains(uuid)) {
-            matchingUuidsReceived.add(new ReceivedEntry(heartbeat.uuid, heartbeat.getSourceAddress()));
-            checkIfIpDetermined();
+    private boolean wasSent(long uuid) {
+        for (int i = 0; i < uuidsSentCount; i++) {
+            if (uuidsSent[i] == uuid) {
+                return true;
+            }
         }
+        return false;
     }
 
-    public void checkIfIpDetermined() {
-        Set<Long> sent = uuidsSentOrder.stream().collect(Collectors.toSet());
-        Map<String, Integer> ipCounts = new HashMap<>();
-        matchingUuidsReceived.stream()
-                .filter((entry) -> sent.contains(entry.uuid))
-                .forEach((entry) -> ipCounts.merge(entry.ip, 1, (a, b) -> a + b));
-        Optional<Map.Entry<String, Integer>> entryWithMaxOverlap = ipCounts.entrySet().stream()
-                .max(Comparator.comparing(Map.Entry::getValue));
-        if (entryWithMaxOverlap.isPresent() && entryWithMaxOverlap.get().getValue() > OVERLAP_THRESHOLD) {
-            ip = Optional.of(entryWithMaxOverlap.get().getKey());
-            log.info("ip {} confidence {}/{}", ip.get(), entryWithMaxOverlap.get().getValue(), matchingUuidsReceived.stream().count());
-            ipConsumer.accept(ip.get());
+    private void determined(String determinedIp, String reason) {
+        if (ip.isPresent() && ip.get().equals(determinedIp)) {
+            return;
         }
+        ip = Optional.of(determinedIp);
+        log.info("ip {} ({})", determinedIp, reason);
+        ipConsumer.accept(determinedIp);
+    }
+
+    /**
+     * Addresses of every interface that is up, the ones our multicast heartbeats can come back from. Loopback is left
+     * out, peers never see this node by its loopback address.
+     */
+    public static Set<String> localAddresses() {
+        Set<String> addresses = new HashSet<>();
+        try {
+            for (NetworkInterface networkInterface : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+                if (!networkInterface.isUp() || networkInterface.isLoopback()) {
+                    continue;
+                }
+                for (InetAddress address : Collections.list(networkInterface.getInetAddresses())) {
+                    addresses.add(withoutScope(address.getHostAddress()));
+                }
+            }
+        } catch (SocketException e) {
+            log.warn("could not list network interfaces, falling back to heartbeat counting: {}", e.getMessage());
+        }
+        return addresses;
+    }
+
+    // IPv6 link local addresses carry a scope (e.g. fe80::1%eth0) that may be written differently per API
+    private static String withoutScope(String address) {
+        int scope = address.indexOf('%');
+        return scope < 0 ? address : address.substring(0, scope);
     }
 }
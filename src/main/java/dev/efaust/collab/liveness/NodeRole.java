@@ -0,0 +1,33 @@
+package dev.efaust.collab.liveness;
+
+import lombok.Getter;
+
+import java.util.Optional;
+
+/**
+ * Part a node plays in consensus, advertised in its heartbeats.
+ *
+ * Voters are acceptors: they promise and accept, and make up Phase 1 and Phase 2 quorums. Observers only learn: they
+ * follow Accepted messages to find out what was decided and apply it, but never vote, so adding observers scales
+ * reads without growing quorums or slowing writes.
+ */
+public enum NodeRole {
+    Voter(0),
+    Observer(1);
+
+    @Getter
+    byte id;
+
+    NodeRole(int id) {
+        this.id = (byte)id;
+    }
+
+    public static Optional<NodeRole> nodeRoleFromId(byte id) {
+        for (NodeRole role : NodeRole.values()) {
+            if (role.id == id) {
+                return Optional.of(role);
+            }
+        }
+        return Optional.empty();
+    }
+}
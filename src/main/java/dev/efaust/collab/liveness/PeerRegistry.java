@@ -1,32 +1,161 @@
 package dev.efaust.collab.liveness;
 
-import org.joda.time.DateTime;
+import dev.efaust.collab.liveness.swim.SwimMembership;
+import lombok.Getter;
+import lombok.Setter;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
 
+/**
+ * Heartbeat history and advertised role of every known peer, with a phi accrual failure detector per peer deciding
+ * which peers are alive. With a SwimMembership set, SWIM decides instead.
+ * Not thread-safe, owned by the PaxosNode it belongs to and only used from that node's thread.
+ */
 public class PeerRegistry {
-    private Map<String, DateTime> peerLastHeartbeatTime;
+    public static final double DEFAULT_PHI_THRESHOLD = 8.0;
+    // heartbeats go out every 3s (Collab), one may be lost without the peer being suspected
+    public static final long DEFAULT_HEARTBEAT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(3);
+    public static final long DEFAULT_ACCEPTABLE_PAUSE_NANOS = TimeUnit.SECONDS.toNanos(3);
+    public static final long DEFAULT_MIN_STD_DEVIATION_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+    public static final int DEFAULT_WINDOW_SIZE = 100;
+
+    private static class Peer {
+        final PhiAccrualFailureDetector detector;
+        NodeRole role;
+
+        Peer(PhiAccrualFailureDetector detector, NodeRole role) {
+            this.detector = detector;
+            this.role = role;
+        }
+    }
+
+    private final LongSupplier nanoTime;
+    private final Map<String, Peer> peers;
+
+    // peers with phi at or above this are suspected to have failed
+    @Getter @Setter
+    private double phiThreshold;
+    @Getter @Setter
+    private long heartbeatIntervalNanos;
+    @Getter @Setter
+    private long acceptablePauseNanos;
+    // when set, replaces the phi accrual detectors
+    @Getter @Setter
+    private SwimMembership swimMembership;
 
     public PeerRegistry() {
-        peerLastHeartbeatTime = new HashMap<>();
+        this(System::nanoTime);
     }
 
-    public void updatePeerHeartbeat(String peer, DateTime time) {
-        peerLastHeartbeatTime.put(peer, time);
+    public PeerRegistry(LongSupplier nanoTime) {
+        this.nanoTime = nanoTime;
+        this.peers = new HashMap<>();
+        this.phiThreshold = DEFAULT_PHI_THRESHOLD;
+        this.heartbeatIntervalNanos = DEFAULT_HEARTBEAT_INTERVAL_NANOS;
+        this.acceptablePauseNanos = DEFAULT_ACCEPTABLE_PAUSE_NANOS;
     }
 
+    public void heartbeat(String peer) {
+        heartbeat(peer, NodeRole.Voter);
+    }
+
+    /**
+     * Record a heartbeat from peer, received now.
+     */
+    public void heartbeat(String peer, NodeRole role) {
+        long now = nanoTime.getAsLong();
+        Peer known = peers.get(peer);
+        if (known == null) {
+            peers.put(peer, new Peer(newDetector(now), role));
+            return;
+        }
+        known.detector.heartbeat(now);
+        known.role = role;
+    }
+
+    /**
+     * Record any other message from peer, received now. Messages come in bursts, so at most one per heartbeat
+     * interval reaches the failure detector: feeding it every arrival would collapse its mean interval and get the
+     * peer suspected as soon as a burst is followed by ordinary quiet.
+     */
+    public void heard(String peer, NodeRole role) {
+        long now = nanoTime.getAsLong();
+        Peer known = peers.get(peer);
+        if (known == null) {
+            peers.put(peer, new Peer(newDetector(now), role));
+            return;
+        }
+        if (now - known.detector.getLastHeartbeatNanos() >= heartbeatIntervalNanos) {
+            known.detector.heartbeat(now);
+        }
+        known.role = role;
+    }
+
+    private PhiAccrualFailureDetector newDetector(long now) {
+        return new PhiAccrualFailureDetector(now, heartbeatIntervalNanos, DEFAULT_WINDOW_SIZE,
+                DEFAULT_MIN_STD_DEVIATION_NANOS, acceptablePauseNanos);
+    }
+
+    /**
+     * @return every peer ever heard from, alive or not
+     */
     public Set<String> getPeers() {
-        return peerLastHeartbeatTime.keySet();
+        return peers.keySet();
+    }
+
+    /**
+     * @return nanoTime of the last heartbeat from peer
+     */
+    public long getLastHeartbeatNanos(String peer) {
+        return peers.get(peer).detector.getLastHeartbeatNanos();
     }
 
-    public DateTime getLastHeartbeatTimeForPeer(String peer) {
-        return peerLastHeartbeatTime.get(peer);
+    public double phi(String peer) {
+        return peers.get(peer).detector.phi(nanoTime.getAsLong());
     }
 
+    public NodeRole getRoleForPeer(String peer) {
+        Peer known = peers.get(peer);
+        return known == null ? NodeRole.Voter : known.role;
+    }
+
+    /**
+     * Peers not suspected by the failure detector.
+     */
     public Set<String> peersAlive() {
-        // TODO: add liveness threshold
-        return peerLastHeartbeatTime.keySet();
+        if (swimMembership != null) {
+            return swimMembership.membersAlive();
+        }
+        long now = nanoTime.getAsLong();
+        Set<String> alive = new HashSet<>();
+        for (Map.Entry<String, Peer> entry : peers.entrySet()) {
+            if (entry.getValue().detector.isAvailable(now, phiThreshold)) {
+                alive.add(entry.getKey());
+            }
+        }
+        return alive;
+    }
+
+    /**
+     * Live peers that take part in quorums, i.e. everyone except observers.
+     */
+    public Set<String> votersAlive() {
+        if (swimMembership != null) {
+            return swimMembership.votersAlive();
+        }
+        long now = nanoTime.getAsLong();
+        Set<String> alive = new HashSet<>();
+        for (Map.Entry<String, Peer> entry : peers.entrySet()) {
+            Peer peer = entry.getValue();
+            if (peer.role == NodeRole.Voter && peer.detector.isAvailable(now, phiThreshold)) {
+                alive.add(entry.getKey());
+            }
+        }
+        return alive;
     }
 }
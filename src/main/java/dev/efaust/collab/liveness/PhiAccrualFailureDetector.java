@@ -0,0 +1,95 @@
+package dev.efaust.collab.liveness;
+
+import lombok.Getter;
+
+/**
+ * Phi accrual failure detector for one peer (Hayashibara et al., as used by Cassandra and Akka).
+ *
+ * Rather than a fixed timeout, phi measures how surprising the silence since the last heartbeat is, given the
+ * distribution of recent heartbeat inter-arrival times: phi = -log10(P(next heartbeat is later than now)), with
+ * inter-arrival times modelled as a normal distribution. phi 8 means the peer being alive but this late has a chance of
+ * about 1 in 10^8. Peers whose heartbeats arrive with jitter get a wider distribution and so more slack.
+ *
+ * Intervals are kept in a ring of primitives with running sums for mean and variance, so heartbeat and phi are constant
+ * time and allocation free. Not thread-safe.
+ */
+public class PhiAccrualFailureDetector {
+    private final long[] intervals;
+    private int intervalCount;
+    private int nextInterval;
+    private double intervalSum;
+    private double intervalSquaredSum;
+
+    private final long minStdDeviationNanos;
+    // slack on top of the mean, e.g. so one lost heartbeat is not a failure
+    private final long acceptablePauseNanos;
+
+    @Getter
+    private long lastHeartbeatNanos;
+
+    /**
+     * @param firstHeartbeatNanos time of the first heartbeat
+     * @param firstIntervalEstimateNanos expected heartbeat interval, used until there is history
+     */
+    public PhiAccrualFailureDetector(long firstHeartbeatNanos, long firstIntervalEstimateNanos, int windowSize,
+                                     long minStdDeviationNanos, long acceptablePauseNanos) {
+        if (windowSize < 2) {
+            throw new IllegalArgumentException(String.format("window size must be at least 2, got %d", windowSize));
+        }
+        this.intervals = new long[windowSize];
+        this.minStdDeviationNanos = minStdDeviationNanos;
+        this.acceptablePauseNanos = acceptablePauseNanos;
+        this.lastHeartbeatNanos = firstHeartbeatNanos;
+        // seed the history with mean estimate and standard deviation estimate / 4
+        long deviation = firstIntervalEstimateNanos / 4;
+        addInterval(firstIntervalEstimateNanos - deviation);
+        addInterval(firstIntervalEstimateNanos + deviation);
+    }
+
+    public void heartbeat(long nowNanos) {
+        long interval = nowNanos - lastHeartbeatNanos;
+        if (interval <= 0) {
+            // duplicate or reordered delivery, carries no timing information
+            return;
+        }
+        addInterval(interval);
+        lastHeartbeatNanos = nowNanos;
+    }
+
+    public double phi(long nowNanos) {
+        double elapsed = nowNanos - lastHeartbeatNanos;
+        double mean = intervalSum / intervalCount + acceptablePauseNanos;
+        double variance = intervalSquaredSum / intervalCount - square(intervalSum / intervalCount);
+        double stdDeviation = Math.max(Math.sqrt(Math.max(variance, 0)), minStdDeviationNanos);
+
+        // logistic approximation of the normal distribution's CDF, accurate to about 1e-4
+        double y = (elapsed - mean) / stdDeviation;
+        double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+        if (elapsed > mean) {
+            return -Math.log10(e / (1.0 + e));
+        }
+        return -Math.log10(1.0 - 1.0 / (1.0 + e));
+    }
+
+    public boolean isAvailable(long nowNanos, double threshold) {
+        return phi(nowNanos) < threshold;
+    }
+
+    private void addInterval(long interval) {
+        if (intervalCount == intervals.length) {
+            long evicted = intervals[nextInterval];
+            intervalSum -= evicted;
+            intervalSquaredSum -= square(evicted);
+        } else {
+            intervalCount++;
+        }
+        intervals[nextInterval] = interval;
+        nextInterval = (nextInterval + 1) % intervals.length;
+        intervalSum += interval;
+        intervalSquaredSum += square(interval);
+    }
+
+    private static double square(double value) {
+        return value * value;
+    }
+}
@@ -0,0 +1,31 @@
+package dev.efaust.collab.liveness.swim;
+
+import lombok.Getter;
+
+import java.util.Optional;
+
+/**
+ * What the SWIM membership believes about a member. Suspect members are still members, they are only removed once
+ * dead.
+ */
+public enum MemberState {
+    Alive(0),
+    Suspect(1),
+    Dead(2);
+
+    @Getter
+    byte id;
+
+    MemberState(int id) {
+        this.id = (byte)id;
+    }
+
+    public static Optional<MemberState> memberStateFromId(byte id) {
+        for (MemberState state : MemberState.values()) {
+            if (state.id == id) {
+                return Optional.of(state);
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,16 @@
+package dev.efaust.collab.liveness.swim;
+
+import dev.efaust.collab.liveness.NodeRole;
+import lombok.Value;
+
+/**
+ * One membership change, spread by piggybacking it on SWIM messages.
+ * A member's incarnation only ever grows, and only the member itself raises it, to refute a suspicion.
+ */
+@Value
+public class MemberUpdate {
+    String address;
+    MemberState state;
+    long incarnation;
+    NodeRole role;
+}
@@ -0,0 +1,20 @@
+package dev.efaust.collab.liveness.swim;
+
+import dev.efaust.collab.MessageType;
+import lombok.EqualsAndHashCode;
+
+/**
+ * Answer to a ping, or a ping made for a ping request.
+ */
+@EqualsAndHashCode(callSuper = true)
+public class SwimAckMessage extends SwimMessage {
+    @Override
+    public MessageType getMessageType() {
+        return MessageType.SwimAck;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("<SwimAck src='%s' sequence='%d' updates='%d' />", getSourceAddress(), getSequence(), getUpdates().size());
+    }
+}
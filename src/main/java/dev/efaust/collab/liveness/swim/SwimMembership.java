@@ -0,0 +1,430 @@
+package dev.efaust.collab.liveness.swim;
+
+import dev.efaust.collab.liveness.NodeRole;
+import dev.efaust.collab.timer.HashedWheelTimer;
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * SWIM membership (Das, Gupta and Motivala, "SWIM: Scalable Weakly-consistent Infection-style Process Group
+ * Membership Protocol"), an alternative to every node multicasting heartbeats to every other node.
+ *
+ * Failure detection: every protocol period this node pings one member, going round-robin through a shuffled list. If
+ * no ack comes back within the ack timeout, it asks a few other members to ping the target on its behalf. If no ack
+ * gets through by the end of the period, the target becomes suspect, and dead unless it refutes the suspicion within
+ * the suspicion timeout. A member refutes a suspicion of itself by raising its incarnation number.
+ *
+ * Dissemination: membership changes are piggybacked on pings and acks instead of being multicast, each one about
+ * lambda * log(n) times. A node sends one ping per period and answers about one, so the load on each node stays the
+ * same however large the group gets.
+ *
+ * Driven by the owning PaxosNode's thread and timer, one instance per process serves every Paxos group. Only
+ * membersAlive and votersAlive may be called from other threads: they return a view published by the owning thread
+ * whenever a member changes, and at least once per protocol period.
+ */
+public class SwimMembership {
+    private static final Logger log = LogManager.getLogger(SwimMembership.class);
+
+    public static final long DEFAULT_PROTOCOL_PERIOD_NANOS = TimeUnit.SECONDS.toNanos(1);
+    public static final long DEFAULT_ACK_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+    public static final int DEFAULT_INDIRECT_PROBES = 3;
+    // suspicion timeout and retransmissions are this many times log2(n + 1), in periods and sends
+    public static final int SUSPICION_MULTIPLIER = 4;
+    public static final int RETRANSMIT_MULTIPLIER = 3;
+    public static final int MAX_PIGGYBACKED_UPDATES = 8;
+
+    /**
+     * Unicast to one member.
+     */
+    @FunctionalInterface
+    public interface Transport {
+        void sendTo(String address, SwimMessage message) throws IOException;
+    }
+
+    private static class Member {
+        final String address;
+        MemberState state;
+        long incarnation;
+        NodeRole role;
+        HashedWheelTimer.Timeout suspicionTimeout;
+
+        Member(String address, NodeRole role) {
+            this.address = address;
+            this.state = MemberState.Alive;
+            this.role = role;
+        }
+    }
+
+    private static class PendingAck {
+        // set when pinging on behalf of another member, the ack is passed back to them
+        final String requester;
+        final long requesterSequence;
+        boolean acked;
+
+        PendingAck(String requester, long requesterSequence) {
+            this.requester = requester;
+            this.requesterSequence = requesterSequence;
+        }
+    }
+
+    private static class Dissemination {
+        final MemberUpdate update;
+        int transmissions;
+
+        Dissemination(MemberUpdate update) {
+            this.update = update;
+        }
+    }
+
+    private final Transport transport;
+    private final HashedWheelTimer timer;
+    private final Random random;
+    private final Supplier<String> localAddress;
+    private final Supplier<NodeRole> localRole;
+
+    private final Map<String, Member> members;
+    // shuffled once per round, new members are inserted at random positions
+    private final List<String> probeOrder;
+    private int probeIndex;
+    private final Map<Long, PendingAck> pendingAcks;
+    // latest update per member, waiting to be piggybacked
+    private final Map<String, Dissemination> disseminations;
+    private long sequence;
+    private HashedWheelTimer.Timeout periodTimeout;
+    // read by the other groups' threads
+    private volatile Set<String> membersAliveView;
+    private volatile Set<String> votersAliveView;
+
+    @Getter
+    private long incarnation;
+
+    @Getter @Setter
+    private long protocolPeriodNanos;
+    @Getter @Setter
+    private long ackTimeoutNanos;
+    @Getter @Setter
+    private int indirectProbes;
+
+    public SwimMembership(Transport transport, HashedWheelTimer timer, Random random, Supplier<String> localAddress,
+                          Supplier<NodeRole> localRole) {
+        this.transport = transport;
+        this.timer = timer;
+        this.random = random;
+        this.localAddress = localAddress;
+        this.localRole = localRole;
+        this.members = new HashMap<>();
+        this.probeOrder = new ArrayList<>();
+        this.pendingAcks = new HashMap<>();
+        this.disseminations = new HashMap<>();
+        this.protocolPeriodNanos = DEFAULT_PROTOCOL_PERIOD_NANOS;
+        this.ackTimeoutNanos = DEFAULT_ACK_TIMEOUT_NANOS;
+        this.indirectProbes = DEFAULT_INDIRECT_PROBES;
+        publish();
+    }
+
+    public void start() {
+        if (periodTimeout == null) {
+            disseminate(localUpdate());
+            periodTimeout = timer.schedule(this::protocolPeriod, protocolPeriodNanos);
+            publish();
+        }
+    }
+
+    public void stop() {
+        if (periodTimeout != null) {
+            periodTimeout.cancel();
+            periodTimeout = null;
+        }
+    }
+
+    /**
+     * Direct contact from address, e.g. its heartbeat when it joins.
+     */
+    public void heard(String address, NodeRole role) {
+        if (address.equals(localAddress.get())) {
+            return;
+        }
+        Member member = members.get(address);
+        if (member == null) {
+            member = add(address, role);
+            log.info("[{}] member {} joined", localAddress.get(), address);
+            disseminate(update(member));
+        } else if (member.state == MemberState.Dead) {
+            // it missed being declared dead, tell it again so it rejoins with a new incarnation
+            disseminate(update(member));
+        }
+    }
+
+    public void receive(SwimMessage message) {
+        String source = message.getSourceAddress();
+        heard(source, message.getSenderRole());
+        for (MemberUpdate update : message.getUpdates()) {
+            apply(update);
+        }
+        if (message instanceof SwimPingMessage) {
+            send(source, new SwimAckMessage(), message.getSequence());
+        } else if (message instanceof SwimPingRequestMessage) {
+            pingFor(source, message.getSequence(), SwimPingRequestMessage.class.cast(message).getTarget());
+        } else if (message instanceof SwimAckMessage) {
+            acked(message.getSequence());
+        }
+    }
+
+    /**
+     * Members not known to be dead, including this node. Suspects count until they are declared dead.
+     */
+    public Set<String> membersAlive() {
+        return membersAliveView;
+    }
+
+    public Set<String> votersAlive() {
+        return votersAliveView;
+    }
+
+    // this node's own address and role may change between member changes, so this also runs every period
+    private void publish() {
+        Set<String> membersAlive = new HashSet<>();
+        Set<String> votersAlive = new HashSet<>();
+        membersAlive.add(localAddress.get());
+        if (localRole.get() == NodeRole.Voter) {
+            votersAlive.add(localAddress.get());
+        }
+        for (Member member : members.values()) {
+            if (member.state != MemberState.Dead) {
+                membersAlive.add(member.address);
+                if (member.role == NodeRole.Voter) {
+                    votersAlive.add(member.address);
+                }
+            }
+        }
+        membersAliveView = Collections.unmodifiableSet(membersAlive);
+        votersAliveView = Collections.unmodifiableSet(votersAlive);
+    }
+
+    public Optional<MemberState> getState(String address) {
+        Member member = members.get(address);
+        return member == null ? Optional.empty() : Optional.of(member.state);
+    }
+
+    private void protocolPeriod() {
+        periodTimeout = timer.schedule(this::protocolPeriod, protocolPeriodNanos);
+        publish();
+        Optional<String> target = nextProbeTarget();
+        if (!target.isPresent()) {
+            return;
+        }
+        long probeSequence = ++sequence;
+        PendingAck probe = new PendingAck(null, 0);
+        pendingAcks.put(probeSequence, probe);
+        send(target.get(), new SwimPingMessage(), probeSequence);
+        timer.schedule(() -> {
+            if (!probe.acked) {
+                pingIndirectly(probeSequence, target.get());
+            }
+        }, ackTimeoutNanos);
+        timer.schedule(() -> {
+            pendingAcks.remove(probeSequence);
+            if (!probe.acked) {
+                suspect(target.get());
+            }
+        }, protocolPeriodNanos);
+    }
+
+    private Optional<String> nextProbeTarget() {
+        while (true) {
+            if (probeIndex >= probeOrder.size()) {
+                probeOrder.clear();
+                for (Member member : members.values()) {
+                    if (member.state != MemberState.Dead) {
+                        probeOrder.add(member.address);
+                    }
+                }
+                if (probeOrder.isEmpty()) {
+                    return Optional.empty();
+                }
+                Collections.shuffle(probeOrder, random);
+                probeIndex = 0;
+            }
+            Member member = members.get(probeOrder.get(probeIndex++));
+            if (member.state != MemberState.Dead) {
+                return Optional.of(member.address);
+            }
+        }
+    }
+
+    private void pingIndirectly(long probeSequence, String target) {
+        List<String> helpers = new ArrayList<>();
+        for (Member member : members.values()) {
+            if (member.state == MemberState.Alive && !member.address.equals(target)) {
+                helpers.add(member.address);
+            }
+        }
+        Collections.shuffle(helpers, random);
+        for (String helper : helpers.subList(0, Math.min(indirectProbes, helpers.size()))) {
+            SwimPingRequestMessage pingRequest = new SwimPingRequestMessage();
+            pingRequest.setTarget(target);
+            send(helper, pingRequest, probeSequence);
+        }
+    }
+
+    private void pingFor(String requester, long requesterSequence, String target) {
+        long forwardSequence = ++sequence;
+        pendingAcks.put(forwardSequence, new PendingAck(requester, requesterSequence));
+        send(target, new SwimPingMessage(), forwardSequence);
+        timer.schedule(() -> pendingAcks.remove(forwardSequence), protocolPeriodNanos);
+    }
+
+    private void acked(long ackSequence) {
+        PendingAck pending = pendingAcks.remove(ackSequence);
+        if (pending == null) {
+            return;
+        }
+        pending.acked = true;
+        if (pending.requester != null) {
+            send(pending.requester, new SwimAckMessage(), pending.requesterSequence);
+        }
+    }
+
+    private void suspect(String address) {
+        Member member = members.get(address);
+        if (member == null || member.state != MemberState.Alive) {
+            return;
+        }
+        log.info("[{}] suspect {}", localAddress.get(), address);
+        change(member, MemberState.Suspect, member.incarnation);
+        disseminate(update(member));
+    }
+
+    private void confirmDead(Member member, long suspectedIncarnation) {
+        if (member.state != MemberState.Suspect || member.incarnation != suspectedIncarnation) {
+            return;
+        }
+        log.info("[{}] member {} is dead", localAddress.get(), member.address);
+        change(member, MemberState.Dead, member.incarnation);
+        disseminate(update(member));
+    }
+
+    private void apply(MemberUpdate update) {
+        if (update.getAddress().equals(localAddress.get())) {
+            if (update.getState() != MemberState.Alive && update.getIncarnation() >= incarnation) {
+                incarnation = update.getIncarnation() + 1;
+                log.info("[{}] refuting {} with incarnation {}", localAddress.get(), update.getState(), incarnation);
+                disseminate(localUpdate());
+            }
+            return;
+        }
+        Member member = members.get(update.getAddress());
+        if (member == null) {
+            if (update.getState() == MemberState.Dead) {
+                return;
+            }
+            member = add(update.getAddress(), update.getRole());
+        } else if (!overrides(update, member)) {
+            return;
+        }
+        member.role = update.getRole();
+        change(member, update.getState(), update.getIncarnation());
+        disseminate(update);
+    }
+
+    // the ordering of updates from the SWIM paper, plus dead members coming back with a higher incarnation
+    private static boolean overrides(MemberUpdate update, Member member) {
+        switch (update.getState()) {
+            case Alive:
+                return update.getIncarnation() > member.incarnation;
+            case Suspect:
+                return update.getIncarnation() > member.incarnation
+                        || (update.getIncarnation() == member.incarnation && member.state == MemberState.Alive);
+            default:
+                return member.state != MemberState.Dead;
+        }
+    }
+
+    private Member add(String address, NodeRole role) {
+        Member member = new Member(address, role);
+        members.put(address, member);
+        probeOrder.add(probeIndex + random.nextInt(probeOrder.size() - probeIndex + 1), address);
+        publish();
+        return member;
+    }
+
+    private void change(Member member, MemberState state, long newIncarnation) {
+        if (member.suspicionTimeout != null) {
+            member.suspicionTimeout.cancel();
+            member.suspicionTimeout = null;
+        }
+        member.state = state;
+        member.incarnation = newIncarnation;
+        if (state == MemberState.Suspect) {
+            member.suspicionTimeout = timer.schedule(() -> confirmDead(member, newIncarnation),
+                    SUSPICION_MULTIPLIER * logGroupSize() * protocolPeriodNanos);
+        }
+        publish();
+    }
+
+    private void disseminate(MemberUpdate update) {
+        disseminations.put(update.getAddress(), new Dissemination(update));
+    }
+
+    // updates sent the fewest times go first, each is dropped once it has been sent lambda * log(n) times
+    private List<MemberUpdate> piggyback() {
+        if (disseminations.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Dissemination> candidates = new ArrayList<>(disseminations.values());
+        candidates.sort(Comparator.comparingInt((Dissemination dissemination) -> dissemination.transmissions));
+        List<MemberUpdate> updates = new ArrayList<>();
+        for (Dissemination dissemination : candidates.subList(0, Math.min(MAX_PIGGYBACKED_UPDATES, candidates.size()))) {
+            updates.add(dissemination.update);
+            dissemination.transmissions++;
+        }
+        int retransmitLimit = RETRANSMIT_MULTIPLIER * logGroupSize();
+        Iterator<Dissemination> it = disseminations.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().transmissions >= retransmitLimit) {
+                it.remove();
+            }
+        }
+        return updates;
+    }
+
+    private void send(String address, SwimMessage message, long messageSequence) {
+        message.setSequence(messageSequence);
+        message.setUpdates(piggyback());
+        try {
+            transport.sendTo(address, message);
+        } catch (IOException e) {
+            log.warn("[{}] failed to send to {}: {}", localAddress.get(), address, e.getMessage());
+        }
+    }
+
+    private MemberUpdate localUpdate() {
+        return new MemberUpdate(localAddress.get(), MemberState.Alive, incarnation, localRole.get());
+    }
+
+    private static MemberUpdate update(Member member) {
+        return new MemberUpdate(member.address, member.state, member.incarnation, member.role);
+    }
+
+    // ceil(log2(n + 1)) for n members including this node
+    private int logGroupSize() {
+        return 32 - Integer.numberOfLeadingZeros(members.size() + 1);
+    }
+}
@@ -0,0 +1,24 @@
+package dev.efaust.collab.liveness.swim;
+
+import dev.efaust.collab.paxos.GroupMessage;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Base class for SWIM probe messages, all sent by unicast.
+ * Each process runs SWIM on its Paxos group 0 for every group (PaxosGroups.enableSwim), so these are group messages.
+ */
+@EqualsAndHashCode(callSuper = true)
+public abstract class SwimMessage extends GroupMessage {
+    // matches an ack to the ping it answers
+    @Getter @Setter
+    private long sequence;
+
+    // membership changes piggybacked on the probe
+    @Getter @Setter
+    private List<MemberUpdate> updates = Collections.emptyList();
+}
@@ -0,0 +1,20 @@
+package dev.efaust.collab.liveness.swim;
+
+import dev.efaust.collab.MessageType;
+import lombok.EqualsAndHashCode;
+
+/**
+ * Direct probe, answered with an ack carrying the same sequence.
+ */
+@EqualsAndHashCode(callSuper = true)
+public class SwimPingMessage extends SwimMessage {
+    @Override
+    public MessageType getMessageType() {
+        return MessageType.SwimPing;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("<SwimPing src='%s' sequence='%d' updates='%d' />", getSourceAddress(), getSequence(), getUpdates().size());
+    }
+}
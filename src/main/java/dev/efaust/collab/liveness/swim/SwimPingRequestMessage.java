@@ -0,0 +1,27 @@
+package dev.efaust.collab.liveness.swim;
+
+import dev.efaust.collab.MessageType;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Asks the receiver to ping target on the sender's behalf, after the sender's own ping went unanswered.
+ * The receiver passes target's ack back with the sender's sequence.
+ */
+@EqualsAndHashCode(callSuper = true)
+public class SwimPingRequestMessage extends SwimMessage {
+    @Getter @Setter
+    private String target;
+
+    @Override
+    public MessageType getMessageType() {
+        return MessageType.SwimPingRequest;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("<SwimPingRequest src='%s' sequence='%d' target='%s' updates='%d' />", getSourceAddress(),
+                getSequence(), getTarget(), getUpdates().size());
+    }
+}
@@ -0,0 +1,127 @@
+package dev.efaust.collab.load;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram in the style of HdrHistogram: fixed memory, constant time record, any value from 0 to
+ * Long.MAX_VALUE nanos kept to within 1% (SUB_BUCKETS buckets per power of two).
+ *
+ * record is lock-free and may be called from any thread. Take an interval view with copy and since, e.g. to report
+ * the last few seconds next to the whole run.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // values below SUB_BUCKETS are exact, then SUB_BUCKETS buckets for each power of two up to 2^62
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts;
+    private final AtomicLong count;
+    private final AtomicLong max;
+
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKETS);
+        this.count = new AtomicLong();
+        this.max = new AtomicLong();
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            throw new IllegalArgumentException(String.format("latency must not be negative, got %d", nanos));
+        }
+        counts.incrementAndGet(index(nanos));
+        count.incrementAndGet();
+        max.accumulateAndGet(nanos, Math::max);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    /**
+     * @return highest value in the bucket holding the percentile's value (nearest rank), 0 if nothing was recorded
+     */
+    public long valueAtPercentileNanos(double percentile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long)Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestInBucket(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public LatencyHistogram copy() {
+        LatencyHistogram copy = new LatencyHistogram();
+        for (int i = 0; i < BUCKETS; i++) {
+            copy.counts.set(i, counts.get(i));
+        }
+        copy.count.set(count.get());
+        copy.max.set(max.get());
+        return copy;
+    }
+
+    /**
+     * Values recorded here after earlier was copied from this histogram. The max is known to bucket precision only.
+     */
+    public LatencyHistogram since(LatencyHistogram earlier) {
+        LatencyHistogram interval = new LatencyHistogram();
+        long total = 0;
+        long intervalMax = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            long bucket = Math.max(0, counts.get(i) - earlier.counts.get(i));
+            if (bucket > 0) {
+                interval.counts.set(i, bucket);
+                total += bucket;
+                intervalMax = Math.min(highestInBucket(i), max.get());
+            }
+        }
+        interval.count.set(total);
+        interval.max.set(intervalMax);
+        return interval;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("p50 %dus p99 %dus p999 %dus max %dus",
+                TimeUnit.NANOSECONDS.toMicros(valueAtPercentileNanos(50)),
+                TimeUnit.NANOSECONDS.toMicros(valueAtPercentileNanos(99)),
+                TimeUnit.NANOSECONDS.toMicros(valueAtPercentileNanos(99.9)),
+                TimeUnit.NANOSECONDS.toMicros(getMaxNanos()));
+    }
+
+    // bucket shift s >= 0 covers [2^(SUB_BUCKET_BITS + s), 2^(SUB_BUCKET_BITS + s + 1)) in steps of 2^s
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int)value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int)((value >>> shift) - SUB_BUCKETS);
+    }
+
+    static long highestInBucket(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lowest = (long)(SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
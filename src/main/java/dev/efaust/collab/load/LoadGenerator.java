@@ -0,0 +1,209 @@
+package dev.efaust.collab.load;
+
+import dev.efaust.collab.messaging.NamedThreadFactory;
+import dev.efaust.collab.paxos.ConsensusValue;
+import dev.efaust.collab.paxos.Decision;
+import lombok.Getter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Proposes unique values as fast as the cluster decides them, either at a target rate or with a fixed number of
+ * proposals outstanding, and records each proposal's commit latency.
+ *
+ * At a target rate, latency is measured from when a proposal was due rather than when it went out, so a stalled cluster
+ * shows up as the queueing delay clients would see (no coordinated omission). With fixed concurrency, each completed
+ * proposal starts the next one on the load thread.
+ */
+public class LoadGenerator {
+    private static Logger log = LogManager.getLogger(LoadGenerator.class);
+
+    // how often proposals due at the target rate are issued
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Proposes value, sequence numbers proposals from 0 so they can be spread over groups.
+     */
+    @FunctionalInterface
+    public interface Proposer {
+        CompletableFuture<Decision> propose(long sequence, ConsensusValue value);
+    }
+
+    public enum Mode {
+        // proposals per second
+        Rate,
+        // proposals outstanding
+        Concurrency
+    }
+
+    @Getter
+    private final Mode mode;
+    @Getter
+    private final int target;
+
+    private final Proposer proposer;
+    private final LongSupplier nanoTime;
+
+    @Getter
+    private final LatencyHistogram histogram;
+    private final AtomicLong issued;
+    private final AtomicLong failed;
+    private volatile boolean running;
+    private volatile long startNanos;
+
+    // for reports, the state at the previous one
+    private LatencyHistogram lastReportHistogram;
+    private long lastReportFailed;
+    private long lastReportNanos;
+
+    private final ScheduledExecutorService executor;
+
+    public LoadGenerator(Mode mode, int target, Proposer proposer) {
+        this(mode, target, proposer, System::nanoTime, Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("load")));
+    }
+
+    LoadGenerator(Mode mode, int target, Proposer proposer, LongSupplier nanoTime, ScheduledExecutorService executor) {
+        if (target <= 0) {
+            throw new IllegalArgumentException(String.format("load target must be positive, got %d", target));
+        }
+        this.mode = mode;
+        this.target = target;
+        this.proposer = proposer;
+        this.nanoTime = nanoTime;
+        this.executor = executor;
+        this.histogram = new LatencyHistogram();
+        this.issued = new AtomicLong();
+        this.failed = new AtomicLong();
+        this.lastReportHistogram = new LatencyHistogram();
+    }
+
+    /**
+     * Parse rate:PROPOSALS_PER_SECOND or concurrency:OUTSTANDING_PROPOSALS.
+     */
+    public static LoadGenerator fromSpec(String spec, Proposer proposer) {
+        String[] parts = spec.trim().split(":", 2);
+        if (parts.length == 2) {
+            try {
+                int target = Integer.parseInt(parts[1].trim());
+                if ("rate".equals(parts[0])) {
+                    return new LoadGenerator(Mode.Rate, target, proposer);
+                } else if ("concurrency".equals(parts[0])) {
+                    return new LoadGenerator(Mode.Concurrency, target, proposer);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(String.format("invalid load spec '%s'", spec), e);
+            }
+        }
+        throw new IllegalArgumentException(String.format("invalid load spec '%s'", spec));
+    }
+
+    /**
+     * Start proposing after delayNanos, and log a report every reportPeriodNanos from then on.
+     */
+    public void start(long delayNanos, long reportPeriodNanos) {
+        executor.schedule(this::begin, delayNanos, TimeUnit.NANOSECONDS);
+        if (mode == Mode.Rate) {
+            executor.scheduleAtFixedRate(this::tick, delayNanos, TICK_NANOS, TimeUnit.NANOSECONDS);
+        }
+        executor.scheduleAtFixedRate(() -> log.info("load {}", report()), delayNanos + reportPeriodNanos,
+                reportPeriodNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void stop() {
+        running = false;
+        executor.shutdownNow();
+    }
+
+    // start the clock, and with fixed concurrency the first proposals
+    void begin() {
+        running = true;
+        startNanos = nanoTime.getAsLong();
+        lastReportNanos = startNanos;
+        log.info("load {} {}", mode == Mode.Rate ? "rate" : "concurrency", target);
+        if (mode == Mode.Concurrency) {
+            for (int i = 0; i < target; i++) {
+                propose(nanoTime.getAsLong());
+            }
+        }
+    }
+
+    // at a target rate, issue every proposal due by now
+    void tick() {
+        long now = nanoTime.getAsLong();
+        long due = (long)((double)(now - startNanos) * target / TimeUnit.SECONDS.toNanos(1));
+        while (running && issued.get() < due) {
+            propose(startNanos + issued.get() * TimeUnit.SECONDS.toNanos(1) / target);
+        }
+    }
+
+    private void propose(long intendedNanos) {
+        long sequence = issued.getAndIncrement();
+        CompletableFuture<Decision> future;
+        try {
+            future = proposer.propose(sequence, ConsensusValue.of(sequence));
+        } catch (RuntimeException e) {
+            log.error("proposal {} failed: {}", sequence, e.getMessage());
+            failed.incrementAndGet();
+            return;
+        }
+        // completes on a Paxos node's thread, keep this short
+        future.whenComplete((decision, e) -> {
+            if (e == null) {
+                histogram.record(nanoTime.getAsLong() - intendedNanos);
+            } else {
+                failed.incrementAndGet();
+            }
+            if (mode == Mode.Concurrency && running) {
+                // not inline: a future already complete would run this callback on the proposing stack, recursing
+                long now = nanoTime.getAsLong();
+                executor.execute(() -> propose(now));
+            }
+        });
+    }
+
+    public long getIssued() {
+        return issued.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Throughput and latency since the previous report.
+     */
+    public synchronized String report() {
+        long now = nanoTime.getAsLong();
+        LatencyHistogram current = histogram.copy();
+        LatencyHistogram interval = current.since(lastReportHistogram);
+        long intervalFailed = failed.get() - lastReportFailed;
+        String report = format(interval, intervalFailed, now - lastReportNanos);
+        lastReportHistogram = current;
+        lastReportFailed += intervalFailed;
+        lastReportNanos = now;
+        return report;
+    }
+
+    /**
+     * Throughput and latency over the whole run.
+     */
+    public String summary() {
+        if (getIssued() == 0) {
+            return "nothing proposed";
+        }
+        return String.format("issued %d, %s", getIssued(), format(histogram, getFailed(), nanoTime.getAsLong() - startNanos));
+    }
+
+    private static String format(LatencyHistogram histogram, long failed, long elapsedNanos) {
+        double seconds = (double)elapsedNanos / TimeUnit.SECONDS.toNanos(1);
+        return String.format("%.1fs: decided %d (%.1f/s) failed %d, %s", seconds, histogram.getCount(),
+                seconds > 0 ? histogram.getCount() / seconds : 0.0, failed, histogram);
+    }
+}
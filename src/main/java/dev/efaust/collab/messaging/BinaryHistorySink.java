@@ -0,0 +1,136 @@
+package dev.efaust.collab.messaging;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Streams history to a compact binary file instead of keeping it in memory. Read it back with read.
+ *
+ * Format: magic, version, then one record per entry: source node, destination node, message. A node is written as
+ * its index in a table built up as the file goes (new nodes follow the NEW_NODE marker by name). A message is written
+ * in wire format (MessageSerialization) with its length, or as SAME_MESSAGE when it is the message of the previous
+ * record, which is every receiver after the first of a multicast.
+ */
+public class BinaryHistorySink implements MessageHistorySink, Closeable {
+    private static final int MAGIC = 0x43485354;
+    private static final byte VERSION = 0;
+    private static final short NEW_NODE = -1;
+    private static final int SAME_MESSAGE = -1;
+
+    private final DataOutputStream out;
+    private final MessageSerialization messageSerialization;
+    private final Map<String, Short> nodeIndexes;
+    private Message previousMessage;
+
+    public BinaryHistorySink(OutputStream out) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        this.messageSerialization = new MessageSerialization();
+        this.nodeIndexes = new HashMap<>();
+        this.out.writeInt(MAGIC);
+        this.out.writeByte(VERSION);
+    }
+
+    @Override
+    public void record(String srcNode, String dstNode, Message message) throws IOException {
+        writeNode(srcNode);
+        writeNode(dstNode);
+        if (message == previousMessage) {
+            out.writeInt(SAME_MESSAGE);
+            return;
+        }
+        byte[] bytes = messageSerialization.serialize(message);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        previousMessage = message;
+    }
+
+    private void writeNode(String node) throws IOException {
+        Short index = nodeIndexes.get(node);
+        if (index != null) {
+            out.writeShort(index);
+            return;
+        }
+        if (nodeIndexes.size() == Short.MAX_VALUE) {
+            throw new IOException(String.format("too many nodes, cannot add %s", node));
+        }
+        nodeIndexes.put(node, (short)nodeIndexes.size());
+        out.writeShort(NEW_NODE);
+        out.writeUTF(node);
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * Replay a history file into sink, entry by entry. Messages get their source address back.
+     */
+    public static void read(InputStream in, MessageHistorySink sink) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("not a message history file");
+        }
+        byte version = data.readByte();
+        if (version != VERSION) {
+            throw new IOException(String.format("unsupported message history version %d", version));
+        }
+        MessageSerialization messageSerialization = new MessageSerialization();
+        List<String> nodes = new ArrayList<>();
+        Message message = null;
+        while (true) {
+            short srcIndex;
+            try {
+                srcIndex = data.readShort();
+            } catch (EOFException e) {
+                return;
+            }
+            String srcNode = readNode(data, srcIndex, nodes);
+            String dstNode = readNode(data, data.readShort(), nodes);
+            int length = data.readInt();
+            if (length != SAME_MESSAGE) {
+                if (length < 0 || length > MessageSerialization.MAX_MESSAGE_LENGTH) {
+                    throw new IOException(String.format("invalid message length %d", length));
+                }
+                byte[] bytes = new byte[length];
+                data.readFully(bytes);
+                Optional<Message> deserialized = messageSerialization.deserialize(bytes);
+                if (!deserialized.isPresent()) {
+                    throw new IOException("could not deserialize message");
+                }
+                message = deserialized.get();
+                message.setSourceAddress(srcNode);
+            } else if (message == null) {
+                throw new IOException("first record refers to a previous message");
+            }
+            sink.record(srcNode, dstNode, message);
+        }
+    }
+
+    private static String readNode(DataInputStream data, short index, List<String> nodes) throws IOException {
+        if (index == NEW_NODE) {
+            nodes.add(data.readUTF());
+            return nodes.get(nodes.size() - 1);
+        }
+        if (index < 0 || index >= nodes.size()) {
+            throw new IOException(String.format("invalid node index %d", index));
+        }
+        return nodes.get(index);
+    }
+}
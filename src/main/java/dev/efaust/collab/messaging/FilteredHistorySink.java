@@ -0,0 +1,30 @@
+package dev.efaust.collab.messaging;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Passes only messages matching filter on to another sink, e.g. just the Paxos messages of one execution.
+ */
+public class FilteredHistorySink implements MessageHistorySink {
+    private final Predicate<Message> filter;
+    private final MessageHistorySink sink;
+
+    public FilteredHistorySink(Predicate<Message> filter, MessageHistorySink sink) {
+        this.filter = filter;
+        this.sink = sink;
+    }
+
+    @Override
+    public void record(String srcNode, String dstNode, Message message) throws IOException {
+        if (filter.test(message)) {
+            sink.record(srcNode, dstNode, message);
+        }
+    }
+
+    @Override
+    public List<MessageHistoryEntry> getEntries() {
+        return sink.getEntries();
+    }
+}
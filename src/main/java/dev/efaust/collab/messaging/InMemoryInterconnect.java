@@ -1,6 +1,7 @@
 package dev.efaust.collab.messaging;
 
 import lombok.Getter;
+import lombok.Setter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -14,18 +15,28 @@ import java.util.Map;
  * Enable simulation of a network of nodes. Each node has a send queue and a receive queue.
  * This interconnect facilitates exchange of messages by taking messages from each node's send queue
  * and propagating to all other receive queues.
+ * Every delivery is recorded in historySink, by default a ring of the latest DEFAULT_HISTORY_CAPACITY entries.
  */
 public class InMemoryInterconnect {
     private static Logger log = LogManager.getLogger(InMemoryInterconnect.class);
 
+    public static final int DEFAULT_HISTORY_CAPACITY = 65536;
+
     private List<InMemoryMessagingLayer> nodes;
 
-    @Getter
-    private List<MessageHistoryEntry> history;
+    @Getter @Setter
+    private MessageHistorySink historySink;
 
     public InMemoryInterconnect() {
         this.nodes = new ArrayList<>();
-        this.history = new ArrayList<>();
+        this.historySink = new RingHistorySink(DEFAULT_HISTORY_CAPACITY);
+    }
+
+    /**
+     * @return entries the history sink keeps in memory, oldest first
+     */
+    public List<MessageHistoryEntry> getHistory() {
+        return historySink.getEntries();
     }
 
     public void addNode(InMemoryMessagingLayer node) {
@@ -43,7 +54,7 @@ public class InMemoryInterconnect {
         return sentMessage;
     }
 
-    // TODO: add dropped messages, random reordering, etc.
+    // instant, in order and lossless; NetworkSimulator adds latency, loss, reordering and partitions in virtual time
     public void exchangeMessagesOnce() throws IOException {
         for (InMemoryMessagingLayer send : nodes) {
             Message message = send.getSendQueue().poll();
@@ -53,14 +64,11 @@ public class InMemoryInterconnect {
             Message sentMessage = setMessageSrcAddress(message, send.getNodeId());
 
             for (InMemoryMessagingLayer receive : nodes) {
+                if (sentMessage.getDestinationAddress() != null && !sentMessage.getDestinationAddress().equals(receive.getNodeId())) {
+                    continue;
+                }
                 receive.getReceiveQueue().add(sentMessage);
-
-                // Record history entry with src, dst, message
-                MessageHistoryEntry historyEntry = new MessageHistoryEntry();
-                historyEntry.setSrcNode(send.getNodeId());
-                historyEntry.setDstNode(receive.getNodeId());
-                historyEntry.setMessage(sentMessage);
-                history.add(historyEntry);
+                historySink.record(send.getNodeId(), receive.getNodeId(), sentMessage);
             }
         }
     }
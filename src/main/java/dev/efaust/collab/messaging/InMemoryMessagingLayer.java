@@ -24,6 +24,11 @@ public class InMemoryMessagingLayer implements MessagingLayer {
         this.sendQueue.add(message);
     }
 
+    public void sendTo(String address, Message message) throws IOException {
+        message.setDestinationAddress(address);
+        this.sendQueue.add(message);
+    }
+
     public Queue<Message> getReceiveQueue() {
         return receiveQueue;
     }
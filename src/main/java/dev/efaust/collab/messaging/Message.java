@@ -12,6 +12,11 @@ public abstract class Message implements Cloneable {
     @Getter @Setter
     private String sourceAddress;
 
+    // Set for unicast messages, null when the message goes to every node.
+    // Like sourceAddress this is transport metadata and not part of the serialized message.
+    @Getter @Setter
+    private String destinationAddress;
+
     public abstract MessageType getMessageType();
 
     public Object clone() throws CloneNotSupportedException {
@@ -0,0 +1,21 @@
+package dev.efaust.collab.messaging;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Where InMemoryInterconnect (or NetworkSimulator) records each message delivered to each receiver.
+ * One entry per (message, receiver) adds up quickly in long runs, so sinks choose how much to keep: see
+ * RingHistorySink, FilteredHistorySink and BinaryHistorySink.
+ */
+public interface MessageHistorySink {
+    void record(String srcNode, String dstNode, Message message) throws IOException;
+
+    /**
+     * @return entries kept in memory, oldest first; empty for sinks that do not keep entries in memory
+     */
+    default List<MessageHistoryEntry> getEntries() {
+        return Collections.emptyList();
+    }
+}
@@ -2,8 +2,22 @@ package dev.efaust.collab.messaging;
 
 import dev.efaust.collab.MessageType;
 import dev.efaust.collab.liveness.HeartbeatMessage;
+import dev.efaust.collab.liveness.NodeRole;
+import dev.efaust.collab.liveness.swim.MemberState;
+import dev.efaust.collab.liveness.swim.MemberUpdate;
+import dev.efaust.collab.liveness.swim.SwimAckMessage;
+import dev.efaust.collab.liveness.swim.SwimMessage;
+import dev.efaust.collab.liveness.swim.SwimPingMessage;
+import dev.efaust.collab.liveness.swim.SwimPingRequestMessage;
+import dev.efaust.collab.paxos.ConsensusValue;
+import dev.efaust.collab.paxos.EntryKind;
+import dev.efaust.collab.paxos.GroupMessage;
 import dev.efaust.collab.paxos.PaxosMessage;
 import dev.efaust.collab.paxos.messages.AcceptedMessage;
+import dev.efaust.collab.paxos.messages.CatchUpRequestMessage;
+import dev.efaust.collab.paxos.messages.CatchUpResponseMessage;
+import dev.efaust.collab.paxos.messages.CatchUpSnapshotMessage;
+import dev.efaust.collab.paxos.messages.NegativePromiseMessage;
 import dev.efaust.collab.paxos.messages.PleaseAcceptMessage;
 import dev.efaust.collab.paxos.messages.PrepareMessage;
 import dev.efaust.collab.paxos.messages.PromiseMessage;
@@ -12,8 +26,12 @@ import org.apache.logging.log4j.Logger;
 
 import java.io.IOException;
 import java.io.ObjectOutputStream;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -31,10 +49,30 @@ public class MessageSerialization {
     // magic: 5 bytes
     // version: 1 byte
     // message type: 1 byte
+    // group messages: group id: 4 bytes, sender role: 1 byte
     // ... (varies depending on message type)
+    // consensus values are written as length: 4 bytes, then the value bytes
+    // addresses are written as length: 2 bytes, then the UTF-8 bytes
 
     static byte[] MAGIC = new byte[]{ 0xc, 0x0, 0x1, 0x1, 0xa, 0xb };
-    static byte VERSION = 0;
+    // bumped with every change to the format, messages of any other version are rejected:
+    // 1: group messages carry their group id
+    // 2: consensus values are length-prefixed byte strings
+    // 3: heartbeats carry the sender's role
+    // 4: group messages carry the sender's role
+    // 5: consensus values carry their entry kind
+    // 6: catch-up responses say whether the responder could serve the request
+    // 7: batch values carry their proposer id and sequence (see ValueBatch)
+    static final byte VERSION = 7;
+
+    // largest payload of a UDP datagram
+    public static final int MAX_MESSAGE_LENGTH = 65507;
+    // largest payload sent without IP fragmentation: a 1500 byte Ethernet MTU less IPv6 and UDP headers
+    public static final int UNFRAGMENTED_MESSAGE_LENGTH = 1500 - 40 - 8;
+    // bytes written for a consensus value besides the value itself: entry kind + length
+    public static final int VALUE_OVERHEAD = 1 + 4;
+    // enough for every fixed size message type
+    private static final int FIXED_MESSAGE_LENGTH = 256;
 
     private int getHeaderLength() {
         // magic + version + message type
@@ -46,10 +84,15 @@ public class MessageSerialization {
         MessageType messageType = message.getMessageType();
         // depending on message type, length might vary
 
-        ByteBuffer byteBuffer = ByteBuffer.allocate(256);
+        ByteBuffer byteBuffer = ByteBuffer.allocate(maxLength(message));
         byteBuffer.put(MAGIC);
         byteBuffer.put(VERSION);
         byteBuffer.put(messageType.getId());
+        if (message instanceof GroupMessage) {
+            GroupMessage groupMessage = GroupMessage.class.cast(message);
+            byteBuffer.putInt(groupMessage.getGroupId());
+            byteBuffer.put(groupMessage.getSenderRole().getId());
+        }
 
         if (message instanceof PaxosMessage) {
             PaxosMessage paxosMessage = PaxosMessage.class.cast(message);
@@ -62,22 +105,61 @@ public class MessageSerialization {
                 PromiseMessage promiseMessage = PromiseMessage.class.cast(message);
                 byteBuffer.putLong(promiseMessage.getPromiseProposalNumber());
                 byteBuffer.putLong(promiseMessage.getPriorAcceptedProposalNumber());
-                byteBuffer.putLong(promiseMessage.getPriorAcceptedValue());
+                putValue(byteBuffer, promiseMessage.getPriorAcceptedValue());
+            } else if (message instanceof NegativePromiseMessage) {
+                NegativePromiseMessage negativePromiseMessage = NegativePromiseMessage.class.cast(message);
+                byteBuffer.putLong(negativePromiseMessage.getProposalNumber());
+                byteBuffer.putLong(negativePromiseMessage.getPriorPromisedProposalNumber());
+                byteBuffer.putLong(negativePromiseMessage.getPriorAcceptedProposalNumber());
+                putValue(byteBuffer, negativePromiseMessage.getPriorAcceptedValue());
             } else if (message instanceof PleaseAcceptMessage) {
                 PleaseAcceptMessage pleaseAcceptMessage = PleaseAcceptMessage.class.cast(message);
                 byteBuffer.putLong(pleaseAcceptMessage.getProposalNumberToAccept());
-                byteBuffer.putLong(pleaseAcceptMessage.getValueToAccept());
+                putValue(byteBuffer, pleaseAcceptMessage.getValueToAccept());
             } else if (message instanceof AcceptedMessage) {
                 AcceptedMessage acceptedMessage = AcceptedMessage.class.cast(message);
                 byteBuffer.putLong(acceptedMessage.getAcceptedProposalNumber());
-                byteBuffer.putLong(acceptedMessage.getAcceptedValue());
+                putValue(byteBuffer, acceptedMessage.getAcceptedValue());
             } else {
                 throw new RuntimeException(String.format("serialize called for unknown paxos message type, message %s", message));
             }
-            // TODO: serialization support for NegativePromise and other message types
         } else if (message instanceof HeartbeatMessage) {
             HeartbeatMessage heartbeatMessage = HeartbeatMessage.class.cast(message);
             byteBuffer.putLong(heartbeatMessage.getUuid());
+            byteBuffer.put(heartbeatMessage.getRole().getId());
+        } else if (message instanceof CatchUpRequestMessage) {
+            CatchUpRequestMessage catchUpRequestMessage = CatchUpRequestMessage.class.cast(message);
+            byteBuffer.putLong(catchUpRequestMessage.getFromExecutionId());
+            byteBuffer.putLong(catchUpRequestMessage.getToExecutionId());
+        } else if (message instanceof CatchUpResponseMessage) {
+            CatchUpResponseMessage catchUpResponseMessage = CatchUpResponseMessage.class.cast(message);
+            byteBuffer.putLong(catchUpResponseMessage.getFirstExecutionId());
+            byteBuffer.put((byte)(catchUpResponseMessage.isLast() ? 1 : 0));
+            byteBuffer.put((byte)(catchUpResponseMessage.isUnavailable() ? 1 : 0));
+            byteBuffer.putInt(catchUpResponseMessage.getValues().size());
+            for (ConsensusValue value : catchUpResponseMessage.getValues()) {
+                putValue(byteBuffer, value);
+            }
+        } else if (message instanceof CatchUpSnapshotMessage) {
+            CatchUpSnapshotMessage catchUpSnapshotMessage = CatchUpSnapshotMessage.class.cast(message);
+            byteBuffer.putLong(catchUpSnapshotMessage.getSnapshotExecutionId());
+            byteBuffer.putInt(catchUpSnapshotMessage.getTotalLength());
+            byteBuffer.putInt(catchUpSnapshotMessage.getOffset());
+            byteBuffer.putInt(catchUpSnapshotMessage.getData().length);
+            byteBuffer.put(catchUpSnapshotMessage.getData());
+        } else if (message instanceof SwimMessage) {
+            SwimMessage swimMessage = SwimMessage.class.cast(message);
+            byteBuffer.putLong(swimMessage.getSequence());
+            if (message instanceof SwimPingRequestMessage) {
+                putAddress(byteBuffer, SwimPingRequestMessage.class.cast(message).getTarget());
+            }
+            byteBuffer.putInt(swimMessage.getUpdates().size());
+            for (MemberUpdate update : swimMessage.getUpdates()) {
+                putAddress(byteBuffer, update.getAddress());
+                byteBuffer.put(update.getState().getId());
+                byteBuffer.putLong(update.getIncarnation());
+                byteBuffer.put(update.getRole().getId());
+            }
         } else {
             throw new RuntimeException(String.format("serialize called for unknown message type, message %s", message));
         }
@@ -100,6 +182,9 @@ public class MessageSerialization {
         try {
             byteBuffer.position(MAGIC.length);
             byte version = byteBuffer.get();
+            if (version != VERSION) {
+                throw new IOException(String.format("unsupported message version %d, expected %d", version, VERSION));
+            }
             byte messageTypeByte = byteBuffer.get();
 
             Optional<MessageType> messageType = MessageType.messageTypeFromId(messageTypeByte);
@@ -110,44 +195,211 @@ public class MessageSerialization {
                 case Heartbeat:
                     HeartbeatMessage heartbeatMessage = new HeartbeatMessage();
                     heartbeatMessage.setUuid(byteBuffer.getLong());
+                    heartbeatMessage.setRole(getRole(byteBuffer));
                     message = Optional.of(heartbeatMessage);
                     break;
                 case Prepare:
                     PrepareMessage prepareMessage = new PrepareMessage();
+                    getGroupHeader(prepareMessage, byteBuffer);
                     prepareMessage.setExecutionId(byteBuffer.getLong());
                     prepareMessage.setProposalNumber(byteBuffer.getLong());
                     message = Optional.of(prepareMessage);
                     break;
                 case Promise:
                     PromiseMessage promiseMessage = new PromiseMessage();
+                    getGroupHeader(promiseMessage, byteBuffer);
                     promiseMessage.setExecutionId(byteBuffer.getLong());
                     promiseMessage.setPromiseProposalNumber(byteBuffer.getLong());
                     promiseMessage.setPriorAcceptedProposalNumber(byteBuffer.getLong());
-                    promiseMessage.setPriorAcceptedValue(byteBuffer.getLong());
+                    promiseMessage.setPriorAcceptedValue(getValue(byteBuffer));
                     message = Optional.of(promiseMessage);
                     break;
+                case NegativePromise:
+                    NegativePromiseMessage negativePromiseMessage = new NegativePromiseMessage();
+                    getGroupHeader(negativePromiseMessage, byteBuffer);
+                    negativePromiseMessage.setExecutionId(byteBuffer.getLong());
+                    negativePromiseMessage.setProposalNumber(byteBuffer.getLong());
+                    negativePromiseMessage.setPriorPromisedProposalNumber(byteBuffer.getLong());
+                    negativePromiseMessage.setPriorAcceptedProposalNumber(byteBuffer.getLong());
+                    negativePromiseMessage.setPriorAcceptedValue(getValue(byteBuffer));
+                    message = Optional.of(negativePromiseMessage);
+                    break;
                 case PleaseAccept:
                     PleaseAcceptMessage pleaseAcceptMessage = new PleaseAcceptMessage();
+                    getGroupHeader(pleaseAcceptMessage, byteBuffer);
                     pleaseAcceptMessage.setExecutionId(byteBuffer.getLong());
                     pleaseAcceptMessage.setProposalNumberToAccept(byteBuffer.getLong());
-                    pleaseAcceptMessage.setValueToAccept(byteBuffer.getLong());
+                    pleaseAcceptMessage.setValueToAccept(getValue(byteBuffer));
                     message = Optional.of(pleaseAcceptMessage);
                     break;
                 case Accepted:
                     AcceptedMessage acceptedMessage = new AcceptedMessage();
+                    getGroupHeader(acceptedMessage, byteBuffer);
                     acceptedMessage.setExecutionId(byteBuffer.getLong());
                     acceptedMessage.setAcceptedProposalNumber(byteBuffer.getLong());
-                    acceptedMessage.setAcceptedValue(byteBuffer.getLong());
+                    acceptedMessage.setAcceptedValue(getValue(byteBuffer));
                     message = Optional.of(acceptedMessage);
                     break;
-                // TODO: add support for deserializing other message types, e.g. NegativePromiseMessage
+                case CatchUpRequest:
+                    CatchUpRequestMessage catchUpRequestMessage = new CatchUpRequestMessage();
+                    getGroupHeader(catchUpRequestMessage, byteBuffer);
+                    catchUpRequestMessage.setFromExecutionId(byteBuffer.getLong());
+                    catchUpRequestMessage.setToExecutionId(byteBuffer.getLong());
+                    message = Optional.of(catchUpRequestMessage);
+                    break;
+                case CatchUpResponse:
+                    CatchUpResponseMessage catchUpResponseMessage = new CatchUpResponseMessage();
+                    getGroupHeader(catchUpResponseMessage, byteBuffer);
+                    catchUpResponseMessage.setFirstExecutionId(byteBuffer.getLong());
+                    catchUpResponseMessage.setLast(byteBuffer.get() != 0);
+                    catchUpResponseMessage.setUnavailable(byteBuffer.get() != 0);
+                    int valueCount = checkedLength(byteBuffer.getInt(), 4, byteBuffer);
+                    List<ConsensusValue> values = new ArrayList<>(valueCount);
+                    for (int i = 0; i < valueCount; i++) {
+                        values.add(getValue(byteBuffer));
+                    }
+                    catchUpResponseMessage.setValues(values);
+                    message = Optional.of(catchUpResponseMessage);
+                    break;
+                case CatchUpSnapshot:
+                    CatchUpSnapshotMessage catchUpSnapshotMessage = new CatchUpSnapshotMessage();
+                    getGroupHeader(catchUpSnapshotMessage, byteBuffer);
+                    catchUpSnapshotMessage.setSnapshotExecutionId(byteBuffer.getLong());
+                    catchUpSnapshotMessage.setTotalLength(byteBuffer.getInt());
+                    catchUpSnapshotMessage.setOffset(byteBuffer.getInt());
+                    byte[] data = new byte[checkedLength(byteBuffer.getInt(), 1, byteBuffer)];
+                    byteBuffer.get(data);
+                    catchUpSnapshotMessage.setData(data);
+                    message = Optional.of(catchUpSnapshotMessage);
+                    break;
+                case SwimPing:
+                    message = Optional.of(getSwimMessage(new SwimPingMessage(), byteBuffer));
+                    break;
+                case SwimPingRequest:
+                    message = Optional.of(getSwimMessage(new SwimPingRequestMessage(), byteBuffer));
+                    break;
+                case SwimAck:
+                    message = Optional.of(getSwimMessage(new SwimAckMessage(), byteBuffer));
+                    break;
             }
-        } catch (IOException e) {
+        } catch (IOException | BufferUnderflowException e) {
             log.warn("failed to deserialize message", e);
         }
         return message;
     }
 
+    private int maxLength(Message message) {
+        if (message instanceof PromiseMessage) {
+            return FIXED_MESSAGE_LENGTH + PromiseMessage.class.cast(message).getPriorAcceptedValue().length();
+        } else if (message instanceof NegativePromiseMessage) {
+            return FIXED_MESSAGE_LENGTH + NegativePromiseMessage.class.cast(message).getPriorAcceptedValue().length();
+        } else if (message instanceof PleaseAcceptMessage) {
+            return FIXED_MESSAGE_LENGTH + PleaseAcceptMessage.class.cast(message).getValueToAccept().length();
+        } else if (message instanceof AcceptedMessage) {
+            return FIXED_MESSAGE_LENGTH + AcceptedMessage.class.cast(message).getAcceptedValue().length();
+        } else if (message instanceof CatchUpResponseMessage) {
+            // group + role + first execution + last and unavailable flags + count + (kind + length + value) per value
+            int length = getHeaderLength() + 5 + 8 + 2 + 4;
+            for (ConsensusValue value : CatchUpResponseMessage.class.cast(message).getValues()) {
+                length += VALUE_OVERHEAD + value.length();
+            }
+            return length;
+        } else if (message instanceof CatchUpSnapshotMessage) {
+            // group + role + snapshot execution + total length + offset + length + data
+            return getHeaderLength() + 5 + 8 + 4 + 4 + 4 + CatchUpSnapshotMessage.class.cast(message).getData().length;
+        } else if (message instanceof SwimMessage) {
+            // fixed fields + target + (address + state + incarnation + role) per update
+            int length = FIXED_MESSAGE_LENGTH;
+            if (message instanceof SwimPingRequestMessage) {
+                length += 2 + SwimPingRequestMessage.class.cast(message).getTarget().getBytes(StandardCharsets.UTF_8).length;
+            }
+            for (MemberUpdate update : SwimMessage.class.cast(message).getUpdates()) {
+                length += 2 + update.getAddress().getBytes(StandardCharsets.UTF_8).length + 1 + 8 + 1;
+            }
+            return length;
+        }
+        return FIXED_MESSAGE_LENGTH;
+    }
+
+    private void getGroupHeader(GroupMessage message, ByteBuffer byteBuffer) throws IOException {
+        message.setGroupId(byteBuffer.getInt());
+        message.setSenderRole(getRole(byteBuffer));
+    }
+
+    private NodeRole getRole(ByteBuffer byteBuffer) throws IOException {
+        byte roleId = byteBuffer.get();
+        Optional<NodeRole> role = NodeRole.nodeRoleFromId(roleId);
+        if (!role.isPresent()) {
+            throw new IOException(String.format("could not determine node role for value %d", roleId));
+        }
+        return role.get();
+    }
+
+    private SwimMessage getSwimMessage(SwimMessage swimMessage, ByteBuffer byteBuffer) throws IOException {
+        getGroupHeader(swimMessage, byteBuffer);
+        swimMessage.setSequence(byteBuffer.getLong());
+        if (swimMessage instanceof SwimPingRequestMessage) {
+            SwimPingRequestMessage.class.cast(swimMessage).setTarget(getAddress(byteBuffer));
+        }
+        int updateCount = checkedLength(byteBuffer.getInt(), 2 + 1 + 8 + 1, byteBuffer);
+        List<MemberUpdate> updates = new ArrayList<>(updateCount);
+        for (int i = 0; i < updateCount; i++) {
+            String address = getAddress(byteBuffer);
+            byte stateId = byteBuffer.get();
+            Optional<MemberState> state = MemberState.memberStateFromId(stateId);
+            if (!state.isPresent()) {
+                throw new IOException(String.format("could not determine member state for value %d", stateId));
+            }
+            long incarnation = byteBuffer.getLong();
+            updates.add(new MemberUpdate(address, state.get(), incarnation, getRole(byteBuffer)));
+        }
+        swimMessage.setUpdates(updates);
+        return swimMessage;
+    }
+
+    private void putAddress(ByteBuffer byteBuffer, String address) {
+        byte[] bytes = address.getBytes(StandardCharsets.UTF_8);
+        byteBuffer.putShort((short)bytes.length);
+        byteBuffer.put(bytes);
+    }
+
+    private String getAddress(ByteBuffer byteBuffer) throws IOException {
+        byte[] bytes = new byte[checkedLength(byteBuffer.getShort() & 0xffff, 1, byteBuffer)];
+        byteBuffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void putValue(ByteBuffer byteBuffer, ConsensusValue value) {
+        byteBuffer.put(value.kind().getId());
+        byteBuffer.putInt(value.length());
+        value.writeTo(byteBuffer);
+    }
+
+    // large values are views into the received bytes rather than copies, see ConsensusValue.wrap
+    private ConsensusValue getValue(ByteBuffer byteBuffer) throws IOException {
+        byte kindId = byteBuffer.get();
+        Optional<EntryKind> kind = EntryKind.entryKindFromId(kindId);
+        if (!kind.isPresent()) {
+            throw new IOException(String.format("could not determine entry kind for value %d", kindId));
+        }
+        int length = checkedLength(byteBuffer.getInt(), 1, byteBuffer);
+        if (length > ConsensusValue.MAX_LENGTH) {
+            throw new IOException(String.format("value of %d bytes exceeds maximum %d", length, ConsensusValue.MAX_LENGTH));
+        }
+        ByteBuffer valueBytes = byteBuffer.slice();
+        valueBytes.limit(length);
+        byteBuffer.position(byteBuffer.position() + length);
+        return ConsensusValue.wrap(valueBytes).withKind(kind.get());
+    }
+
+    // guard against allocating huge arrays for a corrupt length field
+    private int checkedLength(int count, int elementSize, ByteBuffer byteBuffer) throws IOException {
+        if (count < 0 || (long)count * elementSize > byteBuffer.remaining()) {
+            throw new IOException(String.format("invalid length %d, %d bytes remaining", count, byteBuffer.remaining()));
+        }
+        return count;
+    }
+
     private boolean hasExpectedHeaderLength(byte[] bytes) {
         return bytes.length >= getHeaderLength();
     }
@@ -11,6 +11,15 @@ import java.util.Queue;
  * (e.g. here there is an in memory implementation and a UDP multicast implementation)
  */
 public interface MessagingLayer {
+    /**
+     * Send to every node (including this one).
+     */
     void send(Message message) throws IOException;
+
+    /**
+     * Send to a single node, identified by the source address it uses on received messages.
+     */
+    void sendTo(String address, Message message) throws IOException;
+
     Queue<Message> getReceiveQueue();
 }
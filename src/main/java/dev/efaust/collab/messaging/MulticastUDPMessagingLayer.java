@@ -1,5 +1,7 @@
 package dev.efaust.collab.messaging;
 
+import dev.efaust.collab.trace.EventTracer;
+import dev.efaust.collab.trace.TraceEvent;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -16,7 +18,8 @@ import java.util.concurrent.LinkedBlockingQueue;
 public class MulticastUDPMessagingLayer implements MessagingLayer, Runnable {
     Logger log = LogManager.getLogger(MulticastUDPMessagingLayer.class);
 
-    private static final int MESSAGE_BUFFER_SIZE_BYTES = 256;
+    // large enough for any UDP datagram, catch-up messages are much larger than regular Paxos messages
+    private static final int MESSAGE_BUFFER_SIZE_BYTES = 65536;
 
     private String ip;
     private int port;
@@ -59,7 +62,9 @@ public class MulticastUDPMessagingLayer implements MessagingLayer, Runnable {
     }
 
     private void receivedPacket(byte[] bytes, int length, InetAddress src) throws IOException {
-        log.debug("received packet " + MessageSerialization.bytesArrayToString(bytes, length) + " from " + src);
+        if (log.isDebugEnabled()) {
+            log.debug("received packet {} from {}", MessageSerialization.bytesArrayToString(bytes, length), src);
+        }
         byte[] packetBytes = Arrays.copyOfRange(bytes, 0, length);
         boolean success = false;
         if (serializationLayer.validate(packetBytes)) {
@@ -72,7 +77,8 @@ public class MulticastUDPMessagingLayer implements MessagingLayer, Runnable {
             }
         }
         if (!success) {
-            log.warn("invalid packet");
+            EventTracer.getDefault().traceEvent(TraceEvent.InvalidPacket, length, src.getHostAddress());
+            log.warn("invalid packet from {}", src);
         }
     }
 
@@ -92,20 +98,27 @@ public class MulticastUDPMessagingLayer implements MessagingLayer, Runnable {
         log.info("setup complete");
     }
 
-    private void send(byte[] bytes) throws IOException {
+    private void send(byte[] bytes, InetAddress address) throws IOException {
         if (socket == null) {
             throw new IllegalStateException("must call setup before send");
         }
         if (bytes == null || bytes.length == 0) {
             throw new IOException("bytes should not be null or of length 0");
         }
-        DatagramPacket datagramPacket = new DatagramPacket(bytes, bytes.length, groupAddress, port);
+        DatagramPacket datagramPacket = new DatagramPacket(bytes, bytes.length, address, port);
         socket.send(datagramPacket);
     }
 
     public void send(Message message) throws IOException {
-        log.info("send {}", message);
+        log.debug("send {}", message);
+        byte[] bytes = serializationLayer.serialize(message);
+        send(bytes, groupAddress);
+    }
+
+    // unicast to a peer, every node listens on the same port
+    public void sendTo(String address, Message message) throws IOException {
+        log.debug("send to {} {}", address, message);
         byte[] bytes = serializationLayer.serialize(message);
-        send(bytes);
+        send(bytes, InetAddress.getByName(address));
     }
 }
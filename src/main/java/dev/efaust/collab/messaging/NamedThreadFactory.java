@@ -2,13 +2,30 @@ package dev.efaust.collab.messaging;
 
 import java.util.concurrent.ThreadFactory;
 
+/**
+ * Creates threads with a fixed name, platform threads or (on Java 21+) virtual threads.
+ *
+ * This is the Java 11 version, which only has platform threads. The Multi-Release jar carries a Java 21 version of
+ * this class (src/main/java21) that supports virtual threads; keep both in sync.
+ */
 public class NamedThreadFactory implements ThreadFactory {
     private String threadName;
 
     public NamedThreadFactory(String threadName) {
+        this(threadName, false);
+    }
+
+    public NamedThreadFactory(String threadName, boolean virtual) {
+        if (virtual) {
+            throw new UnsupportedOperationException("virtual threads need Java 21 or later");
+        }
         this.threadName = threadName;
     }
 
+    public static boolean isVirtualThreadSupported() {
+        return false;
+    }
+
     @Override
     public Thread newThread(Runnable r) {
         Thread thread = new Thread(r);
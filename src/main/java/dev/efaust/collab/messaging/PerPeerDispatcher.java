@@ -0,0 +1,65 @@
+package dev.efaust.collab.messaging;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * Thread-per-peer message handling: each peer's messages go to a queue of their own, drained by a dedicated thread
+ * that blocks waiting for the next one, so handling is written in plain blocking style and per-peer order is kept.
+ *
+ * Meant for virtual threads, where a thread per peer stays cheap on large clusters. With platform threads this
+ * is the model to compare against the fixed set of threads used otherwise.
+ */
+public class PerPeerDispatcher {
+    private static final Logger log = LogManager.getLogger(PerPeerDispatcher.class);
+
+    private final Consumer<Message> handler;
+    private final boolean virtual;
+    private final Map<String, BlockingQueue<Message>> peerQueues;
+
+    public PerPeerDispatcher(Consumer<Message> handler, boolean virtual) {
+        this.handler = handler;
+        this.virtual = virtual;
+        this.peerQueues = new ConcurrentHashMap<>();
+    }
+
+    public void dispatch(Message message) {
+        peerQueues.computeIfAbsent(message.getSourceAddress(), this::startPeerHandler).add(message);
+    }
+
+    public int getPeerCount() {
+        return peerQueues.size();
+    }
+
+    private BlockingQueue<Message> startPeerHandler(String peer) {
+        BlockingQueue<Message> queue = new LinkedBlockingQueue<>();
+        Thread thread = new NamedThreadFactory("peer-" + peer, virtual).newThread(() -> handlePeer(peer, queue));
+        thread.setDaemon(true);
+        thread.start();
+        log.info("started {} handler thread for peer {}", virtual ? "virtual" : "platform", peer);
+        return queue;
+    }
+
+    private void handlePeer(String peer, BlockingQueue<Message> queue) {
+        while (true) {
+            Message message;
+            try {
+                message = queue.take();
+            } catch (InterruptedException e) {
+                log.info("handler for peer {} interrupted, stopping", peer);
+                return;
+            }
+            try {
+                handler.accept(message);
+            } catch (RuntimeException e) {
+                log.error("error handling message {} from {}", message, peer, e);
+            }
+        }
+    }
+}
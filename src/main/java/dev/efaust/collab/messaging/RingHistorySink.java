@@ -0,0 +1,58 @@
+package dev.efaust.collab.messaging;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the latest capacity entries. Slots are reused once the ring is full, so recording does not allocate.
+ */
+public class RingHistorySink implements MessageHistorySink {
+    private final MessageHistoryEntry[] entries;
+    private long recorded;
+
+    public RingHistorySink(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException(String.format("capacity must be positive, got %d", capacity));
+        }
+        this.entries = new MessageHistoryEntry[capacity];
+    }
+
+    @Override
+    public void record(String srcNode, String dstNode, Message message) {
+        int slot = (int)(recorded % entries.length);
+        MessageHistoryEntry entry = entries[slot];
+        if (entry == null) {
+            entry = new MessageHistoryEntry();
+            entries[slot] = entry;
+        }
+        entry.setSrcNode(srcNode);
+        entry.setDstNode(dstNode);
+        entry.setMessage(message);
+        recorded++;
+    }
+
+    /**
+     * @return copies of the retained entries, oldest first
+     */
+    @Override
+    public List<MessageHistoryEntry> getEntries() {
+        int size = (int)Math.min(recorded, entries.length);
+        List<MessageHistoryEntry> copies = new ArrayList<>(size);
+        for (long i = recorded - size; i < recorded; i++) {
+            MessageHistoryEntry entry = entries[(int)(i % entries.length)];
+            MessageHistoryEntry copy = new MessageHistoryEntry();
+            copy.setSrcNode(entry.getSrcNode());
+            copy.setDstNode(entry.getDstNode());
+            copy.setMessage(entry.getMessage());
+            copies.add(copy);
+        }
+        return copies;
+    }
+
+    /**
+     * @return entries recorded in total, including those since overwritten
+     */
+    public long getRecorded() {
+        return recorded;
+    }
+}
@@ -0,0 +1,163 @@
+package dev.efaust.collab.paxos;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Value decided by one Paxos execution: an immutable, opaque run of bytes tagged with the EntryKind it carries.
+ *
+ * Values are carried without copying where it pays off. wrap keeps a read-only view of the caller's buffer, and
+ * deserialized values are views into the received packet, so a command goes from client buffer to acceptor storage
+ * to learner without being re-encoded. Small values (up to INLINE_MAX_LENGTH bytes) are copied into an array of their
+ * own instead: copying a few bytes is cheaper than keeping a whole packet or client buffer reachable for them.
+ */
+public final class ConsensusValue {
+    public static final int INLINE_MAX_LENGTH = 64;
+    // a value must fit in one datagram together with the message carrying it
+    public static final int MAX_LENGTH = 32 * 1024;
+
+    public static final ConsensusValue EMPTY = new ConsensusValue(EntryKind.Value, ByteBuffer.allocate(0), true);
+
+    private final EntryKind kind;
+    // read-only, position 0, limit = length
+    private final ByteBuffer bytes;
+    private final boolean inline;
+
+    private ConsensusValue(EntryKind kind, ByteBuffer bytes, boolean inline) {
+        this.kind = kind;
+        this.bytes = bytes.asReadOnlyBuffer();
+        this.inline = inline;
+    }
+
+    /**
+     * 8 byte big-endian value, e.g. for the lease and key-value commands.
+     */
+    public static ConsensusValue of(long value) {
+        ByteBuffer byteBuffer = ByteBuffer.allocate(Long.BYTES);
+        byteBuffer.putLong(0, value);
+        return new ConsensusValue(EntryKind.Value, byteBuffer, true);
+    }
+
+    public static ConsensusValue wrap(byte[] bytes) {
+        return wrap(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Value of buffer's remaining bytes. Values over INLINE_MAX_LENGTH keep a view of buffer rather than a copy, the
+     * caller must not modify those bytes afterwards. buffer's position is not changed.
+     */
+    public static ConsensusValue wrap(ByteBuffer buffer) {
+        int length = buffer.remaining();
+        if (length > MAX_LENGTH) {
+            throw new IllegalArgumentException(String.format("value of %d bytes exceeds maximum %d", length, MAX_LENGTH));
+        }
+        if (length <= INLINE_MAX_LENGTH) {
+            byte[] copy = new byte[length];
+            buffer.duplicate().get(copy);
+            return new ConsensusValue(EntryKind.Value, ByteBuffer.wrap(copy), true);
+        }
+        return new ConsensusValue(EntryKind.Value, buffer.slice(), false);
+    }
+
+    /**
+     * Same bytes as this value, marked as kind. Only the consensus layer creates entries of kinds other than Value.
+     */
+    public ConsensusValue withKind(EntryKind kind) {
+        return kind == this.kind ? this : new ConsensusValue(kind, bytes, inline);
+    }
+
+    public EntryKind kind() {
+        return kind;
+    }
+
+    public int length() {
+        return bytes.limit();
+    }
+
+    public boolean isEmpty() {
+        return length() == 0;
+    }
+
+    /**
+     * @return true if this value owns a copy of its bytes, false if it is a view of a larger buffer
+     */
+    public boolean isInline() {
+        return inline;
+    }
+
+    /**
+     * @return read-only view of the bytes, positioned at the start
+     */
+    public ByteBuffer asReadOnlyBuffer() {
+        return bytes.duplicate();
+    }
+
+    public boolean isLong() {
+        return length() == Long.BYTES;
+    }
+
+    /**
+     * Reverse of of(long).
+     */
+    public long asLong() {
+        if (!isLong()) {
+            throw new IllegalStateException(String.format("value of %d bytes is not a long", length()));
+        }
+        return bytes.getLong(0);
+    }
+
+    /**
+     * First (up to) 8 bytes as a big-endian long, zero padded. Identifies a value in traces without copying it.
+     */
+    public long prefixAsLong() {
+        long prefix = 0;
+        int length = Math.min(length(), Long.BYTES);
+        for (int i = 0; i < length; i++) {
+            prefix = (prefix << 8) | (bytes.get(i) & 0xff);
+        }
+        return prefix << (8 * (Long.BYTES - length));
+    }
+
+    public byte[] toByteArray() {
+        byte[] copy = new byte[length()];
+        bytes.duplicate().get(copy);
+        return copy;
+    }
+
+    public void writeTo(ByteBuffer out) {
+        out.put(bytes.duplicate());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ConsensusValue)) {
+            return false;
+        }
+        ConsensusValue other = (ConsensusValue)o;
+        return kind == other.kind && bytes.equals(other.bytes);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * kind.hashCode() + bytes.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        String prefix = kind == EntryKind.Value ? "" : kind.name() + ":";
+        if (isLong()) {
+            return prefix + asLong();
+        }
+        StringBuilder builder = new StringBuilder(prefix);
+        builder.append(length()).append("b:");
+        for (int i = 0; i < Math.min(length(), 16); i++) {
+            builder.append(String.format("%02x", bytes.get(i)));
+        }
+        if (length() > 16) {
+            builder.append("...");
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,13 @@
+package dev.efaust.collab.paxos;
+
+import lombok.Value;
+
+/**
+ * Value chosen by the cluster for one execution. An execution that decided a batch of values yields one Decision per
+ * value, all with the same executionId.
+ */
+@Value
+public class Decision {
+    long executionId;
+    ConsensusValue value;
+}
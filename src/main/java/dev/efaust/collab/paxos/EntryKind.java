@@ -0,0 +1,37 @@
+package dev.efaust.collab.paxos;
+
+import lombok.Getter;
+
+import java.util.Optional;
+
+/**
+ * What a decided log entry is for, carried next to the bytes of every ConsensusValue.
+ *
+ * Only Value entries are proposed by clients and reach the state machine. The other kinds are produced by the
+ * consensus layer itself, so no client value can be mistaken for one however its bytes happen to look.
+ */
+public enum EntryKind {
+    Value(0),
+    // a change of voters, see MembershipValue
+    Membership(1),
+    // several entries decided together, see ValueBatch
+    Batch(2),
+    // a leader lease, see LeaseValue
+    Lease(3);
+
+    @Getter
+    byte id;
+
+    EntryKind(int id) {
+        this.id = (byte)id;
+    }
+
+    public static Optional<EntryKind> entryKindFromId(byte id) {
+        for (EntryKind kind : EntryKind.values()) {
+            if (kind.id == id) {
+                return Optional.of(kind);
+            }
+        }
+        return Optional.empty();
+    }
+}
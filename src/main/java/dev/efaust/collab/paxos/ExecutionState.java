@@ -3,6 +3,7 @@ package dev.efaust.collab.paxos;
 import dev.efaust.collab.paxos.messages.AcceptedMessage;
 import dev.efaust.collab.paxos.messages.PleaseAcceptMessage;
 import dev.efaust.collab.paxos.messages.PromiseMessage;
+import dev.efaust.collab.timer.HashedWheelTimer;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -14,10 +15,43 @@ import java.util.function.Supplier;
  * (e.g. prepare -> promise -> accept -> accepted) until the cluster reaches consensus.
  */
 public class ExecutionState {
+    /**
+     * What this node is doing as a proposer for this execution. Each phase other than Idle has a pending timeout.
+     */
+    public enum ProposerPhase {
+        Idle,
+        // Prepare sent, waiting for a Phase 1 quorum of promises
+        Preparing,
+        // PleaseAccept sent, waiting for a Phase 2 quorum of accepted
+        Accepting,
+        // proposal was rejected or timed out, waiting to retry with a higher N
+        BackingOff
+    }
+
     // prepare: The number n must be greater than any number used in any of the previous Prepare messages by this Proposer.
     @Getter @Setter
     private long priorPrepareN = 0;
 
+    // Proposal number this node is currently proposing with, 0 if this node has not proposed for this execution.
+    @Getter @Setter
+    private long proposalN = 0;
+
+    // Highest proposal number reported by acceptors in NegativePromise messages.
+    // The next proposal must be greater than this to have a chance of succeeding.
+    @Getter @Setter
+    private long highestRejectingN = 0;
+
+    // Number of times this node has retried its proposal after rejection, drives backoff
+    @Getter @Setter
+    private int retryAttempts = 0;
+
+    @Getter @Setter
+    private ProposerPhase proposerPhase = ProposerPhase.Idle;
+
+    // Timeout for the current proposer phase, null when Idle
+    @Getter @Setter
+    private HashedWheelTimer.Timeout proposerTimeout;
+
     // nodeId -> promise
     @Getter
     private Map<String, PromiseMessage> promises;
@@ -27,7 +61,7 @@ public class ExecutionState {
 
     // proposalNumber -> value
     @Getter
-    private Map<Long, Long> accepts;
+    private Map<Long, ConsensusValue> accepts;
 
     @Getter
     private Set<AcceptedMessage> acceptedMessages;
@@ -36,11 +70,15 @@ public class ExecutionState {
     // Optional because the node might not care (e.g. unit test where A and B are proposing values but C is not).
     // Supplier is used exactly once.
     @Getter @Setter
-    private Optional<Supplier<Long>> desiredValueSupplierOptional = Optional.empty();
+    private Optional<Supplier<ConsensusValue>> desiredValueSupplierOptional = Optional.empty();
 
     // Value that this node would like selected (if any)
     @Getter @Setter
-    private Optional<Long> desiredValueOptional = Optional.empty();
+    private Optional<ConsensusValue> desiredValueOptional = Optional.empty();
+
+    // Value chosen by the cluster, present once a Phase 2 quorum has accepted the same proposal
+    @Getter @Setter
+    private Optional<ConsensusValue> decidedValueOptional = Optional.empty();
 
     public ExecutionState() {
         this.priorPrepareN = 0;
@@ -0,0 +1,121 @@
+package dev.efaust.collab.paxos;
+
+import lombok.Getter;
+
+/**
+ * Holds ExecutionState for a sliding window of the most recent executions.
+ *
+ * Backed by a ring buffer indexed by executionId modulo window size, so lookup and next execution id allocation are
+ * constant time no matter how many executions this node has seen. The high-water mark is the highest execution id
+ * stored so far; the window covers (highWaterMark - windowSize, highWaterMark].
+ *
+ * Ids ahead of the window slide it forward, evicting the oldest executions. Ids behind the window have been evicted
+ * and can not be recreated (see isBehindWindow).
+ */
+public class ExecutionStateStore {
+    public static final int DEFAULT_WINDOW_SIZE = 1024;
+
+    @Getter
+    private final int windowSize;
+    private final int mask;
+
+    private final ExecutionState[] states;
+    // executionId stored in each slot, 0 if empty (execution ids start at 1)
+    private final long[] executionIds;
+
+    @Getter
+    private long highWaterMark;
+
+    public ExecutionStateStore() {
+        this(DEFAULT_WINDOW_SIZE);
+    }
+
+    public ExecutionStateStore(int windowSize) {
+        if (windowSize <= 0 || Integer.bitCount(windowSize) != 1) {
+            throw new IllegalArgumentException(String.format("window size must be a positive power of two, got %d", windowSize));
+        }
+        this.windowSize = windowSize;
+        this.mask = windowSize - 1;
+        this.states = new ExecutionState[windowSize];
+        this.executionIds = new long[windowSize];
+        this.highWaterMark = 0;
+    }
+
+    public long nextExecutionId() {
+        return highWaterMark + 1;
+    }
+
+    /**
+     * Oldest execution id that can still be held by this store.
+     */
+    public long getLowWaterMark() {
+        return Math.max(1, highWaterMark - windowSize + 1);
+    }
+
+    public boolean isBehindWindow(long executionId) {
+        return executionId < getLowWaterMark();
+    }
+
+    /**
+     * Ids this far ahead would evict every execution held, including ones still in progress.
+     */
+    public boolean isAheadOfWindow(long executionId) {
+        return executionId > nextExecutionId() + windowSize;
+    }
+
+    /**
+     * @return state for executionId, or null if it was never created or has been evicted
+     */
+    public ExecutionState get(long executionId) {
+        int slot = slot(executionId);
+        if (executionIds[slot] != executionId) {
+            return null;
+        }
+        return states[slot];
+    }
+
+    public ExecutionState getOrCreate(long executionId) {
+        if (executionId <= 0) {
+            throw new IllegalArgumentException(String.format("execution id must be positive, got %d", executionId));
+        }
+        if (isBehindWindow(executionId)) {
+            throw new IllegalArgumentException(String.format("execution id %d is behind window, low-water mark %d",
+                    executionId, getLowWaterMark()));
+        }
+        if (executionId > highWaterMark) {
+            advanceTo(executionId);
+        }
+        int slot = slot(executionId);
+        if (executionIds[slot] != executionId) {
+            executionIds[slot] = executionId;
+            states[slot] = new ExecutionState();
+        }
+        return states[slot];
+    }
+
+    /**
+     * Move the high-water mark up to executionId without creating state, e.g. after restoring a snapshot that covers
+     * every execution up to executionId.
+     */
+    public void advanceHighWaterMark(long executionId) {
+        if (executionId > highWaterMark) {
+            advanceTo(executionId);
+        }
+    }
+
+    private void advanceTo(long executionId) {
+        // clear slots skipped over so evicted state can be collected, at most one pass over the ring; counted rather
+        // than compared against executionId, which may be as large as Long.MAX_VALUE
+        int slots = (int)Math.min(executionId - highWaterMark, windowSize);
+        for (int i = 0; i < slots; i++) {
+            int slot = slot(executionId - i);
+            executionIds[slot] = 0;
+            states[slot] = null;
+        }
+        highWaterMark = executionId;
+    }
+
+    private int slot(long executionId) {
+        return (int)(executionId & mask);
+    }
+}
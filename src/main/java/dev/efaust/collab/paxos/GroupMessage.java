@@ -0,0 +1,23 @@
+package dev.efaust.collab.paxos;
+
+import dev.efaust.collab.liveness.NodeRole;
+import dev.efaust.collab.messaging.Message;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Base class for messages that belong to one Paxos group.
+ * A process can run many independent groups (see PaxosGroups), each with its own log of executions;
+ * groupId routes a message to the group it was sent by.
+ *
+ * Every group message also proves its sender is alive, so it carries the sender's role the same way a heartbeat does.
+ */
+public abstract class GroupMessage extends Message {
+    public static final int DEFAULT_GROUP_ID = 0;
+
+    @Getter @Setter
+    private int groupId = DEFAULT_GROUP_ID;
+
+    @Getter @Setter
+    private NodeRole senderRole = NodeRole.Voter;
+}
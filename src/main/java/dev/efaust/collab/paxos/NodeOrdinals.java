@@ -0,0 +1,32 @@
+package dev.efaust.collab.paxos;
+
+import com.google.common.hash.Hashing;
+import com.google.common.net.InetAddresses;
+import com.google.common.primitives.Ints;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Maps node ids to a 32 bit ordinal that identifies a peer in EventTracer records.
+ *
+ * Node ids are normally IP addresses: the ordinal is the low 32 bits of the address, which is the whole address for
+ * IPv4 and the tail of the interface identifier for IPv6. Other ids (e.g. names used by in memory tests) are hashed.
+ * Two ids can map to the same ordinal, so nothing that needs a unique id per node may use these; proposal numbers take
+ * their ordinal from the configured membership instead (see Configuration.ordinal). Nothing is cached, ids come
+ * straight from packet sources and must not accumulate.
+ */
+public final class NodeOrdinals {
+    private NodeOrdinals() {
+        // static helpers only
+    }
+
+    public static int ordinal(String nodeId) {
+        if (InetAddresses.isInetAddress(nodeId)) {
+            byte[] address = InetAddresses.forString(nodeId).getAddress();
+            byte[] low = Arrays.copyOfRange(address, address.length - Integer.BYTES, address.length);
+            return Ints.fromByteArray(low);
+        }
+        return Hashing.murmur3_32().hashString(nodeId, StandardCharsets.UTF_8).asInt();
+    }
+}
@@ -0,0 +1,134 @@
+package dev.efaust.collab.paxos;
+
+import dev.efaust.collab.messaging.NamedThreadFactory;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single owner thread for one or more PaxosNodes.
+ *
+ * PaxosNode and its PeerRegistry are plain single-threaded objects. An actor is the only thread that touches the nodes
+ * it hosts: it receives their messages, runs their timers and runs commands (proposals, queries, configuration changes)
+ * that other threads put on its lock-free command queue with tell or ask. Nothing on the hot path takes a lock.
+ */
+public class PaxosActor implements Runnable {
+    private static final Logger log = LogManager.getLogger(PaxosActor.class);
+
+    // how long an idle actor sleeps before checking timers again, new messages and commands wake it earlier
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Command to run against a node on its actor's thread.
+     */
+    @FunctionalInterface
+    public interface Task<T> {
+        T run(PaxosNode node) throws IOException;
+    }
+
+    private final String name;
+    private final List<PaxosNode> nodes;
+    private final Queue<Runnable> commands;
+    private volatile Thread owner;
+    private volatile boolean running;
+
+    public PaxosActor(String name) {
+        this.name = name;
+        this.nodes = new ArrayList<>();
+        this.commands = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Hand ownership of node to this actor. Must be called before start.
+     */
+    public void host(PaxosNode node) {
+        if (owner != null) {
+            throw new IllegalStateException("actor already started");
+        }
+        nodes.add(node);
+    }
+
+    public void start() {
+        if (owner != null) {
+            throw new IllegalStateException("actor already started");
+        }
+        running = true;
+        Thread thread = new NamedThreadFactory(name).newThread(this);
+        owner = thread;
+        thread.start();
+    }
+
+    public void stop() {
+        running = false;
+        wake();
+    }
+
+    /**
+     * Run task against node on the owner thread.
+     * @return completed with the task's result, or exceptionally if it threw
+     */
+    public <T> CompletableFuture<T> ask(PaxosNode node, Task<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        commands.add(() -> {
+            try {
+                future.complete(task.run(node));
+            } catch (IOException | RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        wake();
+        return future;
+    }
+
+    /**
+     * Run task against node on the owner thread, without waiting for it. Failures are logged.
+     */
+    public void tell(PaxosNode node, Task<?> task) {
+        commands.add(() -> {
+            try {
+                task.run(node);
+            } catch (IOException | RuntimeException e) {
+                log.error("[{}] command failed", node.getNodeId(), e);
+            }
+        });
+        wake();
+    }
+
+    /**
+     * Signal that a hosted node has new messages.
+     */
+    public void wake() {
+        Thread thread = owner;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            boolean busy = false;
+            Runnable command;
+            while ((command = commands.poll()) != null) {
+                command.run();
+                busy = true;
+            }
+            for (PaxosNode node : nodes) {
+                busy |= node.hasPendingMessages();
+                node.receiveMessages();
+                node.processTimers();
+            }
+            if (!busy) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+}
@@ -1,13 +1,12 @@
 package dev.efaust.collab.paxos;
 
-import dev.efaust.collab.messaging.Message;
 import lombok.Getter;
 import lombok.Setter;
 
 /**
  * Base class for Paxos messages.
  */
-public abstract class PaxosMessage extends Message {
+public abstract class PaxosMessage extends GroupMessage {
     /**
      *  Multiple rounds of messages are exchanged for one consensus decision.
      *  executionId differentiates subsequent consensus decisions
@@ -1,49 +1,217 @@
 package dev.efaust.collab.paxos;
 
-import com.google.common.collect.Sets;
 import dev.efaust.collab.liveness.HeartbeatMessage;
+import dev.efaust.collab.liveness.NodeRole;
 import dev.efaust.collab.liveness.PeerRegistry;
+import dev.efaust.collab.liveness.swim.SwimMembership;
+import dev.efaust.collab.liveness.swim.SwimMessage;
 import dev.efaust.collab.messaging.Message;
+import dev.efaust.collab.messaging.MessageSerialization;
 import dev.efaust.collab.messaging.MessagingLayer;
+import dev.efaust.collab.paxos.ExecutionState.ProposerPhase;
+import dev.efaust.collab.paxos.batch.ProposalBatcher;
+import dev.efaust.collab.paxos.batch.ValueBatch;
+import dev.efaust.collab.paxos.lease.LeaseManager;
+import dev.efaust.collab.paxos.lease.LeaseValue;
+import dev.efaust.collab.paxos.membership.Configuration;
+import dev.efaust.collab.paxos.membership.MembershipManager;
+import dev.efaust.collab.paxos.membership.MembershipValue;
 import dev.efaust.collab.paxos.messages.*;
+import dev.efaust.collab.paxos.quorum.MajorityQuorumSystem;
+import dev.efaust.collab.paxos.quorum.QuorumSystem;
+import dev.efaust.collab.statemachine.SnapshottableStateMachine;
+import dev.efaust.collab.statemachine.StateMachine;
+import dev.efaust.collab.timer.HashedWheelTimer;
+import dev.efaust.collab.trace.EventTracer;
+import dev.efaust.collab.trace.TraceEvent;
 import lombok.Getter;
 import lombok.Setter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.joda.time.DateTime;
-import org.joda.time.DateTimeZone;
 
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiPredicate;
+import java.util.function.LongSupplier;
 import java.util.function.Supplier;
 
 /**
  * Implements one Paxos "Processor" (e.g. one machine on a network seeking consensus with other machines on
  * a series of transactions).
  * Paxos ref: https://en.wikipedia.org/wiki/Paxos_%28computer_science%29#Basic_Paxos
+ *
+ * Not thread-safe: a node (including its PeerRegistry) must only be used from one thread, normally the PaxosActor
+ * hosting it. Other threads send it commands through the actor. The exception is propose, which any thread may call.
  */
 public class PaxosNode {
     private static final Logger log = LogManager.getLogger(PaxosNode.class);
 
+    // how long a proposer waits for a quorum before starting a new round
+    private static final long PREPARE_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+    private static final long ACCEPT_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+
+    // upper bound on decisions handed to the state machine in one apply call
+    private static final int MAX_APPLY_BATCH = 256;
+
+    // how long a gap in decided executions must persist before asking a peer for the missing values,
+    // and how long to wait for the answer before asking again
+    private static final long CATCH_UP_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long CATCH_UP_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(1);
+    // catch-up chunks leave room for their message's own fields and fit a datagram that is never fragmented,
+    // losing one fragment would lose the whole chunk
+    static final int CATCH_UP_CHUNK_BYTES = MessageSerialization.UNFRAGMENTED_MESSAGE_LENGTH - 64;
+    static final int SNAPSHOT_CHUNK_BYTES = MessageSerialization.UNFRAGMENTED_MESSAGE_LENGTH - 64;
+    public static final int DEFAULT_MAX_SNAPSHOT_BYTES = 64 * 1024 * 1024;
+
+    private static final long TIMER_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final int TIMER_WHEEL_SIZE = 512;
+
     @Getter @Setter
     private String nodeId;
 
+    // which Paxos group this node runs, stamped on every message it sends
+    @Getter @Setter
+    private int groupId;
+
+    // observers learn decisions but never promise or accept, advertised in this node's heartbeats
+    @Getter @Setter
+    private NodeRole role;
+
     private MessagingLayer messagingLayer;
     private PeerRegistry peerRegistry;
+    // SWIM failure detection, replacing heartbeats from every peer once enabled
+    @Getter
+    private SwimMembership swimMembership;
     int executionId;
 
-    private Map<Long, ExecutionState> executionStates;
+    private ExecutionStateStore executionStates;
+
+    // which sets of acceptors are quorums for promise and accepted counting
+    @Getter @Setter
+    private QuorumSystem quorumSystem;
+
+    // monotonic time source, System::nanoTime outside of tests
+    private LongSupplier nanoTime;
+    // every random choice comes from here, so a seeded node behaves the same on every run
+    private Random random;
+    private RandomizedBackoff backoff;
+    // per-execution phase timeouts and retries, advanced by processTimers
+    private HashedWheelTimer timer;
+
+    // protocol events go here rather than to the log, per-message logging is at debug level only
+    @Setter
+    private EventTracer tracer;
+
+    @Getter
+    private LeaseManager leaseManager;
+    // keep renewing the leader lease while true
+    private boolean leaseWanted;
+
+    // decided values are applied to this in execution order, if set
+    private StateMachine stateMachine;
+    // highest executionId handed to the state machine (or skipped as a lease)
+    @Getter
+    private long appliedThrough;
+    // highest executionId known to be decided, anything between appliedThrough and this is a gap to catch up on
+    @Getter
+    private long decidedThrough;
+    // highest executionId with Accepted messages that could not be counted yet: its configuration may not be applied,
+    // or it is too far ahead to hold state for
+    private long acceptedBeyondWindow;
+
+    // voter configurations, installed at startup and changed through the log; nothing is decided without one
+    @Getter
+    private MembershipManager membership;
+
+    // values submitted through propose, coalesced into one execution per batch
+    @Getter
+    private ProposalBatcher proposalBatcher;
+    // prepares reserved past the alpha window by executionId, sent once applying catches up with them
+    private TreeMap<Long, Supplier<ConsensusValue>> deferredPrepares;
+
+    // pending catch-up check, or in-flight catch-up request
+    private HashedWheelTimer.Timeout catchUpTimeout;
+    private int catchUpAttempts;
+    // peers that answered they cannot serve appliedThrough + 1, not asked again until this node has caught up
+    private Set<String> catchUpUnavailable;
+    private SnapshotAssembler snapshotAssembler;
+    // snapshots announced as larger than this are refused rather than buffered
+    @Getter @Setter
+    private int maxSnapshotBytes;
 
     public PaxosNode(String nodeId, MessagingLayer messagingLayer) {
+        this(nodeId, messagingLayer, System::nanoTime);
+    }
+
+    public PaxosNode(String nodeId, MessagingLayer messagingLayer, LongSupplier nanoTime) {
+        this(nodeId, messagingLayer, nanoTime, new Random());
+    }
+
+    public PaxosNode(String nodeId, MessagingLayer messagingLayer, LongSupplier nanoTime, Random random) {
         this.nodeId = nodeId;
+        this.groupId = GroupMessage.DEFAULT_GROUP_ID;
+        this.role = NodeRole.Voter;
         this.messagingLayer = messagingLayer;
         this.executionId = 0;
-        this.peerRegistry = new PeerRegistry();
-        this.executionStates = new HashMap<>();
+        this.peerRegistry = new PeerRegistry(nanoTime);
+        this.executionStates = new ExecutionStateStore();
+        this.nanoTime = nanoTime;
+        this.random = random;
+        this.backoff = new RandomizedBackoff(random);
+        this.timer = new HashedWheelTimer(nanoTime, TIMER_TICK_NANOS, TIMER_WHEEL_SIZE);
+        this.quorumSystem = new MajorityQuorumSystem();
+        this.tracer = EventTracer.getDefault();
+        this.leaseManager = new LeaseManager(nanoTime);
+        this.leaseWanted = false;
+        this.membership = new MembershipManager();
+        this.proposalBatcher = new ProposalBatcher(timer, nanoTime, random.nextLong());
+        this.deferredPrepares = new TreeMap<>();
+        this.appliedThrough = 0;
+        this.decidedThrough = 0;
+        this.acceptedBeyondWindow = 0;
+        this.catchUpAttempts = 0;
+        this.catchUpUnavailable = new HashSet<>();
+        this.maxSnapshotBytes = DEFAULT_MAX_SNAPSHOT_BYTES;
+    }
+
+    /**
+     * Detect failures with SWIM probes instead of the heartbeats of every peer, run by this node for its whole
+     * process. Peers heard from so far become the initial members, later ones join when heard from, e.g. through
+     * their first heartbeats.
+     * @return the running SWIM membership, for the process's other groups to share
+     */
+    public SwimMembership enableSwim() {
+        if (swimMembership != null) {
+            return swimMembership;
+        }
+        swimMembership = new SwimMembership(this::sendMessageTo, timer, random, this::getNodeId, this::getRole);
+        for (String peer : peerRegistry.getPeers()) {
+            swimMembership.heard(peer, peerRegistry.getRoleForPeer(peer));
+        }
+        peerRegistry.setSwimMembership(swimMembership);
+        swimMembership.start();
+        return swimMembership;
+    }
+
+    /**
+     * Detect failures with a SWIM membership run by another group of this process, see enableSwim.
+     */
+    public void shareSwim(SwimMembership shared) {
+        if (swimMembership == null) {
+            peerRegistry.setSwimMembership(shared);
+        }
     }
 
     public long getNextExecutionId() {
-        return executionStates.keySet().stream().max(Long::compare).orElse(0L) + 1;
+        return executionStates.nextExecutionId();
+    }
+
+    public boolean hasPendingMessages() {
+        return !messagingLayer.getReceiveQueue().isEmpty() || proposalBatcher.hasSubmitted();
     }
 
     public void receiveMessages() {
@@ -56,14 +224,140 @@ public class PaxosNode {
                 receiveMessage(message);
             } catch (IOException e) {
                 log.error("error receiving message", e);
+                tracer.traceMessage(TraceEvent.Error, message, message.getSourceAddress());
+                tracer.dumpOnError(String.format("[%s] error receiving message", nodeId));
             }
         }
+        applyDecided();
+        flushProposals();
+    }
+
+    public void setStateMachine(StateMachine stateMachine) {
+        this.stateMachine = stateMachine;
+    }
+
+    /**
+     * Apply loop: hands decided executions following appliedThrough to the state machine, in order, stopping at the
+     * first execution that is not decided yet. Called after each burst of received messages so decisions that
+     * arrived together are applied as one batch. If later executions are decided, the gap is filled by catching up
+     * from a peer.
+     * @return number of decisions applied
+     */
+    public int applyDecided() {
+        int applied = 0;
+        List<Decision> batch = new ArrayList<>();
+        while (true) {
+            long next = appliedThrough + 1;
+            ExecutionState state = executionStates.get(next);
+            if (state == null || !state.getDecidedValueOptional().isPresent()) {
+                // executions whose configuration is known now may already have a quorum of Accepted messages
+                long countableThrough = membership.proposableThrough(appliedThrough);
+                if (recountAccepted(countableThrough)) {
+                    continue;
+                }
+                break;
+            }
+            applied += applyNext(next, state.getDecidedValueOptional().get(), batch);
+        }
+        applied += flush(batch);
+        membership.prune(executionStates.getLowWaterMark());
+        scheduleCatchUpIfBehind();
+        return applied;
+    }
+
+    private int applyNext(long executionId, ConsensusValue value, List<Decision> batch) {
+        appliedThrough = executionId;
+        // leases and membership changes are consumed by the consensus layer, not part of the replicated state
+        List<ConsensusValue> values = Collections.singletonList(value);
+        if (value.kind() == EntryKind.Batch) {
+            Optional<List<ConsensusValue>> batchValues = ValueBatch.decode(value);
+            if (!batchValues.isPresent()) {
+                log.error("[{}] execution {} decided a malformed batch, skipping {}", nodeId, executionId, value);
+                return 0;
+            }
+            values = batchValues.get();
+        }
+        for (ConsensusValue decidedValue : values) {
+            if (decidedValue.kind() == EntryKind.Membership) {
+                Optional<Set<String>> members = MembershipValue.decode(decidedValue);
+                if (!members.isPresent()) {
+                    log.error("[{}] execution {} decided a malformed membership change, skipping {}", nodeId,
+                            executionId, decidedValue);
+                    continue;
+                }
+                Configuration configuration = membership.decided(executionId, members.get());
+                log.info("[{}] execution {} decided members {}, active from execution {}", nodeId, executionId,
+                        configuration.getMembers(), configuration.getActiveFrom());
+            } else if (decidedValue.kind() == EntryKind.Value && stateMachine != null) {
+                batch.add(new Decision(executionId, decidedValue));
+            }
+        }
+        return batch.size() >= MAX_APPLY_BATCH ? flush(batch) : 0;
+    }
+
+    private int flush(List<Decision> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        int size = batch.size();
+        stateMachine.apply(new ArrayList<>(batch));
+        batch.clear();
+        return size;
     }
 
     public void receiveMessage(Message message) throws IOException {
-        log.info("[{}] received {}", nodeId, message);
+        tracer.traceMessage(TraceEvent.Received, message, message.getSourceAddress());
+        log.debug("[{}] received {}", nodeId, message);
+        // every message proves its sender is alive, nodes only send standalone heartbeats while otherwise quiet;
+        // other messages are sampled so their bursts do not skew the failure detector
         if (message instanceof HeartbeatMessage) {
-            peerRegistry.updatePeerHeartbeat(message.getSourceAddress(), DateTime.now(DateTimeZone.UTC));
+            peerRegistry.heartbeat(message.getSourceAddress(), HeartbeatMessage.class.cast(message).getRole());
+            if (swimMembership != null) {
+                swimMembership.heard(message.getSourceAddress(), HeartbeatMessage.class.cast(message).getRole());
+            }
+        } else if (message instanceof GroupMessage) {
+            peerRegistry.heard(message.getSourceAddress(), GroupMessage.class.cast(message).getSenderRole());
+        }
+        if (message instanceof GroupMessage && ((GroupMessage)message).getGroupId() != groupId) {
+            tracer.traceMessage(TraceEvent.Dropped, message, message.getSourceAddress());
+            log.warn("[{}] message for group {} delivered to group {}, dropping {}", nodeId,
+                    ((GroupMessage)message).getGroupId(), groupId, message);
+            return;
+        }
+        if (message instanceof PaxosMessage && executionStates.isBehindWindow(((PaxosMessage)message).getExecutionId())) {
+            tracer.traceMessage(TraceEvent.Dropped, message, message.getSourceAddress());
+            log.warn("[{}] execution is behind window (low-water mark {}), dropping {}", nodeId,
+                    executionStates.getLowWaterMark(), message);
+            return;
+        }
+        if (message instanceof PaxosMessage && executionStates.isAheadOfWindow(((PaxosMessage)message).getExecutionId())) {
+            // would slide every execution in progress out of the window
+            tracer.traceMessage(TraceEvent.Dropped, message, message.getSourceAddress());
+            log.warn("[{}] execution is ahead of window (next execution {}), dropping {}", nodeId,
+                    executionStates.nextExecutionId(), message);
+            long executionId = ((PaxosMessage)message).getExecutionId();
+            if (message instanceof AcceptedMessage && isMemberFor(executionId, message.getSourceAddress())) {
+                // a voter is that far ahead, so this node is behind
+                acceptedBeyondWindow = Math.max(acceptedBeyondWindow, executionId);
+                scheduleCatchUpIfBehind();
+            }
+            return;
+        }
+        if (role == NodeRole.Observer && (message instanceof PrepareMessage || message instanceof PleaseAcceptMessage)) {
+            // not an acceptor, proposers do not count on an answer
+            tracer.traceMessage(TraceEvent.Dropped, message, message.getSourceAddress());
+            return;
+        }
+        if ((message instanceof PrepareMessage || message instanceof PleaseAcceptMessage)
+                && !isMemberFor(((PaxosMessage)message).getExecutionId(), message.getSourceAddress())) {
+            // only the execution's own voters may propose in it
+            tracer.traceMessage(TraceEvent.Dropped, message, message.getSourceAddress());
+            log.debug("[{}] {} is not a member for execution {}, dropping {}", nodeId, message.getSourceAddress(),
+                    ((PaxosMessage)message).getExecutionId(), message);
+            return;
+        }
+        if (message instanceof HeartbeatMessage) {
+            // nothing beyond the liveness recorded above
         } else if (message instanceof PrepareMessage) {
             PrepareMessage prepare = PrepareMessage.class.cast(message);
             receivePrepare(prepare);
@@ -72,40 +366,437 @@ public class PaxosNode {
             receivePromise(promise);
         } else if (message instanceof NegativePromiseMessage) {
             NegativePromiseMessage negativePromise = NegativePromiseMessage.class.cast(message);
-            // TODO: handle
+            receiveNegativePromise(negativePromise);
         } else if (message instanceof PleaseAcceptMessage) {
             PleaseAcceptMessage accept = PleaseAcceptMessage.class.cast(message);
             receiveAccept(accept);
         } else if (message instanceof AcceptedMessage) {
             AcceptedMessage accepted = AcceptedMessage.class.cast(message);
             receiveAccepted(accepted);
+        } else if (message instanceof CatchUpRequestMessage) {
+            CatchUpRequestMessage catchUpRequest = CatchUpRequestMessage.class.cast(message);
+            receiveCatchUpRequest(catchUpRequest);
+        } else if (message instanceof CatchUpResponseMessage) {
+            CatchUpResponseMessage catchUpResponse = CatchUpResponseMessage.class.cast(message);
+            receiveCatchUpResponse(catchUpResponse);
+        } else if (message instanceof CatchUpSnapshotMessage) {
+            CatchUpSnapshotMessage catchUpSnapshot = CatchUpSnapshotMessage.class.cast(message);
+            receiveCatchUpSnapshot(catchUpSnapshot);
+        } else if (message instanceof SwimMessage) {
+            if (swimMembership != null) {
+                swimMembership.receive(SwimMessage.class.cast(message));
+            }
         } else {
             log.warn("no handler for message type, message {}", message);
         }
     }
 
-    private void receiveAccepted(AcceptedMessage accepted) {
+    private void receiveAccepted(AcceptedMessage accepted) throws IOException {
         // record Accepted
         long executionId = accepted.getExecutionId();
         ExecutionState state = ensureExecutionStateExists(executionId);
         state.getAcceptedMessages().add(accepted);
+
+        if (state.getDecidedValueOptional().isPresent()) {
+            return;
+        }
+        if (executionId > membership.proposableThrough(appliedThrough)) {
+            // a configuration change not applied here yet may govern it, counted again once applying catches up
+            acceptedBeyondWindow = Math.max(acceptedBeyondWindow, executionId);
+            scheduleCatchUpIfBehind();
+            return;
+        }
+        countAccepted(executionId, state, accepted.getAcceptedProposalNumber());
+    }
+
+    // decided once a Phase 2 quorum accepted the same proposal
+    private boolean countAccepted(long executionId, ExecutionState state, long acceptedN) throws IOException {
+        Set<String> acceptedBy = new HashSet<>();
+        ConsensusValue value = null;
+        for (AcceptedMessage other : state.getAcceptedMessages()) {
+            if (other.getAcceptedProposalNumber() == acceptedN) {
+                acceptedBy.add(other.getSourceAddress());
+                value = other.getAcceptedValue();
+            }
+        }
+        if (value == null || !haveQuorum(executionId, acceptedBy, quorumSystem::isPhase2Quorum)) {
+            return false;
+        }
+        log.debug("[{}] execution {} decided N={} V={}", nodeId, executionId, ProposalNumbers.toString(acceptedN), value);
+        markDecided(executionId, state, value);
+        return true;
+    }
+
+    // counts the Accepted messages held for executions up to countableThrough that were beyond the alpha window
+    private boolean recountAccepted(long countableThrough) {
+        if (acceptedBeyondWindow == 0 || appliedThrough + 1 > Math.min(acceptedBeyondWindow, countableThrough)) {
+            return false;
+        }
+        boolean decidedAny = false;
+        long through = Math.min(acceptedBeyondWindow, countableThrough);
+        for (long executionId = Math.max(appliedThrough + 1, executionStates.getLowWaterMark()); executionId <= through; executionId++) {
+            ExecutionState state = executionStates.get(executionId);
+            if (state == null || state.getDecidedValueOptional().isPresent()) {
+                continue;
+            }
+            Set<Long> proposalNumbers = new HashSet<>();
+            state.getAcceptedMessages().forEach((accepted) -> proposalNumbers.add(accepted.getAcceptedProposalNumber()));
+            for (long acceptedN : proposalNumbers) {
+                try {
+                    if (countAccepted(executionId, state, acceptedN)) {
+                        decidedAny = true;
+                        break;
+                    }
+                } catch (IOException e) {
+                    log.error("[{}] failed to decide execution {}", nodeId, executionId, e);
+                }
+            }
+        }
+        if (acceptedBeyondWindow <= countableThrough) {
+            acceptedBeyondWindow = 0;
+        }
+        return decidedAny;
+    }
+
+    private void markDecided(long executionId, ExecutionState state, ConsensusValue value) throws IOException {
+        tracer.traceExecution(TraceEvent.Decided, groupId, executionId, state.getProposalN(), value.prefixAsLong());
+        state.setDecidedValueOptional(Optional.of(value));
+        cancelProposerTimeout(state);
+        state.setProposerPhase(ProposerPhase.Idle);
+        decidedThrough = Math.max(decidedThrough, executionId);
+        proposalBatcher.decided(executionId, value);
+        decided(executionId, value);
+    }
+
+    // highest execution this node knows it is missing, decided or waiting for its configuration
+    private long catchUpTarget() {
+        return Math.max(decidedThrough, acceptedBeyondWindow);
+    }
+
+    private void scheduleCatchUpIfBehind() {
+        if (catchUpTarget() <= appliedThrough || catchUpTimeout != null) {
+            return;
+        }
+        // give in-progress rounds a chance to finish before asking for help
+        catchUpTimeout = timer.schedule(this::requestCatchUp, CATCH_UP_DELAY_NANOS);
+    }
+
+    private void requestCatchUp() {
+        catchUpTimeout = null;
+        if (catchUpTarget() <= appliedThrough) {
+            caughtUp();
+            return;
+        }
+        List<String> candidates = catchUpCandidates();
+        if (candidates.isEmpty()) {
+            log.warn("[{}] behind (applied {}, decided {}) but no peer to catch up from{}", nodeId, appliedThrough,
+                    decidedThrough, catchUpUnavailable.isEmpty() ? "" : ", giving up on " + catchUpUnavailable);
+            return;
+        }
+        // rotate through peers on repeated attempts in case one is down or also behind
+        String peer = candidates.get(catchUpAttempts % candidates.size());
+        catchUpAttempts++;
+
+        CatchUpRequestMessage request = new CatchUpRequestMessage();
+        request.setFromExecutionId(appliedThrough + 1);
+        request.setToExecutionId(catchUpTarget());
+        try {
+            sendMessageTo(peer, request);
+        } catch (IOException e) {
+            log.error("[{}] failed to send catch-up request to {}", nodeId, peer, e);
+        }
+        catchUpTimeout = timer.schedule(this::requestCatchUp, CATCH_UP_TIMEOUT_NANOS);
+    }
+
+    private void caughtUp() {
+        catchUpAttempts = 0;
+        catchUpUnavailable.clear();
+    }
+
+    // peers that accepted the latest decided value have at least that much of the log, others are a fallback
+    private List<String> catchUpCandidates() {
+        Set<String> candidates = new TreeSet<>();
+        ExecutionState state = executionStates.get(catchUpTarget());
+        if (state != null) {
+            state.getAcceptedMessages().forEach((accepted) -> candidates.add(accepted.getSourceAddress()));
+        }
+        candidates.remove(nodeId);
+        candidates.removeAll(catchUpUnavailable);
+        if (candidates.isEmpty()) {
+            candidates.addAll(peerRegistry.peersAlive());
+            candidates.remove(nodeId);
+            candidates.removeAll(catchUpUnavailable);
+        }
+        return new ArrayList<>(candidates);
+    }
+
+    /**
+     * Answers a lagging peer with decided values from executionId `from` onwards, in chunks of about
+     * CATCH_UP_CHUNK_BYTES. If `from` is no longer held here, sends a state machine snapshot first and the values
+     * following it after, or says it cannot serve the request when the state machine takes no snapshots.
+     */
+    private void receiveCatchUpRequest(CatchUpRequestMessage request) throws IOException {
+        String peer = request.getSourceAddress();
+        if (nodeId.equals(peer)) {
+            return;
+        }
+        long from = request.getFromExecutionId();
+        if (from <= 0) {
+            log.warn("[{}] invalid catch-up request {}", nodeId, request);
+            return;
+        }
+        if (!isDecided(from) && from <= appliedThrough && stateMachine instanceof SnapshottableStateMachine) {
+            byte[] snapshot = snapshot();
+            log.info("[{}] sending {} byte snapshot through execution {} to {}", nodeId, snapshot.length, appliedThrough, peer);
+            sendSnapshot(peer, appliedThrough, snapshot);
+            from = appliedThrough + 1;
+        } else if (!isDecided(from) && from <= appliedThrough) {
+            log.info("[{}] cannot serve execution {} to {}, no longer held and no snapshot", nodeId, from, peer);
+            CatchUpResponseMessage response = new CatchUpResponseMessage();
+            response.setFirstExecutionId(from);
+            response.setLast(true);
+            response.setUnavailable(true);
+            sendMessageTo(peer, response);
+            return;
+        }
+
+        // send values up to the first execution that is not decided here, the last chunk is flagged (possibly empty)
+        long next = from;
+        while (true) {
+            List<ConsensusValue> values = new ArrayList<>();
+            int chunkBytes = 0;
+            while (isDecided(next + values.size())) {
+                ConsensusValue value = executionStates.get(next + values.size()).getDecidedValueOptional().get();
+                // at least one value per chunk, a value larger than a chunk goes on its own (fragmented, like the
+                // Paxos messages that decided it)
+                if (!values.isEmpty() && chunkBytes + MessageSerialization.VALUE_OVERHEAD + value.length() > CATCH_UP_CHUNK_BYTES) {
+                    break;
+                }
+                values.add(value);
+                chunkBytes += MessageSerialization.VALUE_OVERHEAD + value.length();
+            }
+            CatchUpResponseMessage response = new CatchUpResponseMessage();
+            response.setFirstExecutionId(next);
+            response.setValues(values);
+            response.setLast(!isDecided(next + values.size()));
+            sendMessageTo(peer, response);
+            next += values.size();
+            if (response.isLast()) {
+                break;
+            }
+        }
+        log.info("[{}] sent executions [{}, {}) to {}", nodeId, from, next, peer);
+    }
+
+    private void sendSnapshot(String peer, long snapshotExecutionId, byte[] snapshot) throws IOException {
+        int offset = 0;
+        do {
+            int length = Math.min(SNAPSHOT_CHUNK_BYTES, snapshot.length - offset);
+            CatchUpSnapshotMessage chunk = new CatchUpSnapshotMessage();
+            chunk.setSnapshotExecutionId(snapshotExecutionId);
+            chunk.setTotalLength(snapshot.length);
+            chunk.setOffset(offset);
+            chunk.setData(Arrays.copyOfRange(snapshot, offset, offset + length));
+            sendMessageTo(peer, chunk);
+            offset += length;
+        } while (offset < snapshot.length);
+    }
+
+    private boolean isDecided(long executionId) {
+        ExecutionState state = executionStates.get(executionId);
+        return state != null && state.getDecidedValueOptional().isPresent();
+    }
+
+    private void receiveCatchUpResponse(CatchUpResponseMessage response) throws IOException {
+        if (response.isUnavailable()) {
+            if (response.getFirstExecutionId() == appliedThrough + 1 && catchUpUnavailable.add(response.getSourceAddress())) {
+                log.info("[{}] {} cannot serve execution {}, asking another peer", nodeId, response.getSourceAddress(),
+                        response.getFirstExecutionId());
+                if (catchUpTimeout != null) {
+                    catchUpTimeout.cancel();
+                }
+                requestCatchUp();
+            }
+            return;
+        }
+        List<ConsensusValue> values = response.getValues();
+        List<Decision> batch = new ArrayList<>();
+        for (int i = 0; i < values.size(); i++) {
+            long executionId = response.getFirstExecutionId() + i;
+            if (executionId <= appliedThrough) {
+                continue;
+            }
+            if (executionStates.isBehindWindow(executionId)) {
+                // too old to hold state for, can only be applied straight away
+                if (executionId == appliedThrough + 1) {
+                    applyNext(executionId, values.get(i), batch);
+                }
+                continue;
+            }
+            ExecutionState state = ensureExecutionStateExists(executionId);
+            if (!state.getDecidedValueOptional().isPresent()) {
+                markDecided(executionId, state, values.get(i));
+            }
+        }
+        flush(batch);
+        if (response.isLast() && catchUpTimeout != null) {
+            // answered, apply below and check again for anything still missing after a delay
+            catchUpTimeout.cancel();
+            catchUpTimeout = null;
+        }
+        applyDecided();
+        if (catchUpTarget() <= appliedThrough) {
+            caughtUp();
+        }
+    }
+
+    private void receiveCatchUpSnapshot(CatchUpSnapshotMessage chunk) throws IOException {
+        long snapshotExecutionId = chunk.getSnapshotExecutionId();
+        if (!(stateMachine instanceof SnapshottableStateMachine) || snapshotExecutionId <= appliedThrough) {
+            return;
+        }
+        if (chunk.getTotalLength() < 0 || chunk.getTotalLength() > maxSnapshotBytes) {
+            throw new IOException(String.format("invalid snapshot length %d, maximum %d", chunk.getTotalLength(),
+                    maxSnapshotBytes));
+        }
+        if (snapshotAssembler == null || !snapshotAssembler.matches(chunk)) {
+            snapshotAssembler = new SnapshotAssembler(snapshotExecutionId, chunk.getTotalLength());
+        }
+        if (!snapshotAssembler.add(chunk)) {
+            return;
+        }
+        log.info("[{}] restoring snapshot through execution {}", nodeId, snapshotExecutionId);
+        restore(snapshotAssembler.getSnapshot(), snapshotExecutionId);
+        snapshotAssembler = null;
+        catchUpUnavailable.clear();
+        appliedThrough = snapshotExecutionId;
+        decidedThrough = Math.max(decidedThrough, snapshotExecutionId);
+        // never allocate an execution id the snapshot already covers
+        executionStates.advanceHighWaterMark(snapshotExecutionId);
+    }
+
+    // snapshot format: membership length (4), membership (see MembershipManager), then the state machine's snapshot
+    private byte[] snapshot() {
+        byte[] membershipSnapshot = membership.snapshot();
+        byte[] stateMachineSnapshot = ((SnapshottableStateMachine)stateMachine).snapshot();
+        ByteBuffer byteBuffer = ByteBuffer.allocate(4 + membershipSnapshot.length + stateMachineSnapshot.length);
+        byteBuffer.putInt(membershipSnapshot.length);
+        byteBuffer.put(membershipSnapshot);
+        byteBuffer.put(stateMachineSnapshot);
+        return byteBuffer.array();
+    }
+
+    private void restore(byte[] snapshot, long snapshotExecutionId) throws IOException {
+        ByteBuffer byteBuffer = ByteBuffer.wrap(snapshot);
+        try {
+            int membershipLength = byteBuffer.getInt();
+            if (membershipLength < 0 || membershipLength > byteBuffer.remaining()) {
+                throw new IOException(String.format("invalid membership length %d in snapshot", membershipLength));
+            }
+            ByteBuffer membershipSnapshot = byteBuffer.slice();
+            membershipSnapshot.limit(membershipLength);
+            membership.restore(membershipSnapshot);
+            byte[] stateMachineSnapshot = Arrays.copyOfRange(snapshot, 4 + membershipLength, snapshot.length);
+            ((SnapshottableStateMachine)stateMachine).restore(stateMachineSnapshot, snapshotExecutionId);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("corrupt snapshot", e);
+        }
+    }
+
+    private void decided(long executionId, ConsensusValue value) throws IOException {
+        if (!leaseManager.isPendingLease(executionId)) {
+            return;
+        }
+        if (leaseManager.decided(executionId, value, nodeId)) {
+            log.info("[{}] holding leader lease for {}ms", nodeId, TimeUnit.NANOSECONDS.toMillis(leaseManager.remainingNanos()));
+            timer.schedule(this::renewLease, leaseManager.getDurationNanos() / 2);
+        } else if (leaseWanted) {
+            log.info("[{}] lease proposal at execution {} lost to value {}, trying again", nodeId, executionId, value);
+            proposeLease();
+        }
+    }
+
+    /**
+     * Start acquiring the leader lease, and keep renewing it until releaseLease is called.
+     * @return executionId of the lease proposal
+     */
+    public long acquireLease() throws IOException {
+        leaseWanted = true;
+        return proposeLease();
+    }
+
+    /**
+     * Stop renewing the leader lease. A lease already held stays valid until it runs out.
+     */
+    public void releaseLease() {
+        leaseWanted = false;
+    }
+
+    public boolean isLeaseHolder() {
+        return leaseManager.isLeaseHolder();
+    }
+
+    /**
+     * Linearizable read of the state machine without a consensus round: applies everything decided, then runs read.
+     * Only allowed while this node holds the leader lease, no value can be decided without it in that time, and only
+     * once there are no gaps left to catch up on. Owner thread only.
+     * @return result of read
+     */
+    public <T> T leaseRead(Supplier<T> read) {
+        if (!leaseManager.isLeaseHolder()) {
+            throw new IllegalStateException("not holding the leader lease, read must go through consensus");
+        }
+        applyDecided();
+        if (appliedThrough < decidedThrough) {
+            throw new IllegalStateException(String.format("applied through %d but decided through %d, catching up",
+                    appliedThrough, decidedThrough));
+        }
+        return read.get();
+    }
+
+    private long proposeLease() throws IOException {
+        long executionId = getNextExecutionId();
+        ConsensusValue leaseValue = LeaseValue.encode(nodeId);
+        // start the clock before any acceptor can possibly grant the lease
+        leaseManager.proposingLease(executionId);
+        sendPrepare(executionId, () -> leaseValue);
+        return executionId;
+    }
+
+    private void renewLease() {
+        if (!leaseWanted) {
+            return;
+        }
+        try {
+            proposeLease();
+        } catch (IOException e) {
+            log.error("[{}] failed to renew lease", nodeId, e);
+        }
     }
 
     private void receivePrepare(PrepareMessage prepare) throws IOException {
         long executionId = prepare.getExecutionId();
-        ExecutionState state = ensureExecutionStateExists(executionId);
         long messageN = prepare.getProposalNumber();
+        if (ProposalNumbers.isExhausted(messageN)) {
+            // promising it would leave no proposal number any proposer could still win with
+            log.warn("[{}] prepare N={} from {} is in the last round, not making promise", nodeId,
+                    ProposalNumbers.toString(messageN), prepare.getSourceAddress());
+            return;
+        }
+        ExecutionState state = ensureExecutionStateExists(executionId);
         long priorN = state.getPriorPrepareN();
-        log.info("[{}] received prepare, message N: {}, prior N: {}", nodeId, messageN, priorN);
+        log.debug("[{}] received prepare, message N: {}, prior N: {}", nodeId,
+                ProposalNumbers.toString(messageN), ProposalNumbers.toString(priorN));
 
         Optional<Long> priorAcceptedProposalNumber = state.getAccepts().keySet().stream().max(Long::compare);
-        Optional<Long> priorAcceptedProposalValue = Optional.empty();
+        Optional<ConsensusValue> priorAcceptedProposalValue = Optional.empty();
         if (priorAcceptedProposalNumber.isPresent()) {
             priorAcceptedProposalValue = Optional.of(state.getAccepts().get(priorAcceptedProposalNumber.get()));
         }
 
-        if (messageN > priorN) {
-            log.info("[{}] message N is greater, making promise", nodeId);
+        boolean blockedByLease = leaseManager.isBlockedByLease(prepare.getSourceAddress());
+        if (messageN > priorN && !blockedByLease) {
+            log.debug("[{}] message N is greater, making promise", nodeId);
 
             // return promise
             state.setPriorPrepareN(messageN);
@@ -117,7 +808,11 @@ public class PaxosNode {
             promise.setPriorAcceptedValue(priorAcceptedProposalValue.orElse(PromiseMessage.NO_PRIOR_ACCEPTED_VALUE));
             sendMessage(promise);
         } else {
-            log.info("[{}] message N is not greater, not making promise", nodeId);
+            if (blockedByLease) {
+                log.debug("[{}] lease granted to another node, not making promise", nodeId);
+            } else {
+                log.debug("[{}] message N is not greater, not making promise", nodeId);
+            }
 
             // return negative promise
             NegativePromiseMessage negativePromise = new NegativePromiseMessage();
@@ -126,9 +821,83 @@ public class PaxosNode {
             negativePromise.setPriorPromisedProposalNumber(priorN);
             negativePromise.setPriorAcceptedProposalNumber(priorAcceptedProposalNumber.orElse(PromiseMessage.NO_PRIOR_ACCEPTED_N));
             negativePromise.setPriorAcceptedValue(priorAcceptedProposalValue.orElse(PromiseMessage.NO_PRIOR_ACCEPTED_VALUE));
+            sendMessage(negativePromise);
+        }
+    }
+
+    private void receiveNegativePromise(NegativePromiseMessage negativePromise) {
+        long executionId = negativePromise.getExecutionId();
+        if (ProposalNumbers.isExhausted(negativePromise.getPriorPromisedProposalNumber())) {
+            log.warn("[{}] negative promise from {} reports N={} in the last round, ignoring", nodeId,
+                    negativePromise.getSourceAddress(), ProposalNumbers.toString(negativePromise.getPriorPromisedProposalNumber()));
+            return;
+        }
+        ExecutionState state = ensureExecutionStateExists(executionId);
+        state.setHighestRejectingN(Math.max(state.getHighestRejectingN(), negativePromise.getPriorPromisedProposalNumber()));
+
+        // only the proposer of the rejected N reacts, and only once per proposal
+        if (state.getProposerPhase() != ProposerPhase.Preparing || negativePromise.getProposalNumber() != state.getProposalN()) {
+            return;
+        }
+        log.info("[{}] proposal N={} rejected, acceptor promised N={}", nodeId,
+                ProposalNumbers.toString(negativePromise.getProposalNumber()),
+                ProposalNumbers.toString(negativePromise.getPriorPromisedProposalNumber()));
+        scheduleRetry(executionId, state);
+    }
+
+    /**
+     * Runs timeouts and retries that are due. Should be called periodically by whatever drives this node.
+     */
+    public void processTimers() {
+        timer.advance();
+        flushProposals();
+    }
+
+    public int getPendingTimeouts() {
+        return timer.getPendingTimeouts();
+    }
 
-            // TODO: enable in future
-            //sendMessage(negativePromise);
+    private void scheduleRetry(long executionId, ExecutionState state) {
+        int attempt = state.getRetryAttempts() + 1;
+        state.setRetryAttempts(attempt);
+        long delayNanos = backoff.delayNanos(attempt);
+        log.info("[{}] execution {} retry {} in {}ms", nodeId, executionId, attempt, TimeUnit.NANOSECONDS.toMillis(delayNanos));
+        setProposerTimeout(executionId, state, ProposerPhase.BackingOff, delayNanos);
+    }
+
+    private void setProposerTimeout(long executionId, ExecutionState state, ProposerPhase phase, long delayNanos) {
+        cancelProposerTimeout(state);
+        state.setProposerPhase(phase);
+        long proposalN = state.getProposalN();
+        state.setProposerTimeout(timer.schedule(() -> proposerTimeout(executionId, phase, proposalN), delayNanos));
+    }
+
+    private void cancelProposerTimeout(ExecutionState state) {
+        if (state.getProposerTimeout() != null) {
+            state.getProposerTimeout().cancel();
+            state.setProposerTimeout(null);
+        }
+    }
+
+    private void proposerTimeout(long executionId, ProposerPhase phase, long proposalN) {
+        ExecutionState state = executionStates.get(executionId);
+        if (state == null || state.getProposerPhase() != phase || state.getProposalN() != proposalN) {
+            // evicted from window, or moved on since this was scheduled
+            return;
+        }
+        state.setProposerTimeout(null);
+        if (phase == ProposerPhase.BackingOff) {
+            try {
+                sendPrepare(executionId, state);
+            } catch (IOException e) {
+                log.error("[{}] failed to retry prepare for execution {}", nodeId, executionId, e);
+                scheduleRetry(executionId, state);
+            }
+        } else {
+            tracer.traceExecution(TraceEvent.Timeout, groupId, executionId, proposalN, phase.ordinal());
+            log.info("[{}] execution {} timed out in phase {} N={}", nodeId, executionId, phase,
+                    ProposalNumbers.toString(proposalN));
+            scheduleRetry(executionId, state);
         }
     }
 
@@ -139,36 +908,44 @@ public class PaxosNode {
         // merge this message into current local state
         state.getPromises().put(promise.getSourceAddress(), promise);
 
-        // need a majority of promises from a quorum of acceptors to proceed
-        // TODO: does this need to be for N?
-        if (!haveMajorityOfPromises(state)) {
-            log.info("[{}] do not yet have a majority of promises, cannot proceed with accept", nodeId);
+        // only the proposer of N proceeds, and only with promises made for N
+        long proposalN = promise.getPromiseProposalNumber();
+        if (state.getProposerPhase() != ProposerPhase.Preparing || proposalN != state.getProposalN()) {
+            return;
+        }
+
+        // need promises from a Phase 1 quorum of acceptors to proceed
+        if (!havePhase1QuorumOfPromises(executionId, state, proposalN)) {
+            log.debug("[{}] do not yet have a quorum of promises, cannot proceed with accept", nodeId);
             return;
         }
 
-        log.info("[{}] obtained a majority of promises, we can proceed!", nodeId);
+        log.debug("[{}] obtained a quorum of promises, we can proceed!", nodeId);
 
-        for (PromiseMessage otherPromise : state.getPromises().values()) {
-            log.info("  prior promise {}", otherPromise);
+        if (log.isDebugEnabled()) {
+            for (PromiseMessage otherPromise : state.getPromises().values()) {
+                log.debug("  prior promise {}", otherPromise);
+            }
         }
         Optional<PromiseMessage> maxPriorAcceptedOptional = state.getPromises().values().stream()
+                .filter((p) -> p.getPromiseProposalNumber() == proposalN)
                 .filter((p) -> p.getPriorAcceptedProposalNumber() != PromiseMessage.NO_PRIOR_ACCEPTED_N)
                 .max(Comparator.comparingLong(PromiseMessage::getPriorAcceptedProposalNumber));
 
-        long valueToAccept;
+        ConsensusValue valueToAccept;
         if (maxPriorAcceptedOptional.isPresent()) {
             PromiseMessage maxPriorAccepted = maxPriorAcceptedOptional.get();
-            log.info("[{}] max prior accepted n={} v={} src={}", nodeId, maxPriorAccepted.getPriorAcceptedProposalNumber(),
+            log.debug("[{}] max prior accepted n={} v={} src={}", nodeId, maxPriorAccepted.getPriorAcceptedProposalNumber(),
                     maxPriorAccepted.getPriorAcceptedValue(), maxPriorAccepted.getSourceAddress());
             valueToAccept = maxPriorAccepted.getPriorAcceptedValue();
         } else {
-            log.info("[{}] no max prior accepted, we get to pick the value", nodeId);
-            Optional<Long> valueToAcceptOptional = pickProposedValueToAccept(state);
+            log.debug("[{}] no max prior accepted, we get to pick the value", nodeId);
+            Optional<ConsensusValue> valueToAcceptOptional = pickProposedValueToAccept(state);
             if (!valueToAcceptOptional.isPresent()) {
                 // This node doesn't want to provide a value for this execution.
                 // That's ok, it can do nothing.
                 // Return, don't send any PleaseAccept message.
-                log.info("[{}] we do not want to pick a value, doing nothing", nodeId);
+                log.debug("[{}] we do not want to pick a value, doing nothing", nodeId);
                 return;
             }
             valueToAccept = valueToAcceptOptional.get();
@@ -176,46 +953,62 @@ public class PaxosNode {
 
         PleaseAcceptMessage pleaseAcceptMessage = new PleaseAcceptMessage();
         pleaseAcceptMessage.setExecutionId(executionId);
-        pleaseAcceptMessage.setProposalNumberToAccept(promise.getPromiseProposalNumber());
+        pleaseAcceptMessage.setProposalNumberToAccept(proposalN);
         pleaseAcceptMessage.setValueToAccept(valueToAccept);
-        // reduce duplicate messages
-        if (!state.getPriorSentPleaseAccept().contains(pleaseAcceptMessage)) {
-            sendMessage(pleaseAcceptMessage);
-        } else {
-            log.info("[{}] not sending duplicate PleaseAccept", nodeId);
-        }
+        // leaving Preparing means later promises for N do not send duplicate PleaseAccept messages
+        setProposerTimeout(executionId, state, ProposerPhase.Accepting, ACCEPT_TIMEOUT_NANOS);
         state.getPriorSentPleaseAccept().add(pleaseAcceptMessage);
+        sendMessage(pleaseAcceptMessage);
     }
 
-    private Optional<Long> pickProposedValueToAccept(ExecutionState state) {
+    private Optional<ConsensusValue> pickProposedValueToAccept(ExecutionState state) {
         if (state.getDesiredValueOptional().isPresent()) {
             return state.getDesiredValueOptional();
         }
         if (!state.getDesiredValueSupplierOptional().isPresent()) {
             return Optional.empty();
         }
-        long desiredValue = state.getDesiredValueSupplierOptional().get().get();
-        Optional<Long> desiredValueOptional = Optional.of(desiredValue);
+        ConsensusValue desiredValue = state.getDesiredValueSupplierOptional().get().get();
+        Optional<ConsensusValue> desiredValueOptional = Optional.of(desiredValue);
         state.setDesiredValueOptional(desiredValueOptional);
         return desiredValueOptional;
     }
 
-    private boolean haveMajorityOfPromises(ExecutionState state) {
-        Set<String> peersAlive = peerRegistry.peersAlive();
-        log.info("[{}] peers alive: {}", nodeId, peersAlive);
-        Set<String> promisesReceived = state.getPromises().keySet();
-        log.info("[{}] promises received: {}", nodeId, promisesReceived);
-        Set<String> promisesNotReceived = Sets.difference(peersAlive, promisesReceived);
-        log.info("[{}] promises not received: {}", nodeId, promisesNotReceived);
-        log.info("[{}] peers alive: {}, promises received: {}, promises not received: {}", nodeId,
-                peersAlive.size(), promisesReceived.size(), promisesNotReceived.size());
-        return promisesReceived.size() > promisesNotReceived.size();
+    private boolean havePhase1QuorumOfPromises(long executionId, ExecutionState state, long proposalN) {
+        Set<String> promisesReceived = new HashSet<>();
+        state.getPromises().forEach((src, promise) -> {
+            if (promise.getPromiseProposalNumber() == proposalN) {
+                promisesReceived.add(src);
+            }
+        });
+        log.debug("[{}] promises received: {}", nodeId, promisesReceived);
+        return haveQuorum(executionId, promisesReceived, quorumSystem::isPhase1Quorum);
+    }
+
+    private boolean isMemberFor(long executionId, String address) {
+        Optional<Set<String>> members = membership.membersFor(executionId);
+        return members.isPresent() && members.get().contains(address);
+    }
+
+    private boolean haveQuorum(long executionId, Set<String> responded, BiPredicate<Set<String>, Set<String>> isQuorum) {
+        // always the configured members, never whoever happens to look alive: a minority that has stopped hearing
+        // from the rest must not be able to count itself a quorum
+        Optional<Set<String>> configuredMembers = membership.membersFor(executionId);
+        if (!configuredMembers.isPresent()) {
+            log.debug("[{}] no configured members for execution {}, cannot count a quorum", nodeId, executionId);
+            return false;
+        }
+        Set<String> members = configuredMembers.get();
+        boolean quorum = isQuorum.test(members, responded);
+        log.debug("[{}] members: {}, responded: {}, quorum ({}): {}", nodeId,
+                members.size(), responded.size(), quorumSystem, quorum);
+        return quorum;
     }
 
     private void logPriorAccepts(ExecutionState state) {
         state.getAccepts().keySet().stream().sorted(Long::compare).forEachOrdered((acceptProposalNumber) -> {
-            long acceptValue = state.getAccepts().get(acceptProposalNumber);
-            log.info("  priorAccept N={} V={}", acceptProposalNumber, acceptValue);
+            ConsensusValue acceptValue = state.getAccepts().get(acceptProposalNumber);
+            log.debug("  priorAccept N={} V={}", acceptProposalNumber, acceptValue);
         });
     }
 
@@ -226,8 +1019,15 @@ public class PaxosNode {
         // accept if and only if we have not promised not to
         long proposalNumber = accept.getProposalNumberToAccept();
 
-        log.info("[{}] receiveAccept proposal number {}", nodeId, proposalNumber);
-        logPriorAccepts(state);
+        log.debug("[{}] receiveAccept proposal number {}", nodeId, proposalNumber);
+        if (log.isDebugEnabled()) {
+            logPriorAccepts(state);
+        }
+
+        if (leaseManager.isBlockedByLease(accept.getSourceAddress())) {
+            log.debug("[{}] lease granted to another node, NOT ACCEPTING {}", nodeId, accept);
+            return;
+        }
 
         // only ever accept a single value per proposal number
         if (!state.getAccepts().containsKey(proposalNumber)) {
@@ -238,14 +1038,20 @@ public class PaxosNode {
                     .filter((promise) -> promise.getPromiseProposalNumber() > proposalNumber)
                     .findAny();
             if (conflictOptional.isPresent()) {
-                log.info("[{}] got PleaseAccept n={}, CONFLICT {}, NOT ACCEPTING", nodeId, proposalNumber, conflictOptional.get());
+                log.debug("[{}] got PleaseAccept n={}, CONFLICT {}, NOT ACCEPTING", nodeId, proposalNumber, conflictOptional.get());
                 return;
             }
-            log.info("[{}] ACCEPT, NO CONFLICT {}", nodeId, accept);
-            for (PromiseMessage promiseMessage : state.getPromises().values()) {
-                log.info("  [{}] prior promise {}", nodeId, promiseMessage);
+            log.debug("[{}] ACCEPT, NO CONFLICT {}", nodeId, accept);
+            if (log.isDebugEnabled()) {
+                for (PromiseMessage promiseMessage : state.getPromises().values()) {
+                    log.debug("  [{}] prior promise {}", nodeId, promiseMessage);
+                }
             }
             state.getAccepts().put(proposalNumber, accept.getValueToAccept());
+            // granted as part of accepting, so every acceptor in the quorum that decides the lease is blocking
+            if (LeaseValue.isLease(accept.getValueToAccept()) && !state.getDecidedValueOptional().isPresent()) {
+                leaseManager.acceptedLease(accept.getValueToAccept());
+            }
 
             AcceptedMessage acceptedMessage = new AcceptedMessage();
             acceptedMessage.setExecutionId(executionId);
@@ -255,16 +1061,100 @@ public class PaxosNode {
         }
     }
 
-    public long sendPrepare(Supplier<Long> desiredValueSupplier) throws IOException {
+    /**
+     * Propose value for the replicated log. Values proposed close together are coalesced and decided by one execution,
+     * so callers can keep many proposals outstanding. Safe to call from any thread; the value goes out the next time
+     * the owner thread receives messages or processes timers.
+     * @return completed with the value's Decision once decided, or exceptionally with a TimeoutException if it is not
+     *         decided in time (see ProposalBatcher). Completed on the owner thread, use the async variants for slow
+     *         follow-up work.
+     */
+    public CompletableFuture<Decision> propose(ConsensusValue value) {
+        if (value.kind() != EntryKind.Value) {
+            throw new IllegalArgumentException(String.format("cannot propose a %s entry, only values", value.kind()));
+        }
+        return proposalBatcher.submit(value);
+    }
+
+    /**
+     * Propose a new set of voters. Decided like any other value, the configuration takes over alpha executions after
+     * the one that decides it (see MembershipManager).
+     */
+    public CompletableFuture<Decision> reconfigure(Set<String> members) {
+        return proposalBatcher.submit(MembershipValue.encode(members));
+    }
+
+    private void flushProposals() {
+        // stay inside the alpha window, beyond it the configuration deciding an execution is not known yet
+        long proposableThrough = membership.proposableThrough(appliedThrough);
+        while (!deferredPrepares.isEmpty() && deferredPrepares.firstKey() <= proposableThrough) {
+            Map.Entry<Long, Supplier<ConsensusValue>> deferred = deferredPrepares.pollFirstEntry();
+            try {
+                sendPrepare(deferred.getKey(), deferred.getValue());
+            } catch (IOException e) {
+                log.error("[{}] failed to send deferred prepare for execution {}", nodeId, deferred.getKey(), e);
+            }
+        }
+        if (!deferredPrepares.isEmpty()) {
+            return;
+        }
+        proposalBatcher.flush(this::proposeBatch, proposableThrough - getNextExecutionId() + 1);
+    }
+
+    private long proposeBatch(ConsensusValue batch) throws IOException {
+        // fail the batch's values rather than leave them waiting on a prepare that is never sent
         long executionId = getNextExecutionId();
+        if (ordinalFor(executionId) == 0) {
+            throw new IllegalStateException(String.format("%s is not a configured voter for execution %d", nodeId, executionId));
+        }
+        return sendPrepare(() -> batch);
+    }
+
+    /**
+     * Propose for the next free execution. Past the alpha window the prepare is deferred until applying catches up.
+     * @return execution proposed for
+     */
+    public long sendPrepare(Supplier<ConsensusValue> desiredValueSupplier) throws IOException {
+        long executionId = deferredPrepares.isEmpty() ? getNextExecutionId() : deferredPrepares.lastKey() + 1;
+        if (executionId > membership.proposableThrough(appliedThrough)) {
+            log.debug("[{}] execution {} is past the alpha window, applied through {}, deferring prepare", nodeId,
+                    executionId, appliedThrough);
+            deferredPrepares.put(executionId, desiredValueSupplier);
+            return executionId;
+        }
         sendPrepare(executionId, desiredValueSupplier);
         return executionId;
     }
 
-    public void sendPrepare(long executionId, Supplier<Long> desiredValueSupplier) throws IOException {
+    // unique among the proposers of executionId, 0 if this node is not one of its voters
+    private int ordinalFor(long executionId) {
+        return membership.configurationFor(executionId).map((configuration) -> configuration.ordinal(nodeId)).orElse(0);
+    }
+
+    public void sendPrepare(long executionId, Supplier<ConsensusValue> desiredValueSupplier) throws IOException {
         ExecutionState state = ensureExecutionStateExists(executionId);
-        long prepareN = state.getPriorPrepareN() + 1;
         state.setDesiredValueSupplierOptional(Optional.of(desiredValueSupplier));
+        sendPrepare(executionId, state);
+    }
+
+    private void sendPrepare(long executionId, ExecutionState state) throws IOException {
+        int ordinal = ordinalFor(executionId);
+        if (ordinal == 0) {
+            log.warn("[{}] not a configured voter for execution {}, not proposing", nodeId, executionId);
+            return;
+        }
+        // must exceed anything we have promised, proposed, or been told about by a rejecting acceptor
+        long priorN = Math.max(state.getPriorPrepareN(), Math.max(state.getProposalN(), state.getHighestRejectingN()));
+        if (ProposalNumbers.isExhausted(priorN)) {
+            log.error("[{}] execution {} has no proposal number left above N={}, giving up", nodeId, executionId,
+                    ProposalNumbers.toString(priorN));
+            cancelProposerTimeout(state);
+            state.setProposerPhase(ProposerPhase.Idle);
+            return;
+        }
+        long prepareN = ProposalNumbers.nextAbove(priorN, ordinal);
+        state.setProposalN(prepareN);
+        setProposerTimeout(executionId, state, ProposerPhase.Preparing, PREPARE_TIMEOUT_NANOS);
 
         // this is done on receiving our own message
         //state.setPriorPrepareN(prepareN);
@@ -276,8 +1166,26 @@ public class PaxosNode {
     }
 
     public void sendMessage(Message message) throws IOException {
+        stamp(message);
         messagingLayer.send(message);
-        log.info("[{}] sent {}", nodeId, message);
+        tracer.traceMessage(TraceEvent.Sent, message, null);
+        log.debug("[{}] sent {}", nodeId, message);
+    }
+
+    public void sendMessageTo(String address, Message message) throws IOException {
+        stamp(message);
+        messagingLayer.sendTo(address, message);
+        tracer.traceMessage(TraceEvent.Sent, message, address);
+        log.debug("[{}] sent to {} {}", nodeId, address, message);
+    }
+
+    private void stamp(Message message) {
+        if (message instanceof GroupMessage) {
+            ((GroupMessage)message).setGroupId(groupId);
+            ((GroupMessage)message).setSenderRole(role);
+        } else if (message instanceof HeartbeatMessage) {
+            ((HeartbeatMessage)message).setRole(role);
+        }
     }
 
     public PeerRegistry getPeerRegistry() {
@@ -289,8 +1197,6 @@ public class PaxosNode {
     }
 
     public ExecutionState ensureExecutionStateExists(long executionId) {
-        executionStates.putIfAbsent(executionId, new ExecutionState());
-        ExecutionState state = executionStates.get(executionId);
-        return state;
+        return executionStates.getOrCreate(executionId);
     }
 }
@@ -0,0 +1,54 @@
+package dev.efaust.collab.paxos;
+
+/**
+ * Proposal numbers (N) are packed as (round, node ordinal) into a long:
+ *   upper 32 bits: round, a counter incremented each time a proposer needs a higher N
+ *   lower 32 bits: ordinal of the proposing node in the execution's configuration, unsigned (see Configuration.ordinal)
+ *
+ * Comparing packed values as plain longs orders by round first and breaks ties by node, so proposals are totally
+ * ordered and two proposers never pick the same N. Rounds are kept below 2^31 so N stays positive and the
+ * "no prior accepted" sentinel (-1) sorts below every valid N.
+ */
+public final class ProposalNumbers {
+    private static final long ORDINAL_MASK = 0xFFFFFFFFL;
+    public static final long MAX_ROUND = Integer.MAX_VALUE;
+
+    private ProposalNumbers() {
+        // static helpers only
+    }
+
+    public static long of(long round, int nodeOrdinal) {
+        if (round < 0 || round > MAX_ROUND) {
+            throw new IllegalArgumentException(String.format("round out of range: %d", round));
+        }
+        return (round << 32) | (nodeOrdinal & ORDINAL_MASK);
+    }
+
+    public static long round(long proposalNumber) {
+        return proposalNumber >>> 32;
+    }
+
+    public static int nodeOrdinal(long proposalNumber) {
+        return (int)(proposalNumber & ORDINAL_MASK);
+    }
+
+    /**
+     * @return whether nextAbove has nothing left to offer above proposalNumber, true as well for the negative numbers
+     * a faulty peer might send
+     */
+    public static boolean isExhausted(long proposalNumber) {
+        return round(proposalNumber) >= MAX_ROUND;
+    }
+
+    /**
+     * @return a proposal number owned by nodeOrdinal that is greater than proposalNumber
+     * @throws IllegalArgumentException if proposalNumber isExhausted
+     */
+    public static long nextAbove(long proposalNumber, int nodeOrdinal) {
+        return of(Math.max(round(proposalNumber), 0) + 1, nodeOrdinal);
+    }
+
+    public static String toString(long proposalNumber) {
+        return String.format("%d.%08x", round(proposalNumber), nodeOrdinal(proposalNumber));
+    }
+}
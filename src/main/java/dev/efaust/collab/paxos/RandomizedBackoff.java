@@ -0,0 +1,45 @@
+package dev.efaust.collab.paxos;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Randomized exponential backoff used by a proposer before retrying a rejected round.
+ *
+ * The delay for attempt k is drawn uniformly from [cap / 2, cap) where cap = min(max, base * 2^k).
+ * Randomizing the delay spreads out competing proposers so they stop preempting each other ("dueling proposers").
+ */
+public class RandomizedBackoff {
+    public static final long DEFAULT_BASE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    public static final long DEFAULT_MAX_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    private final long baseNanos;
+    private final long maxNanos;
+    private final Random random;
+
+    public RandomizedBackoff(Random random) {
+        this(DEFAULT_BASE_NANOS, DEFAULT_MAX_NANOS, random);
+    }
+
+    public RandomizedBackoff(long baseNanos, long maxNanos, Random random) {
+        if (baseNanos <= 0 || maxNanos < baseNanos) {
+            throw new IllegalArgumentException(String.format("invalid backoff base %d max %d", baseNanos, maxNanos));
+        }
+        this.baseNanos = baseNanos;
+        this.maxNanos = maxNanos;
+        this.random = random;
+    }
+
+    /**
+     * @param attempt 1 for the first retry, 2 for the second, ...
+     */
+    public long delayNanos(int attempt) {
+        long cap = baseNanos;
+        for (int i = 1; i < attempt && cap < maxNanos; i++) {
+            cap <<= 1;
+        }
+        cap = Math.min(cap, maxNanos);
+        long half = cap / 2;
+        return half + (long)(random.nextDouble() * (cap - half));
+    }
+}
@@ -0,0 +1,56 @@
+package dev.efaust.collab.paxos;
+
+import dev.efaust.collab.paxos.messages.CatchUpSnapshotMessage;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Reassembles a state machine snapshot from CatchUpSnapshotMessage chunks, which may arrive out of order or more
+ * than once.
+ */
+class SnapshotAssembler {
+    @Getter
+    private final long snapshotExecutionId;
+    private final byte[] snapshot;
+    private final Set<Integer> offsetsReceived;
+    private int bytesReceived;
+
+    SnapshotAssembler(long snapshotExecutionId, int totalLength) {
+        this.snapshotExecutionId = snapshotExecutionId;
+        this.snapshot = new byte[totalLength];
+        this.offsetsReceived = new HashSet<>();
+        this.bytesReceived = 0;
+    }
+
+    boolean matches(CatchUpSnapshotMessage chunk) {
+        return chunk.getSnapshotExecutionId() == snapshotExecutionId && chunk.getTotalLength() == snapshot.length;
+    }
+
+    /**
+     * @return true once every byte of the snapshot has been received
+     */
+    boolean add(CatchUpSnapshotMessage chunk) throws IOException {
+        int offset = chunk.getOffset();
+        byte[] data = chunk.getData();
+        if (offset < 0 || (long)offset + data.length > snapshot.length) {
+            throw new IOException(String.format("chunk [%d, %d) outside snapshot of %d bytes",
+                    offset, (long)offset + data.length, snapshot.length));
+        }
+        if (offsetsReceived.add(offset)) {
+            System.arraycopy(data, 0, snapshot, offset, data.length);
+            bytesReceived += data.length;
+        }
+        return isComplete();
+    }
+
+    boolean isComplete() {
+        return bytesReceived == snapshot.length;
+    }
+
+    byte[] getSnapshot() {
+        return snapshot;
+    }
+}
@@ -0,0 +1,235 @@
+package dev.efaust.collab.paxos.batch;
+
+import dev.efaust.collab.paxos.ConsensusValue;
+import dev.efaust.collab.paxos.Decision;
+import dev.efaust.collab.timer.HashedWheelTimer;
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongSupplier;
+
+/**
+ * Coalesces proposed values into batches, one batch per execution, and completes each value's future when its batch
+ * is decided.
+ *
+ * submit may be called from any thread and only touches a lock-free queue. Everything else runs on the owning node's
+ * thread. At most maxInFlight batches are undecided at a time, so under load values pile up in the queue while earlier
+ * batches are in flight and go out together in the next one.
+ *
+ * Every batch carries this batcher's proposer id and its own sequence number, so a batch is only taken as decided when
+ * this very batch won, never because another proposer's batch happened to hold equal values.
+ *
+ * If another value wins a batch's execution, its values go back to the front of the queue for the next batch. A value
+ * fails with a TimeoutException if it is not decided within timeoutNanos of being submitted; a batch that timed out
+ * may still be decided later, so a timeout means the outcome is unknown, not that the value was dropped.
+ */
+public class ProposalBatcher {
+    private static final Logger log = LogManager.getLogger(ProposalBatcher.class);
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 16;
+    public static final int MAX_BATCH_VALUES = 1024;
+    public static final long DEFAULT_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    // largest value that fits in a batch on its own
+    public static final int MAX_VALUE_LENGTH = ConsensusValue.MAX_LENGTH - ValueBatch.HEADER_LENGTH - ValueBatch.ENTRY_OVERHEAD;
+
+    /**
+     * Starts an execution to decide batch. Throws IllegalStateException if this node cannot propose at all.
+     */
+    @FunctionalInterface
+    public interface BatchStarter {
+        long start(ConsensusValue batch) throws IOException;
+    }
+
+    private static class Proposal {
+        final ConsensusValue value;
+        final long deadlineNanos;
+        final CompletableFuture<Decision> future = new CompletableFuture<>();
+
+        Proposal(ConsensusValue value, long deadlineNanos) {
+            this.value = value;
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+
+    private static class Batch {
+        final List<Proposal> proposals;
+        final ConsensusValue value;
+        HashedWheelTimer.Timeout timeout;
+
+        Batch(List<Proposal> proposals, ConsensusValue value) {
+            this.proposals = proposals;
+            this.value = value;
+        }
+    }
+
+    private final HashedWheelTimer timer;
+    private final LongSupplier nanoTime;
+    private final long proposerId;
+    private long sequence;
+
+    private final Queue<Proposal> submitted;
+    // owner thread only: values whose batch lost its execution, proposed again before newer submissions
+    private final Deque<Proposal> retries;
+    private final Map<Long, Batch> inFlight;
+
+    @Getter @Setter
+    private volatile long timeoutNanos;
+    @Getter @Setter
+    private int maxInFlight;
+
+    public ProposalBatcher(HashedWheelTimer timer, LongSupplier nanoTime, long proposerId) {
+        this.timer = timer;
+        this.nanoTime = nanoTime;
+        this.proposerId = proposerId;
+        this.sequence = 0;
+        this.submitted = new ConcurrentLinkedQueue<>();
+        this.retries = new ArrayDeque<>();
+        this.inFlight = new HashMap<>();
+        this.timeoutNanos = DEFAULT_TIMEOUT_NANOS;
+        this.maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+    }
+
+    /**
+     * Queue value for the next batch. Safe to call from any thread.
+     */
+    public CompletableFuture<Decision> submit(ConsensusValue value) {
+        if (value.length() > MAX_VALUE_LENGTH) {
+            throw new IllegalArgumentException(String.format("value of %d bytes exceeds maximum %d",
+                    value.length(), MAX_VALUE_LENGTH));
+        }
+        Proposal proposal = new Proposal(value, nanoTime.getAsLong() + timeoutNanos);
+        submitted.add(proposal);
+        return proposal.future;
+    }
+
+    /**
+     * @return true if there are submitted values that flush has not picked up yet. Safe to call from any thread.
+     */
+    public boolean hasSubmitted() {
+        return !submitted.isEmpty();
+    }
+
+    public int getInFlight() {
+        return inFlight.size();
+    }
+
+    /**
+     * Start executions for queued values, as long as fewer than maxInFlight batches are undecided.
+     */
+    public void flush(BatchStarter starter) {
+        flush(starter, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Like flush(starter), but starting at most maxBatches executions.
+     */
+    public void flush(BatchStarter starter, long maxBatches) {
+        for (long started = 0; started < maxBatches && inFlight.size() < maxInFlight; started++) {
+            List<Proposal> proposals = nextBatch();
+            if (proposals.isEmpty()) {
+                return;
+            }
+            List<ConsensusValue> values = new ArrayList<>(proposals.size());
+            for (Proposal proposal : proposals) {
+                values.add(proposal.value);
+            }
+            Batch batch = new Batch(proposals, ValueBatch.encode(proposerId, ++sequence, values));
+            long executionId;
+            try {
+                executionId = starter.start(batch.value);
+            } catch (IOException | IllegalStateException e) {
+                log.error("failed to propose batch of {} values", proposals.size(), e);
+                fail(proposals, e);
+                return;
+            }
+            inFlight.put(executionId, batch);
+            batch.timeout = timer.schedule(() -> expire(executionId, batch), timeoutNanos);
+        }
+    }
+
+    /**
+     * Called when executionId is decided, completes the futures of the batch proposed for it if that batch won.
+     */
+    public void decided(long executionId, ConsensusValue value) {
+        Batch batch = inFlight.remove(executionId);
+        if (batch == null) {
+            return;
+        }
+        batch.timeout.cancel();
+        if (batch.value.equals(value)) {
+            for (Proposal proposal : batch.proposals) {
+                proposal.future.complete(new Decision(executionId, proposal.value));
+            }
+            return;
+        }
+        log.debug("batch of {} values lost execution {}, proposing again", batch.proposals.size(), executionId);
+        for (int i = batch.proposals.size() - 1; i >= 0; i--) {
+            retries.addFirst(batch.proposals.get(i));
+        }
+    }
+
+    private List<Proposal> nextBatch() {
+        List<Proposal> proposals = new ArrayList<>();
+        int length = ValueBatch.HEADER_LENGTH;
+        long now = nanoTime.getAsLong();
+        while (proposals.size() < MAX_BATCH_VALUES) {
+            Proposal proposal = retries.isEmpty() ? submitted.peek() : retries.peekFirst();
+            if (proposal == null) {
+                break;
+            }
+            int entryLength = ValueBatch.ENTRY_OVERHEAD + proposal.value.length();
+            boolean expired = now - proposal.deadlineNanos >= 0;
+            // cancelled or expired values are dropped, anything else waits for the next batch if it does not fit
+            if (!proposal.future.isDone() && !expired && length + entryLength > ConsensusValue.MAX_LENGTH) {
+                break;
+            }
+            if (retries.isEmpty()) {
+                submitted.poll();
+            } else {
+                retries.pollFirst();
+            }
+            if (expired) {
+                timedOut(proposal);
+            } else if (!proposal.future.isDone()) {
+                proposals.add(proposal);
+                length += entryLength;
+            }
+        }
+        return proposals;
+    }
+
+    private void expire(long executionId, Batch batch) {
+        if (inFlight.remove(executionId, batch)) {
+            log.info("batch of {} values for execution {} timed out", batch.proposals.size(), executionId);
+            for (Proposal proposal : batch.proposals) {
+                timedOut(proposal);
+            }
+        }
+    }
+
+    private void timedOut(Proposal proposal) {
+        proposal.future.completeExceptionally(new TimeoutException(String.format("not decided within %dms",
+                TimeUnit.NANOSECONDS.toMillis(timeoutNanos))));
+    }
+
+    private void fail(List<Proposal> proposals, Throwable cause) {
+        for (Proposal proposal : proposals) {
+            proposal.future.completeExceptionally(cause);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package dev.efaust.collab.paxos.batch;
+
+import dev.efaust.collab.paxos.ConsensusValue;
+import dev.efaust.collab.paxos.EntryKind;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Encodes several proposed values as one consensus value of kind EntryKind.Batch, so a single execution decides all of
+ * them:
+ *   proposer id: 8 bytes, sequence: 8 bytes, which together tell apart batches with equal values
+ *   count: 4 bytes
+ *   per value: entry kind (1 byte), length (4 bytes), then the value bytes
+ * The apply loop unpacks batches, state machines only ever see the values inside.
+ */
+public final class ValueBatch {
+    public static final int HEADER_LENGTH = 8 + 8 + 4;
+    public static final int ENTRY_OVERHEAD = 5;
+
+    private ValueBatch() {
+        // static helpers only
+    }
+
+    public static ConsensusValue encode(long proposerId, long sequence, List<ConsensusValue> values) {
+        int length = HEADER_LENGTH;
+        for (ConsensusValue value : values) {
+            length += ENTRY_OVERHEAD + value.length();
+        }
+        ByteBuffer byteBuffer = ByteBuffer.allocate(length);
+        byteBuffer.putLong(proposerId);
+        byteBuffer.putLong(sequence);
+        byteBuffer.putInt(values.size());
+        for (ConsensusValue value : values) {
+            byteBuffer.put(value.kind().getId());
+            byteBuffer.putInt(value.length());
+            value.writeTo(byteBuffer);
+        }
+        byteBuffer.flip();
+        return ConsensusValue.wrap(byteBuffer).withKind(EntryKind.Batch);
+    }
+
+    /**
+     * @return values in the batch, views of batch's bytes where large enough to be worth it; empty if batch is not a
+     *         well-formed batch
+     */
+    public static Optional<List<ConsensusValue>> decode(ConsensusValue batch) {
+        if (batch.kind() != EntryKind.Batch || batch.length() < HEADER_LENGTH) {
+            return Optional.empty();
+        }
+        ByteBuffer byteBuffer = batch.asReadOnlyBuffer();
+        // proposer id and sequence only matter to the proposer
+        byteBuffer.position(byteBuffer.position() + 8 + 8);
+        int count = byteBuffer.getInt();
+        if (count < 0 || (long)count * ENTRY_OVERHEAD > byteBuffer.remaining()) {
+            return Optional.empty();
+        }
+        List<ConsensusValue> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (byteBuffer.remaining() < ENTRY_OVERHEAD) {
+                return Optional.empty();
+            }
+            Optional<EntryKind> kind = EntryKind.entryKindFromId(byteBuffer.get());
+            int length = byteBuffer.getInt();
+            if (!kind.isPresent() || length < 0 || length > byteBuffer.remaining()) {
+                return Optional.empty();
+            }
+            ByteBuffer valueBytes = byteBuffer.slice();
+            valueBytes.limit(length);
+            values.add(ConsensusValue.wrap(valueBytes).withKind(kind.get()));
+            byteBuffer.position(byteBuffer.position() + length);
+        }
+        if (byteBuffer.hasRemaining()) {
+            return Optional.empty();
+        }
+        return Optional.of(values);
+    }
+}
@@ -0,0 +1,52 @@
+package dev.efaust.collab.paxos.group;
+
+import dev.efaust.collab.messaging.Message;
+import dev.efaust.collab.messaging.MessagingLayer;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * MessagingLayer for one Paxos group inside PaxosGroups.
+ * Sends go straight to the process wide messaging layer; receives come from this group's own inbox, filled by
+ * PaxosGroups.dispatch on another thread.
+ * Also remembers when the group last sent to every node, so the process can leave out heartbeats while it is busy.
+ */
+class GroupMessagingLayer implements MessagingLayer {
+    private final MessagingLayer messagingLayer;
+    private final Queue<Message> receiveQueue;
+    // written by the group's worker, read by the heartbeat thread
+    private volatile boolean sent;
+    private volatile long lastSendNanos;
+
+    GroupMessagingLayer(MessagingLayer messagingLayer) {
+        this.messagingLayer = messagingLayer;
+        this.receiveQueue = new ConcurrentLinkedQueue<>();
+    }
+
+    @Override
+    public void send(Message message) throws IOException {
+        messagingLayer.send(message);
+        lastSendNanos = System.nanoTime();
+        sent = true;
+    }
+
+    /**
+     * @return nanos since the last message sent to every node, Long.MAX_VALUE if there was none.
+     * Unicast sends do not count, they only reach one peer.
+     */
+    long nanosSinceSend(long nowNanos) {
+        return sent ? nowNanos - lastSendNanos : Long.MAX_VALUE;
+    }
+
+    @Override
+    public void sendTo(String address, Message message) throws IOException {
+        messagingLayer.sendTo(address, message);
+    }
+
+    @Override
+    public Queue<Message> getReceiveQueue() {
+        return receiveQueue;
+    }
+}
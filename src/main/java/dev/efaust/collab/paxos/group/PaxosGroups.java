@@ -0,0 +1,194 @@
+package dev.efaust.collab.paxos.group;
+
+import dev.efaust.collab.liveness.swim.SwimMembership;
+import dev.efaust.collab.messaging.Message;
+import dev.efaust.collab.messaging.MessagingLayer;
+import dev.efaust.collab.paxos.ConsensusValue;
+import dev.efaust.collab.paxos.Decision;
+import dev.efaust.collab.paxos.GroupMessage;
+import dev.efaust.collab.paxos.PaxosActor;
+import dev.efaust.collab.paxos.PaxosNode;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runs many independent Paxos groups in one process, so throughput scales across cores.
+ *
+ * Each group is a PaxosNode with its own log of executions, identified by the groupId carried in every GroupMessage.
+ * Groups are pinned to worker actors (group g runs on worker g % workerCount) and only ever touched from that
+ * worker's thread, so a group needs no locks. Other threads reach a group through submit and tell.
+ *
+ * Incoming messages are routed by dispatch: group messages to their group's inbox, anything else (heartbeats) to every
+ * group. Keys are partitioned across groups with groupForKey.
+ */
+public class PaxosGroups {
+    private static final Logger log = LogManager.getLogger(PaxosGroups.class);
+
+    private final MessagingLayer messagingLayer;
+    private final PaxosNode[] groups;
+    private final GroupMessagingLayer[] groupMessagingLayers;
+    private final PaxosActor[] workers;
+
+    public PaxosGroups(String nodeId, int groupCount, int workerCount, MessagingLayer messagingLayer) {
+        if (groupCount <= 0 || workerCount <= 0) {
+            throw new IllegalArgumentException(String.format("need at least one group and worker, got %d groups %d workers",
+                    groupCount, workerCount));
+        }
+        this.messagingLayer = messagingLayer;
+        this.groups = new PaxosNode[groupCount];
+        this.groupMessagingLayers = new GroupMessagingLayer[groupCount];
+        this.workers = new PaxosActor[Math.min(workerCount, groupCount)];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new PaxosActor("paxos-worker-" + i);
+        }
+        for (int groupId = 0; groupId < groupCount; groupId++) {
+            groupMessagingLayers[groupId] = new GroupMessagingLayer(messagingLayer);
+            PaxosNode node = new PaxosNode(nodeId, groupMessagingLayers[groupId]);
+            node.setGroupId(groupId);
+            groups[groupId] = node;
+            workerFor(groupId).host(node);
+        }
+    }
+
+    public int getGroupCount() {
+        return groups.length;
+    }
+
+    public int getWorkerCount() {
+        return workers.length;
+    }
+
+    /**
+     * Group that owns key. Keys are hashed so runs of adjacent keys spread over every group.
+     */
+    public int groupForKey(int key) {
+        return Math.floorMod(Integer.rotateLeft(key * 0x9e3779b9, 16), groups.length);
+    }
+
+    public void start() {
+        for (PaxosActor worker : workers) {
+            worker.start();
+        }
+        log.info("started {} groups on {} workers", groups.length, workers.length);
+    }
+
+    public void stop() {
+        for (PaxosActor worker : workers) {
+            worker.stop();
+        }
+    }
+
+    /**
+     * Route everything waiting in the process wide receive queue to group inboxes.
+     * @return number of messages routed
+     */
+    public int dispatchReceived() {
+        int dispatched = 0;
+        Queue<Message> receiveQueue = messagingLayer.getReceiveQueue();
+        Message message;
+        while ((message = receiveQueue.poll()) != null) {
+            dispatch(message);
+            dispatched++;
+        }
+        return dispatched;
+    }
+
+    public void dispatch(Message message) {
+        if (message instanceof GroupMessage) {
+            int groupId = ((GroupMessage)message).getGroupId();
+            if (groupId < 0 || groupId >= groups.length) {
+                log.warn("no group {}, dropping {}", groupId, message);
+                return;
+            }
+            groupMessagingLayers[groupId].getReceiveQueue().add(message);
+            workerFor(groupId).wake();
+        } else {
+            for (int groupId = 0; groupId < groups.length; groupId++) {
+                groupMessagingLayers[groupId].getReceiveQueue().add(message);
+            }
+            for (PaxosActor worker : workers) {
+                worker.wake();
+            }
+        }
+    }
+
+    /**
+     * Time since the quietest group last sent to every node. While this is short, every peer keeps hearing from every
+     * group anyway and standalone heartbeats add nothing.
+     * @return nanos, Long.MAX_VALUE if some group has not sent anything yet
+     */
+    public long nanosSinceEveryGroupSent() {
+        long now = System.nanoTime();
+        long quietest = 0;
+        for (GroupMessagingLayer groupMessagingLayer : groupMessagingLayers) {
+            quietest = Math.max(quietest, groupMessagingLayer.nanosSinceSend(now));
+        }
+        return quietest;
+    }
+
+    /**
+     * Propose value to a group, see PaxosNode.propose.
+     */
+    public CompletableFuture<Decision> propose(int groupId, ConsensusValue value) {
+        checkGroupId(groupId);
+        CompletableFuture<Decision> future = groups[groupId].propose(value);
+        workerFor(groupId).wake();
+        return future;
+    }
+
+    /**
+     * Run task against a group on the group's worker thread.
+     * @return completed with the task's result, or exceptionally if it threw
+     */
+    public <T> CompletableFuture<T> submit(int groupId, PaxosActor.Task<T> task) {
+        checkGroupId(groupId);
+        return workerFor(groupId).ask(groups[groupId], task);
+    }
+
+    /**
+     * Run task against a group on the group's worker thread, without waiting for it. Failures are logged.
+     */
+    public void tell(int groupId, PaxosActor.Task<?> task) {
+        checkGroupId(groupId);
+        workerFor(groupId).tell(groups[groupId], task);
+    }
+
+    /**
+     * tell every group
+     */
+    public void tellAll(PaxosActor.Task<?> task) {
+        for (int groupId = 0; groupId < groups.length; groupId++) {
+            tell(groupId, task);
+        }
+    }
+
+    /**
+     * Detect failures with SWIM. One SWIM membership runs on group 0 and every other group reads its view, so each
+     * peer is probed once per process rather than once per group.
+     */
+    public void enableSwim() {
+        tell(0, (node) -> {
+            SwimMembership swimMembership = node.enableSwim();
+            for (int groupId = 1; groupId < groups.length; groupId++) {
+                tell(groupId, (other) -> {
+                    other.shareSwim(swimMembership);
+                    return null;
+                });
+            }
+            return null;
+        });
+    }
+
+    private void checkGroupId(int groupId) {
+        if (groupId < 0 || groupId >= groups.length) {
+            throw new IllegalArgumentException(String.format("no group %d, have %d", groupId, groups.length));
+        }
+    }
+
+    private PaxosActor workerFor(int groupId) {
+        return workers[groupId % workers.length];
+    }
+}
@@ -0,0 +1,126 @@
+package dev.efaust.collab.paxos.lease;
+
+import dev.efaust.collab.paxos.ConsensusValue;
+import lombok.Getter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Time-bounded leader leases, decided through regular Paxos executions (see LeaseValue).
+ *
+ * Acceptor side: after accepting a lease for holder H at local time t, this node rejects Prepare and PleaseAccept
+ * from every other node until t + duration. The lease is decided once a quorum has accepted it, so the quorum that
+ * decides it is the quorum that blocks: no other proposer can get anything decided in that window, whether or not
+ * those acceptors ever learn the decision. A lease proposal that is accepted but never decided blocks others for at
+ * most one duration. Leases learned through catch-up are old news and grant nothing.
+ *
+ * Holder side: the holder records its clock before proposing the lease. Once the lease is decided, it holds the
+ * lease until start + duration - safety margin. Every acceptor of the deciding quorum accepted after start, so their
+ * windows end after the holder's, and the margin covers clock rate differences between nodes. All times are from a
+ * monotonic clock.
+ *
+ * While holding the lease nothing can be decided without the holder, so it can answer reads from its own decided
+ * state without running a consensus round.
+ */
+public class LeaseManager {
+    private static final Logger log = LogManager.getLogger(LeaseManager.class);
+
+    public static final long DEFAULT_DURATION_NANOS = TimeUnit.SECONDS.toNanos(5);
+    public static final long DEFAULT_SAFETY_MARGIN_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private final LongSupplier nanoTime;
+    @Getter
+    private final long durationNanos;
+    @Getter
+    private final long safetyMarginNanos;
+
+    // acceptor: lease this node has granted by accepting it
+    private boolean granted = false;
+    private String grantedHolder;
+    private long grantedUntilNanos;
+
+    // holder: executionId -> clock reading taken before proposing a lease there
+    private final Map<Long, Long> proposedLeaseStartNanos = new HashMap<>();
+    private boolean held = false;
+    private long heldUntilNanos;
+
+    public LeaseManager(LongSupplier nanoTime) {
+        this(nanoTime, DEFAULT_DURATION_NANOS, DEFAULT_SAFETY_MARGIN_NANOS);
+    }
+
+    public LeaseManager(LongSupplier nanoTime, long durationNanos, long safetyMarginNanos) {
+        if (durationNanos <= 0 || safetyMarginNanos < 0 || safetyMarginNanos >= durationNanos) {
+            throw new IllegalArgumentException(String.format("invalid lease duration %d margin %d", durationNanos, safetyMarginNanos));
+        }
+        this.nanoTime = nanoTime;
+        this.durationNanos = durationNanos;
+        this.safetyMarginNanos = safetyMarginNanos;
+    }
+
+    /**
+     * Acceptor: should a Prepare or PleaseAccept from this node be rejected because of a lease granted to another node?
+     */
+    public boolean isBlockedByLease(String sourceAddress) {
+        if (!granted || grantedUntilNanos - nanoTime.getAsLong() <= 0) {
+            return false;
+        }
+        return !grantedHolder.equals(sourceAddress);
+    }
+
+    /**
+     * Acceptor: called when this node accepts a lease value.
+     */
+    public void acceptedLease(ConsensusValue leaseValue) {
+        granted = true;
+        grantedHolder = LeaseValue.holder(leaseValue);
+        grantedUntilNanos = nanoTime.getAsLong() + durationNanos;
+    }
+
+    /**
+     * Holder: called right before proposing a lease for this node at executionId.
+     */
+    public void proposingLease(long executionId) {
+        proposedLeaseStartNanos.put(executionId, nanoTime.getAsLong());
+    }
+
+    /**
+     * Holder: called when an execution is decided.
+     * @return true if this node now holds a lease from that execution
+     */
+    public boolean decided(long executionId, ConsensusValue value, String ownNodeId) {
+        Long start = proposedLeaseStartNanos.remove(executionId);
+        if (start == null || !LeaseValue.isLease(value) || !LeaseValue.holder(value).equals(ownNodeId)) {
+            return false;
+        }
+        long until = start + durationNanos - safetyMarginNanos;
+        if (until - nanoTime.getAsLong() <= 0) {
+            log.warn("lease from execution {} decided after it had already expired", executionId);
+            return false;
+        }
+        if (!held || until - heldUntilNanos > 0) {
+            heldUntilNanos = until;
+        }
+        held = true;
+        return true;
+    }
+
+    public boolean isPendingLease(long executionId) {
+        return proposedLeaseStartNanos.containsKey(executionId);
+    }
+
+    public boolean isLeaseHolder() {
+        return held && heldUntilNanos - nanoTime.getAsLong() > 0;
+    }
+
+    /**
+     * @return nanoseconds of lease remaining, 0 if this node does not hold the lease
+     */
+    public long remainingNanos() {
+        return isLeaseHolder() ? heldUntilNanos - nanoTime.getAsLong() : 0;
+    }
+}
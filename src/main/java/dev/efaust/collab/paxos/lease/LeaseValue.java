@@ -0,0 +1,28 @@
+package dev.efaust.collab.paxos.lease;
+
+import dev.efaust.collab.paxos.ConsensusValue;
+import dev.efaust.collab.paxos.EntryKind;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes a leader lease as a consensus value of kind EntryKind.Lease, so leases are granted by deciding an ordinary
+ * execution. The value is the id of the node holding the lease in UTF-8.
+ */
+public final class LeaseValue {
+    private LeaseValue() {
+        // static helpers only
+    }
+
+    public static ConsensusValue encode(String holder) {
+        return ConsensusValue.wrap(holder.getBytes(StandardCharsets.UTF_8)).withKind(EntryKind.Lease);
+    }
+
+    public static boolean isLease(ConsensusValue value) {
+        return value.kind() == EntryKind.Lease;
+    }
+
+    public static String holder(ConsensusValue value) {
+        return new String(value.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
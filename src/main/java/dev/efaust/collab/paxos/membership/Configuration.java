@@ -0,0 +1,34 @@
+package dev.efaust.collab.paxos.membership;
+
+import lombok.Value;
+
+import java.util.Set;
+
+/**
+ * Set of voters deciding every execution from activeFrom until the next configuration becomes active.
+ */
+@Value
+public class Configuration {
+    // execution that decided this configuration, 0 for one installed at startup
+    long decidedAt;
+    long activeFrom;
+    // immutable, iterates in sorted order
+    Set<String> members;
+
+    /**
+     * Ordinal of nodeId in proposal numbers for the executions this configuration decides (see ProposalNumbers): its
+     * position among the sorted members, counting from 1. Every node derives the same ordinals from the same
+     * configuration, and no two members share one.
+     * @return ordinal, 0 if nodeId is not a member
+     */
+    public int ordinal(String nodeId) {
+        int ordinal = 1;
+        for (String member : members) {
+            if (member.equals(nodeId)) {
+                return ordinal;
+            }
+            ordinal++;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,134 @@
+package dev.efaust.collab.paxos.membership;
+
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Tracks which configuration of voters is in force for each execution.
+ *
+ * Quorums are only ever counted over a configuration's fixed member set, never over the peers that currently look
+ * alive: otherwise a partitioned minority would see a majority of the voters it can still hear and decide on its own.
+ * Every node installs the same initial configuration at startup, until then it takes part in no quorum.
+ *
+ * A configuration decided by execution i becomes active at execution i + alpha (Lamport's alpha window). That lets a
+ * proposer run up to alpha executions ahead of the last one it has applied and still know the configuration of each:
+ * every configuration change that could affect them has already been applied. Not thread-safe, owned by a PaxosNode.
+ */
+public class MembershipManager {
+    public static final int DEFAULT_ALPHA = 64;
+
+    @Getter
+    private final int alpha;
+    // ascending activeFrom
+    private final List<Configuration> configurations;
+
+    public MembershipManager() {
+        this(DEFAULT_ALPHA);
+    }
+
+    public MembershipManager(int alpha) {
+        if (alpha <= 0) {
+            throw new IllegalArgumentException(String.format("alpha must be positive, got %d", alpha));
+        }
+        this.alpha = alpha;
+        this.configurations = new ArrayList<>();
+    }
+
+    public boolean isExplicit() {
+        return !configurations.isEmpty();
+    }
+
+    /**
+     * Install a configuration active from the first execution, e.g. from startup flags. Every node must install the
+     * same one.
+     */
+    public void install(Set<String> members) {
+        if (isExplicit()) {
+            throw new IllegalStateException("membership already configured, change it through the log");
+        }
+        configurations.add(new Configuration(0, 1, immutableCopy(members)));
+    }
+
+    /**
+     * Record a configuration decided by executionId. Must be called in execution order.
+     */
+    public Configuration decided(long executionId, Set<String> members) {
+        Configuration configuration = new Configuration(executionId, executionId + alpha, immutableCopy(members));
+        configurations.add(configuration);
+        return configuration;
+    }
+
+    /**
+     * @return members deciding executionId, empty if no configuration is active for it yet
+     */
+    public Optional<Set<String>> membersFor(long executionId) {
+        Optional<Configuration> configuration = configurationFor(executionId);
+        return configuration.isPresent() ? Optional.of(configuration.get().getMembers()) : Optional.empty();
+    }
+
+    public Optional<Configuration> configurationFor(long executionId) {
+        for (int i = configurations.size() - 1; i >= 0; i--) {
+            if (configurations.get(i).getActiveFrom() <= executionId) {
+                return Optional.of(configurations.get(i));
+            }
+        }
+        // the first configuration is not active yet
+        return Optional.empty();
+    }
+
+    /**
+     * Highest execution this node may propose for having applied everything through appliedThrough: any later execution
+     * could belong to a configuration decided by one not applied yet.
+     */
+    public long proposableThrough(long appliedThrough) {
+        return appliedThrough + alpha;
+    }
+
+    /**
+     * Forget configurations superseded before lowWaterMark, nothing older will be asked about.
+     */
+    public void prune(long lowWaterMark) {
+        while (configurations.size() > 1 && configurations.get(1).getActiveFrom() <= lowWaterMark) {
+            configurations.remove(0);
+        }
+    }
+
+    // snapshot format: count, then per configuration decidedAt (8), activeFrom (8), members (see MembershipValue)
+    public byte[] snapshot() {
+        int length = 4;
+        for (Configuration configuration : configurations) {
+            length += 16 + MembershipValue.membersLength(configuration.getMembers());
+        }
+        ByteBuffer byteBuffer = ByteBuffer.allocate(length);
+        byteBuffer.putInt(configurations.size());
+        for (Configuration configuration : configurations) {
+            byteBuffer.putLong(configuration.getDecidedAt());
+            byteBuffer.putLong(configuration.getActiveFrom());
+            MembershipValue.writeMembers(byteBuffer, configuration.getMembers());
+        }
+        return byteBuffer.array();
+    }
+
+    public void restore(ByteBuffer snapshot) {
+        int count = snapshot.getInt();
+        List<Configuration> restored = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            long decidedAt = snapshot.getLong();
+            long activeFrom = snapshot.getLong();
+            restored.add(new Configuration(decidedAt, activeFrom, MembershipValue.readMembers(snapshot)));
+        }
+        configurations.clear();
+        configurations.addAll(restored);
+    }
+
+    private static Set<String> immutableCopy(Set<String> members) {
+        return Collections.unmodifiableSet(new TreeSet<>(members));
+    }
+}
@@ -0,0 +1,88 @@
+package dev.efaust.collab.paxos.membership;
+
+import dev.efaust.collab.paxos.ConsensusValue;
+import dev.efaust.collab.paxos.EntryKind;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Encodes a membership change as a consensus value of kind EntryKind.Membership, so configurations are decided like any
+ * other log entry:
+ *   count: 4 bytes
+ *   per member: address length (2 bytes), then the address in UTF-8
+ */
+public final class MembershipValue {
+    private MembershipValue() {
+        // static helpers only
+    }
+
+    public static ConsensusValue encode(Set<String> members) {
+        if (members.isEmpty()) {
+            throw new IllegalArgumentException("a configuration needs at least one member");
+        }
+        return ConsensusValue.wrap(toBytes(members)).withKind(EntryKind.Membership);
+    }
+
+    /**
+     * @return members, empty if value is not a well-formed membership change
+     */
+    public static Optional<Set<String>> decode(ConsensusValue value) {
+        if (value.kind() != EntryKind.Membership) {
+            return Optional.empty();
+        }
+        ByteBuffer byteBuffer = value.asReadOnlyBuffer();
+        try {
+            Set<String> members = readMembers(byteBuffer);
+            if (members.isEmpty() || byteBuffer.hasRemaining()) {
+                return Optional.empty();
+            }
+            return Optional.of(members);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    static byte[] toBytes(Set<String> members) {
+        ByteBuffer byteBuffer = ByteBuffer.allocate(membersLength(members));
+        writeMembers(byteBuffer, members);
+        return byteBuffer.array();
+    }
+
+    static void writeMembers(ByteBuffer byteBuffer, Set<String> members) {
+        byteBuffer.putInt(members.size());
+        for (String member : new TreeSet<>(members)) {
+            byte[] address = member.getBytes(StandardCharsets.UTF_8);
+            byteBuffer.putShort((short)address.length);
+            byteBuffer.put(address);
+        }
+    }
+
+    // bytes taken by writeMembers
+    static int membersLength(Set<String> members) {
+        int length = 4;
+        for (String member : members) {
+            length += 2 + member.getBytes(StandardCharsets.UTF_8).length;
+        }
+        return length;
+    }
+
+    static Set<String> readMembers(ByteBuffer byteBuffer) {
+        int count = byteBuffer.getInt();
+        if (count < 0 || count > byteBuffer.remaining() / 2) {
+            throw new IllegalArgumentException(String.format("invalid member count %d", count));
+        }
+        Set<String> members = new TreeSet<>();
+        for (int i = 0; i < count; i++) {
+            byte[] address = new byte[byteBuffer.getShort() & 0xffff];
+            byteBuffer.get(address);
+            members.add(new String(address, StandardCharsets.UTF_8));
+        }
+        return Collections.unmodifiableSet(members);
+    }
+}
@@ -1,6 +1,7 @@
 package dev.efaust.collab.paxos.messages;
 
 import dev.efaust.collab.MessageType;
+import dev.efaust.collab.paxos.ConsensusValue;
 import dev.efaust.collab.paxos.PaxosMessage;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
@@ -12,7 +13,7 @@ public class AcceptedMessage extends PaxosMessage {
     private long acceptedProposalNumber;
 
     @Getter @Setter
-    private long acceptedValue;
+    private ConsensusValue acceptedValue = ConsensusValue.EMPTY;
 
     @Override
     public MessageType getMessageType() {
@@ -21,7 +22,7 @@ public class AcceptedMessage extends PaxosMessage {
 
     @Override
     public String toString() {
-        return String.format("<Accepted src='%s' executionId='%d', N='%d' V='%d' />",
+        return String.format("<Accepted src='%s' executionId='%d', N='%d' V='%s' />",
                 getSourceAddress(), getExecutionId(), getAcceptedProposalNumber(), getAcceptedValue());
     }
 }
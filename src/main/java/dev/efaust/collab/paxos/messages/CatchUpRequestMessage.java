@@ -0,0 +1,32 @@
+package dev.efaust.collab.paxos.messages;
+
+import dev.efaust.collab.MessageType;
+import dev.efaust.collab.paxos.GroupMessage;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Sent by unicast from a node missing decided executions to a peer that has them.
+ * Not part of a single Paxos execution, so this is not a PaxosMessage, but does belong to a group.
+ */
+@EqualsAndHashCode(callSuper = true)
+public class CatchUpRequestMessage extends GroupMessage {
+    // first execution the requester has not applied
+    @Getter @Setter
+    private long fromExecutionId;
+
+    // highest execution the requester knows about
+    @Getter @Setter
+    private long toExecutionId;
+
+    @Override
+    public MessageType getMessageType() {
+        return MessageType.CatchUpRequest;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("<CatchUpRequest src='%s' from='%d' to='%d' />", getSourceAddress(), getFromExecutionId(), getToExecutionId());
+    }
+}
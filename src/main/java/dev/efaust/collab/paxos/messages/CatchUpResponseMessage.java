@@ -0,0 +1,44 @@
+package dev.efaust.collab.paxos.messages;
+
+import dev.efaust.collab.MessageType;
+import dev.efaust.collab.paxos.ConsensusValue;
+import dev.efaust.collab.paxos.GroupMessage;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One chunk of decided values for consecutive executions, sent in reply to CatchUpRequestMessage.
+ * values.get(i) was decided for execution firstExecutionId + i.
+ */
+@EqualsAndHashCode(callSuper = true)
+public class CatchUpResponseMessage extends GroupMessage {
+    @Getter @Setter
+    private long firstExecutionId;
+
+    @Getter @Setter
+    private List<ConsensusValue> values = new ArrayList<>();
+
+    // true for the final chunk of a response
+    @Getter @Setter
+    private boolean last;
+
+    // true when the responder no longer holds firstExecutionId and has no snapshot to send instead, sent as the only
+    // (empty) chunk so the requester asks someone else
+    @Getter @Setter
+    private boolean unavailable;
+
+    @Override
+    public MessageType getMessageType() {
+        return MessageType.CatchUpResponse;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("<CatchUpResponse src='%s' first='%d' count='%d' last='%b' unavailable='%b' />",
+                getSourceAddress(), getFirstExecutionId(), getValues().size(), isLast(), isUnavailable());
+    }
+}
@@ -0,0 +1,38 @@
+package dev.efaust.collab.paxos.messages;
+
+import dev.efaust.collab.MessageType;
+import dev.efaust.collab.paxos.GroupMessage;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * One chunk of a state machine snapshot, sent in reply to CatchUpRequestMessage when the requested executions are
+ * no longer held by the responder. Bytes [offset, offset + data.length) of a snapshot of totalLength bytes, taken
+ * after applying every execution up to and including snapshotExecutionId.
+ */
+@EqualsAndHashCode(callSuper = true)
+public class CatchUpSnapshotMessage extends GroupMessage {
+    @Getter @Setter
+    private long snapshotExecutionId;
+
+    @Getter @Setter
+    private int totalLength;
+
+    @Getter @Setter
+    private int offset;
+
+    @Getter @Setter
+    private byte[] data = new byte[0];
+
+    @Override
+    public MessageType getMessageType() {
+        return MessageType.CatchUpSnapshot;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("<CatchUpSnapshot src='%s' executionId='%d' offset='%d' length='%d' total='%d' />",
+                getSourceAddress(), getSnapshotExecutionId(), getOffset(), getData().length, getTotalLength());
+    }
+}
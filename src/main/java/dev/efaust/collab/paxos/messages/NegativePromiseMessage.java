@@ -1,6 +1,7 @@
 package dev.efaust.collab.paxos.messages;
 
 import dev.efaust.collab.MessageType;
+import dev.efaust.collab.paxos.ConsensusValue;
 import dev.efaust.collab.paxos.PaxosMessage;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
@@ -19,7 +20,7 @@ public class NegativePromiseMessage extends PaxosMessage {
     private long priorAcceptedProposalNumber;
 
     @Getter @Setter
-    private long priorAcceptedValue;
+    private ConsensusValue priorAcceptedValue = PromiseMessage.NO_PRIOR_ACCEPTED_VALUE;
 
     @Override
     public MessageType getMessageType() {
@@ -28,7 +29,7 @@ public class NegativePromiseMessage extends PaxosMessage {
 
     @Override
     public String toString() {
-        return String.format("<NegativePromise src='%s' executionId='%d', N='%d' priorPromisedN='%d' priorAcceptedN='%d' priorAcceptedValue='%d' />",
+        return String.format("<NegativePromise src='%s' executionId='%d', N='%d' priorPromisedN='%d' priorAcceptedN='%d' priorAcceptedValue='%s' />",
                 getSourceAddress(), getExecutionId(), getProposalNumber(), getPriorPromisedProposalNumber(), getPriorAcceptedProposalNumber(), getPriorAcceptedValue());
     }
 }
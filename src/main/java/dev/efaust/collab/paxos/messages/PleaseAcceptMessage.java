@@ -1,6 +1,7 @@
 package dev.efaust.collab.paxos.messages;
 
 import dev.efaust.collab.MessageType;
+import dev.efaust.collab.paxos.ConsensusValue;
 import dev.efaust.collab.paxos.PaxosMessage;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
@@ -12,7 +13,7 @@ public class PleaseAcceptMessage extends PaxosMessage {
     private long proposalNumberToAccept;
 
     @Getter @Setter
-    private long valueToAccept;
+    private ConsensusValue valueToAccept = ConsensusValue.EMPTY;
 
     @Override
     public MessageType getMessageType() {
@@ -21,7 +22,7 @@ public class PleaseAcceptMessage extends PaxosMessage {
 
     @Override
     public String toString() {
-        return String.format("<PleaseAccept src='%s' executionId='%d', N='%d' V='%d' />",
+        return String.format("<PleaseAccept src='%s' executionId='%d', N='%d' V='%s' />",
                 getSourceAddress(), getExecutionId(), getProposalNumberToAccept(), getValueToAccept());
     }
 }
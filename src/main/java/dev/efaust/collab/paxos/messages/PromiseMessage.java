@@ -1,6 +1,7 @@
 package dev.efaust.collab.paxos.messages;
 
 import dev.efaust.collab.MessageType;
+import dev.efaust.collab.paxos.ConsensusValue;
 import dev.efaust.collab.paxos.PaxosMessage;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
@@ -14,7 +15,7 @@ import lombok.Setter;
 public class PromiseMessage extends PaxosMessage {
     // TODO: fix this: currently these sentinel values are part of the field
     public static final long NO_PRIOR_ACCEPTED_N = -1;
-    public static final long NO_PRIOR_ACCEPTED_VALUE = -1;
+    public static final ConsensusValue NO_PRIOR_ACCEPTED_VALUE = ConsensusValue.EMPTY;
 
     @Getter @Setter
     private long promiseProposalNumber;
@@ -23,13 +24,13 @@ public class PromiseMessage extends PaxosMessage {
     private long priorAcceptedProposalNumber;
 
     @Getter @Setter
-    private long priorAcceptedValue;
+    private ConsensusValue priorAcceptedValue = NO_PRIOR_ACCEPTED_VALUE;
 
     public PromiseMessage() {
         super();
     }
 
-    public PromiseMessage(long executionId, long promiseProposalNumber, long priorAcceptedProposalNumber, long priorAcceptedValue) {
+    public PromiseMessage(long executionId, long promiseProposalNumber, long priorAcceptedProposalNumber, ConsensusValue priorAcceptedValue) {
         super(executionId);
         this.promiseProposalNumber = promiseProposalNumber;
         this.priorAcceptedProposalNumber = priorAcceptedProposalNumber;
@@ -43,7 +44,7 @@ public class PromiseMessage extends PaxosMessage {
 
     @Override
     public String toString() {
-        return String.format("<Promise src='%s' executionId='%d', promiseN='%d' priorAcceptedN='%d' priorAcceptedValue='%d' />",
+        return String.format("<Promise src='%s' executionId='%d', promiseN='%d' priorAcceptedN='%d' priorAcceptedValue='%s' />",
                 getSourceAddress(), getExecutionId(), getPromiseProposalNumber(), getPriorAcceptedProposalNumber(), getPriorAcceptedValue());
     }
 }
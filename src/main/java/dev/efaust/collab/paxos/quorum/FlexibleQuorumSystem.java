@@ -0,0 +1,82 @@
+package dev.efaust.collab.paxos.quorum;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Flexible Paxos with counting quorums: any Q1 members for Phase 1 and any Q2 members for Phase 2, where
+ * Q1 + Q2 > N guarantees every Phase 1 quorum intersects every Phase 2 quorum.
+ *
+ * N is the size of the configured voter set (see MembershipManager), not the number of voters currently alive, so
+ * it only changes through reconfiguration. When only Q2 is configured, Q1 is derived as N - Q2 + 1. Sizes are never
+ * shrunk to fit: if a quorum of the configured size cannot exist among N members, or too few members respond, no
+ * quorum is formed.
+ */
+public class FlexibleQuorumSystem implements QuorumSystem {
+    private static final Logger log = LogManager.getLogger(FlexibleQuorumSystem.class);
+
+    private static final int DERIVED = -1;
+
+    private final int phase1Size;
+    private final int phase2Size;
+    // whether the sizes work for N configured members, by N: checked and warned about once per configuration size
+    // rather than on every quorum check. Shared by every group's thread
+    private final Map<Integer, Boolean> validForSize;
+
+    public FlexibleQuorumSystem(int phase1Size, int phase2Size) {
+        if ((phase1Size <= 0 && phase1Size != DERIVED) || phase2Size <= 0) {
+            throw new IllegalArgumentException(String.format("quorum sizes must be positive, got Q1=%d Q2=%d",
+                    phase1Size, phase2Size));
+        }
+        this.phase1Size = phase1Size;
+        this.phase2Size = phase2Size;
+        this.validForSize = new ConcurrentHashMap<>();
+    }
+
+    public static FlexibleQuorumSystem forPhase2Size(int phase2Size) {
+        return new FlexibleQuorumSystem(DERIVED, phase2Size);
+    }
+
+    int phase1Size(int n) {
+        return phase1Size == DERIVED ? n - phase2Size + 1 : phase1Size;
+    }
+
+    private boolean valid(int n) {
+        return validForSize.computeIfAbsent(n, this::validate);
+    }
+
+    private boolean validate(int n) {
+        if (phase1Size(n) <= 0 || phase1Size(n) > n || phase2Size > n) {
+            log.warn("quorum sizes Q1={} Q2={} do not fit {} configured members, refusing to form a quorum",
+                    phase1Size(n), phase2Size, n);
+            return false;
+        }
+        if (phase1Size(n) + phase2Size > n) {
+            return true;
+        }
+        log.warn("quorum sizes Q1={} Q2={} do not intersect for {} members, refusing to form a quorum",
+                phase1Size(n), phase2Size, n);
+        return false;
+    }
+
+    @Override
+    public boolean isPhase1Quorum(Set<String> members, Set<String> responded) {
+        int n = members.size();
+        return n > 0 && valid(n) && QuorumSystem.countMembers(members, responded) >= phase1Size(n);
+    }
+
+    @Override
+    public boolean isPhase2Quorum(Set<String> members, Set<String> responded) {
+        int n = members.size();
+        return n > 0 && valid(n) && QuorumSystem.countMembers(members, responded) >= phase2Size;
+    }
+
+    @Override
+    public String toString() {
+        return phase1Size == DERIVED ? String.format("flexible:%d", phase2Size) : String.format("flexible:%d,%d", phase1Size, phase2Size);
+    }
+}
@@ -0,0 +1,71 @@
+package dev.efaust.collab.paxos.quorum;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Grid quorums: members are sorted and laid out row by row in a grid with a fixed number of columns.
+ *   Phase 1 quorum: every member of some column
+ *   Phase 2 quorum: every member of some complete row
+ *
+ * A complete row has a member in every column, so it intersects every column. The last row may be partial; it is
+ * only usable for Phase 2 when it is the only row. For an R x C grid quorums are R and C nodes instead of a majority,
+ * e.g. 9 nodes in a 3 x 3 grid need 3 responses per phase instead of 5.
+ */
+public class GridQuorumSystem implements QuorumSystem {
+    private final int columns;
+
+    public GridQuorumSystem(int columns) {
+        if (columns <= 0) {
+            throw new IllegalArgumentException(String.format("columns must be positive, got %d", columns));
+        }
+        this.columns = columns;
+    }
+
+    private List<String> layout(Set<String> members) {
+        List<String> sorted = new ArrayList<>(members);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    @Override
+    public boolean isPhase1Quorum(Set<String> members, Set<String> responded) {
+        List<String> grid = layout(members);
+        int usedColumns = Math.min(columns, grid.size());
+        for (int column = 0; column < usedColumns; column++) {
+            boolean complete = true;
+            for (int i = column; i < grid.size() && complete; i += columns) {
+                complete = responded.contains(grid.get(i));
+            }
+            if (complete) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isPhase2Quorum(Set<String> members, Set<String> responded) {
+        List<String> grid = layout(members);
+        if (grid.isEmpty()) {
+            return false;
+        }
+        if (grid.size() <= columns) {
+            // single row
+            return responded.containsAll(grid);
+        }
+        for (int rowStart = 0; rowStart + columns <= grid.size(); rowStart += columns) {
+            if (responded.containsAll(grid.subList(rowStart, rowStart + columns))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("grid:%d", columns);
+    }
+}
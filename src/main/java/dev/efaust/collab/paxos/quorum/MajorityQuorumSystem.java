@@ -0,0 +1,27 @@
+package dev.efaust.collab.paxos.quorum;
+
+import java.util.Set;
+
+/**
+ * Classic Paxos: both phases need more than half of the members.
+ */
+public class MajorityQuorumSystem implements QuorumSystem {
+    @Override
+    public boolean isPhase1Quorum(Set<String> members, Set<String> responded) {
+        return isMajority(members, responded);
+    }
+
+    @Override
+    public boolean isPhase2Quorum(Set<String> members, Set<String> responded) {
+        return isMajority(members, responded);
+    }
+
+    private boolean isMajority(Set<String> members, Set<String> responded) {
+        return QuorumSystem.countMembers(members, responded) * 2 > members.size();
+    }
+
+    @Override
+    public String toString() {
+        return "majority";
+    }
+}
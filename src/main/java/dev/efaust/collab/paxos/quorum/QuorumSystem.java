@@ -0,0 +1,58 @@
+package dev.efaust.collab.paxos.quorum;
+
+import java.util.Set;
+
+/**
+ * Decides which sets of acceptors form a quorum for each phase of Paxos.
+ *
+ * Safety only requires that every Phase 1 (prepare/promise) quorum intersects every Phase 2 (accept/accepted) quorum
+ * (Flexible Paxos, Howard et al. 2016). Phase 1 quorums do not need to intersect each other, and neither do Phase 2
+ * quorums, so with a stable proposer the frequent Phase 2 can use small quorums.
+ *
+ * members: the configured voters deciding this execution, all of them whether alive or not. responded: nodes that
+ * replied, may include non-members, implementations must only count members.
+ */
+public interface QuorumSystem {
+    boolean isPhase1Quorum(Set<String> members, Set<String> responded);
+
+    boolean isPhase2Quorum(Set<String> members, Set<String> responded);
+
+    /**
+     * Parses a quorum system from a command line spec:
+     *   majority               - simple majority for both phases
+     *   flexible:Q2            - Phase 2 quorum of Q2 nodes, Phase 1 quorum of N - Q2 + 1 nodes
+     *   flexible:Q1,Q2         - fixed quorum sizes, requires Q1 + Q2 > N
+     *   grid:COLUMNS           - acceptors laid out in rows of COLUMNS nodes (see GridQuorumSystem)
+     */
+    static QuorumSystem fromSpec(String spec) {
+        String[] parts = spec.trim().split(":", 2);
+        String type = parts[0];
+        try {
+            if ("majority".equals(type) && parts.length == 1) {
+                return new MajorityQuorumSystem();
+            } else if ("flexible".equals(type) && parts.length == 2) {
+                String[] sizes = parts[1].split(",");
+                if (sizes.length == 1) {
+                    return FlexibleQuorumSystem.forPhase2Size(Integer.parseInt(sizes[0].trim()));
+                } else if (sizes.length == 2) {
+                    return new FlexibleQuorumSystem(Integer.parseInt(sizes[0].trim()), Integer.parseInt(sizes[1].trim()));
+                }
+            } else if ("grid".equals(type) && parts.length == 2) {
+                return new GridQuorumSystem(Integer.parseInt(parts[1].trim()));
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("invalid quorum spec '%s'", spec), e);
+        }
+        throw new IllegalArgumentException(String.format("invalid quorum spec '%s'", spec));
+    }
+
+    static int countMembers(Set<String> members, Set<String> responded) {
+        int count = 0;
+        for (String node : responded) {
+            if (members.contains(node)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
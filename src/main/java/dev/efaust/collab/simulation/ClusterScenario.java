@@ -0,0 +1,95 @@
+package dev.efaust.collab.simulation;
+
+import dev.efaust.collab.paxos.ConsensusValue;
+import dev.efaust.collab.paxos.Decision;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A cluster under a lossy network, proposing from random nodes, sometimes with a minority partitioned off for a while.
+ * Checked with SafetyChecks once every proposal has finished; a proposal that never finishes is a violation too.
+ */
+public class ClusterScenario implements SimulationRunner.Scenario {
+    // let heartbeats go round so every node counts its peers alive
+    private static final long WARMUP_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Getter @Setter
+    private int nodes = 5;
+
+    @Getter @Setter
+    private int proposals = 100;
+
+    @Getter @Setter
+    private long proposalIntervalNanos = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Getter @Setter
+    private double lossRate = 0.05;
+
+    // chance that a minority is partitioned off while proposing
+    @Getter @Setter
+    private double partitionProbability = 0.5;
+
+    // partitions last a random time in [minPartitionNanos, maxPartitionNanos); the longer ones outlast failure
+    // detection (about 10s with the default heartbeat interval), so each side suspects the other
+    @Getter @Setter
+    private long minPartitionNanos = TimeUnit.MILLISECONDS.toNanos(500);
+
+    @Getter @Setter
+    private long maxPartitionNanos = TimeUnit.SECONDS.toNanos(30);
+
+    // limit on virtual time for every proposal to finish
+    @Getter @Setter
+    private long maxNanos = TimeUnit.SECONDS.toNanos(60);
+
+    @Override
+    public SimulationResult run(long seed) {
+        NetworkSimulator simulator = new NetworkSimulator(seed);
+        // the scenario's own choices, kept apart from the simulator's so either can change without shifting the other
+        Random random = new Random(~seed);
+        simulator.setDefaultLink(LinkModel.lossyLan(lossRate));
+        List<String> addresses = new ArrayList<>();
+        for (int i = 0; i < nodes; i++) {
+            addresses.add(String.format("node%d", i));
+            simulator.addNode(addresses.get(i));
+        }
+        simulator.installMembers();
+        simulator.run(WARMUP_NANOS);
+
+        long healedAt = simulator.now();
+        if (random.nextDouble() < partitionProbability) {
+            List<String> shuffled = new ArrayList<>(addresses);
+            Collections.shuffle(shuffled, random);
+            Set<String> minority = new HashSet<>(shuffled.subList(0, random.nextInt((nodes - 1) / 2 + 1)));
+            long at = (long)(random.nextDouble() * proposals * proposalIntervalNanos);
+            long length = minPartitionNanos + (long)(random.nextDouble() * (maxPartitionNanos - minPartitionNanos));
+            simulator.schedule(at, () -> simulator.partition(minority));
+            simulator.schedule(at + length, simulator::heal);
+            healedAt = simulator.now() + at + length;
+        }
+
+        List<CompletableFuture<Decision>> futures = new ArrayList<>();
+        for (int i = 0; i < proposals; i++) {
+            String proposer = addresses.get(random.nextInt(nodes));
+            ConsensusValue value = ConsensusValue.wrap(String.format("%d-%d", seed, i).getBytes(StandardCharsets.UTF_8));
+            simulator.schedule(i * proposalIntervalNanos, () -> futures.add(simulator.propose(proposer, value)));
+        }
+
+        long start = simulator.now();
+        // run through the heal too, so the checks also cover the minority catching up
+        long heal = healedAt;
+        simulator.runUntil(() -> futures.size() == proposals && futures.stream().allMatch(CompletableFuture::isDone)
+                && simulator.now() >= heal, maxNanos);
+        List<String> violations = SafetyChecks.check(simulator, futures);
+        long pending = proposals - futures.stream().filter(CompletableFuture::isDone).count();
+        if (pending > 0) {
+            violations.add(String.format("liveness: %d proposals not finished after %d ms", pending,
+                    TimeUnit.NANOSECONDS.toMillis(maxNanos)));
+        }
+        return new SimulationResult(seed, violations, simulator.getStats(), simulator.now() - start);
+    }
+}
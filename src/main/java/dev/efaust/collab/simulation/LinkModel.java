@@ -0,0 +1,55 @@
+package dev.efaust.collab.simulation;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Behaviour of a simulated one way link.
+ *
+ * Latency is baseLatencyNanos plus exponentially distributed jitter with mean jitterNanos. Each message is
+ * independently dropped, duplicated, or held back by up to reorderDelayNanos (so later messages overtake it), with the
+ * given probabilities.
+ */
+public class LinkModel {
+    @Getter @Setter
+    private long baseLatencyNanos;
+    @Getter @Setter
+    private long jitterNanos;
+    @Getter @Setter
+    private double dropProbability;
+    @Getter @Setter
+    private double duplicateProbability;
+    @Getter @Setter
+    private double reorderProbability;
+    @Getter @Setter
+    private long reorderDelayNanos;
+
+    /**
+     * Switched LAN: 100us latency, 50us mean jitter, nothing lost.
+     */
+    public static LinkModel lan() {
+        LinkModel link = new LinkModel();
+        link.setBaseLatencyNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        link.setJitterNanos(TimeUnit.MICROSECONDS.toNanos(50));
+        link.setReorderDelayNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        return link;
+    }
+
+    /**
+     * LAN that loses, duplicates and reorders lossRate of messages each.
+     */
+    public static LinkModel lossyLan(double lossRate) {
+        LinkModel link = lan();
+        link.setDropProbability(lossRate);
+        link.setDuplicateProbability(lossRate);
+        link.setReorderProbability(lossRate);
+        return link;
+    }
+
+    long sampleLatencyNanos(Random random) {
+        return baseLatencyNanos + (long)(-Math.log(1.0 - random.nextDouble()) * jitterNanos);
+    }
+}
@@ -0,0 +1,348 @@
+package dev.efaust.collab.simulation;
+
+import dev.efaust.collab.liveness.HeartbeatMessage;
+import dev.efaust.collab.messaging.InMemoryMessagingLayer;
+import dev.efaust.collab.messaging.Message;
+import dev.efaust.collab.messaging.MessageHistorySink;
+import dev.efaust.collab.paxos.ConsensusValue;
+import dev.efaust.collab.paxos.Decision;
+import dev.efaust.collab.paxos.PaxosActor;
+import dev.efaust.collab.paxos.PaxosNode;
+import dev.efaust.collab.trace.EventTracer;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Seeded discrete-event simulation of PaxosNodes on a lossy network, in virtual time.
+ *
+ * Every node is a real PaxosNode on an InMemoryMessagingLayer, with the simulator's clock as its nanoTime and a Random
+ * drawn from the seed. Whatever a node sends is picked up as soon as it has run and becomes delivery events, delayed,
+ * dropped, duplicated or reordered by the link's LinkModel, or lost between partitions. A node only runs when an event
+ * is due for it: a delivery, its timer tick, its heartbeat or a scheduled action. The same seed replays the same run,
+ * event for event, however fast the host is.
+ *
+ * Single-threaded.
+ */
+public class NetworkSimulator {
+    // how often each node's timers are run, matches the tick of its timer wheel
+    public static final long TIMER_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    public static final long HEARTBEAT_PERIOD_NANOS = TimeUnit.SECONDS.toNanos(3);
+    // per simulation, so simulations running in parallel do not contend on the process wide tracer
+    private static final int TRACE_CAPACITY = 1024;
+
+    private static class Event implements Comparable<Event> {
+        final long time;
+        // breaks ties in scheduling order, keeps runs deterministic
+        final long sequence;
+        final Runnable action;
+
+        Event(long time, long sequence, Runnable action) {
+            this.time = time;
+            this.sequence = sequence;
+            this.action = action;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            int byTime = Long.compare(time, other.time);
+            return byTime != 0 ? byTime : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private static class SimulatedNode {
+        final PaxosNode node;
+        final InMemoryMessagingLayer messagingLayer;
+
+        SimulatedNode(PaxosNode node, InMemoryMessagingLayer messagingLayer) {
+            this.node = node;
+            this.messagingLayer = messagingLayer;
+        }
+    }
+
+    private final Random random;
+    private final PriorityQueue<Event> events;
+    private long eventSequence;
+    private long now;
+
+    private final Map<String, SimulatedNode> nodes;
+    // per direction overrides of defaultLink, keyed by source then destination
+    private final Map<String, Map<String, LinkModel>> links;
+    // cut off from every node outside the set, until heal
+    private final Set<String> partitioned;
+    private final Set<String> crashed;
+    private final EventTracer tracer;
+
+    @Getter @Setter
+    private LinkModel defaultLink;
+
+    // records every delivery if set, nothing is kept by default
+    @Getter @Setter
+    private MessageHistorySink historySink;
+
+    @Getter
+    private final SimulationStats stats;
+
+    public NetworkSimulator(long seed) {
+        this.random = new Random(seed);
+        this.events = new PriorityQueue<>();
+        this.nodes = new LinkedHashMap<>();
+        this.links = new HashMap<>();
+        this.partitioned = new HashSet<>();
+        this.crashed = new HashSet<>();
+        this.tracer = new EventTracer(TRACE_CAPACITY);
+        this.defaultLink = LinkModel.lan();
+        this.stats = new SimulationStats();
+    }
+
+    /**
+     * Virtual time, the nanoTime of every simulated node.
+     */
+    public long now() {
+        return now;
+    }
+
+    /**
+     * Add a node that starts heartbeating and running its timers right away.
+     */
+    public PaxosNode addNode(String address) {
+        if (nodes.containsKey(address)) {
+            throw new IllegalArgumentException(String.format("node %s already added", address));
+        }
+        InMemoryMessagingLayer messagingLayer = new InMemoryMessagingLayer(address);
+        PaxosNode node = new PaxosNode(address, messagingLayer, this::now, new Random(random.nextLong()));
+        node.setTracer(tracer);
+        nodes.put(address, new SimulatedNode(node, messagingLayer));
+        schedule(0, () -> heartbeat(address));
+        // spread timer ticks so nodes do not all run at the same instant
+        schedule(1 + (long)(random.nextDouble() * TIMER_TICK_NANOS), () -> tick(address));
+        return node;
+    }
+
+    /**
+     * Install the nodes added so far as the voters of every one of them. Nothing is decided before this is called.
+     */
+    public void installMembers() {
+        for (SimulatedNode simulatedNode : nodes.values()) {
+            simulatedNode.node.getMembership().install(nodes.keySet());
+        }
+    }
+
+    public PaxosNode getNode(String address) {
+        return simulatedNode(address).node;
+    }
+
+    public Set<String> getAddresses() {
+        return Collections.unmodifiableSet(nodes.keySet());
+    }
+
+    public void setLink(String source, String destination, LinkModel link) {
+        links.computeIfAbsent(source, (address) -> new HashMap<>()).put(destination, link);
+    }
+
+    /**
+     * Cut side off from every other node, in both directions. Messages already in flight still arrive.
+     */
+    public void partition(Set<String> side) {
+        partitioned.clear();
+        partitioned.addAll(side);
+    }
+
+    public void heal() {
+        partitioned.clear();
+    }
+
+    /**
+     * Stop running address, messages to and from it are lost from now on.
+     */
+    public void crash(String address) {
+        simulatedNode(address);
+        crashed.add(address);
+    }
+
+    /**
+     * Run action at now + delayNanos.
+     */
+    public void schedule(long delayNanos, Runnable action) {
+        if (delayNanos < 0) {
+            throw new IllegalArgumentException(String.format("delay must not be negative, got %d", delayNanos));
+        }
+        events.add(new Event(now + delayNanos, eventSequence++, action));
+    }
+
+    /**
+     * Run task against the node at address, then put whatever it sent on the network.
+     */
+    public <T> Optional<T> runOn(String address, PaxosActor.Task<T> task) {
+        SimulatedNode simulatedNode = simulatedNode(address);
+        if (crashed.contains(address)) {
+            return Optional.empty();
+        }
+        T result;
+        try {
+            result = task.run(simulatedNode.node);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        transmit(address, simulatedNode);
+        return Optional.ofNullable(result);
+    }
+
+    /**
+     * Propose value at the node at address now, recording its latency in stats once decided.
+     */
+    public CompletableFuture<Decision> propose(String address, ConsensusValue value) {
+        long proposedAt = now;
+        CompletableFuture<Decision> future = getNode(address).propose(value);
+        future.whenComplete((decision, e) -> {
+            if (e == null) {
+                stats.decided(now - proposedAt);
+            } else {
+                stats.failed();
+            }
+        });
+        // the proposal goes out when the node flushes, as it would on its actor thread
+        runOn(address, (node) -> {
+            node.receiveMessages();
+            return null;
+        });
+        return future;
+    }
+
+    /**
+     * Process every event due within the next durationNanos, then move the clock to the end of that time.
+     */
+    public void run(long durationNanos) {
+        long end = now + durationNanos;
+        while (!events.isEmpty() && events.peek().time <= end) {
+            Event event = events.poll();
+            now = event.time;
+            event.action.run();
+        }
+        now = end;
+    }
+
+    /**
+     * Process events until condition holds, for at most maxNanos.
+     * @return true if condition holds
+     */
+    public boolean runUntil(BooleanSupplier condition, long maxNanos) {
+        long end = now + maxNanos;
+        while (!condition.getAsBoolean()) {
+            if (events.isEmpty() || events.peek().time > end) {
+                now = Math.max(now, end);
+                return false;
+            }
+            Event event = events.poll();
+            now = event.time;
+            event.action.run();
+        }
+        return true;
+    }
+
+    private void heartbeat(String address) {
+        runOn(address, (node) -> {
+            node.sendMessage(new HeartbeatMessage());
+            return null;
+        });
+        schedule(HEARTBEAT_PERIOD_NANOS, () -> heartbeat(address));
+    }
+
+    private void tick(String address) {
+        runOn(address, (node) -> {
+            node.processTimers();
+            return null;
+        });
+        schedule(TIMER_TICK_NANOS, () -> tick(address));
+    }
+
+    private void deliver(String destination, Message message) {
+        if (crashed.contains(destination)) {
+            stats.dropped();
+            return;
+        }
+        stats.delivered();
+        if (historySink != null) {
+            try {
+                historySink.record(message.getSourceAddress(), destination, message);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        SimulatedNode simulatedNode = simulatedNode(destination);
+        simulatedNode.messagingLayer.getReceiveQueue().add(message);
+        runOn(destination, (node) -> {
+            node.receiveMessages();
+            return null;
+        });
+    }
+
+    // turns everything in the node's send queue into delivery events
+    private void transmit(String source, SimulatedNode simulatedNode) {
+        Message message;
+        while ((message = simulatedNode.messagingLayer.getSendQueue().poll()) != null) {
+            Message sentMessage = copyFrom(source, message);
+            for (String destination : nodes.keySet()) {
+                if (sentMessage.getDestinationAddress() != null && !sentMessage.getDestinationAddress().equals(destination)) {
+                    continue;
+                }
+                stats.sent();
+                if (destination.equals(source)) {
+                    // multicast loopback, never lost
+                    schedule(0, () -> deliver(destination, sentMessage));
+                    continue;
+                }
+                if (partitioned.contains(source) != partitioned.contains(destination)) {
+                    stats.dropped();
+                    continue;
+                }
+                LinkModel link = linkFor(source, destination);
+                if (random.nextDouble() < link.getDropProbability()) {
+                    stats.dropped();
+                    continue;
+                }
+                long delay = link.sampleLatencyNanos(random);
+                if (random.nextDouble() < link.getReorderProbability()) {
+                    delay += (long)(random.nextDouble() * link.getReorderDelayNanos());
+                }
+                schedule(delay, () -> deliver(destination, sentMessage));
+                if (random.nextDouble() < link.getDuplicateProbability()) {
+                    stats.duplicated();
+                    schedule(link.sampleLatencyNanos(random), () -> deliver(destination, sentMessage));
+                }
+            }
+        }
+    }
+
+    private LinkModel linkFor(String source, String destination) {
+        Map<String, LinkModel> fromSource = links.get(source);
+        LinkModel link = fromSource == null ? null : fromSource.get(destination);
+        return link == null ? defaultLink : link;
+    }
+
+    // like InMemoryInterconnect, every receiver shares one copy stamped with the sender's address
+    private static Message copyFrom(String source, Message message) {
+        Message sentMessage;
+        try {
+            sentMessage = (Message)message.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+        sentMessage.setSourceAddress(source);
+        return sentMessage;
+    }
+
+    private SimulatedNode simulatedNode(String address) {
+        SimulatedNode simulatedNode = nodes.get(address);
+        if (simulatedNode == null) {
+            throw new IllegalArgumentException(String.format("no node %s", address));
+        }
+        return simulatedNode;
+    }
+}
@@ -0,0 +1,78 @@
+package dev.efaust.collab.simulation;
+
+import dev.efaust.collab.paxos.ConsensusValue;
+import dev.efaust.collab.paxos.Decision;
+import dev.efaust.collab.paxos.ExecutionState;
+import dev.efaust.collab.paxos.PaxosNode;
+import dev.efaust.collab.paxos.batch.ValueBatch;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Consensus safety properties, checked against the nodes of a finished simulation.
+ */
+public final class SafetyChecks {
+    private SafetyChecks() {
+        // static helpers only
+    }
+
+    /**
+     * Checks that:
+     * - agreement: no two nodes decided different values for one execution,
+     * - integrity: no proposed value was decided more than once,
+     * - validity: every proposal reported decided is in the value decided for its execution.
+     * @return one description per violation, empty if there are none
+     */
+    public static List<String> check(NetworkSimulator simulator, List<CompletableFuture<Decision>> proposals) {
+        List<String> violations = new ArrayList<>();
+        Map<Long, ConsensusValue> log = new HashMap<>();
+        long maxExecutionId = 0;
+        for (String address : simulator.getAddresses()) {
+            maxExecutionId = Math.max(maxExecutionId, simulator.getNode(address).getNextExecutionId());
+        }
+        for (long executionId = 1; executionId < maxExecutionId; executionId++) {
+            for (String address : simulator.getAddresses()) {
+                PaxosNode node = simulator.getNode(address);
+                ExecutionState state = node.getExecutionState(executionId);
+                if (state == null || !state.getDecidedValueOptional().isPresent()) {
+                    continue;
+                }
+                ConsensusValue value = state.getDecidedValueOptional().get();
+                ConsensusValue agreed = log.putIfAbsent(executionId, value);
+                if (agreed != null && !agreed.equals(value)) {
+                    violations.add(String.format("agreement: execution %d decided %s at %s but %s elsewhere",
+                            executionId, value, address, agreed));
+                }
+            }
+        }
+
+        Map<ConsensusValue, Long> decidedAt = new HashMap<>();
+        for (Map.Entry<Long, ConsensusValue> entry : new TreeMap<>(log).entrySet()) {
+            for (ConsensusValue value : values(entry.getValue())) {
+                Long earlier = decidedAt.putIfAbsent(value, entry.getKey());
+                if (earlier != null) {
+                    violations.add(String.format("integrity: %s decided by execution %d and again by %d", value,
+                            earlier, entry.getKey()));
+                }
+            }
+        }
+
+        for (CompletableFuture<Decision> proposal : proposals) {
+            if (!proposal.isDone() || proposal.isCompletedExceptionally()) {
+                continue;
+            }
+            Decision decision = proposal.join();
+            ConsensusValue decided = log.get(decision.getExecutionId());
+            if (decided == null || !values(decided).contains(decision.getValue())) {
+                violations.add(String.format("validity: %s reported decided by execution %d, which decided %s",
+                        decision.getValue(), decision.getExecutionId(), decided));
+            }
+        }
+        return violations;
+    }
+
+    private static List<ConsensusValue> values(ConsensusValue decided) {
+        return ValueBatch.decode(decided).orElse(Collections.singletonList(decided));
+    }
+}
@@ -0,0 +1,77 @@
+package dev.efaust.collab.simulation;
+
+import lombok.Getter;
+
+import java.util.*;
+
+/**
+ * Totals over many seeded simulations: statistics summed across runs and the violations of every failing seed.
+ */
+public class SimulationReport {
+    @Getter
+    private int runs;
+
+    @Getter
+    private final SimulationStats stats;
+
+    // virtual time summed over runs
+    @Getter
+    private long elapsedNanos;
+
+    // seed -> violations, in seed order
+    private final SortedMap<Long, List<String>> failures;
+
+    public SimulationReport() {
+        this.stats = new SimulationStats();
+        this.failures = new TreeMap<>();
+    }
+
+    void add(SimulationResult result) {
+        runs++;
+        stats.merge(result.getStats());
+        elapsedNanos += result.getElapsedNanos();
+        if (!result.getViolations().isEmpty()) {
+            failures.put(result.getSeed(), result.getViolations());
+        }
+    }
+
+    void merge(SimulationReport other) {
+        runs += other.runs;
+        stats.merge(other.stats);
+        elapsedNanos += other.elapsedNanos;
+        failures.putAll(other.failures);
+    }
+
+    public boolean isPassed() {
+        return failures.isEmpty();
+    }
+
+    /**
+     * Seeds to reproduce with SimulationRunner.run(scenario, seed), lowest first.
+     */
+    public Set<Long> getFailingSeeds() {
+        return Collections.unmodifiableSet(failures.keySet());
+    }
+
+    public List<String> getViolations(long seed) {
+        return failures.getOrDefault(seed, Collections.emptyList());
+    }
+
+    /**
+     * Decisions per second of virtual time, over all runs.
+     */
+    public double decisionsPerSecond() {
+        return stats.decisionsPerSecond(elapsedNanos);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%d runs, %d failed, %.1f decisions/s, %s", runs, failures.size(),
+                decisionsPerSecond(), stats));
+        for (Map.Entry<Long, List<String>> failure : failures.entrySet()) {
+            sb.append(String.format("%nseed %d: %s", failure.getKey(), failure.getValue()));
+        }
+        return sb.toString();
+    }
+}
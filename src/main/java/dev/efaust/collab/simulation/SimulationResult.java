@@ -0,0 +1,18 @@
+package dev.efaust.collab.simulation;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Outcome of one seeded simulation.
+ */
+@Value
+public class SimulationResult {
+    long seed;
+    // empty if the run was correct
+    List<String> violations;
+    SimulationStats stats;
+    // virtual time the run took
+    long elapsedNanos;
+}
@@ -0,0 +1,100 @@
+package dev.efaust.collab.simulation;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Runs many independent seeded simulations in parallel on a ForkJoinPool and aggregates their results.
+ *
+ * Every simulation is single-threaded and shares nothing with the others, so runs scale with cores. A seed range is
+ * split in halves down to small chunks that idle workers steal; each chunk builds its own SimulationReport and the
+ * halves are merged on the way back up, so the report is the same however the work was scheduled. A failing seed is
+ * reproduced, event for event, by running that seed alone.
+ */
+public class SimulationRunner {
+    private static Logger log = LogManager.getLogger(SimulationRunner.class);
+
+    // seeds run one after another by a single task, enough to outweigh the cost of forking
+    private static final int SEEDS_PER_TASK = 8;
+
+    /**
+     * One simulation, fully determined by its seed.
+     */
+    @FunctionalInterface
+    public interface Scenario {
+        SimulationResult run(long seed);
+    }
+
+    private final ForkJoinPool pool;
+
+    public SimulationRunner() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public SimulationRunner(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Run scenario once for each seed in [firstSeed, firstSeed + count).
+     */
+    public SimulationReport run(Scenario scenario, long firstSeed, int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException(String.format("count must not be negative, got %d", count));
+        }
+        long start = System.nanoTime();
+        SimulationReport report = pool.invoke(new SeedRange(scenario, firstSeed, firstSeed + count));
+        log.info("{} simulations in {} ms, failing seeds {}", count, (System.nanoTime() - start) / 1_000_000,
+                report.getFailingSeeds());
+        return report;
+    }
+
+    /**
+     * Run scenario for a single seed, e.g. to reproduce a failure from a report. A scenario that throws is a violation.
+     */
+    public static SimulationResult run(Scenario scenario, long seed) {
+        try {
+            return scenario.run(seed);
+        } catch (RuntimeException | AssertionError e) {
+            return new SimulationResult(seed, Collections.singletonList(String.format("exception: %s", e)),
+                    new SimulationStats(), 0);
+        }
+    }
+
+    private static class SeedRange extends RecursiveTask<SimulationReport> {
+        private static final long serialVersionUID = 1L;
+
+        private final Scenario scenario;
+        private final long from;
+        private final long to;
+
+        SeedRange(Scenario scenario, long from, long to) {
+            this.scenario = scenario;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected SimulationReport compute() {
+            if (to - from <= SEEDS_PER_TASK) {
+                SimulationReport report = new SimulationReport();
+                for (long seed = from; seed < to; seed++) {
+                    report.add(run(scenario, seed));
+                }
+                return report;
+            }
+            long middle = from + (to - from) / 2;
+            SeedRange low = new SeedRange(scenario, from, middle);
+            low.fork();
+            SimulationReport report = new SeedRange(scenario, middle, to).compute();
+            // merge in seed order so latencies, and so percentiles, do not depend on scheduling
+            SimulationReport lowReport = low.join();
+            lowReport.merge(report);
+            return lowReport;
+        }
+    }
+}
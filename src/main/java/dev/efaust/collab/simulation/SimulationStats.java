@@ -0,0 +1,115 @@
+package dev.efaust.collab.simulation;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counters and proposal latencies of one simulation run, all in virtual time.
+ */
+public class SimulationStats {
+    // messages handed to the network, deliveries made, and losses to drops, partitions or crashed nodes
+    @Getter
+    private long sent;
+    @Getter
+    private long delivered;
+    @Getter
+    private long dropped;
+    @Getter
+    private long duplicated;
+    // proposals that failed, e.g. timed out
+    @Getter
+    private long failed;
+
+    private long[] latencies = new long[1024];
+    private int decided;
+    private boolean sorted = true;
+
+    void sent() {
+        sent++;
+    }
+
+    void delivered() {
+        delivered++;
+    }
+
+    void dropped() {
+        dropped++;
+    }
+
+    void duplicated() {
+        duplicated++;
+    }
+
+    void failed() {
+        failed++;
+    }
+
+    void decided(long latencyNanos) {
+        if (decided == latencies.length) {
+            latencies = Arrays.copyOf(latencies, decided * 2);
+        }
+        latencies[decided++] = latencyNanos;
+        sorted = false;
+    }
+
+    /**
+     * Add other's counters and latencies to these, e.g. to summarize many runs.
+     */
+    void merge(SimulationStats other) {
+        sent += other.sent;
+        delivered += other.delivered;
+        dropped += other.dropped;
+        duplicated += other.duplicated;
+        failed += other.failed;
+        if (decided + other.decided > latencies.length) {
+            latencies = Arrays.copyOf(latencies, Math.max(latencies.length * 2, decided + other.decided));
+        }
+        System.arraycopy(other.latencies, 0, latencies, decided, other.decided);
+        decided += other.decided;
+        sorted = false;
+    }
+
+    /**
+     * @return proposals decided
+     */
+    public int getDecided() {
+        return decided;
+    }
+
+    public double decisionsPerSecond(long elapsedNanos) {
+        return decided * (double)TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    /**
+     * @param percentile 0 to 100, e.g. 99 for p99
+     * @return latency from propose to decision at that percentile, nearest rank
+     */
+    public long latencyPercentileNanos(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException(String.format("percentile must be within [0, 100], got %f", percentile));
+        }
+        if (decided == 0) {
+            throw new IllegalStateException("nothing decided");
+        }
+        if (!sorted) {
+            Arrays.sort(latencies, 0, decided);
+            sorted = true;
+        }
+        int rank = (int)Math.ceil(percentile / 100 * decided);
+        return latencies[Math.max(rank, 1) - 1];
+    }
+
+    @Override
+    public String toString() {
+        if (decided == 0) {
+            return String.format("sent %d delivered %d dropped %d duplicated %d, nothing decided, %d failed",
+                    sent, delivered, dropped, duplicated, failed);
+        }
+        return String.format("sent %d delivered %d dropped %d duplicated %d, decided %d failed %d, latency p50 %dus p99 %dus",
+                sent, delivered, dropped, duplicated, decided, failed,
+                TimeUnit.NANOSECONDS.toMicros(latencyPercentileNanos(50)),
+                TimeUnit.NANOSECONDS.toMicros(latencyPercentileNanos(99)));
+    }
+}
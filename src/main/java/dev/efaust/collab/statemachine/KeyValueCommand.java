@@ -0,0 +1,51 @@
+package dev.efaust.collab.statemachine;
+
+import dev.efaust.collab.paxos.ConsensusValue;
+
+/**
+ * Encodes key-value commands into a single 8 byte consensus value, read as a big-endian long:
+ *   upper 8 bits: operation
+ *   next 24 bits: key
+ *   lower 32 bits: value (ignored for delete)
+ * Values of any other length are not key-value commands, op returns 0 for them.
+ */
+public final class KeyValueCommand {
+    public static final int OP_PUT = 1;
+    public static final int OP_DELETE = 2;
+
+    public static final int MAX_KEY = (1 << 24) - 1;
+
+    private KeyValueCommand() {
+        // static helpers only
+    }
+
+    public static ConsensusValue put(int key, int value) {
+        return encode(OP_PUT, key, value);
+    }
+
+    public static ConsensusValue delete(int key) {
+        return encode(OP_DELETE, key, 0);
+    }
+
+    private static ConsensusValue encode(int op, int key, int value) {
+        if (key < 0 || key > MAX_KEY) {
+            throw new IllegalArgumentException(String.format("key out of range: %d", key));
+        }
+        return ConsensusValue.of(((long)op << 56) | ((long)key << 32) | (value & 0xffffffffL));
+    }
+
+    public static int op(ConsensusValue command) {
+        if (!command.isLong()) {
+            return 0;
+        }
+        return (int)(command.asLong() >>> 56);
+    }
+
+    public static int key(ConsensusValue command) {
+        return (int)((command.asLong() >>> 32) & MAX_KEY);
+    }
+
+    public static int value(ConsensusValue command) {
+        return (int)command.asLong();
+    }
+}
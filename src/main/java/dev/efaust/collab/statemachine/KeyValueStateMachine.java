@@ -0,0 +1,115 @@
+package dev.efaust.collab.statemachine;
+
+import dev.efaust.collab.paxos.ConsensusValue;
+import dev.efaust.collab.paxos.Decision;
+import lombok.Getter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Reference StateMachine: in memory map of int keys to int values, updated by KeyValueCommand values.
+ *
+ * Reads may come from any thread. Writes come from the apply loop and take the write lock once per batch.
+ */
+public class KeyValueStateMachine implements SnapshottableStateMachine {
+    private static final Logger log = LogManager.getLogger(KeyValueStateMachine.class);
+
+    // one (key, value) pair in a snapshot
+    private static final int ENTRY_LENGTH = Integer.BYTES * 2;
+
+    private final Map<Integer, Integer> store = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // highest executionId applied, read without the lock by monitoring
+    @Getter
+    private volatile long appliedThrough = 0;
+
+    @Override
+    public void apply(List<Decision> batch) {
+        lock.writeLock().lock();
+        try {
+            for (Decision decision : batch) {
+                ConsensusValue command = decision.getValue();
+                switch (KeyValueCommand.op(command)) {
+                    case KeyValueCommand.OP_PUT:
+                        store.put(KeyValueCommand.key(command), KeyValueCommand.value(command));
+                        break;
+                    case KeyValueCommand.OP_DELETE:
+                        store.remove(KeyValueCommand.key(command));
+                        break;
+                    default:
+                        // not a key-value command, every node skips it the same way
+                        log.debug("ignoring execution {} value {}", decision.getExecutionId(), command);
+                }
+            }
+            appliedThrough = batch.get(batch.size() - 1).getExecutionId();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // snapshot format: count, then (key, value) pairs, all 4 byte ints
+    @Override
+    public byte[] snapshot() {
+        lock.readLock().lock();
+        try {
+            ByteBuffer byteBuffer = ByteBuffer.allocate(Integer.BYTES + ENTRY_LENGTH * store.size());
+            byteBuffer.putInt(store.size());
+            for (Map.Entry<Integer, Integer> entry : store.entrySet()) {
+                byteBuffer.putInt(entry.getKey());
+                byteBuffer.putInt(entry.getValue());
+            }
+            return byteBuffer.array();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void restore(byte[] snapshot, long appliedThrough) {
+        ByteBuffer byteBuffer = ByteBuffer.wrap(snapshot);
+        int count = byteBuffer.getInt();
+        // the count comes off the wire, check it against the bytes that follow before sizing anything by it
+        if (count < 0 || (long)count * ENTRY_LENGTH != byteBuffer.remaining()) {
+            throw new IllegalArgumentException(String.format("snapshot of %d bytes cannot hold %d entries", snapshot.length, count));
+        }
+        Map<Integer, Integer> restored = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            restored.put(byteBuffer.getInt(), byteBuffer.getInt());
+        }
+        lock.writeLock().lock();
+        try {
+            store.clear();
+            store.putAll(restored);
+            this.appliedThrough = appliedThrough;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Optional<Integer> get(int key) {
+        lock.readLock().lock();
+        try {
+            return Optional.ofNullable(store.get(key));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return store.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
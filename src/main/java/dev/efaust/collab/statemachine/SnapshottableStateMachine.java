@@ -0,0 +1,18 @@
+package dev.efaust.collab.statemachine;
+
+/**
+ * StateMachine that can serialize its whole state, so lagging nodes can catch up with a snapshot instead of replaying
+ * executions the rest of the cluster no longer holds.
+ */
+public interface SnapshottableStateMachine extends StateMachine {
+    /**
+     * @return current state, reflecting every batch applied so far
+     */
+    byte[] snapshot();
+
+    /**
+     * Replace the current state with a snapshot taken by another node.
+     * @param appliedThrough last executionId reflected in the snapshot
+     */
+    void restore(byte[] snapshot, long appliedThrough);
+}
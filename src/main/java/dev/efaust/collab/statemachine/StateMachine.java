@@ -0,0 +1,21 @@
+package dev.efaust.collab.statemachine;
+
+import dev.efaust.collab.paxos.Decision;
+
+import java.util.List;
+
+/**
+ * Replicated state machine driven by decided Paxos executions.
+ *
+ * Every node applies the same decisions in the same order (increasing executionId, no gaps), so every node's state
+ * machine goes through the same sequence of states. Decisions are handed over in batches so implementations can take
+ * locks and touch their data structures once per batch rather than once per value.
+ */
+public interface StateMachine {
+    /**
+     * @param batch consecutive decisions in execution order, never empty. Values consumed by the consensus layer
+     *              itself (e.g. leases) are not included, so executionIds may skip those. Values proposed together
+     *              in one batch (see PaxosNode.propose) arrive as consecutive decisions sharing an executionId.
+     */
+    void apply(List<Decision> batch);
+}
@@ -0,0 +1,210 @@
+package dev.efaust.collab.timer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Hashed timing wheel (Varghese & Lauck) for large numbers of short lived timeouts.
+ *
+ * Time is divided into ticks. Each timeout is placed in the bucket for its deadline tick modulo wheel size; buckets
+ * are doubly linked lists so scheduling and cancelling are O(1). Advancing the wheel only visits the buckets of ticks
+ * that elapsed, so the cost of a tick does not depend on the total number of outstanding timeouts.
+ *
+ * The wheel has no thread of its own: the owner calls advance() from its event loop, and expired tasks run on that
+ * thread. Not thread-safe, all calls must come from the owning thread.
+ */
+public class HashedWheelTimer {
+    private static final Logger log = LogManager.getLogger(HashedWheelTimer.class);
+
+    private final LongSupplier nanoTime;
+    private final long tickNanos;
+    private final int mask;
+    private final Bucket[] wheel;
+    private final long startNanos;
+
+    // last tick that has been processed
+    private long currentTick;
+    private int pending;
+
+    public HashedWheelTimer(LongSupplier nanoTime, long tickNanos, int wheelSize) {
+        if (tickNanos <= 0) {
+            throw new IllegalArgumentException(String.format("tick must be positive, got %d", tickNanos));
+        }
+        if (wheelSize <= 0 || Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException(String.format("wheel size must be a positive power of two, got %d", wheelSize));
+        }
+        this.nanoTime = nanoTime;
+        this.tickNanos = tickNanos;
+        this.mask = wheelSize - 1;
+        this.wheel = new Bucket[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.startNanos = nanoTime.getAsLong();
+        this.currentTick = 0;
+        this.pending = 0;
+    }
+
+    /**
+     * Schedule task to run once delayNanos have elapsed. Deadlines are rounded up to the next tick.
+     */
+    public Timeout schedule(Runnable task, long delayNanos) {
+        long deadline = nanoTime.getAsLong() + Math.max(delayNanos, 0);
+        long deadlineTick = Math.max(ceilDiv(deadline - startNanos, tickNanos), currentTick + 1);
+        Timeout timeout = new Timeout(this, task, deadlineTick);
+        wheel[(int)(deadlineTick & mask)].add(timeout);
+        pending++;
+        return timeout;
+    }
+
+    /**
+     * Run every task whose deadline has passed.
+     * @return number of tasks run
+     */
+    public int advance() {
+        long targetTick = (nanoTime.getAsLong() - startNanos) / tickNanos;
+        if (targetTick <= currentTick) {
+            return 0;
+        }
+        int expired = 0;
+        if (targetTick - currentTick >= wheel.length) {
+            // slept through at least one full rotation, every bucket needs one visit
+            currentTick = targetTick;
+            for (Bucket bucket : wheel) {
+                expired += bucket.expire(currentTick);
+            }
+        } else {
+            while (currentTick < targetTick) {
+                currentTick++;
+                expired += wheel[(int)(currentTick & mask)].expire(currentTick);
+            }
+        }
+        return expired;
+    }
+
+    public int getPendingTimeouts() {
+        return pending;
+    }
+
+    private static long ceilDiv(long x, long y) {
+        return -Math.floorDiv(-x, y);
+    }
+
+    /**
+     * Handle to a scheduled task.
+     */
+    public static class Timeout {
+        private final HashedWheelTimer timer;
+        private final Runnable task;
+        private final long deadlineTick;
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+        private boolean cancelled;
+        private boolean expired;
+
+        private Timeout(HashedWheelTimer timer, Runnable task, long deadlineTick) {
+            this.timer = timer;
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+
+        /**
+         * @return true if the task was pending and will no longer run
+         */
+        public boolean cancel() {
+            if (cancelled || expired) {
+                return false;
+            }
+            cancelled = true;
+            if (bucket != null) {
+                bucket.remove(this);
+                timer.pending--;
+            }
+            // else: already taken out of its bucket in the current advance() but not yet run, it will be skipped
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public boolean isExpired() {
+            return expired;
+        }
+    }
+
+    private class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            timeout.prev = tail;
+            timeout.next = null;
+            if (tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+            }
+            tail = timeout;
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.prev == null) {
+                head = timeout.next;
+            } else {
+                timeout.prev.next = timeout.next;
+            }
+            if (timeout.next == null) {
+                tail = timeout.prev;
+            } else {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        int expire(long tick) {
+            // unlink everything due first, tasks may schedule or cancel timeouts in this bucket while running
+            Timeout dueHead = null;
+            Timeout dueTail = null;
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.deadlineTick <= tick) {
+                    remove(timeout);
+                    pending--;
+                    if (dueTail == null) {
+                        dueHead = timeout;
+                    } else {
+                        dueTail.next = timeout;
+                    }
+                    dueTail = timeout;
+                }
+                timeout = next;
+            }
+
+            int expired = 0;
+            timeout = dueHead;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                timeout.next = null;
+                if (!timeout.cancelled) {
+                    timeout.expired = true;
+                    expired++;
+                    try {
+                        timeout.task.run();
+                    } catch (RuntimeException e) {
+                        log.error("timeout task failed", e);
+                    }
+                }
+                timeout = next;
+            }
+            return expired;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package dev.efaust.collab.trace;
+
+import dev.efaust.collab.MessageType;
+import dev.efaust.collab.liveness.HeartbeatMessage;
+import dev.efaust.collab.messaging.Message;
+import dev.efaust.collab.paxos.GroupMessage;
+import dev.efaust.collab.paxos.NodeOrdinals;
+import dev.efaust.collab.paxos.PaxosMessage;
+import dev.efaust.collab.paxos.messages.*;
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Low overhead binary trace of protocol events, for visibility without formatting a log line per message.
+ *
+ * Records are fixed size and written into an off-heap ring buffer, so tracing allocates nothing and never blocks:
+ * a writer claims the next slot with one atomic increment and fills it with absolute puts. Once the ring is full the
+ * oldest records are overwritten. The ring is written out with dump (on demand, or by dumpOnError when something
+ * goes wrong) and read back with TraceDecoder.
+ *
+ * Record layout, RECORD_LENGTH bytes, big-endian:
+ *   timestamp nanos (8) | event (1) | message type (1, -1 if none) | reserved (2) | peer ordinal (4) |
+ *   group (4) | reserved (4) | executionId (8) | N (8) | value (8)
+ *
+ * Dumps can be taken while writers are running; a record being written during the dump may come out torn.
+ *
+ * Error dumps go to the directory named by the collab.trace.errorDumpDirectory system property, java.io.tmpdir if it is
+ * not set; set it empty to take no error dumps (as the tests do).
+ */
+public class EventTracer {
+    private static final Logger log = LogManager.getLogger(EventTracer.class);
+
+    public static final int RECORD_LENGTH = 48;
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    // dump file header: magic, version, record length, record count, wall clock and nanoTime at dump time
+    static final byte[] MAGIC = new byte[]{ 'C', 'T', 'R', 'C' };
+    static final byte VERSION = 0;
+    static final int HEADER_LENGTH = MAGIC.length + 1 + 4 + 4 + 8 + 8;
+
+    static final byte NO_MESSAGE_TYPE = -1;
+
+    // at most one error dump this often, errors tend to come in bursts
+    private static final long ERROR_DUMP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    public static final String ERROR_DUMP_DIRECTORY_PROPERTY = "collab.trace.errorDumpDirectory";
+
+    // peers whose ordinal was computed recently, direct mapped by hash code; a power of two
+    private static final int PEER_ORDINAL_CACHE_SIZE = 256;
+
+    private static volatile EventTracer defaultTracer;
+
+    private final ByteBuffer ring;
+    private final int capacity;
+    private final int mask;
+    private final AtomicLong nextSequence;
+    private final AtomicLong lastErrorDumpNanos;
+    // entries are immutable, a racing writer at worst replaces one another computed for the same slot
+    private final PeerOrdinal[] peerOrdinals;
+
+    // where dumpOnError writes, null to take no error dumps
+    @Getter @Setter
+    private volatile Path errorDumpDirectory;
+
+    public EventTracer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public EventTracer(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException(String.format("capacity must be a positive power of two, got %d", capacity));
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.ring = ByteBuffer.allocateDirect(capacity * RECORD_LENGTH);
+        this.nextSequence = new AtomicLong(0);
+        this.lastErrorDumpNanos = new AtomicLong(System.nanoTime() - ERROR_DUMP_INTERVAL_NANOS);
+        this.peerOrdinals = new PeerOrdinal[PEER_ORDINAL_CACHE_SIZE];
+        String directory = System.getProperty(ERROR_DUMP_DIRECTORY_PROPERTY, System.getProperty("java.io.tmpdir"));
+        this.errorDumpDirectory = directory.isEmpty() ? null : Paths.get(directory);
+    }
+
+    /**
+     * Process wide tracer, used by every node unless given another.
+     */
+    public static EventTracer getDefault() {
+        if (defaultTracer == null) {
+            synchronized (EventTracer.class) {
+                if (defaultTracer == null) {
+                    defaultTracer = new EventTracer();
+                }
+            }
+        }
+        return defaultTracer;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return number of records written since creation, including those already overwritten
+     */
+    public long getRecordCount() {
+        return nextSequence.get();
+    }
+
+    public void trace(TraceEvent event, byte messageType, int groupId, long executionId, long proposalNumber,
+                      long value, int peer) {
+        long sequence = nextSequence.getAndIncrement();
+        int offset = (int)(sequence & mask) * RECORD_LENGTH;
+        ring.putLong(offset, System.nanoTime());
+        ring.put(offset + 8, event.getId());
+        ring.put(offset + 9, messageType);
+        ring.putShort(offset + 10, (short)0);
+        ring.putInt(offset + 12, peer);
+        ring.putInt(offset + 16, groupId);
+        ring.putInt(offset + 20, 0);
+        ring.putLong(offset + 24, executionId);
+        ring.putLong(offset + 32, proposalNumber);
+        ring.putLong(offset + 40, value);
+    }
+
+    /**
+     * Trace a message, picking the execution, proposal number and value fields by message type.
+     * @param peer address the message came from or is going to, null if none (e.g. multicast send)
+     */
+    public void traceMessage(TraceEvent event, Message message, String peer) {
+        int groupId = message instanceof GroupMessage ? ((GroupMessage)message).getGroupId() : 0;
+        long executionId = message instanceof PaxosMessage ? ((PaxosMessage)message).getExecutionId() : 0;
+        long proposalNumber = 0;
+        long value = 0;
+        if (message instanceof PrepareMessage) {
+            proposalNumber = ((PrepareMessage)message).getProposalNumber();
+        } else if (message instanceof PromiseMessage) {
+            PromiseMessage promise = (PromiseMessage)message;
+            proposalNumber = promise.getPromiseProposalNumber();
+            value = promise.getPriorAcceptedValue().prefixAsLong();
+        } else if (message instanceof NegativePromiseMessage) {
+            NegativePromiseMessage negativePromise = (NegativePromiseMessage)message;
+            proposalNumber = negativePromise.getProposalNumber();
+            value = negativePromise.getPriorPromisedProposalNumber();
+        } else if (message instanceof PleaseAcceptMessage) {
+            PleaseAcceptMessage pleaseAccept = (PleaseAcceptMessage)message;
+            proposalNumber = pleaseAccept.getProposalNumberToAccept();
+            value = pleaseAccept.getValueToAccept().prefixAsLong();
+        } else if (message instanceof AcceptedMessage) {
+            AcceptedMessage accepted = (AcceptedMessage)message;
+            proposalNumber = accepted.getAcceptedProposalNumber();
+            value = accepted.getAcceptedValue().prefixAsLong();
+        } else if (message instanceof HeartbeatMessage) {
+            value = ((HeartbeatMessage)message).getUuid();
+        } else if (message instanceof CatchUpRequestMessage) {
+            executionId = ((CatchUpRequestMessage)message).getFromExecutionId();
+            value = ((CatchUpRequestMessage)message).getToExecutionId();
+        } else if (message instanceof CatchUpResponseMessage) {
+            executionId = ((CatchUpResponseMessage)message).getFirstExecutionId();
+            value = ((CatchUpResponseMessage)message).getValues().size();
+        } else if (message instanceof CatchUpSnapshotMessage) {
+            executionId = ((CatchUpSnapshotMessage)message).getSnapshotExecutionId();
+            value = ((CatchUpSnapshotMessage)message).getOffset();
+        }
+        trace(event, message.getMessageType().getId(), groupId, executionId, proposalNumber, value, peerOrdinal(peer));
+    }
+
+    /**
+     * Trace an event that is not about a message or an execution, e.g. an invalid packet.
+     */
+    public void traceEvent(TraceEvent event, long value, String peer) {
+        trace(event, NO_MESSAGE_TYPE, 0, 0, 0, value, peerOrdinal(peer));
+    }
+
+    public void traceExecution(TraceEvent event, int groupId, long executionId, long proposalNumber, long value) {
+        trace(event, NO_MESSAGE_TYPE, groupId, executionId, proposalNumber, value, 0);
+    }
+
+    // NodeOrdinals.ordinal parses or hashes the id, too much to do for every message; a bounded cache as sources come
+    // straight from packets
+    private int peerOrdinal(String peer) {
+        if (peer == null) {
+            return 0;
+        }
+        int slot = peer.hashCode() & (PEER_ORDINAL_CACHE_SIZE - 1);
+        PeerOrdinal cached = peerOrdinals[slot];
+        if (cached != null && cached.peer.equals(peer)) {
+            return cached.ordinal;
+        }
+        int ordinal = NodeOrdinals.ordinal(peer);
+        peerOrdinals[slot] = new PeerOrdinal(peer, ordinal);
+        return ordinal;
+    }
+
+    private static class PeerOrdinal {
+        final String peer;
+        final int ordinal;
+
+        PeerOrdinal(String peer, int ordinal) {
+            this.peer = peer;
+            this.ordinal = ordinal;
+        }
+    }
+
+    /**
+     * Write the records still held, oldest first, in the format read by TraceDecoder.
+     */
+    public void dump(OutputStream outputStream) throws IOException {
+        long end = nextSequence.get();
+        long start = Math.max(0, end - capacity);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream));
+        out.write(MAGIC);
+        out.writeByte(VERSION);
+        out.writeInt(RECORD_LENGTH);
+        out.writeInt((int)(end - start));
+        out.writeLong(System.currentTimeMillis());
+        out.writeLong(System.nanoTime());
+        byte[] record = new byte[RECORD_LENGTH];
+        ByteBuffer view = ring.duplicate();
+        for (long sequence = start; sequence < end; sequence++) {
+            view.position((int)(sequence & mask) * RECORD_LENGTH);
+            view.get(record);
+            out.write(record);
+        }
+        out.flush();
+    }
+
+    public void dump(Path path) throws IOException {
+        try (OutputStream outputStream = Files.newOutputStream(path)) {
+            dump(outputStream);
+        }
+    }
+
+    /**
+     * Dump to a new file in errorDumpDirectory, unless an error dump was already taken recently.
+     * @return the file written, null if skipped or failed
+     */
+    public Path dumpOnError(String reason) {
+        Path directory = errorDumpDirectory;
+        if (directory == null) {
+            return null;
+        }
+        long now = System.nanoTime();
+        long last = lastErrorDumpNanos.get();
+        if (now - last < ERROR_DUMP_INTERVAL_NANOS || !lastErrorDumpNanos.compareAndSet(last, now)) {
+            return null;
+        }
+        Path path = directory.resolve(String.format("collab-trace-%d.bin", System.currentTimeMillis()));
+        try {
+            dump(path);
+            log.error("{}, event trace written to {}", reason, path);
+            return path;
+        } catch (IOException e) {
+            log.error("{}, failed to write event trace to {}", reason, path, e);
+            return null;
+        }
+    }
+
+    static MessageType messageTypeOrNull(byte id) {
+        return id == NO_MESSAGE_TYPE ? null : MessageType.messageTypeFromId(id).orElse(null);
+    }
+}
@@ -0,0 +1,94 @@
+package dev.efaust.collab.trace;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Reads EventTracer dumps.
+ * Usage: java -cp collab.jar dev.efaust.collab.trace.TraceDecoder TRACE_FILE...
+ */
+public class TraceDecoder {
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("usage: TraceDecoder TRACE_FILE...");
+            System.exit(1);
+        }
+        for (String file : args) {
+            try (InputStream inputStream = Files.newInputStream(Paths.get(file))) {
+                Dump dump = decode(inputStream);
+                System.out.printf("# %s: %d records%n", file, dump.records.size());
+                for (TraceRecord record : dump.records) {
+                    System.out.printf("%s %s%n", dump.wallClock(record), record);
+                }
+            }
+        }
+    }
+
+    /**
+     * Decoded dump file.
+     */
+    public static class Dump {
+        private final long dumpWallClockMillis;
+        private final long dumpNanos;
+        private final List<TraceRecord> records;
+
+        Dump(long dumpWallClockMillis, long dumpNanos, List<TraceRecord> records) {
+            this.dumpWallClockMillis = dumpWallClockMillis;
+            this.dumpNanos = dumpNanos;
+            this.records = records;
+        }
+
+        public List<TraceRecord> getRecords() {
+            return records;
+        }
+
+        // nanoTime has no fixed origin, the dump header relates it to the wall clock
+        public Instant wallClock(TraceRecord record) {
+            long agoNanos = dumpNanos - record.getTimestampNanos();
+            return Instant.ofEpochMilli(dumpWallClockMillis).minusNanos(agoNanos);
+        }
+    }
+
+    public static Dump decode(InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream));
+        byte[] magic = new byte[EventTracer.MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, EventTracer.MAGIC)) {
+            throw new IOException("not an event trace, bad magic");
+        }
+        byte version = in.readByte();
+        if (version != EventTracer.VERSION) {
+            throw new IOException(String.format("unsupported trace version %d", version));
+        }
+        int recordLength = in.readInt();
+        if (recordLength < EventTracer.RECORD_LENGTH) {
+            throw new IOException(String.format("record length %d too short", recordLength));
+        }
+        int count = in.readInt();
+        long dumpWallClockMillis = in.readLong();
+        long dumpNanos = in.readLong();
+
+        List<TraceRecord> records = new ArrayList<>(Math.max(0, count));
+        byte[] bytes = new byte[recordLength];
+        for (int i = 0; i < count; i++) {
+            in.readFully(bytes);
+            ByteBuffer record = ByteBuffer.wrap(bytes);
+            Optional<TraceEvent> event = TraceEvent.traceEventFromId(record.get(8));
+            if (!event.isPresent()) {
+                // torn or never written slot
+                continue;
+            }
+            records.add(new TraceRecord(record.getLong(0), event.get(),
+                    Optional.ofNullable(EventTracer.messageTypeOrNull(record.get(9))),
+                    record.getInt(16), record.getLong(24), record.getLong(32), record.getLong(40), record.getInt(12)));
+        }
+        return new Dump(dumpWallClockMillis, dumpNanos, records);
+    }
+}
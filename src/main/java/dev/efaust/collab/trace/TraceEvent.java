@@ -0,0 +1,35 @@
+package dev.efaust.collab.trace;
+
+import lombok.Getter;
+
+import java.util.Optional;
+
+/**
+ * What happened, first field of every EventTracer record.
+ */
+public enum TraceEvent {
+    Received(0),
+    Sent(1),
+    // dropped before handling, e.g. behind the execution window or for another group
+    Dropped(2),
+    Decided(3),
+    Timeout(4),
+    InvalidPacket(5),
+    Error(6);
+
+    @Getter
+    byte id;
+
+    TraceEvent(int id) {
+        this.id = (byte)id;
+    }
+
+    public static Optional<TraceEvent> traceEventFromId(byte id) {
+        for (TraceEvent event : TraceEvent.values()) {
+            if (event.id == id) {
+                return Optional.of(event);
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,32 @@
+package dev.efaust.collab.trace;
+
+import dev.efaust.collab.MessageType;
+import dev.efaust.collab.paxos.ProposalNumbers;
+import lombok.Value;
+
+import java.util.Optional;
+
+/**
+ * One decoded EventTracer record.
+ */
+@Value
+public class TraceRecord {
+    // System.nanoTime when recorded
+    long timestampNanos;
+    TraceEvent event;
+    // empty for events not about a message
+    Optional<MessageType> messageType;
+    int groupId;
+    long executionId;
+    long proposalNumber;
+    long value;
+    // NodeOrdinals.ordinal of the peer the message came from or went to, 0 if none
+    int peer;
+
+    @Override
+    public String toString() {
+        return String.format("%d %s %s group=%d executionId=%d N=%s V=%d peer=%08x", timestampNanos, event,
+                messageType.map(MessageType::name).orElse("-"), groupId, executionId,
+                ProposalNumbers.toString(proposalNumber), value, peer);
+    }
+}
@@ -0,0 +1,37 @@
+package dev.efaust.collab.messaging;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates threads with a fixed name, platform threads or virtual threads.
+ *
+ * This is the Java 21 version, packaged under META-INF/versions/21 of the Multi-Release jar. The Java 11 version in
+ * src/main/java has the same API without virtual thread support; keep both in sync.
+ */
+public class NamedThreadFactory implements ThreadFactory {
+    private String threadName;
+    private boolean virtual;
+
+    public NamedThreadFactory(String threadName) {
+        this(threadName, false);
+    }
+
+    public NamedThreadFactory(String threadName, boolean virtual) {
+        this.threadName = threadName;
+        this.virtual = virtual;
+    }
+
+    public static boolean isVirtualThreadSupported() {
+        return true;
+    }
+
+    @Override
+    public Thread newThread(Runnable r) {
+        if (virtual) {
+            return Thread.ofVirtual().name(threadName).unstarted(r);
+        }
+        Thread thread = new Thread(r);
+        thread.setName(threadName);
+        return thread;
+    }
+}
@@ -2,6 +2,7 @@ package dev.efaust.collab;
 
 import dev.efaust.collab.liveness.HeartbeatMessage;
 import dev.efaust.collab.messaging.*;
+import dev.efaust.collab.paxos.ConsensusValue;
 import dev.efaust.collab.paxos.PaxosNode;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
@@ -63,11 +64,16 @@ public class Repl {
     }
 
     public void heartbeats() throws IOException {
+        // nodes created since the last heartbeats vote with the nodes that exist now
+        Set<String> members = nodes.keySet().stream().map(this::nodeAddress).collect(Collectors.toSet());
         for (PaxosNode node : nodes.values()) {
+            if (!node.getMembership().isExplicit()) {
+                node.getMembership().install(members);
+            }
             node.sendMessage(new HeartbeatMessage());
         }
         interconnect.drainQueues();
-        log.info("heartbeats transmitted from all nodes");
+        log.info("heartbeats transmitted from all nodes, members {}", members);
     }
 
     public void step(Integer nodeId) throws IOException {
@@ -76,12 +82,12 @@ public class Repl {
     }
 
     public void prepareNew(Integer nodeId) throws IOException {
-        nodes.get(nodeId).sendPrepare(() -> (long)nodeId);
+        nodes.get(nodeId).sendPrepare(() -> ConsensusValue.of(nodeId));
         interconnect.drainQueues();
     }
 
     public void prepare(Integer nodeId) throws IOException {
-        nodes.get(nodeId).sendPrepare(1, () -> (long)nodeId);
+        nodes.get(nodeId).sendPrepare(1, () -> ConsensusValue.of(nodeId));
         interconnect.drainQueues();
     }
 
@@ -118,7 +124,7 @@ public class Repl {
         System.out.println("*** paxos repl ***");
         System.out.println("available commands:");
         System.out.println("    create - create new node");
-        System.out.println("    heartbeats - send heartbeats from all nodes");
+        System.out.println("    heartbeats - send heartbeats from all nodes, new nodes vote with the nodes created so far");
         System.out.println("    N (e.g. 1) - receive messages for node N, process");
         System.out.println("        there is an option to interactively reorder/drop messages prior to delivery");
         System.out.println("    N.new (e.g. 1.new) - send prepare from node N for new session");
@@ -0,0 +1,66 @@
+package dev.efaust.collab.liveness;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class IpTrackerTest {
+    private static HeartbeatMessage heartbeat(long uuid, String source) {
+        HeartbeatMessage heartbeat = new HeartbeatMessage();
+        heartbeat.setUuid(uuid);
+        heartbeat.setSourceAddress(source);
+        return heartbeat;
+    }
+
+    @Test
+    public void testLocalInterfaceAddressIsAcceptedAtOnce() {
+        List<String> determined = new ArrayList<>();
+        IpTracker ipTracker = new IpTracker(determined::add, ImmutableSet.of("10.0.0.5", "fe80::1"));
+        ipTracker.aboutToSendHeartbeat(heartbeat(1, null));
+
+        // a peer's heartbeat says nothing about our address
+        ipTracker.receivedHeartbeat(heartbeat(2, "fe80::1%eth0"));
+        Assertions.assertFalse(ipTracker.isIpDetermined());
+
+        ipTracker.receivedHeartbeat(heartbeat(1, "fe80::1%eth0"));
+        Assertions.assertTrue(ipTracker.isIpDetermined());
+        Assertions.assertEquals(ImmutableList.of("fe80::1%eth0"), determined);
+    }
+
+    @Test
+    public void testOtherAddressNeedsRepeatedEchoes() {
+        List<String> determined = new ArrayList<>();
+        IpTracker ipTracker = new IpTracker(determined::add);
+        for (long uuid = 1; uuid <= 6; uuid++) {
+            ipTracker.aboutToSendHeartbeat(heartbeat(uuid, null));
+            ipTracker.receivedHeartbeat(heartbeat(uuid, "192.168.1.7"));
+            Assertions.assertEquals(uuid > 3, ipTracker.isIpDetermined());
+        }
+        // reported once, not on every heartbeat after
+        Assertions.assertEquals(ImmutableList.of("192.168.1.7"), determined);
+    }
+
+    @Test
+    public void testOldEchoesAgeOut() {
+        List<String> determined = new ArrayList<>();
+        IpTracker ipTracker = new IpTracker(determined::add);
+        long uuid = 0;
+        // three echoes from one address, then ten from elsewhere push them out of the window
+        for (int i = 0; i < 3; i++) {
+            ipTracker.aboutToSendHeartbeat(heartbeat(++uuid, null));
+            ipTracker.receivedHeartbeat(heartbeat(uuid, "192.168.1.7"));
+        }
+        for (int i = 0; i < 10; i++) {
+            ipTracker.aboutToSendHeartbeat(heartbeat(++uuid, null));
+            ipTracker.receivedHeartbeat(heartbeat(uuid, "192.168.1." + (20 + i)));
+        }
+        ipTracker.aboutToSendHeartbeat(heartbeat(++uuid, null));
+        ipTracker.receivedHeartbeat(heartbeat(uuid, "192.168.1.7"));
+        Assertions.assertFalse(ipTracker.isIpDetermined());
+        Assertions.assertTrue(determined.isEmpty());
+    }
+}
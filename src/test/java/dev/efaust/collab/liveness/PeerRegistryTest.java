@@ -0,0 +1,84 @@
+package dev.efaust.collab.liveness;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class PeerRegistryTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testJitterIsNotAFailure() {
+        AtomicLong clock = new AtomicLong(0);
+        PeerRegistry peerRegistry = new PeerRegistry(clock::get);
+        peerRegistry.setHeartbeatIntervalNanos(SECOND);
+        peerRegistry.setAcceptablePauseNanos(0);
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            // 1s +/- 300ms
+            clock.addAndGet(SECOND + (long)((random.nextDouble() - 0.5) * 0.6 * SECOND));
+            peerRegistry.heartbeat("A");
+            clock.addAndGet(SECOND / 2);
+            Assertions.assertEquals(ImmutableSet.of("A"), peerRegistry.peersAlive());
+            clock.addAndGet(-SECOND / 2);
+        }
+    }
+
+    @Test
+    public void testBurstsDoNotShortenTheExpectedInterval() {
+        AtomicLong clock = new AtomicLong(0);
+        PeerRegistry peerRegistry = new PeerRegistry(clock::get);
+        peerRegistry.setHeartbeatIntervalNanos(SECOND);
+        peerRegistry.setAcceptablePauseNanos(0);
+        for (int i = 0; i < 100; i++) {
+            // a burst of Paxos messages 1ms apart, then quiet for the rest of the second
+            for (int j = 0; j < 100; j++) {
+                clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+                peerRegistry.heard("A", NodeRole.Voter);
+            }
+            clock.addAndGet(SECOND - TimeUnit.MILLISECONDS.toNanos(100));
+        }
+        // the quiet after a burst is what the detector expects, not a failure
+        clock.addAndGet(SECOND / 2);
+        Assertions.assertEquals(ImmutableSet.of("A"), peerRegistry.peersAlive());
+
+        // but going silent still is
+        clock.addAndGet(2 * SECOND);
+        Assertions.assertEquals(ImmutableSet.of(), peerRegistry.peersAlive());
+    }
+
+    @Test
+    public void testSilentPeerIsSuspected() {
+        AtomicLong clock = new AtomicLong(0);
+        PeerRegistry peerRegistry = new PeerRegistry(clock::get);
+        peerRegistry.setHeartbeatIntervalNanos(SECOND);
+        peerRegistry.setAcceptablePauseNanos(0);
+        for (int i = 0; i < 100; i++) {
+            clock.addAndGet(SECOND);
+            peerRegistry.heartbeat("A");
+            peerRegistry.heartbeat("B", NodeRole.Observer);
+        }
+        Assertions.assertEquals(ImmutableSet.of("A", "B"), peerRegistry.peersAlive());
+        Assertions.assertEquals(ImmutableSet.of("A"), peerRegistry.votersAlive());
+
+        // phi grows with silence, regular heartbeats with no jitter leave little slack
+        double previousPhi = peerRegistry.phi("A");
+        for (int i = 0; i < 10; i++) {
+            clock.addAndGet(SECOND / 10);
+            Assertions.assertTrue(peerRegistry.phi("A") > previousPhi);
+            previousPhi = peerRegistry.phi("A");
+        }
+        // missing the next two heartbeats
+        clock.addAndGet(2 * SECOND);
+        Assertions.assertTrue(peerRegistry.getPeers().contains("A"));
+        Assertions.assertEquals(ImmutableSet.of(), peerRegistry.peersAlive());
+
+        // and comes back with the next heartbeat
+        peerRegistry.heartbeat("A");
+        Assertions.assertEquals(ImmutableSet.of("A"), peerRegistry.votersAlive());
+    }
+}
@@ -0,0 +1,145 @@
+package dev.efaust.collab.liveness.swim;
+
+import dev.efaust.collab.liveness.NodeRole;
+import dev.efaust.collab.timer.HashedWheelTimer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SwimMembershipTest {
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long PERIOD_NANOS = SwimMembership.DEFAULT_PROTOCOL_PERIOD_NANOS;
+
+    private AtomicLong clock;
+    private Map<String, SwimMembership> nodes;
+    private Map<String, HashedWheelTimer> timers;
+    private Queue<SwimMessage> network;
+    private Set<String> crashed;
+    private long sent;
+
+    @BeforeEach
+    public void beforeEach() {
+        clock = new AtomicLong(0);
+        nodes = new LinkedHashMap<>();
+        timers = new LinkedHashMap<>();
+        network = new ArrayDeque<>();
+        crashed = new HashSet<>();
+        sent = 0;
+    }
+
+    private void start(int count) {
+        for (int i = 0; i < count; i++) {
+            String address = "node" + i;
+            HashedWheelTimer timer = new HashedWheelTimer(clock::get, TICK_NANOS, 512);
+            SwimMembership membership = new SwimMembership((destination, message) -> {
+                message.setSourceAddress(address);
+                message.setDestinationAddress(destination);
+                network.add(message);
+                sent++;
+            }, timer, new Random(i), () -> address, () -> NodeRole.Voter);
+            nodes.put(address, membership);
+            timers.put(address, timer);
+        }
+        // every node heard every other node's heartbeats when it joined
+        for (SwimMembership membership : nodes.values()) {
+            for (String address : nodes.keySet()) {
+                membership.heard(address, NodeRole.Voter);
+            }
+            membership.start();
+        }
+    }
+
+    // delivers messages instantly, crashed nodes neither send nor receive
+    private void run(long nanos) {
+        long end = clock.get() + nanos;
+        while (clock.get() < end) {
+            clock.addAndGet(TICK_NANOS);
+            SwimMessage message;
+            while ((message = network.poll()) != null) {
+                if (!crashed.contains(message.getSourceAddress()) && !crashed.contains(message.getDestinationAddress())) {
+                    nodes.get(message.getDestinationAddress()).receive(message);
+                }
+            }
+            for (Map.Entry<String, HashedWheelTimer> entry : timers.entrySet()) {
+                if (!crashed.contains(entry.getKey())) {
+                    entry.getValue().advance();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testHealthyMembersStayAlive() {
+        start(8);
+        run(30 * PERIOD_NANOS);
+        for (SwimMembership membership : nodes.values()) {
+            Assertions.assertEquals(nodes.keySet(), membership.membersAlive());
+            Assertions.assertEquals(0, membership.getIncarnation());
+        }
+    }
+
+    @Test
+    public void testCrashedMemberIsDeclaredDead() {
+        start(8);
+        run(5 * PERIOD_NANOS);
+        crashed.add("node3");
+        run(40 * PERIOD_NANOS);
+        Set<String> alive = new HashSet<>(nodes.keySet());
+        alive.remove("node3");
+        for (String address : alive) {
+            Assertions.assertEquals(Optional.of(MemberState.Dead), nodes.get(address).getState("node3"));
+            Assertions.assertEquals(alive, nodes.get(address).membersAlive());
+        }
+    }
+
+    @Test
+    public void testSuspicionIsRefuted() {
+        start(3);
+        SwimPingMessage ping = new SwimPingMessage();
+        ping.setSourceAddress("node1");
+        ping.setSequence(7);
+        ping.setUpdates(Collections.singletonList(new MemberUpdate("node0", MemberState.Suspect, 0, NodeRole.Voter)));
+        nodes.get("node0").receive(ping);
+        Assertions.assertEquals(1, nodes.get("node0").getIncarnation());
+
+        // the ack carries the refutation
+        SwimMessage ack = network.poll();
+        Assertions.assertTrue(ack instanceof SwimAckMessage);
+        Assertions.assertEquals(7, ack.getSequence());
+        Assertions.assertTrue(ack.getUpdates().contains(new MemberUpdate("node0", MemberState.Alive, 1, NodeRole.Voter)));
+
+        // and it reaches everyone, nobody declares node0 dead
+        run(30 * PERIOD_NANOS);
+        for (SwimMembership membership : nodes.values()) {
+            Assertions.assertEquals(nodes.keySet(), membership.membersAlive());
+        }
+    }
+
+    @Test
+    public void testLoadPerNodeDoesNotGrowWithGroupSize() {
+        for (int count : new int[]{ 8, 64 }) {
+            beforeEach();
+            start(count);
+            run(5 * PERIOD_NANOS);
+            sent = 0;
+            int periods = 20;
+            run(periods * PERIOD_NANOS);
+            // one ping and about one ack per node per period, however many members there are
+            double perNodePerPeriod = (double)sent / count / periods;
+            Assertions.assertTrue(perNodePerPeriod > 1.5 && perNodePerPeriod < 2.5,
+                    String.format("%.2f messages per node per period with %d nodes", perNodePerPeriod, count));
+        }
+    }
+}
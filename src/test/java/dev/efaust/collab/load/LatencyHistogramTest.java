@@ -0,0 +1,50 @@
+package dev.efaust.collab.load;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramTest {
+    @Test
+    public void testPercentilesWithinOnePercent() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // 1us to 10ms
+        for (long micros = 1; micros <= 10_000; micros++) {
+            histogram.record(micros * 1000);
+        }
+        Assertions.assertEquals(10_000, histogram.getCount());
+        Assertions.assertEquals(10_000_000, histogram.getMaxNanos());
+        assertWithinOnePercent(5_000_000, histogram.valueAtPercentileNanos(50));
+        assertWithinOnePercent(9_900_000, histogram.valueAtPercentileNanos(99));
+        assertWithinOnePercent(9_990_000, histogram.valueAtPercentileNanos(99.9));
+        Assertions.assertEquals(10_000_000, histogram.valueAtPercentileNanos(100));
+    }
+
+    @Test
+    public void testBucketsCoverEveryValue() {
+        Assertions.assertEquals(0, LatencyHistogram.highestInBucket(LatencyHistogram.index(0)));
+        Assertions.assertEquals(127, LatencyHistogram.highestInBucket(LatencyHistogram.index(127)));
+        Assertions.assertEquals(Long.MAX_VALUE, LatencyHistogram.highestInBucket(LatencyHistogram.index(Long.MAX_VALUE)));
+        for (long value = 1; value > 0 && value < Long.MAX_VALUE / 3; value = value * 3 + 1) {
+            long highest = LatencyHistogram.highestInBucket(LatencyHistogram.index(value));
+            Assertions.assertTrue(highest >= value && highest - value <= value / 100, Long.toString(value));
+        }
+    }
+
+    @Test
+    public void testSince() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1_000_000);
+        LatencyHistogram earlier = histogram.copy();
+        histogram.record(2000);
+        histogram.record(3000);
+        LatencyHistogram interval = histogram.since(earlier);
+        Assertions.assertEquals(2, interval.getCount());
+        Assertions.assertEquals(3000, interval.getMaxNanos(), 30);
+        Assertions.assertEquals(2000, interval.valueAtPercentileNanos(50), 20);
+        Assertions.assertEquals(0, histogram.since(histogram.copy()).getCount());
+    }
+
+    private static void assertWithinOnePercent(long expected, long actual) {
+        Assertions.assertEquals(expected, actual, expected / 100.0);
+    }
+}
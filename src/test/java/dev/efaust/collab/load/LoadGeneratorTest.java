@@ -0,0 +1,124 @@
+package dev.efaust.collab.load;
+
+import dev.efaust.collab.paxos.ConsensusValue;
+import dev.efaust.collab.paxos.Decision;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class LoadGeneratorTest {
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private AtomicLong clock;
+    private List<CompletableFuture<Decision>> outstanding;
+    private ScheduledExecutorService executor;
+
+    @BeforeEach
+    public void beforeEach() {
+        clock = new AtomicLong(1000 * MILLIS);
+        outstanding = new ArrayList<>();
+        executor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @AfterEach
+    public void afterEach() {
+        executor.shutdownNow();
+    }
+
+    // wait for everything already handed to the load thread
+    private void drainExecutor() throws InterruptedException, ExecutionException {
+        executor.submit(() -> { }).get();
+    }
+
+    private CompletableFuture<Decision> propose(long sequence, ConsensusValue value) {
+        Assertions.assertEquals(sequence, value.asLong());
+        CompletableFuture<Decision> future = new CompletableFuture<>();
+        outstanding.add(future);
+        return future;
+    }
+
+    @Test
+    public void testConcurrencyKeepsProposalsOutstanding() throws Exception {
+        LoadGenerator load = new LoadGenerator(LoadGenerator.Mode.Concurrency, 4, this::propose, clock::get, executor);
+        load.begin();
+        Assertions.assertEquals(4, outstanding.size());
+
+        clock.addAndGet(2 * MILLIS);
+        outstanding.get(0).complete(new Decision(1, ConsensusValue.of(0)));
+        outstanding.get(1).completeExceptionally(new TimeoutException());
+        drainExecutor();
+        Assertions.assertEquals(6, load.getIssued());
+        Assertions.assertEquals(1, load.getHistogram().getCount());
+        Assertions.assertEquals(2 * MILLIS, load.getHistogram().getMaxNanos());
+        Assertions.assertEquals(1, load.getFailed());
+
+        load.stop();
+        outstanding.get(2).complete(new Decision(2, ConsensusValue.of(2)));
+        Assertions.assertEquals(6, load.getIssued());
+    }
+
+    @Test
+    public void testProposalsDecidedAtOnceDoNotRecurse() throws Exception {
+        int decidedAtOnce = 100_000;
+        LoadGenerator load = new LoadGenerator(LoadGenerator.Mode.Concurrency, 1, (sequence, value) ->
+                sequence < decidedAtOnce ? CompletableFuture.completedFuture(new Decision(1, value)) : new CompletableFuture<>(),
+                clock::get, executor);
+        executor.submit(load::begin).get();
+        // each reissue is queued behind the previous one, the last is still outstanding
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            while (load.getIssued() <= decidedAtOnce) {
+                drainExecutor();
+            }
+        });
+        Assertions.assertEquals(decidedAtOnce + 1, load.getIssued());
+        Assertions.assertEquals(decidedAtOnce, load.getHistogram().getCount());
+    }
+
+    @Test
+    public void testRateMeasuresFromWhenProposalWasDue() {
+        LoadGenerator load = new LoadGenerator(LoadGenerator.Mode.Rate, 1000, this::propose, clock::get, executor);
+        load.begin();
+        load.tick();
+        Assertions.assertEquals(0, outstanding.size());
+
+        // the generator stalled for 10ms, the 10 proposals it owes all go out now
+        clock.addAndGet(10 * MILLIS);
+        load.tick();
+        Assertions.assertEquals(10, outstanding.size());
+        for (CompletableFuture<Decision> future : outstanding) {
+            future.complete(new Decision(1, ConsensusValue.EMPTY));
+        }
+        // the first was due at the start, 10ms before it was decided
+        Assertions.assertEquals(10 * MILLIS, load.getHistogram().getMaxNanos(), 0.01 * 10 * MILLIS);
+        Assertions.assertEquals(MILLIS, load.getHistogram().valueAtPercentileNanos(0), 0.01 * MILLIS);
+
+        String report = load.report();
+        Assertions.assertTrue(report.startsWith("0.0s: decided 10 (1000.0/s) failed 0,"), report);
+        // reports cover the time since the previous one
+        report = load.report();
+        Assertions.assertTrue(report.startsWith("0.0s: decided 0 (0.0/s) failed 0,"), report);
+    }
+
+    @Test
+    public void testSpec() {
+        Assertions.assertEquals(LoadGenerator.Mode.Rate, LoadGenerator.fromSpec("rate:500", this::propose).getMode());
+        LoadGenerator load = LoadGenerator.fromSpec("concurrency:64", this::propose);
+        Assertions.assertEquals(LoadGenerator.Mode.Concurrency, load.getMode());
+        Assertions.assertEquals(64, load.getTarget());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> LoadGenerator.fromSpec("rate", this::propose));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> LoadGenerator.fromSpec("rate:fast", this::propose));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> LoadGenerator.fromSpec("rate:0", this::propose));
+    }
+}
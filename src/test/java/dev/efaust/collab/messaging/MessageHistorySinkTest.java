@@ -0,0 +1,78 @@
+package dev.efaust.collab.messaging;
+
+import com.google.common.collect.ImmutableList;
+import dev.efaust.collab.liveness.HeartbeatMessage;
+import dev.efaust.collab.paxos.messages.PrepareMessage;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class MessageHistorySinkTest {
+    private static final List<String> NODES = ImmutableList.of("A", "B", "C");
+
+    private static PrepareMessage prepare(long executionId) {
+        PrepareMessage prepare = new PrepareMessage();
+        prepare.setExecutionId(executionId);
+        prepare.setProposalNumber(42);
+        return prepare;
+    }
+
+    // multicast from A, one record per receiver
+    private static void multicast(MessageHistorySink sink, Message message) throws IOException {
+        for (String node : NODES) {
+            sink.record("A", node, message);
+        }
+    }
+
+    @Test
+    public void testRingKeepsLatest() throws IOException {
+        RingHistorySink ring = new RingHistorySink(4);
+        for (long executionId = 1; executionId <= 10; executionId++) {
+            ring.record("A", "B", prepare(executionId));
+        }
+        Assertions.assertEquals(10, ring.getRecorded());
+        Assertions.assertEquals(ImmutableList.of(7L, 8L, 9L, 10L), ring.getEntries().stream()
+                .map((entry) -> ((PrepareMessage)entry.getMessage()).getExecutionId())
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testFilteredRecordsMatchingOnly() throws IOException {
+        RingHistorySink ring = new RingHistorySink(16);
+        FilteredHistorySink filtered = new FilteredHistorySink((message) -> message instanceof PrepareMessage, ring);
+        multicast(filtered, new HeartbeatMessage());
+        multicast(filtered, prepare(1));
+        Assertions.assertEquals(NODES, filtered.getEntries().stream()
+                .map(MessageHistoryEntry::getDstNode)
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testBinaryRoundTrip() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (BinaryHistorySink binary = new BinaryHistorySink(bytes)) {
+            for (long executionId = 1; executionId <= 100; executionId++) {
+                multicast(binary, prepare(executionId));
+            }
+        }
+        // each multicast is written once, later receivers refer back to it
+        Assertions.assertTrue(bytes.size() < 100 * 3 * 40, String.format("%d bytes", bytes.size()));
+
+        RingHistorySink ring = new RingHistorySink(1000);
+        BinaryHistorySink.read(new ByteArrayInputStream(bytes.toByteArray()), ring);
+        List<MessageHistoryEntry> entries = ring.getEntries();
+        Assertions.assertEquals(300, entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            MessageHistoryEntry entry = entries.get(i);
+            Assertions.assertEquals("A", entry.getSrcNode());
+            Assertions.assertEquals(NODES.get(i % NODES.size()), entry.getDstNode());
+            Assertions.assertEquals("A", entry.getMessage().getSourceAddress());
+            Assertions.assertEquals(i / NODES.size() + 1, ((PrepareMessage)entry.getMessage()).getExecutionId());
+        }
+    }
+}
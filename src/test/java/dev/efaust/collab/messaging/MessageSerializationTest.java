@@ -2,13 +2,26 @@ package dev.efaust.collab.messaging;
 
 import dev.efaust.collab.MessageType;
 import dev.efaust.collab.liveness.HeartbeatMessage;
+import dev.efaust.collab.liveness.NodeRole;
+import dev.efaust.collab.liveness.swim.MemberState;
+import dev.efaust.collab.liveness.swim.MemberUpdate;
+import dev.efaust.collab.liveness.swim.SwimPingRequestMessage;
 import dev.efaust.collab.messaging.MessageSerialization;
+import dev.efaust.collab.paxos.ConsensusValue;
+import dev.efaust.collab.paxos.EntryKind;
+import dev.efaust.collab.paxos.messages.CatchUpResponseMessage;
+import dev.efaust.collab.paxos.messages.CatchUpSnapshotMessage;
+import dev.efaust.collab.paxos.messages.NegativePromiseMessage;
+import dev.efaust.collab.paxos.messages.PleaseAcceptMessage;
 import dev.efaust.collab.paxos.messages.PrepareMessage;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 
 
@@ -26,19 +39,79 @@ public class MessageSerializationTest {
         heartbeatMessage.setUuid(42);
         byte[] bytes = messageSerialization.serialize(heartbeatMessage);
 
-        // magic + (version 0 + message type 0) + uuid
-        ByteBuffer expected = ByteBuffer.allocate(MessageSerialization.MAGIC.length + 2 + 8);
+        // magic + (version + message type 0) + uuid + role
+        ByteBuffer expected = ByteBuffer.allocate(MessageSerialization.MAGIC.length + 2 + 8 + 1);
         expected.put(MessageSerialization.MAGIC);
         expected.put(MessageSerialization.VERSION);
         expected.put(MessageType.Heartbeat.getId());
         expected.putLong(42);
+        expected.put(NodeRole.Voter.getId());
 
         Assertions.assertArrayEquals(expected.array(), bytes);
     }
 
+    @Test
+    public void testOtherVersionsAreRejected() {
+        HeartbeatMessage heartbeatMessage = new HeartbeatMessage();
+        heartbeatMessage.setUuid(42);
+        byte[] bytes = messageSerialization.serialize(heartbeatMessage);
+        Assertions.assertTrue(messageSerialization.deserialize(bytes).isPresent());
+        bytes[MessageSerialization.MAGIC.length] = (byte)(MessageSerialization.VERSION - 1);
+        Assertions.assertFalse(messageSerialization.deserialize(bytes).isPresent());
+        bytes[MessageSerialization.MAGIC.length] = (byte)(MessageSerialization.VERSION + 1);
+        Assertions.assertFalse(messageSerialization.deserialize(bytes).isPresent());
+    }
+
+    @Test
+    public void testHeartbeatRole() {
+        HeartbeatMessage heartbeatMessage = new HeartbeatMessage();
+        heartbeatMessage.setUuid(42);
+        heartbeatMessage.setRole(NodeRole.Observer);
+        byte[] bytes = messageSerialization.serialize(heartbeatMessage);
+        Optional<Message> received = messageSerialization.deserialize(bytes);
+        Assertions.assertTrue(received.isPresent());
+        Assertions.assertEquals(NodeRole.Observer, HeartbeatMessage.class.cast(received.get()).getRole());
+
+        // every heartbeat of this version carries a role, truncated ones are rejected
+        Assertions.assertFalse(messageSerialization.deserialize(Arrays.copyOf(bytes, bytes.length - 1)).isPresent());
+    }
+
+    @Test
+    public void testGroupMessageSenderRole() {
+        PrepareMessage prepareMessage = new PrepareMessage();
+        prepareMessage.setGroupId(3);
+        prepareMessage.setSenderRole(NodeRole.Observer);
+        prepareMessage.setExecutionId(1);
+        prepareMessage.setProposalNumber(42);
+        Optional<Message> received = messageSerialization.deserialize(messageSerialization.serialize(prepareMessage));
+        Assertions.assertTrue(received.isPresent());
+        Assertions.assertEquals(3, PrepareMessage.class.cast(received.get()).getGroupId());
+        Assertions.assertEquals(42, PrepareMessage.class.cast(received.get()).getProposalNumber());
+        Assertions.assertEquals(NodeRole.Observer, PrepareMessage.class.cast(received.get()).getSenderRole());
+    }
+
+    @Test
+    public void testSwimPingRequestSerialization() {
+        SwimPingRequestMessage pingRequest = new SwimPingRequestMessage();
+        pingRequest.setGroupId(2);
+        pingRequest.setSequence(99);
+        pingRequest.setTarget("fe80::1");
+        pingRequest.setUpdates(Arrays.asList(
+                new MemberUpdate("10.0.0.1", MemberState.Suspect, 3, NodeRole.Voter),
+                new MemberUpdate("10.0.0.2", MemberState.Alive, 0, NodeRole.Observer)));
+        Optional<Message> received = messageSerialization.deserialize(messageSerialization.serialize(pingRequest));
+        Assertions.assertTrue(received.isPresent());
+        SwimPingRequestMessage receivedPingRequest = SwimPingRequestMessage.class.cast(received.get());
+        Assertions.assertEquals(2, receivedPingRequest.getGroupId());
+        Assertions.assertEquals(99, receivedPingRequest.getSequence());
+        Assertions.assertEquals("fe80::1", receivedPingRequest.getTarget());
+        Assertions.assertEquals(pingRequest.getUpdates(), receivedPingRequest.getUpdates());
+    }
+
     @Test
     public void testPrepareSerialization() {
         PrepareMessage prepareMessage = new PrepareMessage();
+        prepareMessage.setGroupId(3);
         prepareMessage.setExecutionId(1);
         prepareMessage.setProposalNumber(42);
         byte[] bytes = messageSerialization.serialize(prepareMessage);
@@ -46,7 +119,108 @@ public class MessageSerializationTest {
         Assertions.assertTrue(received.isPresent());
         Assertions.assertTrue(received.get() instanceof PrepareMessage);
         PrepareMessage receivedPrepare = PrepareMessage.class.cast(received.get());
+        Assertions.assertEquals(3, receivedPrepare.getGroupId());
         Assertions.assertEquals(1, receivedPrepare.getExecutionId());
         Assertions.assertEquals(42, receivedPrepare.getProposalNumber());
     }
+
+    @Test
+    public void testNegativePromiseSerialization() {
+        NegativePromiseMessage negativePromiseMessage = new NegativePromiseMessage();
+        negativePromiseMessage.setExecutionId(3);
+        negativePromiseMessage.setProposalNumber(5);
+        negativePromiseMessage.setPriorPromisedProposalNumber(7);
+        negativePromiseMessage.setPriorAcceptedProposalNumber(6);
+        negativePromiseMessage.setPriorAcceptedValue(ConsensusValue.of(99));
+        byte[] bytes = messageSerialization.serialize(negativePromiseMessage);
+        Optional<Message> received = messageSerialization.deserialize(bytes);
+        Assertions.assertTrue(received.isPresent());
+        Assertions.assertTrue(received.get() instanceof NegativePromiseMessage);
+        NegativePromiseMessage receivedNegativePromise = NegativePromiseMessage.class.cast(received.get());
+        Assertions.assertEquals(3, receivedNegativePromise.getExecutionId());
+        Assertions.assertEquals(5, receivedNegativePromise.getProposalNumber());
+        Assertions.assertEquals(7, receivedNegativePromise.getPriorPromisedProposalNumber());
+        Assertions.assertEquals(6, receivedNegativePromise.getPriorAcceptedProposalNumber());
+        Assertions.assertEquals(ConsensusValue.of(99), receivedNegativePromise.getPriorAcceptedValue());
+    }
+
+    @Test
+    public void testCatchUpResponseSerialization() {
+        CatchUpResponseMessage responseMessage = new CatchUpResponseMessage();
+        responseMessage.setFirstExecutionId(11);
+        responseMessage.setLast(true);
+        List<ConsensusValue> values = new ArrayList<>();
+        for (int i = 0; i < 2048; i++) {
+            values.add(ConsensusValue.of(i * 3L));
+        }
+        // entry kinds survive the trip
+        values.set(1, values.get(1).withKind(EntryKind.Membership));
+        responseMessage.setValues(values);
+        byte[] bytes = messageSerialization.serialize(responseMessage);
+        Assertions.assertTrue(bytes.length <= MessageSerialization.MAX_MESSAGE_LENGTH);
+        Optional<Message> received = messageSerialization.deserialize(bytes);
+        Assertions.assertTrue(received.isPresent());
+        CatchUpResponseMessage receivedResponse = CatchUpResponseMessage.class.cast(received.get());
+        Assertions.assertEquals(11, receivedResponse.getFirstExecutionId());
+        Assertions.assertTrue(receivedResponse.isLast());
+        Assertions.assertFalse(receivedResponse.isUnavailable());
+        Assertions.assertEquals(values, receivedResponse.getValues());
+
+        CatchUpResponseMessage unavailable = new CatchUpResponseMessage();
+        unavailable.setFirstExecutionId(3);
+        unavailable.setLast(true);
+        unavailable.setUnavailable(true);
+        Optional<Message> receivedUnavailable = messageSerialization.deserialize(messageSerialization.serialize(unavailable));
+        Assertions.assertTrue(receivedUnavailable.isPresent());
+        Assertions.assertTrue(CatchUpResponseMessage.class.cast(receivedUnavailable.get()).isUnavailable());
+        Assertions.assertTrue(CatchUpResponseMessage.class.cast(receivedUnavailable.get()).getValues().isEmpty());
+    }
+
+    @Test
+    public void testCatchUpSnapshotSerialization() {
+        CatchUpSnapshotMessage snapshotMessage = new CatchUpSnapshotMessage();
+        snapshotMessage.setSnapshotExecutionId(7);
+        snapshotMessage.setTotalLength(100);
+        snapshotMessage.setOffset(40);
+        snapshotMessage.setData(new byte[]{ 1, 2, 3 });
+        Optional<Message> received = messageSerialization.deserialize(messageSerialization.serialize(snapshotMessage));
+        Assertions.assertTrue(received.isPresent());
+        CatchUpSnapshotMessage receivedSnapshot = CatchUpSnapshotMessage.class.cast(received.get());
+        Assertions.assertEquals(7, receivedSnapshot.getSnapshotExecutionId());
+        Assertions.assertEquals(100, receivedSnapshot.getTotalLength());
+        Assertions.assertEquals(40, receivedSnapshot.getOffset());
+        Assertions.assertArrayEquals(new byte[]{ 1, 2, 3 }, receivedSnapshot.getData());
+    }
+
+    @Test
+    public void testLargeValueSerialization() {
+        byte[] payload = new byte[ConsensusValue.MAX_LENGTH];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte)i;
+        }
+        PleaseAcceptMessage pleaseAcceptMessage = new PleaseAcceptMessage();
+        pleaseAcceptMessage.setExecutionId(4);
+        pleaseAcceptMessage.setProposalNumberToAccept(9);
+        pleaseAcceptMessage.setValueToAccept(ConsensusValue.wrap(payload));
+        byte[] bytes = messageSerialization.serialize(pleaseAcceptMessage);
+        Assertions.assertTrue(bytes.length <= MessageSerialization.MAX_MESSAGE_LENGTH);
+        Optional<Message> received = messageSerialization.deserialize(bytes);
+        Assertions.assertTrue(received.isPresent());
+        ConsensusValue receivedValue = PleaseAcceptMessage.class.cast(received.get()).getValueToAccept();
+        Assertions.assertArrayEquals(payload, receivedValue.toByteArray());
+        // a view of the received bytes, not a copy
+        Assertions.assertFalse(receivedValue.isInline());
+        bytes[bytes.length - 1]++;
+        Assertions.assertEquals(bytes[bytes.length - 1], receivedValue.asReadOnlyBuffer().get(payload.length - 1));
+    }
+
+    @Test
+    public void testCorruptLengthRejected() {
+        CatchUpSnapshotMessage snapshotMessage = new CatchUpSnapshotMessage();
+        snapshotMessage.setData(new byte[]{ 1, 2, 3 });
+        byte[] bytes = messageSerialization.serialize(snapshotMessage);
+        // claim more data than the message holds
+        ByteBuffer.wrap(bytes).putInt(bytes.length - 7, Integer.MAX_VALUE);
+        Assertions.assertFalse(messageSerialization.deserialize(bytes).isPresent());
+    }
 }
@@ -0,0 +1,63 @@
+package dev.efaust.collab.paxos;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+public class ConsensusValueTest {
+    @Test
+    public void testLongRoundTrip() {
+        ConsensusValue value = ConsensusValue.of(-42L);
+        Assertions.assertTrue(value.isLong());
+        Assertions.assertEquals(-42L, value.asLong());
+        Assertions.assertEquals(-42L, value.prefixAsLong());
+        Assertions.assertEquals(ConsensusValue.of(-42L), ConsensusValue.wrap(value.toByteArray()));
+        Assertions.assertThrows(IllegalStateException.class, () -> ConsensusValue.wrap(new byte[3]).asLong());
+    }
+
+    @Test
+    public void testSmallValuesAreCopied() {
+        byte[] bytes = new byte[ConsensusValue.INLINE_MAX_LENGTH];
+        ConsensusValue value = ConsensusValue.wrap(bytes);
+        Assertions.assertTrue(value.isInline());
+        bytes[0] = 1;
+        Assertions.assertEquals(0, value.asReadOnlyBuffer().get(0));
+    }
+
+    @Test
+    public void testLargeValuesAreViews() {
+        ByteBuffer buffer = ByteBuffer.allocate(1000);
+        buffer.position(100);
+        ConsensusValue value = ConsensusValue.wrap(buffer);
+        Assertions.assertFalse(value.isInline());
+        Assertions.assertEquals(900, value.length());
+        Assertions.assertEquals(100, buffer.position());
+        buffer.put(100, (byte)7);
+        Assertions.assertEquals(7, value.asReadOnlyBuffer().get(0));
+        Assertions.assertTrue(value.asReadOnlyBuffer().isReadOnly());
+    }
+
+    @Test
+    public void testKindIsPartOfValue() {
+        ConsensusValue value = ConsensusValue.of(7L);
+        Assertions.assertEquals(EntryKind.Value, value.kind());
+        ConsensusValue membership = value.withKind(EntryKind.Membership);
+        Assertions.assertEquals(EntryKind.Membership, membership.kind());
+        Assertions.assertArrayEquals(value.toByteArray(), membership.toByteArray());
+        Assertions.assertNotEquals(value, membership);
+        Assertions.assertEquals(value, membership.withKind(EntryKind.Value));
+    }
+
+    @Test
+    public void testTooLargeRejected() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> ConsensusValue.wrap(new byte[ConsensusValue.MAX_LENGTH + 1]));
+    }
+
+    @Test
+    public void testPrefixAsLongPadsShortValues() {
+        Assertions.assertEquals(0x0102000000000000L, ConsensusValue.wrap(new byte[]{ 1, 2 }).prefixAsLong());
+        Assertions.assertEquals(0, ConsensusValue.EMPTY.prefixAsLong());
+    }
+}
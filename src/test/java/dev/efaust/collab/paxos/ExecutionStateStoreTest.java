@@ -0,0 +1,88 @@
+package dev.efaust.collab.paxos;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ExecutionStateStoreTest {
+    private static final int WINDOW_SIZE = 8;
+
+    private ExecutionStateStore store;
+
+    @BeforeEach
+    public void before() {
+        store = new ExecutionStateStore(WINDOW_SIZE);
+    }
+
+    @Test
+    public void testNextExecutionIdTracksHighWaterMark() {
+        Assertions.assertEquals(1, store.nextExecutionId());
+        store.getOrCreate(1);
+        Assertions.assertEquals(2, store.nextExecutionId());
+        store.getOrCreate(5);
+        Assertions.assertEquals(6, store.nextExecutionId());
+        // creating an older execution inside the window does not move the high-water mark
+        store.getOrCreate(3);
+        Assertions.assertEquals(6, store.nextExecutionId());
+    }
+
+    @Test
+    public void testGetOrCreateReturnsSameState() {
+        ExecutionState state = store.getOrCreate(2);
+        Assertions.assertSame(state, store.getOrCreate(2));
+        Assertions.assertSame(state, store.get(2));
+        Assertions.assertNull(store.get(1));
+    }
+
+    @Test
+    public void testSlidingWindowEvictsOldExecutions() {
+        store.getOrCreate(1);
+        store.getOrCreate(2);
+
+        // id 9 shares a slot with id 1, id 10 with id 2
+        store.getOrCreate(9);
+        Assertions.assertNull(store.get(1));
+        Assertions.assertNotNull(store.get(2));
+        Assertions.assertTrue(store.isBehindWindow(1));
+        Assertions.assertFalse(store.isBehindWindow(2));
+        Assertions.assertEquals(2, store.getLowWaterMark());
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> store.getOrCreate(1));
+    }
+
+    @Test
+    public void testJumpPastWholeWindow() {
+        for (long id = 1; id <= WINDOW_SIZE; id++) {
+            store.getOrCreate(id);
+        }
+        store.getOrCreate(100);
+        for (long id = 1; id <= WINDOW_SIZE; id++) {
+            Assertions.assertNull(store.get(id));
+        }
+        Assertions.assertEquals(101, store.nextExecutionId());
+        Assertions.assertNull(store.get(99));
+        Assertions.assertNotNull(store.getOrCreate(99));
+    }
+
+    @Test
+    public void testJumpToLargestExecutionIdTerminates() {
+        store.getOrCreate(1);
+        store.getOrCreate(Long.MAX_VALUE);
+        Assertions.assertNull(store.get(1));
+        Assertions.assertNotNull(store.get(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testFarAheadOfWindow() {
+        store.getOrCreate(3);
+        Assertions.assertFalse(store.isAheadOfWindow(4 + WINDOW_SIZE));
+        Assertions.assertTrue(store.isAheadOfWindow(5 + WINDOW_SIZE));
+        Assertions.assertTrue(store.isAheadOfWindow(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testRejectsInvalidWindowSize() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ExecutionStateStore(0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ExecutionStateStore(12));
+    }
+}
@@ -1,14 +1,26 @@
 package dev.efaust.collab.paxos;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import dev.efaust.collab.liveness.HeartbeatMessage;
+import dev.efaust.collab.liveness.NodeRole;
 import dev.efaust.collab.messaging.InMemoryInterconnect;
 import dev.efaust.collab.messaging.InMemoryMessagingLayer;
 import dev.efaust.collab.messaging.Message;
 import dev.efaust.collab.messaging.MessageHistoryEntry;
+import dev.efaust.collab.paxos.batch.ProposalBatcher;
+import dev.efaust.collab.paxos.lease.LeaseManager;
+import dev.efaust.collab.paxos.lease.LeaseValue;
+import dev.efaust.collab.paxos.membership.MembershipManager;
+import dev.efaust.collab.paxos.membership.MembershipValue;
 import dev.efaust.collab.paxos.messages.AcceptedMessage;
+import dev.efaust.collab.paxos.messages.CatchUpRequestMessage;
+import dev.efaust.collab.paxos.messages.NegativePromiseMessage;
+import dev.efaust.collab.paxos.messages.PleaseAcceptMessage;
 import dev.efaust.collab.paxos.messages.PrepareMessage;
 import dev.efaust.collab.paxos.messages.PromiseMessage;
+import dev.efaust.collab.statemachine.KeyValueCommand;
+import dev.efaust.collab.statemachine.KeyValueStateMachine;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -18,6 +30,11 @@ import org.junit.jupiter.api.*;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 public class PaxosNodeTest {
@@ -35,6 +52,8 @@ public class PaxosNodeTest {
     private PaxosNode b;
     private PaxosNode c;
     private InMemoryInterconnect interconnect;
+    // fake monotonic clock shared by all nodes, tests advance it explicitly
+    private AtomicLong clock;
 
     @BeforeAll
     public static void beforeAll() {
@@ -45,18 +64,22 @@ public class PaxosNodeTest {
     @BeforeEach
     public void beforeEach() throws IOException {
         // Set up nodes
+        clock = new AtomicLong(0);
         msgA = new InMemoryMessagingLayer(ADDRESS_A);
-        a = new PaxosNode(ADDRESS_A, msgA);
+        a = new PaxosNode(ADDRESS_A, msgA, clock::get);
         msgB = new InMemoryMessagingLayer(ADDRESS_B);
-        b = new PaxosNode(ADDRESS_B, msgB);
+        b = new PaxosNode(ADDRESS_B, msgB, clock::get);
         msgC = new InMemoryMessagingLayer(ADDRESS_C);
-        c = new PaxosNode(ADDRESS_C, msgC);
+        c = new PaxosNode(ADDRESS_C, msgC, clock::get);
 
         // Set up network
         interconnect = new InMemoryInterconnect();
         interconnect.addNode(msgA);
         interconnect.addNode(msgB);
         interconnect.addNode(msgC);
+        for (PaxosNode node : ImmutableSet.of(a, b, c)) {
+            node.getMembership().install(ALL);
+        }
 
         // Send heartbeats to facilitate neighbor discovery.
         // Later phases of Paxos depend on consensus from a quorum of nodes, thus each node needs to know of the others
@@ -77,7 +100,7 @@ public class PaxosNodeTest {
     @Test
     public void testStandardPrepare() throws IOException {
         // send prepare to kick off a round
-        long executionId = a.sendPrepare(() -> 2L);
+        long executionId = a.sendPrepare(() -> ConsensusValue.of(2L));
         interconnect.drainQueues();
 
         // receive prepare, process, send promise
@@ -96,9 +119,10 @@ public class PaxosNodeTest {
         log.info("prepare complete");
 
         // assert internal state updated correctly for each node
-        Assertions.assertEquals(1, a.getExecutionState(executionId).getPriorPrepareN());
-        Assertions.assertEquals(1, b.getExecutionState(executionId).getPriorPrepareN());
-        Assertions.assertEquals(1, c.getExecutionState(executionId).getPriorPrepareN());
+        long expectedN = ProposalNumbers.of(1, ordinal(ADDRESS_A));
+        Assertions.assertEquals(expectedN, a.getExecutionState(executionId).getPriorPrepareN());
+        Assertions.assertEquals(expectedN, b.getExecutionState(executionId).getPriorPrepareN());
+        Assertions.assertEquals(expectedN, c.getExecutionState(executionId).getPriorPrepareN());
 
         // send promise messages
         interconnect.drainQueues();
@@ -128,6 +152,21 @@ public class PaxosNodeTest {
         }
     }
 
+    // time passes, with every node's heartbeats arriving on schedule
+    private void advanceClock(long nanos) {
+        clock.addAndGet(nanos);
+        for (PaxosNode node : ImmutableSet.of(a, b, c)) {
+            for (String peer : ALL) {
+                node.getPeerRegistry().heartbeat(peer);
+            }
+        }
+    }
+
+    // every node derives the same ordinals from the configuration installed in beforeEach
+    private int ordinal(String address) {
+        return a.getMembership().configurationFor(1).get().ordinal(address);
+    }
+
     protected int runUntilAllQueuesEmpty(int maxIterations) throws IOException {
         interconnect.drainQueues();
 
@@ -164,12 +203,12 @@ public class PaxosNodeTest {
         // Depending on deliver order of messages / where faults occur, outcome will be different.
 
         long executionId = a.getNextExecutionId();
-        a.sendPrepare(executionId, () -> 99L); // N=1
+        a.sendPrepare(executionId, () -> ConsensusValue.of(99L)); // round 1
         interconnect.drainQueues();
         a.receiveMessages();
         b.receiveMessages();
         c.receiveMessages();
-        b.sendPrepare(executionId, () -> 42L); // N=2
+        b.sendPrepare(executionId, () -> ConsensusValue.of(42L)); // round 2
         interconnect.drainQueues();
 
         // who should win? A or B?  -> depends on timing of accepts for A vs. promises for B
@@ -244,7 +283,7 @@ public class PaxosNodeTest {
     @Test
     public void testOneExecution() throws IOException {
         // send prepare to kick off a round
-        long executionId = a.sendPrepare(() -> 4L);
+        long executionId = a.sendPrepare(() -> ConsensusValue.of(4L));
         interconnect.drainQueues();
 
         // receive prepare, process, send promise
@@ -255,9 +294,10 @@ public class PaxosNodeTest {
         log.info("prepare complete");
 
         // assert internal state updated correctly for each node
-        Assertions.assertEquals(1, a.getExecutionState(executionId).getPriorPrepareN());
-        Assertions.assertEquals(1, b.getExecutionState(executionId).getPriorPrepareN());
-        Assertions.assertEquals(1, c.getExecutionState(executionId).getPriorPrepareN());
+        long expectedN = ProposalNumbers.of(1, ordinal(ADDRESS_A));
+        Assertions.assertEquals(expectedN, a.getExecutionState(executionId).getPriorPrepareN());
+        Assertions.assertEquals(expectedN, b.getExecutionState(executionId).getPriorPrepareN());
+        Assertions.assertEquals(expectedN, c.getExecutionState(executionId).getPriorPrepareN());
 
         // send promise messages
         interconnect.drainQueues();
@@ -290,4 +330,622 @@ public class PaxosNodeTest {
                 .collect(Collectors.toSet());
         Assertions.assertEquals(ImmutableSet.of(ADDRESS_A, ADDRESS_B, ADDRESS_C), nodesThatSentAccepted);
     }
+
+    private List<PrepareMessage> preparesSentBy(String address) {
+        return interconnect.getHistory().stream()
+                .filter((entry) -> entry.getSrcNode().equals(address) && entry.getDstNode().equals(address))
+                .filter((entry) -> entry.getMessage() instanceof PrepareMessage)
+                .map((entry) -> PrepareMessage.class.cast(entry.getMessage()))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testNegativePromiseTriggersRetryAfterBackoff() throws IOException {
+        long executionId = a.getNextExecutionId();
+        // B proposes twice, ending up in round 2
+        b.sendPrepare(executionId, () -> ConsensusValue.of(42L));
+        b.sendPrepare(executionId, () -> ConsensusValue.of(42L));
+        interconnect.drainQueues();
+        // C promises round 2 to B
+        c.receiveMessages();
+
+        // A has not seen B's prepares yet, so it picks round 1
+        a.sendPrepare(executionId, () -> ConsensusValue.of(99L));
+        interconnect.drainQueues();
+        // C rejects A's prepare
+        c.receiveMessages();
+        interconnect.drainQueues();
+
+        Assertions.assertTrue(interconnect.getHistory().stream()
+                .anyMatch((entry) -> entry.getSrcNode().equals(ADDRESS_C) && entry.getMessage() instanceof NegativePromiseMessage));
+
+        a.receiveMessages();
+        interconnect.drainQueues();
+
+        // no retry until backoff has elapsed
+        a.processTimers();
+        interconnect.drainQueues();
+        Assertions.assertEquals(1, preparesSentBy(ADDRESS_A).size());
+
+        advanceClock(RandomizedBackoff.DEFAULT_MAX_NANOS);
+        a.processTimers();
+        interconnect.drainQueues();
+        List<PrepareMessage> prepares = preparesSentBy(ADDRESS_A);
+        Assertions.assertEquals(2, prepares.size());
+        long retryN = prepares.get(1).getProposalNumber();
+        Assertions.assertTrue(retryN > ProposalNumbers.of(2, ordinal(ADDRESS_B)));
+
+        int maxIterations = 100;
+        Assertions.assertTrue(runUntilAllQueuesEmpty(maxIterations) < maxIterations);
+
+        // the retried proposal wins
+        Set<ConsensusValue> acceptedValues = interconnect.getHistory().stream()
+                .filter((entry) -> entry.getMessage() instanceof AcceptedMessage)
+                .map((entry) -> AcceptedMessage.class.cast(entry.getMessage()))
+                .filter((accepted) -> accepted.getAcceptedProposalNumber() == retryN)
+                .map(AcceptedMessage::getAcceptedValue)
+                .collect(Collectors.toSet());
+        Assertions.assertEquals(ImmutableSet.of(ConsensusValue.of(99L)), acceptedValues);
+    }
+
+    @Test
+    public void testConcurrentProposersNeverTie() throws IOException {
+        long executionId = a.getNextExecutionId();
+        // neither proposer knows about the other, both pick their first round
+        a.sendPrepare(executionId, () -> ConsensusValue.of(99L));
+        b.sendPrepare(executionId, () -> ConsensusValue.of(42L));
+        long nA = a.getExecutionState(executionId).getProposalN();
+        long nB = b.getExecutionState(executionId).getProposalN();
+        Assertions.assertEquals(1, ProposalNumbers.round(nA));
+        Assertions.assertEquals(1, ProposalNumbers.round(nB));
+        Assertions.assertNotEquals(nA, nB);
+
+        int maxIterations = 100;
+        Assertions.assertTrue(runUntilAllQueuesEmpty(maxIterations) < maxIterations);
+
+        // exactly one of the two rounds collects accepts, the lower one is preempted
+        long winningN = Math.max(nA, nB);
+        Set<Long> acceptedNs = interconnect.getHistory().stream()
+                .filter((entry) -> entry.getMessage() instanceof AcceptedMessage)
+                .map((entry) -> AcceptedMessage.class.cast(entry.getMessage()).getAcceptedProposalNumber())
+                .collect(Collectors.toSet());
+        Assertions.assertEquals(ImmutableSet.of(winningN), acceptedNs);
+    }
+
+    @Test
+    public void testPrepareTimeoutRetriesAfterLostMessages() throws IOException {
+        long executionId = a.sendPrepare(() -> ConsensusValue.of(7L));
+        interconnect.drainQueues();
+        // the network loses the prepare
+        msgA.getReceiveQueue().clear();
+        msgB.getReceiveQueue().clear();
+        msgC.getReceiveQueue().clear();
+
+        Assertions.assertEquals(ExecutionState.ProposerPhase.Preparing, a.getExecutionState(executionId).getProposerPhase());
+
+        // timeout, then backoff, then a new round
+        for (int i = 0; i < 10 && preparesSentBy(ADDRESS_A).size() < 2; i++) {
+            advanceClock(RandomizedBackoff.DEFAULT_MAX_NANOS);
+            a.processTimers();
+            interconnect.drainQueues();
+        }
+        Assertions.assertEquals(2, preparesSentBy(ADDRESS_A).size());
+
+        int maxIterations = 100;
+        Assertions.assertTrue(runUntilAllQueuesEmpty(maxIterations) < maxIterations);
+        for (PaxosNode node : ImmutableSet.of(a, b, c)) {
+            Assertions.assertEquals(Optional.of(ConsensusValue.of(7L)), node.getExecutionState(executionId).getDecidedValueOptional());
+        }
+        Assertions.assertEquals(ExecutionState.ProposerPhase.Idle, a.getExecutionState(executionId).getProposerPhase());
+        Assertions.assertEquals(0, a.getPendingTimeouts());
+    }
+
+    @Test
+    public void testLeaseHolderServesLocalReads() throws IOException {
+        Map<PaxosNode, KeyValueStateMachine> stateMachines = new HashMap<>();
+        for (PaxosNode node : ImmutableSet.of(a, b, c)) {
+            KeyValueStateMachine stateMachine = new KeyValueStateMachine();
+            node.setStateMachine(stateMachine);
+            stateMachines.put(node, stateMachine);
+        }
+        int maxIterations = 100;
+        long leaseExecutionId = a.acquireLease();
+        Assertions.assertTrue(runUntilAllQueuesEmpty(maxIterations) < maxIterations);
+        Assertions.assertTrue(a.isLeaseHolder());
+        Assertions.assertFalse(b.isLeaseHolder());
+        Assertions.assertTrue(a.getExecutionState(leaseExecutionId).getDecidedValueOptional().isPresent());
+
+        a.sendPrepare(() -> KeyValueCommand.put(5, 50));
+        Assertions.assertTrue(runUntilAllQueuesEmpty(maxIterations) < maxIterations);
+        Assertions.assertEquals(Optional.of(50), a.leaseRead(() -> stateMachines.get(a).get(5)));
+        Assertions.assertThrows(IllegalStateException.class, () -> b.leaseRead(() -> stateMachines.get(b).get(5)));
+
+        // other proposers are rejected while the lease is held
+        long rejectedExecutionId = b.sendPrepare(() -> ConsensusValue.of(6L));
+        Assertions.assertTrue(runUntilAllQueuesEmpty(maxIterations) < maxIterations);
+        Assertions.assertFalse(b.getExecutionState(rejectedExecutionId).getDecidedValueOptional().isPresent());
+        Assertions.assertEquals(ExecutionState.ProposerPhase.BackingOff, b.getExecutionState(rejectedExecutionId).getProposerPhase());
+
+        // without renewal the lease runs out, the holder gives up before acceptors do
+        a.releaseLease();
+        advanceClock(LeaseManager.DEFAULT_DURATION_NANOS - LeaseManager.DEFAULT_SAFETY_MARGIN_NANOS);
+        Assertions.assertFalse(a.isLeaseHolder());
+        Assertions.assertTrue(c.getLeaseManager().isBlockedByLease(ADDRESS_B));
+        advanceClock(LeaseManager.DEFAULT_SAFETY_MARGIN_NANOS);
+        Assertions.assertFalse(c.getLeaseManager().isBlockedByLease(ADDRESS_B));
+
+        // B's retry now goes through
+        for (int i = 0; i < 10 && !b.getExecutionState(rejectedExecutionId).getDecidedValueOptional().isPresent(); i++) {
+            advanceClock(RandomizedBackoff.DEFAULT_MAX_NANOS);
+            b.processTimers();
+            runUntilAllQueuesEmpty(maxIterations);
+        }
+        Assertions.assertEquals(Optional.of(ConsensusValue.of(6L)), b.getExecutionState(rejectedExecutionId).getDecidedValueOptional());
+    }
+
+    @Test
+    public void testAcceptorsBlockWithoutLearningTheLease() throws IOException {
+        // the bytes of a lease for A, proposed as a plain value, are just a value
+        ConsensusValue leaseBytes = ConsensusValue.wrap(LeaseValue.encode(ADDRESS_A).toByteArray());
+        int maxIterations = 100;
+        a.sendPrepare(() -> leaseBytes);
+        Assertions.assertTrue(runUntilAllQueuesEmpty(maxIterations) < maxIterations);
+        Assertions.assertFalse(a.isLeaseHolder());
+        Assertions.assertFalse(c.getLeaseManager().isBlockedByLease(ADDRESS_B));
+
+        // only A hears the Accepted messages, B and C accept the lease without learning it was decided
+        long leaseExecutionId = a.acquireLease();
+        a.releaseLease();
+        for (int i = 0; i < maxIterations; i++) {
+            interconnect.drainQueues();
+            msgB.getReceiveQueue().removeIf((message) -> message instanceof AcceptedMessage);
+            msgC.getReceiveQueue().removeIf((message) -> message instanceof AcceptedMessage);
+            if (msgA.getReceiveQueue().isEmpty() && msgB.getReceiveQueue().isEmpty() && msgC.getReceiveQueue().isEmpty()) {
+                break;
+            }
+            a.receiveMessages();
+            b.receiveMessages();
+            c.receiveMessages();
+        }
+        Assertions.assertTrue(a.isLeaseHolder());
+        Assertions.assertFalse(c.getExecutionState(leaseExecutionId).getDecidedValueOptional().isPresent());
+        Assertions.assertTrue(c.getLeaseManager().isBlockedByLease(ADDRESS_B));
+
+        // so B cannot get anything decided behind the holder's back
+        long rejectedExecutionId = b.sendPrepare(() -> ConsensusValue.of(6L));
+        Assertions.assertTrue(runUntilAllQueuesEmpty(maxIterations) < maxIterations);
+        Assertions.assertFalse(b.getExecutionState(rejectedExecutionId).getDecidedValueOptional().isPresent());
+
+        // learning the old lease later, e.g. through catch-up, grants nothing new
+        advanceClock(LeaseManager.DEFAULT_DURATION_NANOS);
+        Assertions.assertFalse(c.getLeaseManager().isBlockedByLease(ADDRESS_B));
+        a.sendPrepare(() -> ConsensusValue.of(7L));
+        Assertions.assertTrue(runUntilAllQueuesEmpty(maxIterations) < maxIterations);
+        catchUp(maxIterations);
+        Assertions.assertTrue(c.getExecutionState(leaseExecutionId).getDecidedValueOptional().isPresent());
+        Assertions.assertFalse(c.getLeaseManager().isBlockedByLease(ADDRESS_B));
+    }
+
+    @Test
+    public void testDecidedExecutionsAppliedInOrder() throws IOException {
+        Map<PaxosNode, KeyValueStateMachine> stateMachines = new HashMap<>();
+        for (PaxosNode node : ImmutableSet.of(a, b, c)) {
+            KeyValueStateMachine stateMachine = new KeyValueStateMachine();
+            node.setStateMachine(stateMachine);
+            stateMachines.put(node, stateMachine);
+        }
+
+        int maxIterations = 100;
+        // execution 2 is decided first, but can not be applied until execution 1 is
+        a.sendPrepare(2, () -> KeyValueCommand.put(1, 20));
+        Assertions.assertTrue(runUntilAllQueuesEmpty(maxIterations) < maxIterations);
+        for (PaxosNode node : ImmutableSet.of(a, b, c)) {
+            Assertions.assertEquals(0, node.getAppliedThrough());
+            Assertions.assertEquals(Optional.empty(), stateMachines.get(node).get(1));
+        }
+
+        b.sendPrepare(1, () -> KeyValueCommand.put(1, 10));
+        Assertions.assertTrue(runUntilAllQueuesEmpty(maxIterations) < maxIterations);
+        for (PaxosNode node : ImmutableSet.of(a, b, c)) {
+            Assertions.assertEquals(2, node.getAppliedThrough());
+            Assertions.assertEquals(2, stateMachines.get(node).getAppliedThrough());
+            Assertions.assertEquals(Optional.of(20), stateMachines.get(node).get(1));
+        }
+    }
+
+    // runs the cluster with every message to C lost
+    private void runWithoutC(int maxIterations) throws IOException {
+        for (int i = 0; i < maxIterations; i++) {
+            interconnect.drainQueues();
+            msgC.getReceiveQueue().clear();
+            if (msgA.getReceiveQueue().isEmpty() && msgB.getReceiveQueue().isEmpty()) {
+                return;
+            }
+            a.receiveMessages();
+            b.receiveMessages();
+        }
+    }
+
+    private void catchUp(int maxIterations) throws IOException {
+        for (int i = 0; i < 5; i++) {
+            advanceClock(TimeUnit.SECONDS.toNanos(1));
+            for (PaxosNode node : ImmutableSet.of(a, b, c)) {
+                node.processTimers();
+            }
+            runUntilAllQueuesEmpty(maxIterations);
+        }
+    }
+
+    @Test
+    public void testLaggingNodeCatchesUpFromPeer() throws IOException {
+        Map<PaxosNode, KeyValueStateMachine> stateMachines = new HashMap<>();
+        for (PaxosNode node : ImmutableSet.of(a, b, c)) {
+            KeyValueStateMachine stateMachine = new KeyValueStateMachine();
+            node.setStateMachine(stateMachine);
+            stateMachines.put(node, stateMachine);
+        }
+
+        int maxIterations = 100;
+        // C misses executions 1 and 2 entirely, then sees 3 decided
+        a.sendPrepare(1, () -> KeyValueCommand.put(1, 10));
+        runWithoutC(maxIterations);
+        b.sendPrepare(2, () -> KeyValueCommand.put(2, 20));
+        runWithoutC(maxIterations);
+        a.sendPrepare(3, () -> KeyValueCommand.put(3, 30));
+        Assertions.assertTrue(runUntilAllQueuesEmpty(maxIterations) < maxIterations);
+        Assertions.assertEquals(3, c.getDecidedThrough());
+        Assertions.assertEquals(0, c.getAppliedThrough());
+
+        catchUp(maxIterations);
+        Assertions.assertEquals(3, c.getAppliedThrough());
+        Assertions.assertEquals(Optional.of(10), stateMachines.get(c).get(1));
+        Assertions.assertEquals(Optional.of(20), stateMachines.get(c).get(2));
+        Assertions.assertEquals(Optional.of(30), stateMachines.get(c).get(3));
+        Assertions.assertEquals(Optional.of(KeyValueCommand.put(1, 10)), c.getExecutionState(1).getDecidedValueOptional());
+    }
+
+    @Test
+    public void testLaggingNodeCatchesUpFromSnapshot() throws IOException {
+        Map<PaxosNode, KeyValueStateMachine> stateMachines = new HashMap<>();
+        for (PaxosNode node : ImmutableSet.of(a, b, c)) {
+            KeyValueStateMachine stateMachine = new KeyValueStateMachine();
+            node.setStateMachine(stateMachine);
+            stateMachines.put(node, stateMachine);
+        }
+
+        int maxIterations = 100;
+        for (int key = 1; key <= 3; key++) {
+            int value = key * 10;
+            a.sendPrepare(key, () -> KeyValueCommand.put(value, value));
+            runWithoutC(maxIterations);
+        }
+        // the furthest execution peers accept slides every window past executions 1-3, peers can only send a snapshot
+        long laterExecutionId = a.getNextExecutionId() + ExecutionStateStore.DEFAULT_WINDOW_SIZE;
+        b.sendPrepare(laterExecutionId, () -> KeyValueCommand.put(99, 99));
+        Assertions.assertTrue(runUntilAllQueuesEmpty(maxIterations) < maxIterations);
+        Assertions.assertEquals(3, a.getAppliedThrough());
+        Assertions.assertEquals(0, c.getAppliedThrough());
+
+        catchUp(maxIterations);
+        Assertions.assertEquals(3, c.getAppliedThrough());
+        Assertions.assertEquals(3, stateMachines.get(c).getAppliedThrough());
+        Assertions.assertEquals(stateMachines.get(a).size(), stateMachines.get(c).size());
+        for (int key = 1; key <= 3; key++) {
+            Assertions.assertEquals(Optional.of(key * 10), stateMachines.get(c).get(key * 10));
+        }
+    }
+
+    @Test
+    public void testLearnerWaitsForConfigurationBeyondAlpha() throws IOException {
+        int maxIterations = 100;
+        a.sendPrepare(1, () -> ConsensusValue.of(10L));
+        runWithoutC(maxIterations);
+        // execution 1 could reconfigure execution alpha + 1, so C cannot count its Accepted messages yet
+        long executionId = MembershipManager.DEFAULT_ALPHA + 1;
+        a.sendPrepare(executionId, () -> ConsensusValue.of(20L));
+        Assertions.assertTrue(runUntilAllQueuesEmpty(maxIterations) < maxIterations);
+        Assertions.assertEquals(Optional.of(ConsensusValue.of(20L)), a.getExecutionState(executionId).getDecidedValueOptional());
+        Assertions.assertFalse(c.getExecutionState(executionId).getDecidedValueOptional().isPresent());
+
+        // once execution 1 is caught up and applied, the same messages decide it
+        catchUp(maxIterations);
+        Assertions.assertEquals(1, c.getAppliedThrough());
+        Assertions.assertEquals(Optional.of(ConsensusValue.of(20L)), c.getExecutionState(executionId).getDecidedValueOptional());
+    }
+
+    @Test
+    public void testNonMembersCannotPropose() throws IOException {
+        PrepareMessage prepare = new PrepareMessage(1, ProposalNumbers.of(5, 1));
+        prepare.setSourceAddress("X");
+        a.receiveMessage(prepare);
+        PleaseAcceptMessage accept = new PleaseAcceptMessage();
+        accept.setExecutionId(2);
+        accept.setProposalNumberToAccept(ProposalNumbers.of(5, 1));
+        accept.setValueToAccept(ConsensusValue.of(1L));
+        accept.setSourceAddress("X");
+        a.receiveMessage(accept);
+        interconnect.drainQueues();
+        Assertions.assertTrue(msgB.getReceiveQueue().isEmpty());
+        Assertions.assertTrue(a.getExecutionState(2) == null || a.getExecutionState(2).getAccepts().isEmpty());
+    }
+
+    @Test
+    public void testLastRoundIsRefused() throws IOException {
+        long lastRoundN = ProposalNumbers.of(ProposalNumbers.MAX_ROUND, ordinal(ADDRESS_B));
+        PrepareMessage prepare = new PrepareMessage(1, lastRoundN);
+        prepare.setSourceAddress(ADDRESS_B);
+        a.receiveMessage(prepare);
+        interconnect.drainQueues();
+        Assertions.assertTrue(msgB.getReceiveQueue().isEmpty());
+
+        // nor does a rejecting acceptor reporting such a promise raise the proposer's next N
+        a.sendPrepare(1, () -> ConsensusValue.of(2L));
+        ExecutionState state = a.getExecutionState(1);
+        NegativePromiseMessage negativePromise = new NegativePromiseMessage();
+        negativePromise.setExecutionId(1);
+        negativePromise.setProposalNumber(state.getProposalN());
+        negativePromise.setPriorPromisedProposalNumber(lastRoundN);
+        negativePromise.setSourceAddress(ADDRESS_C);
+        a.receiveMessage(negativePromise);
+        Assertions.assertEquals(0, state.getHighestRejectingN());
+
+        // with no proposal number left, the proposer gives up rather than throwing
+        long proposalN = state.getProposalN();
+        state.setPriorPrepareN(lastRoundN);
+        a.sendPrepare(1, () -> ConsensusValue.of(2L));
+        Assertions.assertEquals(proposalN, state.getProposalN());
+        Assertions.assertEquals(ExecutionState.ProposerPhase.Idle, state.getProposerPhase());
+    }
+
+    @Test
+    public void testFarFutureExecutionsAreDropped() throws IOException {
+        a.sendPrepare(1, () -> ConsensusValue.of(10L));
+        PrepareMessage prepare = new PrepareMessage(Long.MAX_VALUE, ProposalNumbers.of(5, 2));
+        prepare.setSourceAddress("B");
+        a.receiveMessage(prepare);
+        Assertions.assertNull(a.getExecutionState(Long.MAX_VALUE));
+        Assertions.assertNotNull(a.getExecutionState(1));
+
+        int maxIterations = 100;
+        Assertions.assertTrue(runUntilAllQueuesEmpty(maxIterations) < maxIterations);
+        Assertions.assertEquals(Optional.of(ConsensusValue.of(10L)), a.getExecutionState(1).getDecidedValueOptional());
+    }
+
+    @Test
+    public void testOversizedSnapshotIsRefused() throws IOException {
+        for (PaxosNode node : ImmutableSet.of(a, b, c)) {
+            node.setStateMachine(new KeyValueStateMachine());
+        }
+        c.setMaxSnapshotBytes(16);
+
+        int maxIterations = 100;
+        a.sendPrepare(1, () -> KeyValueCommand.put(10, 10));
+        runWithoutC(maxIterations);
+        long laterExecutionId = a.getNextExecutionId() + ExecutionStateStore.DEFAULT_WINDOW_SIZE;
+        b.sendPrepare(laterExecutionId, () -> KeyValueCommand.put(99, 99));
+        Assertions.assertTrue(runUntilAllQueuesEmpty(maxIterations) < maxIterations);
+
+        catchUp(maxIterations);
+        Assertions.assertEquals(0, c.getAppliedThrough());
+    }
+
+    @Test
+    public void testLaggingNodeStopsAskingPeersThatCannotServe() throws IOException {
+        // no state machine takes snapshots, so once the window slides past execution 1 nobody can send it
+        int maxIterations = 100;
+        a.sendPrepare(1, () -> ConsensusValue.of(10L));
+        runWithoutC(maxIterations);
+        long laterExecutionId = a.getNextExecutionId() + ExecutionStateStore.DEFAULT_WINDOW_SIZE;
+        b.sendPrepare(laterExecutionId, () -> ConsensusValue.of(99L));
+        Assertions.assertTrue(runUntilAllQueuesEmpty(maxIterations) < maxIterations);
+        // too far ahead of C's window to hold, but enough to know it is behind
+        Assertions.assertNull(c.getExecutionState(laterExecutionId));
+
+        catchUp(maxIterations);
+        Assertions.assertEquals(0, c.getAppliedThrough());
+
+        // both peers said so, C gives up instead of asking again
+        c.receiveMessages();
+        advanceClock(TimeUnit.SECONDS.toNanos(1));
+        c.processTimers();
+        interconnect.drainQueues();
+        for (InMemoryMessagingLayer peer : ImmutableList.of(msgA, msgB)) {
+            Assertions.assertTrue(peer.getReceiveQueue().stream().noneMatch((message) -> message instanceof CatchUpRequestMessage));
+        }
+    }
+
+    @Test
+    public void testProposalsCoalescedIntoOneExecution() throws Exception {
+        Map<PaxosNode, KeyValueStateMachine> stateMachines = new HashMap<>();
+        for (PaxosNode node : ImmutableSet.of(a, b, c)) {
+            KeyValueStateMachine stateMachine = new KeyValueStateMachine();
+            node.setStateMachine(stateMachine);
+            stateMachines.put(node, stateMachine);
+        }
+
+        List<CompletableFuture<Decision>> futures = new ArrayList<>();
+        for (int key = 0; key < 100; key++) {
+            futures.add(a.propose(KeyValueCommand.put(key, key + 1)));
+        }
+        int maxIterations = 100;
+        Assertions.assertTrue(runUntilAllQueuesEmpty(maxIterations) < maxIterations);
+
+        for (int key = 0; key < 100; key++) {
+            Decision decision = futures.get(key).get(0, TimeUnit.SECONDS);
+            Assertions.assertEquals(1, decision.getExecutionId());
+            Assertions.assertEquals(KeyValueCommand.put(key, key + 1), decision.getValue());
+        }
+        for (PaxosNode node : ImmutableSet.of(a, b, c)) {
+            Assertions.assertEquals(100, stateMachines.get(node).size());
+            Assertions.assertEquals(Optional.of(100), stateMachines.get(node).get(99));
+        }
+        Assertions.assertEquals(0, a.getProposalBatcher().getInFlight());
+    }
+
+    @Test
+    public void testEqualProposalsFromTwoNodesAreBothDecided() throws Exception {
+        // both batches hold the same bytes and race for execution 1, only one of them can win it
+        CompletableFuture<Decision> fromA = a.propose(KeyValueCommand.put(1, 1));
+        CompletableFuture<Decision> fromB = b.propose(KeyValueCommand.put(1, 1));
+        int maxIterations = 100;
+        for (int i = 0; i < 10 && !(fromA.isDone() && fromB.isDone()); i++) {
+            runUntilAllQueuesEmpty(maxIterations);
+            advanceClock(RandomizedBackoff.DEFAULT_MAX_NANOS);
+            for (PaxosNode node : ImmutableSet.of(a, b, c)) {
+                node.processTimers();
+            }
+        }
+        Assertions.assertNotEquals(fromA.get(0, TimeUnit.SECONDS).getExecutionId(), fromB.get(0, TimeUnit.SECONDS).getExecutionId());
+    }
+
+    @Test
+    public void testNonVoterProposalsFail() throws IOException {
+        PaxosNode outsider = new PaxosNode("X", new InMemoryMessagingLayer("X"), clock::get);
+        outsider.getMembership().install(ALL);
+        CompletableFuture<Decision> future = outsider.propose(ConsensusValue.of(1L));
+        outsider.receiveMessages();
+        Assertions.assertTrue(future.isCompletedExceptionally());
+        ExecutionException e = Assertions.assertThrows(ExecutionException.class, future::get);
+        Assertions.assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+
+    @Test
+    public void testProposalLosingExecutionIsProposedAgain() throws Exception {
+        // B decides execution 1 without A hearing about it
+        b.sendPrepare(1, () -> ConsensusValue.of(99L));
+        for (int i = 0; i < 100; i++) {
+            interconnect.drainQueues();
+            msgA.getReceiveQueue().clear();
+            if (msgB.getReceiveQueue().isEmpty() && msgC.getReceiveQueue().isEmpty()) {
+                break;
+            }
+            b.receiveMessages();
+            c.receiveMessages();
+        }
+
+        // A's batch goes to execution 1 too, is rejected or has to carry on with B's value there, then moves on
+        CompletableFuture<Decision> future = a.propose(ConsensusValue.of(5L));
+        int maxIterations = 100;
+        for (int i = 0; i < 200 && !future.isDone(); i++) {
+            runUntilAllQueuesEmpty(maxIterations);
+            advanceClock(TimeUnit.MILLISECONDS.toNanos(20));
+            a.processTimers();
+        }
+
+        Assertions.assertEquals(new Decision(2, ConsensusValue.of(5L)), future.get(0, TimeUnit.SECONDS));
+        Assertions.assertEquals(Optional.of(ConsensusValue.of(99L)), a.getExecutionState(1).getDecidedValueOptional());
+    }
+
+    @Test
+    public void testProposalTimesOut() throws IOException {
+        CompletableFuture<Decision> future = a.propose(ConsensusValue.of(5L));
+        a.receiveMessages();
+        interconnect.drainQueues();
+        // the network loses everything
+        msgA.getReceiveQueue().clear();
+        msgB.getReceiveQueue().clear();
+        msgC.getReceiveQueue().clear();
+
+        advanceClock(ProposalBatcher.DEFAULT_TIMEOUT_NANOS);
+        a.processTimers();
+        Assertions.assertTrue(future.isCompletedExceptionally());
+        ExecutionException thrown = Assertions.assertThrows(ExecutionException.class, () -> future.get(0, TimeUnit.SECONDS));
+        Assertions.assertTrue(thrown.getCause() instanceof TimeoutException);
+        Assertions.assertEquals(0, a.getProposalBatcher().getInFlight());
+    }
+
+    @Test
+    public void testObserverLearnsWithoutVoting() throws IOException {
+        InMemoryMessagingLayer msgD = new InMemoryMessagingLayer("D");
+        PaxosNode d = new PaxosNode("D", msgD, clock::get);
+        d.setRole(NodeRole.Observer);
+        // learning needs to know the voters as much as voting does
+        d.getMembership().install(ALL);
+        interconnect.addNode(msgD);
+        for (PaxosNode node : ImmutableSet.of(a, b, c, d)) {
+            node.sendMessage(new HeartbeatMessage());
+        }
+        interconnect.drainQueues();
+        for (PaxosNode node : ImmutableSet.of(a, b, c, d)) {
+            node.receiveMessages();
+        }
+        Assertions.assertEquals(NodeRole.Observer, a.getPeerRegistry().getRoleForPeer("D"));
+        Assertions.assertEquals(ALL, a.getPeerRegistry().votersAlive());
+
+        // A and B are a majority of the three voters, they would not be a majority of four
+        long executionId = a.sendPrepare(() -> ConsensusValue.of(8L));
+        for (int i = 0; i < 100; i++) {
+            interconnect.drainQueues();
+            msgC.getReceiveQueue().clear();
+            if (msgA.getReceiveQueue().isEmpty() && msgB.getReceiveQueue().isEmpty() && msgD.getReceiveQueue().isEmpty()) {
+                break;
+            }
+            a.receiveMessages();
+            b.receiveMessages();
+            d.receiveMessages();
+        }
+        for (PaxosNode node : ImmutableSet.of(a, b, d)) {
+            Assertions.assertEquals(Optional.of(ConsensusValue.of(8L)), node.getExecutionState(executionId).getDecidedValueOptional());
+        }
+        Assertions.assertTrue(interconnect.getHistory().stream()
+                .noneMatch((entry) -> entry.getSrcNode().equals("D") && entry.getMessage() instanceof PaxosMessage));
+    }
+
+    @Test
+    public void testPaxosMessagesProveLiveness() throws IOException {
+        // no heartbeats for a long time, every peer is suspected
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        Assertions.assertTrue(a.getPeerRegistry().peersAlive().isEmpty());
+
+        // B's proposal reaches A, C stays quiet
+        b.sendPrepare(() -> ConsensusValue.of(9L));
+        interconnect.drainQueues();
+        a.receiveMessages();
+        Assertions.assertEquals(ImmutableSet.of("B"), a.getPeerRegistry().votersAlive());
+    }
+
+    @Test
+    public void testPreparesPastAlphaWindowAreDeferred() throws IOException {
+        for (long executionId = 1; executionId <= MembershipManager.DEFAULT_ALPHA; executionId++) {
+            Assertions.assertEquals(executionId, a.sendPrepare(() -> ConsensusValue.of(1L)));
+        }
+        // nothing applied yet, the next execution waits for the window to move
+        long deferred = a.sendPrepare(() -> ConsensusValue.of(2L));
+        Assertions.assertEquals(MembershipManager.DEFAULT_ALPHA + 1, deferred);
+        Assertions.assertNull(a.getExecutionState(deferred));
+
+        int maxIterations = 100;
+        Assertions.assertTrue(runUntilAllQueuesEmpty(maxIterations) < maxIterations);
+        for (PaxosNode node : ImmutableSet.of(a, b, c)) {
+            Assertions.assertEquals(Optional.of(ConsensusValue.of(2L)), node.getExecutionState(deferred).getDecidedValueOptional());
+        }
+    }
+
+    @Test
+    public void testConfiguredMembersFixQuorums() throws Exception {
+        // only reconfigure changes voters, a client value cannot pose as a configuration
+        Assertions.assertThrows(IllegalArgumentException.class, () -> a.propose(MembershipValue.encode(ImmutableSet.of("A"))));
+        // D joins the voters, but never answers
+        Set<String> withD = ImmutableSet.of(ADDRESS_A, ADDRESS_B, ADDRESS_C, "D");
+        CompletableFuture<Decision> reconfigured = a.reconfigure(withD);
+        int maxIterations = 100;
+        Assertions.assertTrue(runUntilAllQueuesEmpty(maxIterations) < maxIterations);
+        long activeFrom = reconfigured.get(0, TimeUnit.SECONDS).getExecutionId() + MembershipManager.DEFAULT_ALPHA;
+        for (PaxosNode node : ImmutableSet.of(a, b, c)) {
+            Assertions.assertEquals(Optional.of(ALL), node.getMembership().membersFor(activeFrom - 1));
+            Assertions.assertEquals(Optional.of(withD), node.getMembership().membersFor(activeFrom));
+        }
+
+        // before the new configuration is active, A and B are a majority of the three installed voters
+        a.sendPrepare(activeFrom - 1, () -> ConsensusValue.of(1L));
+        runWithoutC(maxIterations);
+        for (PaxosNode node : ImmutableSet.of(a, b)) {
+            Assertions.assertEquals(Optional.of(ConsensusValue.of(1L)), node.getExecutionState(activeFrom - 1).getDecidedValueOptional());
+        }
+
+        // afterwards they are not a majority of four, however alive the others look
+        a.sendPrepare(activeFrom, () -> ConsensusValue.of(2L));
+        runWithoutC(maxIterations);
+        Assertions.assertFalse(a.getExecutionState(activeFrom).getDecidedValueOptional().isPresent());
+    }
 }
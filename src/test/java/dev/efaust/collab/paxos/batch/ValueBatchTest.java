@@ -0,0 +1,52 @@
+package dev.efaust.collab.paxos.batch;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import dev.efaust.collab.paxos.ConsensusValue;
+import dev.efaust.collab.paxos.EntryKind;
+import dev.efaust.collab.paxos.membership.MembershipValue;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+public class ValueBatchTest {
+    @Test
+    public void testRoundTrip() {
+        List<ConsensusValue> values = ImmutableList.of(ConsensusValue.of(1L), ConsensusValue.EMPTY,
+                ConsensusValue.wrap(new byte[1000]), ConsensusValue.wrap(new byte[]{ 1, 2, 3 }));
+        ConsensusValue batch = ValueBatch.encode(1, 1, values);
+        Assertions.assertEquals(Optional.of(values), ValueBatch.decode(batch));
+    }
+
+    @Test
+    public void testBatchesOfEqualValuesDiffer() {
+        List<ConsensusValue> values = ImmutableList.of(ConsensusValue.of(1L));
+        Assertions.assertNotEquals(ValueBatch.encode(1, 1, values), ValueBatch.encode(2, 1, values));
+        Assertions.assertNotEquals(ValueBatch.encode(1, 1, values), ValueBatch.encode(1, 2, values));
+        Assertions.assertEquals(ValueBatch.decode(ValueBatch.encode(1, 1, values)), ValueBatch.decode(ValueBatch.encode(2, 1, values)));
+    }
+
+    @Test
+    public void testPlainValuesAreNotBatches() {
+        // the same bytes as a batch, but proposed as a plain value
+        ConsensusValue batch = ValueBatch.encode(1, 1, ImmutableList.of(ConsensusValue.of(7L)));
+        Assertions.assertFalse(ValueBatch.decode(ConsensusValue.wrap(batch.toByteArray())).isPresent());
+        Assertions.assertFalse(ValueBatch.decode(ConsensusValue.EMPTY).isPresent());
+
+        // a truncated entry
+        byte[] truncated = Arrays.copyOf(batch.toByteArray(), batch.length() - 1);
+        Assertions.assertFalse(ValueBatch.decode(ConsensusValue.wrap(truncated).withKind(EntryKind.Batch)).isPresent());
+    }
+
+    @Test
+    public void testEntriesKeepTheirKind() {
+        List<ConsensusValue> values = ImmutableList.of(ConsensusValue.of(1L),
+                MembershipValue.encode(ImmutableSet.of("A", "B", "C")));
+        Optional<List<ConsensusValue>> decoded = ValueBatch.decode(ValueBatch.encode(1, 1, values));
+        Assertions.assertEquals(Optional.of(values), decoded);
+        Assertions.assertEquals(EntryKind.Membership, decoded.get().get(1).kind());
+    }
+}
@@ -0,0 +1,211 @@
+package dev.efaust.collab.paxos.group;
+
+import com.google.common.collect.ImmutableList;
+import dev.efaust.collab.MessageType;
+import dev.efaust.collab.liveness.HeartbeatMessage;
+import dev.efaust.collab.liveness.swim.SwimMembership;
+import dev.efaust.collab.messaging.InMemoryInterconnect;
+import dev.efaust.collab.messaging.InMemoryMessagingLayer;
+import dev.efaust.collab.paxos.ConsensusValue;
+import dev.efaust.collab.trace.EventTracer;
+import dev.efaust.collab.trace.TraceDecoder;
+import dev.efaust.collab.trace.TraceEvent;
+import dev.efaust.collab.trace.TraceRecord;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.apache.logging.log4j.core.config.DefaultConfiguration;
+import org.junit.jupiter.api.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+public class PaxosGroupsTest {
+    private static final int GROUP_COUNT = 4;
+    private static final int WORKER_COUNT = 2;
+    private static final List<String> ADDRESSES = ImmutableList.of("A", "B", "C");
+
+    private InMemoryInterconnect interconnect;
+    private List<InMemoryMessagingLayer> messagingLayers;
+    private List<PaxosGroups> processes;
+    private Map<PaxosGroups, List<EventTracer>> tracers;
+
+    @BeforeAll
+    public static void beforeAll() {
+        Configurator.initialize(new DefaultConfiguration());
+        Configurator.setRootLevel(Level.WARN);
+    }
+
+    @BeforeEach
+    public void beforeEach() throws Exception {
+        interconnect = new InMemoryInterconnect();
+        messagingLayers = new ArrayList<>();
+        processes = new ArrayList<>();
+        tracers = new HashMap<>();
+        for (String address : ADDRESSES) {
+            InMemoryMessagingLayer messagingLayer = new InMemoryMessagingLayer(address);
+            interconnect.addNode(messagingLayer);
+            messagingLayers.add(messagingLayer);
+            PaxosGroups groups = new PaxosGroups(address, GROUP_COUNT, WORKER_COUNT, messagingLayer);
+            groups.start();
+            processes.add(groups);
+            List<EventTracer> groupTracers = new ArrayList<>();
+            for (int groupId = 0; groupId < GROUP_COUNT; groupId++) {
+                EventTracer tracer = new EventTracer(4096);
+                groupTracers.add(tracer);
+                groups.submit(groupId, (node) -> {
+                    node.setTracer(tracer);
+                    node.getMembership().install(new HashSet<>(ADDRESSES));
+                    return null;
+                }).get(5, TimeUnit.SECONDS);
+            }
+            tracers.put(groups, groupTracers);
+        }
+        for (InMemoryMessagingLayer messagingLayer : messagingLayers) {
+            messagingLayer.send(new HeartbeatMessage());
+        }
+        pump();
+    }
+
+    @AfterEach
+    public void afterEach() {
+        processes.forEach(PaxosGroups::stop);
+    }
+
+    // moves messages between processes until the network is quiet
+    private void pump() throws IOException {
+        int quietRounds = 0;
+        while (quietRounds < 20) {
+            interconnect.drainQueues();
+            int dispatched = 0;
+            for (PaxosGroups groups : processes) {
+                dispatched += groups.dispatchReceived();
+            }
+            quietRounds = dispatched == 0 ? quietRounds + 1 : 0;
+            try {
+                Thread.sleep(2);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+        }
+    }
+
+    private Optional<ConsensusValue> decided(PaxosGroups groups, int groupId, long executionId) throws Exception {
+        return groups.submit(groupId, (node) -> node.getExecutionState(executionId) == null
+                ? Optional.<ConsensusValue>empty()
+                : node.getExecutionState(executionId).getDecidedValueOptional()).get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testGroupsShareOneSwimMembership() throws Exception {
+        for (PaxosGroups groups : processes) {
+            groups.enableSwim();
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        for (PaxosGroups groups : processes) {
+            SwimMembership swimMembership = groups.submit(0, (node) -> node.getPeerRegistry().getSwimMembership())
+                    .get(5, TimeUnit.SECONDS);
+            Assertions.assertNotNull(swimMembership);
+            for (int groupId = 1; groupId < GROUP_COUNT; groupId++) {
+                int group = groupId;
+                while (groups.submit(group, (node) -> node.getPeerRegistry().getSwimMembership())
+                        .get(5, TimeUnit.SECONDS) == null && System.nanoTime() < deadline) {
+                    Thread.sleep(2);
+                }
+                Assertions.assertSame(swimMembership, groups.submit(group, (node) -> node.getPeerRegistry().getSwimMembership())
+                        .get(5, TimeUnit.SECONDS));
+                Assertions.assertEquals(new HashSet<>(ADDRESSES), groups.submit(group,
+                        (node) -> node.getPeerRegistry().peersAlive()).get(5, TimeUnit.SECONDS));
+            }
+        }
+    }
+
+    @Test
+    public void testGroupsDecideIndependently() throws Exception {
+        // every group decides its own execution 1, proposed by a different process
+        for (int groupId = 0; groupId < GROUP_COUNT; groupId++) {
+            ConsensusValue value = ConsensusValue.of(100 + groupId);
+            processes.get(groupId % processes.size()).submit(groupId, (node) -> {
+                node.sendPrepare(1, () -> value);
+                return null;
+            });
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        for (int groupId = 0; groupId < GROUP_COUNT; groupId++) {
+            for (PaxosGroups groups : processes) {
+                while (!decided(groups, groupId, 1).isPresent() && System.nanoTime() < deadline) {
+                    pump();
+                }
+                Assertions.assertEquals(Optional.of(ConsensusValue.of(100L + groupId)), decided(groups, groupId, 1));
+            }
+        }
+
+        // every group message each node sent or received belongs to that node's group
+        for (PaxosGroups groups : processes) {
+            for (int groupId = 0; groupId < GROUP_COUNT; groupId++) {
+                EventTracer tracer = tracers.get(groups).get(groupId);
+                ByteArrayOutputStream dump = new ByteArrayOutputStream();
+                tracer.dump(dump);
+                List<TraceRecord> groupMessages = TraceDecoder.decode(new ByteArrayInputStream(dump.toByteArray()))
+                        .getRecords().stream()
+                        .filter((record) -> record.getEvent() == TraceEvent.Received || record.getEvent() == TraceEvent.Sent)
+                        .filter((record) -> record.getMessageType().isPresent()
+                                && record.getMessageType().get() != MessageType.Heartbeat)
+                        .collect(Collectors.toList());
+                Assertions.assertTrue(groupMessages.stream().anyMatch((record) -> record.getEvent() == TraceEvent.Received));
+                for (TraceRecord record : groupMessages) {
+                    Assertions.assertEquals(groupId, record.getGroupId(), record.toString());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testQuietUntilEveryGroupSent() throws Exception {
+        PaxosGroups groups = processes.get(0);
+        Assertions.assertEquals(Long.MAX_VALUE, groups.nanosSinceEveryGroupSent());
+        for (int groupId = 0; groupId < GROUP_COUNT; groupId++) {
+            groups.submit(groupId, (node) -> {
+                node.sendMessage(new HeartbeatMessage());
+                return null;
+            }).get(5, TimeUnit.SECONDS);
+            if (groupId < GROUP_COUNT - 1) {
+                // peers have not heard from every group yet
+                Assertions.assertEquals(Long.MAX_VALUE, groups.nanosSinceEveryGroupSent());
+            }
+        }
+        Assertions.assertTrue(groups.nanosSinceEveryGroupSent() < TimeUnit.SECONDS.toNanos(5));
+    }
+
+    @Test
+    public void testGroupForKeySpreadsKeys() {
+        PaxosGroups groups = processes.get(0);
+        int[] counts = new int[GROUP_COUNT];
+        for (int key = 0; key < 1000; key++) {
+            int groupId = groups.groupForKey(key);
+            Assertions.assertEquals(groupId, groups.groupForKey(key));
+            counts[groupId]++;
+        }
+        for (int count : counts) {
+            Assertions.assertTrue(count > 150, Arrays.toString(counts));
+        }
+    }
+
+    @Test
+    public void testCommandsRunOnOwningWorker() throws Exception {
+        PaxosGroups groups = processes.get(0);
+        for (int groupId = 0; groupId < GROUP_COUNT; groupId++) {
+            String thread = groups.submit(groupId, (node) -> Thread.currentThread().getName()).get(5, TimeUnit.SECONDS);
+            Assertions.assertEquals("paxos-worker-" + (groupId % WORKER_COUNT), thread);
+        }
+        // a failing command completes its future exceptionally and leaves the worker running
+        Assertions.assertThrows(ExecutionException.class, () -> groups.submit(0, (node) -> {
+            throw new IOException("boom");
+        }).get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(Integer.valueOf(0), groups.submit(0, (node) -> node.getGroupId()).get(5, TimeUnit.SECONDS));
+    }
+}
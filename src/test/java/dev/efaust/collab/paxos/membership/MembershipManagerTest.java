@@ -0,0 +1,78 @@
+package dev.efaust.collab.paxos.membership;
+
+import com.google.common.collect.ImmutableSet;
+import dev.efaust.collab.paxos.ConsensusValue;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+import java.util.Set;
+
+public class MembershipManagerTest {
+    private static final Set<String> ABC = ImmutableSet.of("A", "B", "C");
+    private static final Set<String> ABD = ImmutableSet.of("A", "B", "D");
+
+    @Test
+    public void testImplicitUntilFirstConfigurationIsActive() {
+        MembershipManager membership = new MembershipManager(10);
+        Assertions.assertFalse(membership.isExplicit());
+        Assertions.assertEquals(15, membership.proposableThrough(5));
+
+        membership.decided(5, ABC);
+        Assertions.assertTrue(membership.isExplicit());
+        Assertions.assertEquals(Optional.empty(), membership.membersFor(14));
+        Assertions.assertEquals(Optional.of(ABC), membership.membersFor(15));
+        Assertions.assertEquals(15, membership.proposableThrough(5));
+    }
+
+    @Test
+    public void testConfigurationTakesOverAfterAlpha() {
+        MembershipManager membership = new MembershipManager(10);
+        membership.install(ABC);
+        Assertions.assertEquals(Optional.of(ABC), membership.membersFor(1));
+        Assertions.assertThrows(IllegalStateException.class, () -> membership.install(ABD));
+
+        membership.decided(20, ABD);
+        Assertions.assertEquals(Optional.of(ABC), membership.membersFor(29));
+        Assertions.assertEquals(Optional.of(ABD), membership.membersFor(30));
+
+        // nothing before execution 30 is asked about any more
+        membership.prune(30);
+        Assertions.assertEquals(Optional.empty(), membership.membersFor(29));
+        Assertions.assertEquals(Optional.of(ABD), membership.membersFor(30));
+    }
+
+    @Test
+    public void testOrdinalsAreUniquePerConfiguration() {
+        MembershipManager membership = new MembershipManager(10);
+        // listed out of order, ordinals follow the sorted members
+        membership.install(ImmutableSet.of("C", "A", "B"));
+        Configuration configuration = membership.configurationFor(1).get();
+        Assertions.assertEquals(1, configuration.ordinal("A"));
+        Assertions.assertEquals(2, configuration.ordinal("B"));
+        Assertions.assertEquals(3, configuration.ordinal("C"));
+        Assertions.assertEquals(0, configuration.ordinal("D"));
+
+        membership.decided(20, ABD);
+        Assertions.assertEquals(3, membership.configurationFor(30).get().ordinal("D"));
+    }
+
+    @Test
+    public void testSnapshotRoundTrip() {
+        MembershipManager membership = new MembershipManager(10);
+        membership.install(ABC);
+        membership.decided(20, ABD);
+        MembershipManager restored = new MembershipManager(10);
+        restored.restore(ByteBuffer.wrap(membership.snapshot()));
+        Assertions.assertEquals(membership.configurationFor(1), restored.configurationFor(1));
+        Assertions.assertEquals(membership.configurationFor(30), restored.configurationFor(30));
+    }
+
+    @Test
+    public void testMembershipValue() {
+        Assertions.assertEquals(Optional.of(ABC), MembershipValue.decode(MembershipValue.encode(ABC)));
+        Assertions.assertEquals(Optional.empty(), MembershipValue.decode(ConsensusValue.of(4L)));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> MembershipValue.encode(ImmutableSet.of()));
+    }
+}
@@ -0,0 +1,100 @@
+package dev.efaust.collab.paxos.quorum;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+public class QuorumSystemTest {
+    private static final Set<String> FIVE = ImmutableSet.of("1", "2", "3", "4", "5");
+    // 3 x 3 grid, rows {1 2 3} {4 5 6} {7 8 9}
+    private static final Set<String> NINE = ImmutableSet.of("1", "2", "3", "4", "5", "6", "7", "8", "9");
+
+    @Test
+    public void testMajority() {
+        QuorumSystem quorumSystem = new MajorityQuorumSystem();
+        Assertions.assertTrue(quorumSystem.isPhase1Quorum(FIVE, ImmutableSet.of("1", "2", "3")));
+        Assertions.assertFalse(quorumSystem.isPhase1Quorum(FIVE, ImmutableSet.of("1", "2")));
+        // non-members do not count
+        Assertions.assertFalse(quorumSystem.isPhase2Quorum(FIVE, ImmutableSet.of("1", "2", "x")));
+    }
+
+    @Test
+    public void testFlexibleDerivedPhase1() {
+        QuorumSystem quorumSystem = FlexibleQuorumSystem.forPhase2Size(2);
+        Assertions.assertTrue(quorumSystem.isPhase2Quorum(FIVE, ImmutableSet.of("4", "5")));
+        Assertions.assertFalse(quorumSystem.isPhase2Quorum(FIVE, ImmutableSet.of("5")));
+        // Q1 = 5 - 2 + 1
+        Assertions.assertFalse(quorumSystem.isPhase1Quorum(FIVE, ImmutableSet.of("1", "2", "3")));
+        Assertions.assertTrue(quorumSystem.isPhase1Quorum(FIVE, ImmutableSet.of("1", "2", "3", "4")));
+    }
+
+    @Test
+    public void testFlexibleRefusesNonIntersectingSizes() {
+        QuorumSystem quorumSystem = new FlexibleQuorumSystem(2, 3);
+        Assertions.assertFalse(quorumSystem.isPhase1Quorum(FIVE, FIVE));
+        Assertions.assertFalse(quorumSystem.isPhase2Quorum(FIVE, FIVE));
+        // fine for a 4 node cluster
+        Set<String> four = ImmutableSet.of("1", "2", "3", "4");
+        Assertions.assertTrue(quorumSystem.isPhase1Quorum(four, ImmutableSet.of("1", "2")));
+        Assertions.assertTrue(quorumSystem.isPhase2Quorum(four, ImmutableSet.of("2", "3", "4")));
+    }
+
+    @Test
+    public void testFlexibleRefusesSizesLargerThanMembers() {
+        // with three voters configured a quorum of four never forms, even when all three respond
+        Set<String> three = ImmutableSet.of("1", "2", "3");
+        QuorumSystem fixed = new FlexibleQuorumSystem(4, 4);
+        Assertions.assertFalse(fixed.isPhase1Quorum(three, three));
+        Assertions.assertFalse(fixed.isPhase2Quorum(three, three));
+        QuorumSystem derived = FlexibleQuorumSystem.forPhase2Size(4);
+        Assertions.assertFalse(derived.isPhase1Quorum(three, three));
+        Assertions.assertFalse(derived.isPhase2Quorum(three, three));
+        // Q2 = 2 of five: two of the five configured voters are needed, however many others are down
+        Assertions.assertFalse(FlexibleQuorumSystem.forPhase2Size(2).isPhase2Quorum(FIVE, ImmutableSet.of("1")));
+    }
+
+    @Test
+    public void testGrid() {
+        QuorumSystem quorumSystem = new GridQuorumSystem(3);
+        // column {2 5 8}
+        Assertions.assertTrue(quorumSystem.isPhase1Quorum(NINE, ImmutableSet.of("2", "5", "8")));
+        Assertions.assertFalse(quorumSystem.isPhase1Quorum(NINE, ImmutableSet.of("1", "5", "9")));
+        // row {4 5 6}
+        Assertions.assertTrue(quorumSystem.isPhase2Quorum(NINE, ImmutableSet.of("4", "5", "6")));
+        Assertions.assertFalse(quorumSystem.isPhase2Quorum(NINE, ImmutableSet.of("3", "4", "5")));
+    }
+
+    @Test
+    public void testGridPartialLastRowQuorumsIntersect() {
+        // rows {1 2 3} {4 5 6} {7}
+        Set<String> seven = ImmutableSet.of("1", "2", "3", "4", "5", "6", "7");
+        QuorumSystem quorumSystem = new GridQuorumSystem(3);
+        Assertions.assertFalse(quorumSystem.isPhase2Quorum(seven, ImmutableSet.of("7")));
+        Assertions.assertTrue(quorumSystem.isPhase1Quorum(seven, ImmutableSet.of("3", "6")));
+
+        // exhaustively check every Phase 1 quorum intersects every Phase 2 quorum
+        for (Set<String> q1 : Sets.powerSet(seven)) {
+            if (!quorumSystem.isPhase1Quorum(seven, q1)) {
+                continue;
+            }
+            for (Set<String> q2 : Sets.powerSet(seven)) {
+                if (quorumSystem.isPhase2Quorum(seven, q2)) {
+                    Assertions.assertFalse(Sets.intersection(q1, q2).isEmpty(), q1 + " " + q2);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testFromSpec() {
+        Assertions.assertTrue(QuorumSystem.fromSpec("majority") instanceof MajorityQuorumSystem);
+        Assertions.assertEquals("flexible:2", QuorumSystem.fromSpec("flexible:2").toString());
+        Assertions.assertEquals("flexible:4,2", QuorumSystem.fromSpec("flexible:4,2").toString());
+        Assertions.assertEquals("grid:3", QuorumSystem.fromSpec("grid:3").toString());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> QuorumSystem.fromSpec("grid"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> QuorumSystem.fromSpec("flexible:x"));
+    }
+}
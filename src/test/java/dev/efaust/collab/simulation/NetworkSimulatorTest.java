@@ -0,0 +1,166 @@
+package dev.efaust.collab.simulation;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import dev.efaust.collab.paxos.ConsensusValue;
+import dev.efaust.collab.paxos.Decision;
+import dev.efaust.collab.paxos.ExecutionState;
+import dev.efaust.collab.paxos.PaxosNode;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.apache.logging.log4j.core.config.DefaultConfiguration;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class NetworkSimulatorTest {
+    private static final List<String> ADDRESSES = ImmutableList.of("A", "B", "C", "D", "E");
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @BeforeAll
+    public static void beforeAll() {
+        Configurator.initialize(new DefaultConfiguration());
+        Configurator.setRootLevel(Level.WARN);
+    }
+
+    private static NetworkSimulator simulator(long seed, LinkModel link) {
+        NetworkSimulator simulator = new NetworkSimulator(seed);
+        simulator.setDefaultLink(link);
+        for (String address : ADDRESSES) {
+            simulator.addNode(address);
+        }
+        simulator.installMembers();
+        // first heartbeats
+        simulator.run(10 * MILLIS);
+        return simulator;
+    }
+
+    // count proposals spread over every node, one every intervalNanos
+    private static List<CompletableFuture<Decision>> proposeLoad(NetworkSimulator simulator, int count, long intervalNanos) {
+        List<CompletableFuture<Decision>> futures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int proposal = i;
+            simulator.schedule(i * intervalNanos, () -> futures.add(simulator.propose(
+                    ADDRESSES.get(proposal % ADDRESSES.size()), ConsensusValue.of(proposal))));
+        }
+        return futures;
+    }
+
+    private static void runUntilDone(NetworkSimulator simulator, List<CompletableFuture<Decision>> futures, int count) {
+        Assertions.assertTrue(simulator.runUntil(() -> futures.size() == count
+                && futures.stream().allMatch(CompletableFuture::isDone), TimeUnit.SECONDS.toNanos(60)));
+    }
+
+    private static void assertAgreement(NetworkSimulator simulator) {
+        PaxosNode first = simulator.getNode(ADDRESSES.get(0));
+        for (long executionId = 1; executionId < first.getNextExecutionId(); executionId++) {
+            Optional<ConsensusValue> decided = Optional.empty();
+            for (String address : ADDRESSES) {
+                ExecutionState state = simulator.getNode(address).getExecutionState(executionId);
+                if (state == null || !state.getDecidedValueOptional().isPresent()) {
+                    continue;
+                }
+                if (decided.isPresent()) {
+                    Assertions.assertEquals(decided, state.getDecidedValueOptional(), "execution " + executionId);
+                }
+                decided = state.getDecidedValueOptional();
+            }
+        }
+    }
+
+    @Test
+    public void testSameSeedSameRun() {
+        List<String> runs = new ArrayList<>();
+        for (int run = 0; run < 2; run++) {
+            NetworkSimulator simulator = simulator(7, LinkModel.lossyLan(0.05));
+            List<CompletableFuture<Decision>> futures = proposeLoad(simulator, 100, MILLIS);
+            runUntilDone(simulator, futures, 100);
+            runs.add(simulator.getStats() + " at " + simulator.now());
+        }
+        Assertions.assertEquals(runs.get(0), runs.get(1));
+    }
+
+    @Test
+    public void testAgreementUnderLoss() {
+        NetworkSimulator simulator = simulator(11, LinkModel.lossyLan(0.1));
+        List<CompletableFuture<Decision>> futures = proposeLoad(simulator, 200, MILLIS);
+        runUntilDone(simulator, futures, 200);
+        SimulationStats stats = simulator.getStats();
+        Assertions.assertTrue(stats.getDropped() > 0 && stats.getDuplicated() > 0);
+        Assertions.assertTrue(stats.getDecided() > 150, stats.toString());
+        Assertions.assertTrue(stats.latencyPercentileNanos(50) <= stats.latencyPercentileNanos(99));
+        assertAgreement(simulator);
+    }
+
+    @Test
+    public void testMinorityPartitionDecidesAfterHeal() {
+        NetworkSimulator simulator = simulator(3, LinkModel.lan());
+        simulator.partition(ImmutableSet.of("A", "B"));
+        CompletableFuture<Decision> minority = simulator.propose("A", ConsensusValue.of(1L));
+        CompletableFuture<Decision> majority = simulator.propose("C", ConsensusValue.of(2L));
+        simulator.run(TimeUnit.SECONDS.toNanos(1));
+        Assertions.assertFalse(minority.isDone());
+        Assertions.assertTrue(majority.isDone());
+
+        simulator.heal();
+        Assertions.assertTrue(simulator.runUntil(minority::isDone, TimeUnit.SECONDS.toNanos(3)));
+        Assertions.assertEquals(ConsensusValue.of(1L), minority.join().getValue());
+        assertAgreement(simulator);
+    }
+
+    @Test
+    public void testMinorityDecidesNothingUntilLongPartitionHeals() {
+        NetworkSimulator simulator = simulator(5, LinkModel.lan());
+        simulator.run(TimeUnit.SECONDS.toNanos(10));
+        simulator.partition(ImmutableSet.of("A", "B"));
+        CompletableFuture<Decision> minority = simulator.propose("A", ConsensusValue.of(1L));
+        CompletableFuture<Decision> majority = simulator.propose("C", ConsensusValue.of(2L));
+        // the minority keeps retrying until its proposal times out, then proposes again once it no longer hears
+        // from the majority at all
+        simulator.run(TimeUnit.SECONDS.toNanos(20));
+        Assertions.assertEquals(ImmutableSet.of("A", "B"), simulator.getNode("A").getPeerRegistry().votersAlive());
+        CompletableFuture<Decision> suspected = simulator.propose("B", ConsensusValue.of(3L));
+        simulator.run(TimeUnit.SECONDS.toNanos(10));
+        Assertions.assertEquals(ConsensusValue.of(2L), majority.join().getValue());
+        for (CompletableFuture<Decision> future : ImmutableList.of(minority, suspected)) {
+            Assertions.assertTrue(future.isCompletedExceptionally());
+        }
+        for (String address : ImmutableSet.of("A", "B")) {
+            Assertions.assertEquals(0, simulator.getNode(address).getDecidedThrough(), address);
+        }
+
+        simulator.heal();
+        CompletableFuture<Decision> healed = simulator.propose("A", ConsensusValue.of(4L));
+        Assertions.assertTrue(simulator.runUntil(healed::isDone, TimeUnit.SECONDS.toNanos(10)));
+        Assertions.assertEquals(ConsensusValue.of(4L), healed.join().getValue());
+        Assertions.assertTrue(simulator.getNode("A").getDecidedThrough() >= healed.join().getExecutionId());
+        assertAgreement(simulator);
+    }
+
+    @Test
+    public void testPartitionOutlastingFailureDetectionCannotSplitBrain() {
+        NetworkSimulator simulator = simulator(3, LinkModel.lan());
+        simulator.run(TimeUnit.SECONDS.toNanos(10));
+        simulator.partition(ImmutableSet.of("A", "B"));
+        // long enough for each side to suspect every node on the other
+        simulator.run(TimeUnit.SECONDS.toNanos(30));
+        Assertions.assertEquals(ImmutableSet.of("A", "B"), simulator.getNode("A").getPeerRegistry().votersAlive());
+
+        CompletableFuture<Decision> minority = simulator.propose("A", ConsensusValue.of(1L));
+        CompletableFuture<Decision> majority = simulator.propose("C", ConsensusValue.of(2L));
+        simulator.run(TimeUnit.SECONDS.toNanos(3));
+        Assertions.assertEquals(ConsensusValue.of(2L), majority.join().getValue());
+        Assertions.assertFalse(minority.isDone());
+        for (String address : ImmutableSet.of("A", "B")) {
+            ExecutionState state = simulator.getNode(address).getExecutionState(majority.join().getExecutionId());
+            Assertions.assertFalse(state != null && state.getDecidedValueOptional().isPresent(), address);
+        }
+        assertAgreement(simulator);
+    }
+}
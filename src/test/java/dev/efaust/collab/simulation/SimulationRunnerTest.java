@@ -0,0 +1,62 @@
+package dev.efaust.collab.simulation;
+
+import com.google.common.collect.ImmutableSet;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.apache.logging.log4j.core.config.DefaultConfiguration;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
+
+public class SimulationRunnerTest {
+    @BeforeAll
+    public static void beforeAll() {
+        Configurator.initialize(new DefaultConfiguration());
+        Configurator.setRootLevel(Level.WARN);
+    }
+
+    private static ClusterScenario smallScenario() {
+        ClusterScenario scenario = new ClusterScenario();
+        scenario.setNodes(3);
+        scenario.setProposals(10);
+        return scenario;
+    }
+
+    @Test
+    public void testSeedsPassSafetyChecks() {
+        SimulationReport report = new SimulationRunner().run(smallScenario(), 0, 64);
+        Assertions.assertTrue(report.isPassed(), report.toString());
+        Assertions.assertEquals(64, report.getRuns());
+        Assertions.assertEquals(64 * 10, report.getStats().getDecided() + report.getStats().getFailed());
+    }
+
+    @Test
+    public void testReportDoesNotDependOnParallelism() {
+        ClusterScenario scenario = smallScenario();
+        SimulationReport parallel = new SimulationRunner(new ForkJoinPool(4)).run(scenario, 1000, 24);
+        SimulationReport serial = new SimulationRunner(new ForkJoinPool(1)).run(scenario, 1000, 24);
+        Assertions.assertEquals(serial.toString(), parallel.toString());
+        Assertions.assertEquals(SimulationRunner.run(scenario, 1005).getStats().toString(),
+                SimulationRunner.run(scenario, 1005).getStats().toString());
+    }
+
+    @Test
+    public void testFailingSeedsAreReported() {
+        SimulationRunner.Scenario scenario = (seed) -> {
+            if (seed == 13) {
+                throw new IllegalStateException("boom");
+            }
+            return new SimulationResult(seed, seed % 20 == 7 ? Collections.singletonList("agreement") :
+                    Collections.emptyList(), new SimulationStats(), 0);
+        };
+        SimulationReport report = new SimulationRunner().run(scenario, 0, 100);
+        Assertions.assertFalse(report.isPassed());
+        Assertions.assertEquals(ImmutableSet.of(7L, 13L, 27L, 47L, 67L, 87L), report.getFailingSeeds());
+        Assertions.assertEquals(Collections.singletonList("agreement"), report.getViolations(27));
+        Assertions.assertTrue(report.getViolations(13).get(0).contains("boom"));
+        Assertions.assertEquals(report.getViolations(13), SimulationRunner.run(scenario, 13).getViolations());
+    }
+}
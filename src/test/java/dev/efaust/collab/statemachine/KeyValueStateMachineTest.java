@@ -0,0 +1,36 @@
+package dev.efaust.collab.statemachine;
+
+import dev.efaust.collab.paxos.Decision;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Optional;
+
+public class KeyValueStateMachineTest {
+    @Test
+    public void testSnapshotRoundTrip() {
+        KeyValueStateMachine stateMachine = new KeyValueStateMachine();
+        stateMachine.apply(Arrays.asList(new Decision(1, KeyValueCommand.put(1, 10)), new Decision(2, KeyValueCommand.put(2, 20))));
+
+        KeyValueStateMachine restored = new KeyValueStateMachine();
+        restored.restore(stateMachine.snapshot(), 2);
+        Assertions.assertEquals(2, restored.size());
+        Assertions.assertEquals(Optional.of(20), restored.get(2));
+        Assertions.assertEquals(2, restored.getAppliedThrough());
+    }
+
+    @Test
+    public void testRejectsCountsTheSnapshotCannotHold() {
+        KeyValueStateMachine stateMachine = new KeyValueStateMachine();
+        byte[] negative = ByteBuffer.allocate(Integer.BYTES).putInt(-1).array();
+        Assertions.assertThrows(IllegalArgumentException.class, () -> stateMachine.restore(negative, 1));
+        byte[] huge = ByteBuffer.allocate(Integer.BYTES).putInt(Integer.MAX_VALUE).array();
+        Assertions.assertThrows(IllegalArgumentException.class, () -> stateMachine.restore(huge, 1));
+        // one entry and trailing bytes
+        byte[] trailing = ByteBuffer.allocate(Integer.BYTES * 4).putInt(1).putInt(1).putInt(10).array();
+        Assertions.assertThrows(IllegalArgumentException.class, () -> stateMachine.restore(trailing, 1));
+        Assertions.assertEquals(0, stateMachine.size());
+    }
+}
@@ -0,0 +1,106 @@
+package dev.efaust.collab.timer;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class HashedWheelTimerTest {
+    private static final long TICK = 10;
+    private static final int WHEEL_SIZE = 8;
+
+    private AtomicLong clock;
+    private HashedWheelTimer timer;
+    private List<String> fired;
+
+    @BeforeEach
+    public void before() {
+        clock = new AtomicLong(1000);
+        timer = new HashedWheelTimer(clock::get, TICK, WHEEL_SIZE);
+        fired = new ArrayList<>();
+    }
+
+    @Test
+    public void testFiresOnlyAfterDeadline() {
+        timer.schedule(() -> fired.add("a"), 25);
+        clock.addAndGet(20);
+        Assertions.assertEquals(0, timer.advance());
+        clock.addAndGet(10);
+        Assertions.assertEquals(1, timer.advance());
+        Assertions.assertEquals(List.of("a"), fired);
+        Assertions.assertEquals(0, timer.getPendingTimeouts());
+    }
+
+    @Test
+    public void testDeadlinesBeyondOneRotation() {
+        // 3 full rotations plus a bit, shares a bucket with timeouts that fire earlier
+        timer.schedule(() -> fired.add("late"), TICK * WHEEL_SIZE * 3 + TICK);
+        timer.schedule(() -> fired.add("early"), TICK);
+        for (int i = 0; i < WHEEL_SIZE * 3; i++) {
+            clock.addAndGet(TICK);
+            timer.advance();
+        }
+        Assertions.assertEquals(List.of("early"), fired);
+        clock.addAndGet(TICK);
+        timer.advance();
+        Assertions.assertEquals(List.of("early", "late"), fired);
+    }
+
+    @Test
+    public void testAdvanceAfterLongPause() {
+        timer.schedule(() -> fired.add("a"), TICK * 3);
+        timer.schedule(() -> fired.add("b"), TICK * WHEEL_SIZE * 5);
+        timer.schedule(() -> fired.add("c"), TICK * WHEEL_SIZE * 50);
+        clock.addAndGet(TICK * WHEEL_SIZE * 10);
+        Assertions.assertEquals(2, timer.advance());
+        Assertions.assertTrue(fired.containsAll(List.of("a", "b")));
+        Assertions.assertEquals(1, timer.getPendingTimeouts());
+    }
+
+    @Test
+    public void testCancel() {
+        HashedWheelTimer.Timeout timeout = timer.schedule(() -> fired.add("a"), TICK);
+        Assertions.assertTrue(timeout.cancel());
+        Assertions.assertFalse(timeout.cancel());
+        clock.addAndGet(TICK * 2);
+        Assertions.assertEquals(0, timer.advance());
+        Assertions.assertTrue(fired.isEmpty());
+        Assertions.assertEquals(0, timer.getPendingTimeouts());
+    }
+
+    @Test
+    public void testTaskCanCancelAndScheduleDuringAdvance() {
+        HashedWheelTimer.Timeout[] second = new HashedWheelTimer.Timeout[1];
+        timer.schedule(() -> {
+            fired.add("first");
+            second[0].cancel();
+            timer.schedule(() -> fired.add("rescheduled"), TICK);
+        }, TICK);
+        second[0] = timer.schedule(() -> fired.add("second"), TICK);
+
+        clock.addAndGet(TICK);
+        timer.advance();
+        Assertions.assertEquals(List.of("first"), fired);
+
+        clock.addAndGet(TICK);
+        timer.advance();
+        Assertions.assertEquals(List.of("first", "rescheduled"), fired);
+    }
+
+    @Test
+    public void testManyOutstandingTimeouts() {
+        int count = 50_000;
+        int[] firedCount = new int[1];
+        for (int i = 0; i < count; i++) {
+            timer.schedule(() -> firedCount[0]++, (i % 1000) * TICK);
+        }
+        Assertions.assertEquals(count, timer.getPendingTimeouts());
+        clock.addAndGet(1000 * TICK);
+        timer.advance();
+        Assertions.assertEquals(count, firedCount[0]);
+        Assertions.assertEquals(0, timer.getPendingTimeouts());
+    }
+}
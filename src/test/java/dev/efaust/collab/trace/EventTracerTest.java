@@ -0,0 +1,103 @@
+package dev.efaust.collab.trace;
+
+import dev.efaust.collab.MessageType;
+import dev.efaust.collab.paxos.ConsensusValue;
+import dev.efaust.collab.paxos.NodeOrdinals;
+import dev.efaust.collab.paxos.messages.PleaseAcceptMessage;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+public class EventTracerTest {
+    private static List<TraceRecord> roundTrip(EventTracer tracer) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        tracer.dump(out);
+        return TraceDecoder.decode(new ByteArrayInputStream(out.toByteArray())).getRecords();
+    }
+
+    @Test
+    public void testMessageRecordRoundTrip() throws IOException {
+        EventTracer tracer = new EventTracer(8);
+        PleaseAcceptMessage pleaseAccept = new PleaseAcceptMessage();
+        pleaseAccept.setGroupId(2);
+        pleaseAccept.setExecutionId(5);
+        pleaseAccept.setProposalNumberToAccept(7);
+        pleaseAccept.setValueToAccept(ConsensusValue.of(42));
+        tracer.traceMessage(TraceEvent.Sent, pleaseAccept, "10.0.0.2");
+        tracer.traceExecution(TraceEvent.Decided, 2, 5, 7, 42);
+
+        List<TraceRecord> records = roundTrip(tracer);
+        Assertions.assertEquals(2, records.size());
+        TraceRecord sent = records.get(0);
+        Assertions.assertEquals(TraceEvent.Sent, sent.getEvent());
+        Assertions.assertEquals(Optional.of(MessageType.PleaseAccept), sent.getMessageType());
+        Assertions.assertEquals(2, sent.getGroupId());
+        Assertions.assertEquals(5, sent.getExecutionId());
+        Assertions.assertEquals(7, sent.getProposalNumber());
+        Assertions.assertEquals(42, sent.getValue());
+        Assertions.assertEquals(NodeOrdinals.ordinal("10.0.0.2"), sent.getPeer());
+        TraceRecord decided = records.get(1);
+        Assertions.assertEquals(TraceEvent.Decided, decided.getEvent());
+        Assertions.assertEquals(Optional.empty(), decided.getMessageType());
+        Assertions.assertTrue(decided.getTimestampNanos() >= sent.getTimestampNanos());
+    }
+
+    @Test
+    public void testRingKeepsNewestRecords() throws IOException {
+        EventTracer tracer = new EventTracer(4);
+        for (long executionId = 1; executionId <= 10; executionId++) {
+            tracer.traceExecution(TraceEvent.Decided, 0, executionId, 0, 0);
+        }
+        Assertions.assertEquals(10, tracer.getRecordCount());
+        List<TraceRecord> records = roundTrip(tracer);
+        Assertions.assertEquals(4, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            Assertions.assertEquals(7 + i, records.get(i).getExecutionId());
+        }
+    }
+
+    @Test
+    public void testPeerOrdinalsSharingACacheSlot() throws IOException {
+        EventTracer tracer = new EventTracer(8);
+        // equal hash codes
+        String[] peers = new String[]{ "Aa", "BB", "Aa", "BB" };
+        for (String peer : peers) {
+            tracer.traceEvent(TraceEvent.InvalidPacket, 0, peer);
+        }
+        List<TraceRecord> records = roundTrip(tracer);
+        for (int i = 0; i < peers.length; i++) {
+            Assertions.assertEquals(NodeOrdinals.ordinal(peers[i]), records.get(i).getPeer());
+        }
+    }
+
+    @Test
+    public void testErrorDumpDirectory(@TempDir Path directory) throws IOException {
+        EventTracer tracer = new EventTracer(8);
+        // as configured for the tests
+        Assertions.assertNull(tracer.getErrorDumpDirectory());
+        Assertions.assertNull(tracer.dumpOnError("test"));
+
+        tracer.setErrorDumpDirectory(directory);
+        tracer.traceExecution(TraceEvent.Decided, 0, 1, 0, 0);
+        Path dump = tracer.dumpOnError("test");
+        Assertions.assertEquals(directory, dump.getParent());
+        try (InputStream in = Files.newInputStream(dump)) {
+            Assertions.assertEquals(1, TraceDecoder.decode(in).getRecords().size());
+        }
+    }
+
+    @Test
+    public void testRejectsBadInput() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new EventTracer(6));
+        Assertions.assertThrows(IOException.class, () -> TraceDecoder.decode(new ByteArrayInputStream(new byte[]{ 1, 2, 3, 4, 5 })));
+    }
+}